@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.base.Optional;
+
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.exceptions.VerdictException;
+
+/**
+ * The benchmarked queries: the TPC-H queries in core's tpch tests (on tpch1g) and
+ * the queries of AggregationIT (on instacart1g). A query name starts with "tpch"
+ * or "agg" accordingly.
+ */
+public class BenchmarkQueries {
+
+    private static final Map<String, String> queries = new LinkedHashMap<String, String>();
+
+    static {
+        queries.put("tpch2", "select s_acctbal, s_name, n_name, p_partkey, p_mfgr, s_address, s_phone, s_comment\n"
+                + "from part, supplier, partsupp, nation, region\n"
+                + "where p_partkey = ps_partkey and s_suppkey = ps_suppkey and p_size = 15 and p_type like '%BRASS'\n"
+                + " and s_nationkey = n_nationkey and n_regionkey = r_regionkey and r_name = 'EUROPE'\n"
+                + " and ps_supplycost = (select min(ps_supplycost) from partsupp, supplier, nation, region, part\n"
+                + "   where p_partkey = ps_partkey and s_suppkey = ps_suppkey and s_nationkey = n_nationkey\n"
+                + "   and n_regionkey = r_regionkey and r_name = 'EUROPE')\n"
+                + "order by s_acctbal desc, n_name, s_name, p_partkey\n" + "limit 100");
+        queries.put("tpch6", "select sum(l_extendedprice * l_discount) as revenue\n" + "from lineitem\n"
+                + "where l_shipdate >= '1994-01-01' and l_shipdate < '1995-01-01'\n"
+                + " and l_discount between 0.05 and 0.07 and l_quantity < 24");
+        queries.put("tpch9", "select nation, o_year, sum(amount) as sum_profit\n" + "from (\n"
+                + "  select n_name as nation, year(o_orderdate) as o_year,\n"
+                + "    l_extendedprice * (1 - l_discount) - ps_supplycost * l_quantity as amount\n"
+                + "  from lineitem\n" + "    inner join orders on o_orderkey = l_orderkey\n"
+                + "    inner join partsupp on ps_suppkey = l_suppkey\n"
+                + "    inner join part on p_partkey = ps_partkey\n"
+                + "    inner join supplier on s_suppkey = ps_suppkey\n"
+                + "    inner join nation on s_nationkey = n_nationkey\n" + "  where p_name like '%green%') as profit\n"
+                + "group by nation, o_year\n" + "order by nation, o_year desc");
+        queries.put("tpch12", "select l_shipmode,\n"
+                + " sum(case when o_orderpriority = '1-URGENT' or o_orderpriority = '2-HIGH' then 1 else 0 end) as high_line_count,\n"
+                + " sum(case when o_orderpriority <> '1-URGENT' and o_orderpriority <> '2-HIGH' then 1 else 0 end) as low_line_count\n"
+                + "from orders, lineitem\n"
+                + "where o_orderkey = l_orderkey and l_shipmode in ('MAIL', 'SHIP')\n"
+                + " and l_commitdate < l_receiptdate and l_shipdate < l_commitdate\n"
+                + " and l_receiptdate >= '1994-01-01' and l_receiptdate < '1995-01-01'\n"
+                + "group by l_shipmode\n" + "order by l_shipmode");
+        queries.put("tpch15", "select l_suppkey as supplier_no,\n"
+                + "       sum(l_extendedprice * (1 - l_discount)) as total_revenue\n" + "from lineitem\n"
+                + "where l_shipdate >= '1996-01-01' and l_shipdate < '1996-04-01'\n" + "group by l_suppkey\n"
+                + "limit 10");
+        queries.put("tpch16", "select p_brand, p_type, p_size, count(distinct ps_suppkey) as supplier_cnt\n"
+                + "from partsupp, part\n"
+                + "where p_partkey = ps_partkey and p_brand <> 'Brand#45' and p_type not like 'MEDIUM POLISHED%'\n"
+                + " and p_size in (49, 14, 23, 45, 19, 3, 36, 9)\n"
+                + " and ps_suppkey not in (select s_suppkey from supplier where s_comment like '%Customer%Complaints%')\n"
+                + "group by p_brand, p_type, p_size\n" + "order by supplier_cnt desc, p_brand, p_type, p_size\n"
+                + "limit 10");
+        queries.put("tpch17", "select sum(l_extendedprice) / 7.0 as avg_yearly\n" + "from lineitem\n"
+                + "     inner join (select l_partkey as partkey, 0.2 * avg(l_quantity) as small_quantity\n"
+                + "             from lineitem inner join part on l_partkey = p_partkey\n"
+                + "             group by l_partkey) t on l_partkey = partkey\n"
+                + "     inner join part on l_partkey = p_partkey\n"
+                + "where p_brand = 'Brand#23' and p_container = 'MED BOX' and l_quantity < small_quantity");
+
+        queries.put("aggCount", "select count(*) from orders");
+        queries.put("aggSum", "select sum(days_since_prior) from orders");
+        queries.put("aggAvg", "select avg(days_since_prior) from orders");
+        queries.put("aggCountDistinct", "select count(distinct user_id) from orders");
+        queries.put("aggGroupbyCount",
+                "select order_dow, count(*) from orders group by order_dow order by order_dow");
+        queries.put("aggGroupbySum", "select order_hour_of_day, sum(days_since_prior) from orders "
+                + "group by order_hour_of_day order by order_hour_of_day");
+        queries.put("aggGroupbyAvg", "select order_number, avg(days_since_prior) from orders "
+                + "group by order_number order by order_number");
+        queries.put("aggGroupbyCountDistinct", "select order_dow, count(distinct user_id) from orders "
+                + "group by order_dow order by order_dow");
+        queries.put("aggJoin", "select reordered, count(*) from orders inner join order_products "
+                + "on orders.order_id = order_products.order_id group by reordered order by reordered");
+    }
+
+    public static String sql(String name) {
+        if (!queries.containsKey(name)) {
+            throw new IllegalArgumentException("Unknown benchmark query: " + name);
+        }
+        return queries.get(name);
+    }
+
+    public static String schema(String name) {
+        return (name.startsWith("tpch")) ? "tpch1g" : "instacart1g";
+    }
+
+    /**
+     * A context backed by DbmsDummy and {@link SyntheticMeta}, whose current schema
+     * is the one the query refers to.
+     *
+     * @param name
+     *            a query name
+     * @param errorBoundMethod
+     *            one of "nobound", "subsampling", "analytic", and "bootstrapping"
+     * @return
+     * @throws VerdictException
+     */
+    public static VerdictJDBCContext contextFor(String name, String errorBoundMethod) throws VerdictException {
+        VerdictConf conf = new VerdictConf();
+        conf.setDbms("dummy");
+        conf.setLoglevel("error");
+        conf.set("verdict.error_bound.method", errorBoundMethod);
+        conf.set("verdict.parser.warm_up", "false");
+
+        VerdictJDBCContext vc = VerdictJDBCContext.from(conf);
+        vc.setMeta(new SyntheticMeta(vc));
+        vc.getDbms().setCurrentSchema(Optional.of(schema(name)));
+        return vc;
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.umich.verdict.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.umich.verdict.parser.VerdictSQLParser;
+import edu.umich.verdict.util.VerdictSQLParserFactory;
+
+/**
+ * Parse throughput of the TPC-H queries: the two-stage (SLL, then LL) parsing of
+ * {@link VerdictSQLParserFactory} against the plain LL parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({ "tpch2", "tpch6", "tpch9", "tpch12", "tpch17" })
+    public String query;
+
+    private String sql;
+
+    @Setup
+    public void setup() {
+        sql = BenchmarkQueries.sql(query);
+    }
+
+    @Benchmark
+    public VerdictSQLParser.Verdict_statementContext twoStage() {
+        return VerdictSQLParserFactory.parse(sql, VerdictSQLParserFactory.VERDICT_STATEMENT);
+    }
+
+    @Benchmark
+    public VerdictSQLParser.Verdict_statementContext llOnly() {
+        return VerdictSQLParserFactory.parserOf(sql).verdict_statement();
+    }
+
+}
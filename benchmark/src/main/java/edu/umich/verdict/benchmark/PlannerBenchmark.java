@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.parser.VerdictSQLParser;
+import edu.umich.verdict.relation.ApproxRelation;
+import edu.umich.verdict.relation.ExactRelation;
+import edu.umich.verdict.relation.NamingContext;
+import edu.umich.verdict.util.VerdictSQLParserFactory;
+
+/**
+ * The front half of planning a query: parsing, building the exact relation from
+ * the parse tree, and choosing a sample plan with {@link ExactRelation#approx()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PlannerBenchmark {
+
+    @Param({ "tpch2", "tpch6", "tpch9", "tpch12", "tpch15", "tpch16", "tpch17", "aggCount", "aggSum", "aggAvg",
+            "aggCountDistinct", "aggGroupbyCount", "aggGroupbySum", "aggGroupbyAvg", "aggGroupbyCountDistinct",
+            "aggJoin" })
+    public String query;
+
+    private VerdictJDBCContext vc;
+
+    private String sql;
+
+    private VerdictSQLParser.Select_statementContext tree;
+
+    private ExactRelation exact;
+
+    @Setup(Level.Trial)
+    public void setup() throws VerdictException {
+        vc = BenchmarkQueries.contextFor(query, "nobound");
+        sql = BenchmarkQueries.sql(query);
+        tree = VerdictSQLParserFactory.parse(sql, VerdictSQLParserFactory.SELECT_STATEMENT);
+        NamingContext.begin();
+        exact = ExactRelation.from(vc, tree);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws VerdictException {
+        vc.destroy();
+    }
+
+    @Benchmark
+    public VerdictSQLParser.Select_statementContext parse() {
+        return VerdictSQLParserFactory.parse(sql, VerdictSQLParserFactory.SELECT_STATEMENT);
+    }
+
+    @Benchmark
+    public ExactRelation fromParseTree() {
+        NamingContext.begin();
+        return ExactRelation.from(vc, tree);
+    }
+
+    @Benchmark
+    public ApproxRelation approx() throws VerdictException {
+        NamingContext.begin();
+        return exact.approx();
+    }
+
+    /**
+     * All of the above, from the query text to the sample plan.
+     */
+    @Benchmark
+    public ApproxRelation endToEnd() throws VerdictException {
+        NamingContext.begin();
+        return ExactRelation.from(vc, sql).approx();
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.umich.verdict.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.parser.VerdictSQLParser;
+import edu.umich.verdict.relation.ExactRelation;
+import edu.umich.verdict.relation.NamingContext;
+import edu.umich.verdict.util.VerdictSQLParserFactory;
+
+/**
+ * The per-query parsing cost of a select statement: the former path (one parse
+ * for the statement type, one for the relation, and one for the EXACT keyword)
+ * against the current single parse.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class QueryParseBenchmark {
+
+    @Param({ "tpch6", "tpch12", "aggGroupbyAvg" })
+    public String query;
+
+    private VerdictJDBCContext vc;
+
+    private String sql;
+
+    @Setup(Level.Trial)
+    public void setup() throws VerdictException {
+        vc = BenchmarkQueries.contextFor(query, "nobound");
+        sql = BenchmarkQueries.sql(query);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws VerdictException {
+        vc.destroy();
+    }
+
+    @Benchmark
+    public void threeParses(Blackhole bh) {
+        NamingContext.begin();
+        bh.consume(VerdictSQLParserFactory.parse(sql, VerdictSQLParserFactory.VERDICT_STATEMENT));
+        bh.consume(ExactRelation.from(vc, sql));
+        bh.consume(VerdictSQLParserFactory.parse(sql, VerdictSQLParserFactory.SELECT_STATEMENT).EXACT() != null);
+    }
+
+    @Benchmark
+    public void singleParse(Blackhole bh) {
+        NamingContext.begin();
+        VerdictSQLParser.Verdict_statementContext ctx = VerdictSQLParserFactory.parse(sql,
+                VerdictSQLParserFactory.VERDICT_STATEMENT);
+        bh.consume(ctx);
+        bh.consume(ExactRelation.from(vc, ctx.select_statement()));
+        bh.consume(ctx.select_statement().EXACT() != null);
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.ApproxRelation;
+import edu.umich.verdict.relation.ExactRelation;
+import edu.umich.verdict.relation.NamingContext;
+
+/**
+ * The back half of planning a query: rewriting a sample plan into an exact
+ * relation over the sample tables, and turning it into the SQL statement sent to
+ * the DBMS. See {@link SubsamplingScalingBenchmark} for the ways subsampling
+ * scales the partition estimates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RewriteBenchmark {
+
+    @Param({ "tpch2", "tpch6", "tpch9", "tpch12", "tpch15", "tpch16", "tpch17", "aggCount", "aggSum", "aggAvg",
+            "aggCountDistinct", "aggGroupbyCount", "aggGroupbySum", "aggGroupbyAvg", "aggGroupbyCountDistinct",
+            "aggJoin" })
+    public String query;
+
+    @Param({ "nobound", "subsampling", "analytic", "bootstrapping" })
+    public String method;
+
+    private VerdictJDBCContext vc;
+
+    private ApproxRelation approx;
+
+    private ExactRelation rewritten;
+
+    @Setup(Level.Trial)
+    public void setup() throws VerdictException {
+        vc = BenchmarkQueries.contextFor(query, method);
+        NamingContext.begin();
+        approx = ExactRelation.from(vc, BenchmarkQueries.sql(query)).approx();
+        rewritten = approx.rewrite();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws VerdictException {
+        vc.destroy();
+    }
+
+    @Benchmark
+    public ExactRelation rewrite() {
+        NamingContext.begin();
+        return approx.rewrite();
+    }
+
+    @Benchmark
+    public String toSql() {
+        NamingContext.begin();
+        return rewritten.toSql();
+    }
+
+}
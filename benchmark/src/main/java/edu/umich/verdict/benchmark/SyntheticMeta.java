@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.benchmark;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import edu.umich.verdict.StaticSampleMeta;
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.datatypes.TableUniqueName;
+
+/**
+ * A sample catalog that exists only in memory: the TPC-H tables (schema tpch1g)
+ * and the instacart tables (schema instacart1g) used by the integration tests,
+ * each with uniform, universe, and stratified samples. Nothing is ever read from
+ * the DBMS, so the planner can be benchmarked with DbmsDummy. The tables and
+ * samples are registered as in the test fixture of the core module.
+ */
+public class SyntheticMeta extends StaticSampleMeta {
+
+    static final double SAMPLING_RATIO = 0.01;
+
+    public SyntheticMeta(VerdictContext vc) {
+        super(vc);
+
+        addTable("tpch1g", "lineitem", 6001215L, "l_orderkey", "int", "l_partkey", "int", "l_suppkey", "int",
+                "l_linenumber", "int", "l_quantity", "double", "l_extendedprice", "double", "l_discount", "double",
+                "l_tax", "double", "l_returnflag", "string", "l_linestatus", "string", "l_shipdate", "string",
+                "l_commitdate", "string", "l_receiptdate", "string", "l_shipinstruct", "string", "l_shipmode",
+                "string", "l_comment", "string");
+        addTable("tpch1g", "orders", 1500000L, "o_orderkey", "int", "o_custkey", "int", "o_orderstatus", "string",
+                "o_totalprice", "double", "o_orderdate", "string", "o_orderpriority", "string", "o_clerk", "string",
+                "o_shippriority", "int", "o_comment", "string");
+        addTable("tpch1g", "customer", 150000L, "c_custkey", "int", "c_name", "string", "c_address", "string",
+                "c_nationkey", "int", "c_phone", "string", "c_acctbal", "double", "c_mktsegment", "string",
+                "c_comment", "string");
+        addTable("tpch1g", "part", 200000L, "p_partkey", "int", "p_name", "string", "p_mfgr", "string", "p_brand",
+                "string", "p_type", "string", "p_size", "int", "p_container", "string", "p_retailprice", "double",
+                "p_comment", "string");
+        addTable("tpch1g", "partsupp", 800000L, "ps_partkey", "int", "ps_suppkey", "int", "ps_availqty", "int",
+                "ps_supplycost", "double", "ps_comment", "string");
+        addTable("tpch1g", "supplier", 10000L, "s_suppkey", "int", "s_name", "string", "s_address", "string",
+                "s_nationkey", "int", "s_phone", "string", "s_acctbal", "double", "s_comment", "string");
+        addTable("tpch1g", "nation", 25L, "n_nationkey", "int", "n_name", "string", "n_regionkey", "int",
+                "n_comment", "string");
+        addTable("tpch1g", "region", 5L, "r_regionkey", "int", "r_name", "string", "r_comment", "string");
+
+        addTable("instacart1g", "orders", 3421083L, "order_id", "int", "user_id", "int", "eval_set", "string",
+                "order_number", "int", "order_dow", "int", "order_hour_of_day", "int", "days_since_prior", "double");
+        addTable("instacart1g", "order_products", 32434489L, "order_id", "int", "product_id", "int",
+                "add_to_cart_order", "int", "reordered", "int");
+
+        addSample("tpch1g", "lineitem", "uniform");
+        addSample("tpch1g", "lineitem", "universe", "l_orderkey");
+        addSample("tpch1g", "lineitem", "stratified", "l_shipmode");
+        addSample("tpch1g", "orders", "uniform");
+        addSample("tpch1g", "orders", "universe", "o_orderkey");
+        addSample("tpch1g", "partsupp", "uniform");
+        addSample("tpch1g", "partsupp", "universe", "ps_suppkey");
+        addSample("tpch1g", "part", "uniform");
+
+        addSample("instacart1g", "orders", "uniform");
+        addSample("instacart1g", "orders", "universe", "user_id");
+        addSample("instacart1g", "orders", "stratified", "order_dow");
+        addSample("instacart1g", "order_products", "uniform");
+        addSample("instacart1g", "order_products", "universe", "order_id");
+    }
+
+    private void addTable(String schema, String table, long size, String... columnsAndTypes) {
+        TableUniqueName t = TableUniqueName.uname(schema, table);
+        addTable(t, size, columnsAndTypes);
+        register(t, size);
+    }
+
+    /**
+     * Makes the table known to the lookups of the databases, the tables, and the
+     * table sizes.
+     */
+    private void register(TableUniqueName table, long size) {
+        databases.add(table.getSchemaName());
+        if (!db2tables.containsKey(table.getSchemaName())) {
+            db2tables.put(table.getSchemaName(), new TreeSet<String>());
+        }
+        db2tables.get(table.getSchemaName()).add(table.getTableName());
+        tableSizes.put(table, size);
+    }
+
+    /**
+     * Registers a sample of the table; the sample table has the columns of the
+     * original table plus the sampling probability and the partition columns.
+     */
+    private void addSample(String schema, String table, String sampleType, String... columns) {
+        TableUniqueName originalTable = TableUniqueName.uname(schema, table);
+        SampleParam param = new SampleParam(vc, originalTable, sampleType, SAMPLING_RATIO, Arrays.asList(columns));
+        TableUniqueName sampleTable = addSample(param);
+
+        Map<String, String> col2type = new LinkedHashMap<String, String>(tab2columns.get(originalTable));
+        col2type.put(vc.getDbms().samplingProbabilityColumnName(), "double");
+        col2type.put(vc.getDbms().partitionColumnName(), "int");
+        tab2columns.put(sampleTable, col2type);
+        register(sampleTable, getSampleSizeOf(sampleTable).sampleSize);
+    }
+
+}
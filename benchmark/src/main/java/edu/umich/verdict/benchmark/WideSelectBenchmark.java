@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.ApproxRelation;
+import edu.umich.verdict.relation.ExactRelation;
+import edu.umich.verdict.relation.NamingContext;
+
+/**
+ * Choosing a sample plan for a select list of many aggregate expressions over
+ * lineitem. The expressions alternate among ones that different samples of
+ * lineitem can answer, so that the planner considers plans combining several
+ * samples. The planning time should grow linearly with the number of
+ * expressions for a fixed beam width.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class WideSelectBenchmark {
+
+    private static final String[] aggregates = { "sum(l_quantity * %d)", "avg(l_extendedprice + %d)",
+            "count(distinct l_orderkey)", "count(distinct l_shipmode)" };
+
+    @Param({ "1", "5", "10", "20", "40" })
+    public int width;
+
+    @Param({ "10" })
+    public String beamWidth;
+
+    private VerdictJDBCContext vc;
+
+    private ExactRelation exact;
+
+    @Setup(Level.Trial)
+    public void setup() throws VerdictException {
+        vc = BenchmarkQueries.contextFor("tpch6", "nobound");
+        vc.getConf().set("verdict.planner.beam_width", beamWidth);
+        NamingContext.begin();
+        exact = ExactRelation.from(vc, sql(width));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws VerdictException {
+        vc.destroy();
+    }
+
+    static String sql(int width) {
+        StringBuilder sql = new StringBuilder("select ");
+        for (int i = 0; i < width; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(String.format(aggregates[i % aggregates.length], i + 1));
+            sql.append(" as a" + i);
+        }
+        sql.append(" from lineitem");
+        return sql.toString();
+    }
+
+    @Benchmark
+    public ApproxRelation approx() throws VerdictException {
+        NamingContext.begin();
+        return exact.approx();
+    }
+
+}
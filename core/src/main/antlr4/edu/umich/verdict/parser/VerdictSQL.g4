@@ -61,8 +61,9 @@ verdict_statement
     ;
 
 //WITH SIZE size=(FLOAT | DECIMAL) '%' (STORE poission_cols=DECIMAL POISSON COLUMNS)? (STRATIFIED BY column_name (',' column_name)*)?
+// e.g., CREATE 0.1%, 1%, 10% UNIFORM SAMPLE OF t creates a ladder of three samples.
 create_sample_statement
-    : CREATE (size=(FLOAT | DECIMAL) '%')? (sample_type)? SAMPLE (FROM | OF) original_table=table_name (on_columns)?
+    : CREATE (size=(FLOAT | DECIMAL) '%' (',' ladder+=(FLOAT | DECIMAL) '%')*)? (sample_type)? SAMPLE (FROM | OF) original_table=table_name (on_columns)?
     ;
     
 sample_type
@@ -145,6 +146,9 @@ SAMPLES: S A M P L E S;
 GET: G E T;
 CONFIDENCE: C O N F I D E N C E;
 TRIALS: T R I A L S;
+ERROR: E R R O R;
+AT_KEYWORD: A T;
+SECONDS: S E C O N D S;
 
 
 //DOUBLE_QUOTE_STRING: '"' (~'"' | '\\"')* '"';
@@ -153,6 +157,12 @@ confidence_clause: CONFIDENCE confidence=(FLOAT | DECIMAL) percent='%'?;
 
 trials_clause: TRIALS trials=number;
 
+// e.g., WITHIN 1% ERROR AT 95% CONFIDENCE
+error_clause: WITHIN error=(FLOAT | DECIMAL) '%' ERROR (AT_KEYWORD confidence=(FLOAT | DECIMAL) '%' CONFIDENCE)?;
+
+// e.g., WITHIN 2 SECONDS
+time_clause: WITHIN seconds=(FLOAT | DECIMAL) SECONDS;
+
 table_name_with_sample: table_name SAMPLE size=(FLOAT | DECIMAL) percent='%'? ;
 
 // VERDICT
@@ -180,7 +190,7 @@ ddl_clause
 
 // https://msdn.microsoft.com/en-us/library/ms189499.aspx
 select_statement
-    : with_expression? EXACT? query_expression order_by_clause? limit_clause? confidence_clause? ';'?
+    : with_expression? EXACT? query_expression order_by_clause? limit_clause? confidence_clause? error_clause? time_clause? ';'?
     ;
 
 // https://msdn.microsoft.com/en-us/library/ms177564.aspx
@@ -664,6 +674,8 @@ aggregate_windowed_function
     | VARP '(' all_distinct_expression ')' over_clause?
     | COUNT '(' ('*' | all_distinct_expression) ')' over_clause?
     | NDV '(' all_distinct_expression ')' over_clause?
+    | MEDIAN '(' all_distinct_expression ')'
+    | APPROX_PERCENTILE '(' all_distinct_expression ',' expression ')'
     | COUNT_BIG '(' ('*' | all_distinct_expression) ')' over_clause?
     ;
 
@@ -848,6 +860,7 @@ simple_id
     : ID
     | ABSOLUTE
     | APPLY
+    | AT_KEYWORD
     | AUTO
     | AVG
     | BASE64
@@ -866,6 +879,7 @@ simple_id
     | DISABLE
     | DYNAMIC
     | ENCRYPTION
+    | ERROR
     | EXTRACT
     | FAST
     | FAST_FORWARD
@@ -892,6 +906,7 @@ simple_id
     | LOOP
     | MARK
     | MAX
+    | MEDIAN
     | MIN
     | MODIFY
     | NAME
@@ -929,6 +944,7 @@ simple_id
     | SCHEMABINDING
     | SCROLL
     | SCROLL_LOCKS
+    | SECONDS
     | SELF
     | SERIALIZABLE
     | SNAPSHOT
@@ -1173,6 +1189,7 @@ ACOS:                            A C O S;
 AES_DECRYPT:                     A E S '_' D E C R Y P T;
 AES_ENCRYPT:                     A E S '_' E N C R Y P T;
 APPLY:                           A P P L Y;
+APPROX_PERCENTILE:               A P P R O X '_' P E R C E N T I L E;
 ASIN:                            A S I N;
 ATAN:                            A T A N;
 AUTO:                            A U T O;
@@ -1264,6 +1281,7 @@ LTRIM:                           L T R I M;
 MARK:                            M A R K;
 MAX:                             M A X;
 MD5:                             M D '5';
+MEDIAN:                          M E D I A N;
 MIN:                             M I N;
 MIN_ACTIVE_ROWVERSION:           M I N '_' A C T I V E '_' R O W V E R S I O N;
 MINUTE:                          M I N U T E;
@@ -34,6 +34,11 @@ public class VerdictConf {
 
     private Map<String, String> configs = new TreeMap<String, String>();
 
+    /**
+     * Incremented on every change to {@link #configs}.
+     */
+    private long version = 0;
+
     private final Map<String, String> configKeySynonyms =
             new ImmutableMap.Builder<String, String>()
             .put("bypass", "verdict.bypass")
@@ -162,9 +167,14 @@ public class VerdictConf {
         }
 
         configs.put(key, value);
+        version++;
         return this;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public Properties toProperties() {
         Properties p = new Properties();
         for (String key : configs.keySet()) {
@@ -184,6 +194,7 @@ public class VerdictConf {
     // data DBMS
     public void setDbmsSchema(String schema) {
         configs.put("verdict.jdbc.schema", schema);
+        version++;
     }
 
     public String getDbmsSchema() {
@@ -259,6 +270,69 @@ public class VerdictConf {
         return getPercent("verdict.relative_target_cost");
     }
 
+    public int plannerBeamWidth() {
+        return Integer.parseInt(getOr("verdict.planner.beam_width", 10));
+    }
+
+    /**
+     * @return the number of connections on which the sample groups of a plan run
+     *         at the same time, or 0 (or 1) if they run as a single statement.
+     */
+    public int concurrentSampleGroups() {
+        return Integer.parseInt(getOr("verdict.planner.concurrent_sample_groups", 0));
+    }
+
+    public long universeJoinMinRows() {
+        return Long.parseLong(getOr("verdict.planner.universe_join.min_rows", 1000000));
+    }
+
+    /**
+     * @return one of "recommend", "create", and "none".
+     */
+    public String universeJoinAction() {
+        return getOr("verdict.planner.universe_join.action", "recommend").toLowerCase();
+    }
+
+    /**
+     * @return the time bound of select statements in seconds, or 0 if there is none.
+     */
+    public double timeBoundSeconds() {
+        return Double.parseDouble(getOr("verdict.time_bound_seconds", 0));
+    }
+
+    /**
+     * @return the largest relative error bound with which a query stops moving up
+     *         the sample ladders, or 0 if queries do not start on the smallest
+     *         rungs.
+     */
+    public double ladderRelativeError() {
+        return getPercent("verdict.ladder.relative_error");
+    }
+
+    /**
+     * @return true if the runtimes of select statements are recorded even when
+     *         neither the latency cost model nor a time bound needs them.
+     */
+    public boolean latencyModelRecord() {
+        return Boolean.parseBoolean(getOr("verdict.latency_model.record", "false"));
+    }
+
+    public int latencyModelHistory() {
+        return Integer.parseInt(getOr("verdict.latency_model.history", 200));
+    }
+
+    /**
+     * @return the number of recorded runtimes written to the meta database at once;
+     *         0 if they are not persisted.
+     */
+    public int latencyModelFlushSize() {
+        return Integer.parseInt(getOr("verdict.latency_model.flush_size", 20));
+    }
+
+    public String costModel() {
+        return getOr("verdict.cost_model", "bytes");
+    }
+
     public boolean cacheSparkSamples() {
         return getBoolean("verdict.spark.cache_samples");
     }
@@ -271,6 +345,51 @@ public class VerdictConf {
         return getInt("verdict.error_bound.subsampling.partition_count");
     }
 
+    /**
+     * @return true if the subsampling rewriter collapses the partitions of a
+     *         group-by query with many groups into fewer ones.
+     */
+    public boolean subsamplingAdaptivePartitionCount() {
+        return Boolean.parseBoolean(getOr("verdict.error_bound.subsampling.adaptive_partition_count", "true"));
+    }
+
+    /**
+     * @return the number of (group, partition) rows the adaptive partition count
+     *         aims to stay under.
+     */
+    public long subsamplingMaxIntermediateRows() {
+        return Long.parseLong(getOr("verdict.error_bound.subsampling.max_intermediate_rows", 1000000));
+    }
+
+    /**
+     * @return true if the per-partition aggregates are fetched and combined in the
+     *         client instead of in an extra aggregation of the DBMS.
+     */
+    public boolean subsamplingCombineInClient() {
+        return Boolean.parseBoolean(getOr("verdict.error_bound.subsampling.combine_in_client", "false"));
+    }
+
+    public int subsamplingMinPartitionCount() {
+        return Integer.parseInt(getOr("verdict.error_bound.subsampling.min_partition_count", 10));
+    }
+
+    /**
+     * @return true if count-distincts are computed by the DBMS-native approximate
+     *         count-distinct where the DBMS provides one.
+     */
+    public boolean countDistinctNativeSketch() {
+        return Boolean.parseBoolean(getOr("verdict.count_distinct.native_sketch", "false"));
+    }
+
+    /**
+     * How the per-partition estimates of COUNT and SUM are scaled by the partition
+     * sizes: "window" (a window function per group) or "folded" (in the combining
+     * aggregation).
+     */
+    public String subsamplingScaling() {
+        return getOr("verdict.error_bound.subsampling.scaling", "window").toLowerCase();
+    }
+
     public String subsamplingPartitionColumn() {
         return get("verdict.error_bound.subsampling.partition_column");
     }
@@ -287,10 +406,30 @@ public class VerdictConf {
         return get("verdict.meta_data.meta_size_table");
     }
 
+    public String metaStatsTableName() {
+        return getOr("verdict.meta_data.meta_stats_table", "verdict_meta_stats");
+    }
+
+    public String metaLatencyTableName() {
+        return getOr("verdict.meta_data.meta_latency_table", "verdict_meta_latency");
+    }
+
     public String metaRefreshPolicy() {
         return get("verdict.meta_data.refresh_policy");
     }
 
+    public int describeParallelism() {
+        return Integer.parseInt(getOr("verdict.meta_data.describe_parallelism", 8));
+    }
+
+    public boolean warmUpParser() {
+        return getBoolean("verdict.parser.warm_up");
+    }
+
+    public int planCacheSize() {
+        return Integer.parseInt(getOr("verdict.plan_cache.size", 0));
+    }
+
     public String metaDatabaseSuffix() {
         return get("verdict.meta_data.meta_database_suffix");
     }
@@ -303,6 +442,18 @@ public class VerdictConf {
         return get("verdict.error_bound.bootstrapping.bootstrap_multiplicity_colname");
     }
 
+    public int bootstrappingTrialCount() {
+        return Integer.parseInt(get("verdict.error_bound.bootstrapping.num_of_trials"));
+    }
+
+    /**
+     * @return the number of bootstrap trials a single statement computes at most;
+     *         every trial adds columns to the rewritten query.
+     */
+    public int bootstrappingMaxTrials() {
+        return Integer.parseInt(getOr("verdict.error_bound.bootstrapping.max_trials", 32));
+    }
+
     public boolean bypass() {
         return getBoolean("verdict.bypass");
     }
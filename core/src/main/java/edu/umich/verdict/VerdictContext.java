@@ -28,6 +28,10 @@ import com.google.common.collect.Sets;
 
 import edu.umich.verdict.dbms.Dbms;
 import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.query.PlanCache;
+import edu.umich.verdict.relation.CostModel;
+import edu.umich.verdict.relation.LatencyModel;
+import edu.umich.verdict.relation.UniverseJoinAdvisor;
 
 public abstract class VerdictContext {
 
@@ -49,6 +53,16 @@ public abstract class VerdictContext {
 
     final protected int contextId;
 
+    protected PlanCache planCache;
+
+    private CostModel costModel;
+
+    private String costModelName;
+
+    protected LatencyModel latencyModel;
+
+    protected UniverseJoinAdvisor universeJoinAdvisor;
+
     public Dbms getDbms() {
         return dbms;
     }
@@ -82,6 +96,59 @@ public abstract class VerdictContext {
         return conf;
     }
 
+    /**
+     * The cache of rewritten select statements. Created on first use with the size
+     * given by verdict.plan_cache.size.
+     * 
+     * @return
+     */
+    public synchronized PlanCache getPlanCache() {
+        if (planCache == null) {
+            planCache = new PlanCache(conf.planCacheSize());
+        }
+        return planCache;
+    }
+
+    /**
+     * The cost model selected by verdict.cost_model. Created on first use, and again
+     * whenever the configuration selects another model.
+     * 
+     * @return
+     */
+    public synchronized CostModel getCostModel() {
+        String name = conf.costModel();
+        if (costModel == null || !name.equals(costModelName)) {
+            costModel = CostModel.from(this, name);
+            costModelName = name;
+        }
+        return costModel;
+    }
+
+    /**
+     * The latency model fitted to the runtimes of the select statements run with
+     * this context.
+     * 
+     * @return
+     */
+    public synchronized LatencyModel getLatencyModel() {
+        if (latencyModel == null) {
+            latencyModel = new LatencyModel(this);
+        }
+        return latencyModel;
+    }
+
+    /**
+     * Watches the joins of large tables for the universe samples they could use.
+     * 
+     * @return
+     */
+    public synchronized UniverseJoinAdvisor getUniverseJoinAdvisor() {
+        if (universeJoinAdvisor == null) {
+            universeJoinAdvisor = new UniverseJoinAdvisor(this);
+        }
+        return universeJoinAdvisor;
+    }
+
     public Dbms getMetaDbms() {
         return metaDbms;
     }
@@ -91,6 +158,12 @@ public abstract class VerdictContext {
     }
 
     public void destroy() throws VerdictException {
+        if (universeJoinAdvisor != null) {
+            universeJoinAdvisor.shutdown();
+        }
+        if (latencyModel != null) {
+            latencyModel.flush();
+        }
         dbms.close();
     }
 
@@ -98,7 +171,7 @@ public abstract class VerdictContext {
         return queryUid;
     }
 
-    public void incrementQid() {
+    public synchronized void incrementQid() {
         queryUid += 1;
     }
 
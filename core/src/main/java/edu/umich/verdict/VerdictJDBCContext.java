@@ -28,6 +28,7 @@ import edu.umich.verdict.dbms.Dbms;
 import edu.umich.verdict.exceptions.VerdictException;
 import edu.umich.verdict.query.Query;
 import edu.umich.verdict.util.VerdictLogger;
+import edu.umich.verdict.util.VerdictSQLParserFactory;
 
 public class VerdictJDBCContext extends VerdictContext {
     VerdictMeta meta;
@@ -87,6 +88,12 @@ public class VerdictJDBCContext extends VerdictContext {
     }
 
     public void destroy() throws VerdictException {
+        if (universeJoinAdvisor != null) {
+            universeJoinAdvisor.shutdown();
+        }
+        if (latencyModel != null) {
+            latencyModel.flush();
+        }
         dbms.close();
     }
 
@@ -105,6 +112,9 @@ public class VerdictJDBCContext extends VerdictContext {
         this.dbms = another.dbms;
         this.metaDbms = another.metaDbms;
         this.queryUid = another.queryUid;
+        this.planCache = another.planCache;
+        this.latencyModel = another.latencyModel;
+        this.universeJoinAdvisor = another.universeJoinAdvisor;
         //		((DbmsJDBC) this.dbms).createNewStatementWithoutClosing();
         this.rs = another.rs;
     }
@@ -123,6 +133,10 @@ public class VerdictJDBCContext extends VerdictContext {
         vc.setDbms(Dbms.from(vc, conf));
         vc.setMeta(new VerdictMeta(vc));		// this must be called after DB connection is created.
 
+        if (conf.warmUpParser()) {
+            VerdictSQLParserFactory.warmUp();
+        }
+
         if (conf.getDbmsSchema() != null) {
             vc.getMeta().refreshSampleInfo(conf.getDbmsSchema(), false);
         }
@@ -131,11 +145,23 @@ public class VerdictJDBCContext extends VerdictContext {
     }
 
     public void execute(String sql) throws VerdictException {
+        executeJdbcQuery(sql);
+    }
+
+    /**
+     * Returns the result set of this query directly (instead of through
+     * {@link #getResultSet()}) so that multiple threads can run queries on this
+     * context at the same time.
+     */
+    @Override
+    public ResultSet executeJdbcQuery(String sql) throws VerdictException {
         VerdictLogger.debug(this, "An input query:");
         VerdictLogger.debugPretty(this, sql, "  ");
         Query vq = Query.getInstance(this, sql);
-        rs = vq.computeResultSet();
+        ResultSet result = vq.computeResultSet();
+        rs = result;
         VerdictLogger.debug(this, "The query execution finished.");
+        return result;
     }
 
     @Override
@@ -18,16 +18,22 @@ package edu.umich.verdict;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang3.tuple.Pair;
 
+import edu.umich.verdict.datatypes.SampleColumnStats;
 import edu.umich.verdict.datatypes.SampleParam;
 import edu.umich.verdict.datatypes.SampleSizeInfo;
 import edu.umich.verdict.datatypes.TableUniqueName;
@@ -41,6 +47,8 @@ import edu.umich.verdict.util.VerdictLogger;
  * Responsible for two tasks:
  * 1. Manages the sample information (names and sizes).
  * 2. Caches metadata (e.g., schema names, table names, table sizes, and so on) 
+ * The sample information and the cached metadata are read and refreshed under the
+ * lock of this object, so that the threads sharing a context see them consistently.
  * @author Yongjoo Park
  *
  */
@@ -50,6 +58,10 @@ public class VerdictMeta {
 
     private final String META_NAME_TABLE;
 
+    private final String META_STATS_TABLE;
+
+    private final String META_LATENCY_TABLE;
+
     /**
      * Works as a cache for a single query execution. key: sample table value:
      * sample size info
@@ -62,6 +74,12 @@ public class VerdictMeta {
      */
     protected Map<TableUniqueName, Map<SampleParam, TableUniqueName>> sampleNameMeta;
 
+    /**
+     * key: sample table value: key: column name value: the mean and variance of the
+     * column in the sample
+     */
+    protected Map<TableUniqueName, Map<String, SampleColumnStats>> sampleStatsMeta;
+
     /**
      * remembers for what query id and schema, we have updated the meta info.
      */
@@ -84,37 +102,68 @@ public class VerdictMeta {
     
     protected Map<TableUniqueName, Long> tableSizes;
 
+    /**
+     * The storage sizes (in bytes) of tables; -1 if the DBMS does not know.
+     */
+    protected Map<TableUniqueName, Long> tableByteSizes;
+
+    /**
+     * Incremented whenever the sample catalog may have changed, i.e., when a sample is
+     * inserted or deleted, or when the sample information is refreshed or cleared.
+     */
+    protected long sampleVersion = 0;
+
     protected VerdictContext vc;
 
     public VerdictMeta(VerdictContext vc) {
         this.vc = vc;
         sampleSizeMeta = new HashMap<TableUniqueName, SampleSizeInfo>();
         sampleNameMeta = new HashMap<TableUniqueName, Map<SampleParam, TableUniqueName>>();
+        sampleStatsMeta = new HashMap<TableUniqueName, Map<String, SampleColumnStats>>();
         uptodateSchemas = new HashMap<String, Long>();
         databases = new HashSet<String>();
         db2tables = new HashMap<String, Set<String>>();
-        tab2columns = new HashMap<TableUniqueName, Map<String, String>>();
+        tab2columns = new ConcurrentHashMap<TableUniqueName, Map<String, String>>();
         tableSizes = new HashMap<TableUniqueName, Long>();
+        tableByteSizes = new HashMap<TableUniqueName, Long>();
         // tableToColumnNames = new HashMap<TableUniqueName, List<String>>();
         META_NAME_TABLE = vc.getConf().metaNameTableName();
         META_SIZE_TABLE = vc.getConf().metaSizeTableName();
+        META_STATS_TABLE = vc.getConf().metaStatsTableName();
+        META_LATENCY_TABLE = vc.getConf().metaLatencyTableName();
     }
 
     protected Dbms getMetaDbms() {
         return vc.getMetaDbms();
     }
 
-    public void clearSampleInfo() {
+    public synchronized void clearSampleInfo() {
         uptodateSchemas.clear();
         sampleSizeMeta.clear();
         sampleNameMeta.clear();
+        sampleStatsMeta.clear();
         databases.clear();
         db2tables.clear();
         tab2columns.clear();
         tableSizes.clear();
+        tableByteSizes.clear();
+        sampleCatalogChanged();
+    }
+
+    public synchronized long getSampleVersion() {
+        return sampleVersion;
+    }
+
+    /**
+     * Rewritten queries cached in {@link edu.umich.verdict.query.PlanCache} may refer to the samples that
+     * no longer exist (or may miss new samples); thus, we discard them.
+     */
+    protected synchronized void sampleCatalogChanged() {
+        sampleVersion++;
+        vc.getPlanCache().clear();
     }
     
-    public long getTableSize(TableUniqueName tableName) throws VerdictException {
+    public synchronized long getTableSize(TableUniqueName tableName) throws VerdictException {
         if (!tableSizes.containsKey(tableName)) {
             long tableSize = vc.getDbms().getTableSize(tableName);
             tableSizes.put(tableName, tableSize);
@@ -122,19 +171,37 @@ public class VerdictMeta {
         return tableSizes.get(tableName);
     }
 
+    /**
+     * @param tableName
+     * @return the storage size of the table in bytes, or -1 if unknown.
+     */
+    public synchronized long getTableByteSize(TableUniqueName tableName) {
+        if (!tableByteSizes.containsKey(tableName)) {
+            long byteSize = -1;
+            try {
+                byteSize = vc.getDbms().getTableByteSize(tableName);
+            } catch (VerdictException e) {
+                VerdictLogger.debug(this, String.format("Could not retrieve the size of %s: %s", tableName,
+                        e.getMessage()));
+            }
+            tableByteSizes.put(tableName, byteSize);
+        }
+        return tableByteSizes.get(tableName);
+    }
+
     /**
      * retrieves cached database names.
      * 
      * @return
      */
-    public Set<String> getDatabases() {
+    public synchronized Set<String> getDatabases() {
         if (databases.isEmpty()) {
             refreshDatabases();
         }
         return databases;
     }
 
-    public void refreshDatabases() {
+    public synchronized void refreshDatabases() {
         try {
             Set<String> databases = vc.getDbms().getDatabases();
             this.databases = databases;
@@ -143,7 +210,7 @@ public class VerdictMeta {
         }
     }
 
-    public Set<String> getTables(String database) {
+    public synchronized Set<String> getTables(String database) {
         if (!db2tables.containsKey(database)) {
             refreshTables(database);
         }
@@ -156,7 +223,7 @@ public class VerdictMeta {
      * 
      * @param database
      */
-    public void refreshTables(String database) {
+    public synchronized void refreshTables(String database) {
         try {
             List<String> tables = vc.getDbms().getTables(database);
             this.db2tables.put(database, new TreeSet<String>(tables));
@@ -166,25 +233,54 @@ public class VerdictMeta {
     }
 
     public Set<String> getColumns(TableUniqueName tableName) {
-        if (!tab2columns.containsKey(tableName)) {
-            refreshColumns(tableName);
-        }
-        Set<String> columns = tab2columns.get(tableName).keySet();
+        Set<String> columns = getColumn2Types(tableName).keySet();
         return columns;
     }
 
     public Map<String, String> getColumn2Types(TableUniqueName tableName) {
-        if (!tab2columns.containsKey(tableName)) {
-            refreshColumns(tableName);
-        }
         Map<String, String> col2type = tab2columns.get(tableName);
+        if (col2type == null) {
+            col2type = refreshColumns(tableName);
+        }
         return col2type;
     }
 
-    public void refreshColumns(TableUniqueName tableName) {
+    /**
+     * @param tableName
+     * @return the columns of the table, or null if they could not be retrieved.
+     */
+    public Map<String, String> refreshColumns(TableUniqueName tableName) {
         try {
             Map<String, String> columns = vc.getDbms().getColumns(tableName);
             this.tab2columns.put(tableName, columns);
+            return columns;
+        } catch (VerdictException e) {
+            VerdictLogger.error(e);
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the columns of the tables that are not cached yet, in a single
+     * batched call to the DBMS, so that the tables referenced by a query do not
+     * cost a round trip each.
+     * 
+     * @param tableNames
+     */
+    public void prefetchColumns(Collection<TableUniqueName> tableNames) {
+        Set<TableUniqueName> missing = new LinkedHashSet<TableUniqueName>();
+        for (TableUniqueName t : tableNames) {
+            if (!tab2columns.containsKey(t)) {
+                missing.add(t);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        try {
+            Map<TableUniqueName, Map<String, String>> columns = vc.getDbms().getColumns(missing);
+            this.tab2columns.putAll(columns);
         } catch (VerdictException e) {
             VerdictLogger.error(e);
         }
@@ -200,7 +296,7 @@ public class VerdictMeta {
      * @param originalTableSize
      * @throws VerdictException
      */
-    public void insertSampleInfo(SampleParam param, long sampleSize, long originalTableSize) throws VerdictException {
+    public synchronized void insertSampleInfo(SampleParam param, long sampleSize, long originalTableSize) throws VerdictException {
         TableUniqueName fullSampleName = param.sampleTableName();
 
         vc.getMetaDbms().createMetaTablesInDMBS(param.getOriginalTable(), getMetaSizeTableForSampleTable(fullSampleName),
@@ -210,6 +306,82 @@ public class VerdictMeta {
 
         getMetaDbms().updateSampleSizeEntryIntoDBMS(param, sampleSize, originalTableSize,
                 getMetaSizeTableForSampleTable(fullSampleName));
+        sampleCatalogChanged();
+    }
+
+    /**
+     * Computes the statistics of the numeric columns of the sample and stores them
+     * into {@link #META_STATS_TABLE}. Failing to do so only makes the error
+     * predictions less accurate; thus, errors are logged but not thrown.
+     * 
+     * @param param
+     */
+    public synchronized void insertSampleStats(SampleParam param) {
+        TableUniqueName fullSampleName = param.sampleTableName();
+        try {
+            Map<String, SampleColumnStats> stats = vc.getDbms().computeSampleColumnStats(param);
+            TableUniqueName statsTable = getMetaStatsTableForSampleTable(fullSampleName);
+            getMetaDbms().createMetaStatsTableInDBMS(statsTable);
+            getMetaDbms().updateSampleStatsEntriesIntoDBMS(param, stats, statsTable);
+            sampleStatsMeta.put(fullSampleName, stats);
+        } catch (VerdictException e) {
+            VerdictLogger.warn(this, String.format("Could not store the column statistics of %s: %s", fullSampleName,
+                    e.getMessage()));
+        }
+    }
+
+    /**
+     * @param sampleTableName
+     * @return the statistics of the numeric columns of the sample; empty if unknown.
+     */
+    public synchronized Map<String, SampleColumnStats> getSampleColumnStats(TableUniqueName sampleTableName) {
+        if (!sampleStatsMeta.containsKey(sampleTableName)) {
+            return new HashMap<String, SampleColumnStats>();
+        }
+        return sampleStatsMeta.get(sampleTableName);
+    }
+
+    /**
+     * The number of distinct values of the columns in a sample table, estimated
+     * from the column statistics stored when the sample was created (see
+     * {@link #insertSampleStats(SampleParam)}) so that no query is run: the number
+     * of strata if the columns are those of a stratified sample; otherwise, the
+     * product of the distinct counts of the columns, but no more than the sample
+     * size.
+     * 
+     * @param sampleTableName
+     * @param columns
+     * @return the number of groups, or -1 if the statistics of a column are unknown.
+     */
+    public synchronized long getGroupCardinality(TableUniqueName sampleTableName, List<String> columns) {
+        if (columns.isEmpty()) {
+            return -1;
+        }
+        Map<String, SampleColumnStats> stats = getSampleColumnStats(sampleTableName);
+        SampleColumnStats strata = stats.get(SampleColumnStats.columnsKey(columns));
+        if (columns.size() > 1 && strata != null && strata.distinctCount >= 0) {
+            return strata.distinctCount;
+        }
+
+        long cardinality = 1;
+        for (String col : columns) {
+            long distinctCount = -1;
+            for (Map.Entry<String, SampleColumnStats> e : stats.entrySet()) {
+                if (e.getKey().equalsIgnoreCase(col)) {
+                    distinctCount = e.getValue().distinctCount;
+                }
+            }
+            if (distinctCount < 0) {
+                return -1;
+            }
+            cardinality *= Math.max(distinctCount, 1);
+        }
+
+        SampleSizeInfo size = sampleSizeMeta.get(sampleTableName);
+        if (size != null && size.sampleSize > 0) {
+            cardinality = Math.min(cardinality, size.sampleSize);
+        }
+        return cardinality;
     }
 
     /**
@@ -219,7 +391,7 @@ public class VerdictMeta {
      * @param originalTableName
      * @throws VerdictException
      */
-    public void deleteSampleInfo(SampleParam param) throws VerdictException {
+    public synchronized void deleteSampleInfo(SampleParam param) throws VerdictException {
         refreshSampleInfoIfNeeded(param.getOriginalTable().getSchemaName(), false);
         TableUniqueName originalTable = param.getOriginalTable();
 
@@ -227,14 +399,21 @@ public class VerdictMeta {
             TableUniqueName sampleTableName = sampleNameMeta.get(originalTable).get(param);
             getMetaDbms().deleteSampleNameEntryFromDBMS(param, getMetaNameTableForOriginalTable(originalTable));
             getMetaDbms().deleteSampleSizeEntryFromDBMS(param, getMetaSizeTableForSampleTable(sampleTableName));
+            TableUniqueName statsTable = getMetaStatsTableForSampleTable(sampleTableName);
+            Set<String> tables = getTables(statsTable.getSchemaName());
+            if (tables != null && tables.contains(statsTable.getTableName())) {
+                getMetaDbms().deleteSampleStatsEntriesFromDBMS(param, statsTable);
+            }
+            sampleStatsMeta.remove(sampleTableName);
         } else {
             VerdictLogger.warn(String.format("No sample table for the parameter: [%s, %s, %.4f, %s]",
                     param.getOriginalTable(), param.getSampleType(), param.getSamplingRatio(), param.getColumnNames().toString()));
         }
+        sampleCatalogChanged();
     }
 
     // TODO: double-check when metadata should be refreshed.
-    public void refreshSampleInfoIfNeeded(String schemaName, boolean isCreateSample) {
+    public synchronized void refreshSampleInfoIfNeeded(String schemaName, boolean isCreateSample) {
         boolean needToRefresh = false;
         String refreshOption = vc.getConf().metaRefreshPolicy();
 
@@ -261,7 +440,7 @@ public class VerdictMeta {
         }
     }
     
-    private void clearSampleInformationFor(String schemaName) {
+    private synchronized void clearSampleInformationFor(String schemaName) {
         Map<TableUniqueName, Map<SampleParam, TableUniqueName>> newSampleNameMeta = new HashMap<TableUniqueName, Map<SampleParam, TableUniqueName>>();
         Map<TableUniqueName, SampleSizeInfo> newSampleSizeMeta = new HashMap<TableUniqueName, SampleSizeInfo>();
         
@@ -277,11 +456,19 @@ public class VerdictMeta {
             }
         }
         
+        Map<TableUniqueName, Map<String, SampleColumnStats>> newSampleStatsMeta = new HashMap<TableUniqueName, Map<String, SampleColumnStats>>();
+        for (Map.Entry<TableUniqueName, Map<String, SampleColumnStats>> e : sampleStatsMeta.entrySet()) {
+            if (!e.getKey().getSchemaName().equals(schemaName)) {
+                newSampleStatsMeta.put(e.getKey(), e.getValue());
+            }
+        }
+
         sampleNameMeta = newSampleNameMeta;
         sampleSizeMeta = newSampleSizeMeta;
+        sampleStatsMeta = newSampleStatsMeta;
     }
 
-    public void refreshSampleInfo(String schemaName, boolean isCreateSample) {
+    public synchronized void refreshSampleInfo(String schemaName, boolean isCreateSample) {
         TableUniqueName metaNameTable = getMetaNameTableForOriginalSchema(schemaName);
         TableUniqueName metaSizeTable = getMetaSizeTableForOriginalSchema(schemaName);
         List<List<Object>> result;
@@ -354,11 +541,32 @@ public class VerdictMeta {
                     }
                 }
             }
+
+            TableUniqueName metaStatsTable = getMetaStatsTableForOriginalSchema(schemaName);
+            if (databases.contains(metaStatsTable.getSchemaName())) {
+                Set<String> tables = getTables(metaStatsTable.getSchemaName());
+                if (tables != null && tables.contains(metaStatsTable.getTableName())) {
+                    // column statistics
+                    result = SingleRelation.from(vc, metaStatsTable)
+                            .select("schemaname, tablename, columnname, mean, variance, distinctcount").collect();
+                    for (List<Object> row : result) {
+                        TableUniqueName sampleTable = TableUniqueName.uname(row.get(0).toString(),
+                                row.get(1).toString());
+                        if (!sampleStatsMeta.containsKey(sampleTable)) {
+                            sampleStatsMeta.put(sampleTable, new HashMap<String, SampleColumnStats>());
+                        }
+                        sampleStatsMeta.get(sampleTable).put(row.get(2).toString(),
+                                new SampleColumnStats(TypeCasting.toDouble(row.get(3)), TypeCasting.toDouble(row.get(4)),
+                                        TypeCasting.toLong(row.get(5))));
+                    }
+                }
+            }
         } catch (VerdictException e) {
             VerdictLogger.error(this, e.getMessage());
         }
 
         uptodateSchemas.put(schemaName, vc.getCurrentQid());
+        sampleCatalogChanged();
         VerdictLogger.info(this, "Verdict meta data was refreshed.");
     }
 
@@ -394,7 +602,7 @@ public class VerdictMeta {
      * @param originalTableName
      * @return A list of sample creation parameters and a sample table name.
      */
-    public List<Pair<SampleParam, TableUniqueName>> getSampleInfoFor(TableUniqueName originalTableName) {
+    public synchronized List<Pair<SampleParam, TableUniqueName>> getSampleInfoFor(TableUniqueName originalTableName) {
         refreshSampleInfoIfNeeded(originalTableName.getSchemaName(), false);
         List<Pair<SampleParam, TableUniqueName>> sampleInfo = new ArrayList<Pair<SampleParam, TableUniqueName>>();
         if (sampleNameMeta.containsKey(originalTableName)) {
@@ -405,7 +613,35 @@ public class VerdictMeta {
         return sampleInfo;
     }
 
-    public SampleParam getSampleParamFor(TableUniqueName sampleTableName) {
+    /**
+     * The samples of a table that are of the same type and on the same columns but
+     * of different sampling ratios form a ladder (e.g., created by "CREATE 0.1%, 1%,
+     * 10% UNIFORM SAMPLE OF t"); queries may start on its smallest rung and move up
+     * when the error bounds are too wide.
+     * 
+     * @param param
+     * @return the parameters of the samples in the same ladder as the given sample
+     *         (including itself if it exists), in the increasing order of sampling
+     *         ratios.
+     */
+    public List<SampleParam> getSampleLadder(SampleParam param) {
+        List<SampleParam> ladder = new ArrayList<SampleParam>();
+        for (Pair<SampleParam, TableUniqueName> e : getSampleInfoFor(param.getOriginalTable())) {
+            SampleParam p = e.getLeft();
+            if (p.getSampleType().equals(param.getSampleType()) && p.getColumnNames().equals(param.getColumnNames())) {
+                ladder.add(p);
+            }
+        }
+        Collections.sort(ladder, new Comparator<SampleParam>() {
+            @Override
+            public int compare(SampleParam a, SampleParam b) {
+                return Double.compare(a.getSamplingRatio(), b.getSamplingRatio());
+            }
+        });
+        return ladder;
+    }
+
+    public synchronized SampleParam getSampleParamFor(TableUniqueName sampleTableName) {
         for (Entry<TableUniqueName, Map<SampleParam, TableUniqueName>> a : sampleNameMeta.entrySet()) {
             Map<SampleParam, TableUniqueName> sampleMeta = a.getValue();
             for (Entry<SampleParam, TableUniqueName> b : sampleMeta.entrySet()) {
@@ -423,7 +659,7 @@ public class VerdictMeta {
      * @param sampleTableName
      * @return
      */
-    public SampleSizeInfo getSampleSizeOf(TableUniqueName sampleTableName) {
+    public synchronized SampleSizeInfo getSampleSizeOf(TableUniqueName sampleTableName) {
         return sampleSizeMeta.get(sampleTableName);
     }
 
@@ -500,6 +736,18 @@ public class VerdictMeta {
         return TableUniqueName.uname(schema, META_SIZE_TABLE);
     }
 
+    public TableUniqueName getMetaStatsTableForOriginalSchema(String schema) {
+        return TableUniqueName.uname(metaCatalogForDataCatalog(schema), META_STATS_TABLE);
+    }
+
+    public TableUniqueName getMetaStatsTableForSampleTable(TableUniqueName sampleTable) {
+        return TableUniqueName.uname(sampleTable.getSchemaName(), META_STATS_TABLE);
+    }
+
+    public TableUniqueName getMetaLatencyTableForOriginalSchema(String schema) {
+        return TableUniqueName.uname(metaCatalogForDataCatalog(schema), META_LATENCY_TABLE);
+    }
+
     /**
      * 
      * @param relatedTableName
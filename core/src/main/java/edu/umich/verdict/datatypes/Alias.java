@@ -16,6 +16,8 @@
 
 package edu.umich.verdict.datatypes;
 
+import edu.umich.verdict.relation.NamingContext;
+
 /**
  * Introduced for BootstrapSelectStatementRewriter. Remembers what was the
  * original column name user wanted. This class is helpful when introducing many
@@ -28,8 +30,6 @@ public class Alias implements Comparable<Alias> {
 
     private boolean autoGenerated;
 
-    private static int aliasIndex = 0;
-
     // This field is more of a name that should be displayed to the user
     private String originalName; // set to "C" for "COUNT(*) AS C"
 
@@ -41,13 +41,8 @@ public class Alias implements Comparable<Alias> {
         this.aliasName = aliasName;
     }
 
-    public static void resetAliasIndex() {
-        aliasIndex = 0;
-    }
-
     public static Alias genAlias(int depth, String originalName) {
-        aliasIndex++;
-        String aliasName = String.format("v%d_%d", depth, aliasIndex);
+        String aliasName = String.format("v%d_%d", depth, NamingContext.current().nextNestedAliasNo());
         Alias newAlias = new Alias(originalName, aliasName);
         newAlias.autoGenerated = true;
         return newAlias;
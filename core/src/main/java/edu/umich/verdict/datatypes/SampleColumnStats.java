@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.datatypes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.base.Joiner;
+
+/**
+ * The mean and the variance of a numeric column of a sample table, and the number
+ * of distinct values of a column (or of a combination of the columns a sample is
+ * stratified on), computed when the sample is created. The former
+ * are used for predicting the errors of the aggregates on the column; the latter
+ * for estimating the number of groups without scanning the sample.
+ */
+public class SampleColumnStats {
+    public double mean = 0;
+    public double variance = 0;
+
+    /**
+     * The number of distinct values in the sample; -1 if unknown.
+     */
+    public long distinctCount = -1;
+
+    public SampleColumnStats(double mean, double variance) {
+        this.mean = mean;
+        this.variance = variance;
+    }
+
+    public SampleColumnStats(double mean, double variance, long distinctCount) {
+        this(mean, variance);
+        this.distinctCount = distinctCount;
+    }
+
+    /**
+     * @return the coefficient of variation (the standard deviation divided by the
+     *         magnitude of the mean), or -1 if the mean is zero.
+     */
+    public double coefficientOfVariation() {
+        if (mean == 0) {
+            return -1;
+        }
+        return Math.sqrt(variance) / Math.abs(mean);
+    }
+
+    /**
+     * The name under which the statistics of a combination of columns (e.g., the
+     * number of strata of a stratified sample on several columns) are stored.
+     * 
+     * @param columns
+     * @return the lower-cased column names in the alphabetical order, joined by
+     *         commas.
+     */
+    public static String columnsKey(List<String> columns) {
+        List<String> key = new ArrayList<String>();
+        for (String c : columns) {
+            key.add(c.toLowerCase());
+        }
+        Collections.sort(key);
+        return Joiner.on(",").join(key);
+    }
+
+    public static boolean isNumericType(String type) {
+        String t = type.toLowerCase();
+        return t.startsWith("tinyint") || t.startsWith("smallint") || t.startsWith("int") || t.startsWith("bigint")
+                || t.startsWith("float") || t.startsWith("double") || t.startsWith("real")
+                || t.startsWith("decimal") || t.startsWith("numeric");
+    }
+
+    @Override
+    public String toString() {
+        return String.format("mean %f, variance %f, distinct count %d", mean, variance, distinctCount);
+    }
+}
@@ -17,13 +17,19 @@
 package edu.umich.verdict.dbms;
 
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
@@ -34,6 +40,7 @@ import com.google.common.collect.Sets;
 
 import edu.umich.verdict.VerdictConf;
 import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.datatypes.SampleColumnStats;
 import edu.umich.verdict.datatypes.SampleParam;
 import edu.umich.verdict.datatypes.SampleSizeInfo;
 import edu.umich.verdict.datatypes.TableUniqueName;
@@ -41,7 +48,12 @@ import edu.umich.verdict.exceptions.VerdictException;
 import edu.umich.verdict.relation.ExactRelation;
 import edu.umich.verdict.relation.Relation;
 import edu.umich.verdict.relation.SingleRelation;
+import edu.umich.verdict.relation.condition.Cond;
 import edu.umich.verdict.relation.expr.Expr;
+import edu.umich.verdict.relation.expr.ExprBuilder;
+import edu.umich.verdict.relation.expr.FuncExpr;
+import edu.umich.verdict.relation.expr.SelectElem;
+import edu.umich.verdict.util.TypeCasting;
 import edu.umich.verdict.util.VerdictLogger;
 
 /**
@@ -149,6 +161,44 @@ public abstract class Dbms {
         return rs;
     }
 
+    /**
+     * Runs the queries, none of which depends on another, and reads their results
+     * in full. The queries run one after another unless a subclass can run them at
+     * the same time.
+     * 
+     * @param sqls
+     * @param parallelism
+     *            the number of queries that may run at the same time
+     * @return the results in the order of the queries (null for a query without a
+     *         result)
+     * @throws VerdictException
+     */
+    public List<ResultSet> executeJdbcQueries(List<String> sqls, int parallelism) throws VerdictException {
+        List<ResultSet> results = new ArrayList<ResultSet>();
+        for (String sql : sqls) {
+            results.add(readFully(executeJdbcQuery(sql)));
+        }
+        return results;
+    }
+
+    /**
+     * @return a copy of the rows of the result set, which is closed; null if it is
+     *         null.
+     */
+    public static ResultSet readFully(ResultSet rs) throws VerdictException {
+        if (rs == null) {
+            return null;
+        }
+        try {
+            CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+            rows.populate(rs);
+            rs.close();
+            return rows;
+        } catch (SQLException e) {
+            throw new VerdictException(e);
+        }
+    }
+
 //    public DataFrame executeSparkQuery(String sql) throws VerdictException {
 //        execute(sql);
 //        DataFrame rs = getDataFrame();
@@ -263,13 +313,107 @@ public abstract class Dbms {
      */
     public abstract Map<String, String> getColumns(TableUniqueName table) throws VerdictException;
 
+    /**
+     * Retrieves the columns of many tables at once. This default implementation
+     * retrieves them one table at a time; subclasses retrieve them with fewer round
+     * trips if possible. The tables whose columns cannot be retrieved (e.g., those
+     * that do not exist) are not included in the returned map.
+     * 
+     * @param tables
+     * @return a map from a table to the mapping from its column names to their
+     *         types.
+     * @throws VerdictException
+     */
+    public Map<TableUniqueName, Map<String, String>> getColumns(Collection<TableUniqueName> tables)
+            throws VerdictException {
+        Map<TableUniqueName, Map<String, String>> tab2columns = new HashMap<TableUniqueName, Map<String, String>>();
+        for (TableUniqueName table : tables) {
+            try {
+                tab2columns.put(table, getColumns(table));
+            } catch (VerdictException e) {
+                VerdictLogger.warn(this, String.format("Could not retrieve the columns of %s: %s", table,
+                        e.getMessage()));
+            }
+        }
+        return tab2columns;
+    }
+
     public abstract void deleteEntry(TableUniqueName tableName, List<Pair<String, String>> colAndValues)
             throws VerdictException;
 
     public abstract void insertEntry(TableUniqueName tableName, List<Object> values) throws VerdictException;
 
+    /**
+     * Inserts multiple rows; one statement per row unless overridden.
+     * 
+     * @param tableName
+     * @param rows
+     * @throws VerdictException
+     */
+    public void insertEntries(TableUniqueName tableName, List<List<Object>> rows) throws VerdictException {
+        for (List<Object> values : rows) {
+            insertEntry(tableName, values);
+        }
+    }
+
     public abstract long getTableSize(TableUniqueName tableName) throws VerdictException;
 
+    /**
+     * The number of bytes the table occupies in storage, if the DBMS keeps that
+     * statistic at hand.
+     * 
+     * @param tableName
+     * @return the size in bytes, or -1 if unknown.
+     * @throws VerdictException
+     */
+    public long getTableByteSize(TableUniqueName tableName) throws VerdictException {
+        return -1;
+    }
+
+    /**
+     * The relative cost of reading a byte from a table. Used by
+     * {@link edu.umich.verdict.relation.ByteSizeCostModel}; only the ratios among the
+     * coefficients of the same DBMS matter.
+     */
+    public double scanCostPerByte() {
+        return 1.0;
+    }
+
+    /**
+     * The relative cost of aggregating a row, in the same unit as
+     * {@link #scanCostPerByte()}.
+     */
+    public double aggregationCostPerRow() {
+        return 8.0;
+    }
+
+    /**
+     * The time (in seconds) to run a query regardless of the data it reads, e.g.,
+     * for planning it and starting its tasks. Used by
+     * {@link edu.umich.verdict.relation.LatencyModel} until it has seen enough
+     * queries.
+     */
+    public double queryOverheadSeconds() {
+        return 0.5;
+    }
+
+    /**
+     * The time (in seconds) to scan a byte, i.e., the reciprocal of the scan
+     * throughput. Used by {@link edu.umich.verdict.relation.LatencyModel} until it
+     * has seen enough queries.
+     */
+    public double scanSecondsPerByte() {
+        return 1e-8;
+    }
+
+    /**
+     * True if the DBMS reads only the columns that a query references (i.e., it
+     * stores tables in a columnar format).
+     */
+    public boolean readsReferencedColumnsOnly() {
+        return true;
+    }
+
     public void createMetaTablesInDMBS(TableUniqueName originalTableName, TableUniqueName sizeTableName,
             TableUniqueName nameTableName) throws VerdictException {
         VerdictLogger.debug(this, "Creates meta tables if not exist.");
@@ -310,10 +454,12 @@ public abstract class Dbms {
     }
 
     protected TableUniqueName createUniformRandomSampledTable(SampleParam param) throws VerdictException {
-        String whereClause = String.format("%s < %f", randNumColname, param.getSamplingRatio());
+        ExprBuilder b = new ExprBuilder(vc);
+        Cond whereClause = b.lt(b.col(randNumColname), b.decimal(param.getSamplingRatio()));
         ExactRelation sampled = SingleRelation.from(vc, param.getOriginalTable())
-                .select(String.format("*, %s as %s", randomNumberExpression(param), randNumColname)).where(whereClause)
-                .select("*, " + randomPartitionColumn());
+                .select(b.allColumns(), b.as(Expr.from(vc, randomNumberExpression(param)), randNumColname))
+                .where(whereClause)
+                .select(b.allColumns(), SelectElem.from(vc, randomPartitionColumn()));
         TableUniqueName temp = Relation.getTempTableName(vc, param.sampleTableName().getSchemaName());
         dropTable(temp);
         String sql = String.format("create table %s as %s", temp, sampled.toSql());
@@ -336,8 +482,9 @@ public abstract class Dbms {
             parquetString = getParquetString();
         }
 
-        ExactRelation withRand = SingleRelation.from(vc, temp)
-                .select("*, " + String.format("%d / %d as %s", sample_size, total_size, samplingProbCol));
+        ExprBuilder b = new ExprBuilder(vc);
+        ExactRelation withRand = SingleRelation.from(vc, temp).select(b.allColumns(),
+                b.as(b.div(b.constant(sample_size), b.constant(total_size)), samplingProbCol));
 
         String sql = String.format("create table %s%s as %s", param.sampleTableName(), parquetString, withRand.toSql());
         VerdictLogger.debug(this, "The query used for creating a temporary table with sampling probabilities:");
@@ -370,8 +517,10 @@ public abstract class Dbms {
 
     private TableUniqueName createGroupSizeTempTable(SampleParam param) throws VerdictException {
         TableUniqueName groupSizeTemp = Relation.getTempTableName(vc, param.sampleTableName().getSchemaName());
-        ExactRelation groupSize = SingleRelation.from(vc, param.getOriginalTable()).groupby(param.getColumnNames())
-                .agg(String.format("count(*) AS %s", groupSizeColName));
+        ExprBuilder b = new ExprBuilder(vc);
+        ExactRelation groupSize = SingleRelation.from(vc, param.getOriginalTable())
+                .groupbyExprs(b.cols(param.getColumnNames()))
+                .agg(b.as(b.count(), groupSizeColName));
         String sql = String.format("create table %s as %s", groupSizeTemp, groupSize.toSql());
 //        VerdictLogger.debug(this, "The query used for the group-size temp table: ");
 //        VerdictLogger.debugPretty(this, Relation.prettyfySql(vc, sql), "  ");
@@ -395,101 +544,45 @@ public abstract class Dbms {
         long groupCount = SingleRelation.from(vc, groupSizeTemp).countValue();
         String samplingProbColName = vc.getDbms().samplingProbabilityColumnName();
 
-        // equijoin expression that considers possible null values
-        List<Pair<Expr, Expr>> joinExprs = new ArrayList<Pair<Expr, Expr>>();
-        for (String col : param.getColumnNames()) {
-            boolean isString = false;
-            boolean isTimeStamp = false;
+        ExprBuilder b = new ExprBuilder(vc);
 
-            if (col2types.containsKey(col)) {
-                if (col2types.get(col).toLowerCase().contains("char")
-                        || col2types.get(col).toLowerCase().contains("str")) {
-                    isString = true;
-                } else if (col2types.get(col).toLowerCase().contains("time")) {
-                    isTimeStamp = true;
-                }
-            }
-
-            if (isString) {
-                Expr left = Expr.from(vc,
-                        String.format("case when s.%s%s%s is null then '%s' else s.%s%s%s end",
-                                getQuoteString(), col, getQuoteString(),
-                                NULL_STRING,
-                                getQuoteString(), col, getQuoteString()));
-                Expr right = Expr.from(vc,
-                        String.format("case when t.%s%s%s is null then '%s' else t.%s%s%s end",
-                                getQuoteString(), col, getQuoteString(),
-                                NULL_STRING,
-                                getQuoteString(), col, getQuoteString()));
-                joinExprs.add(Pair.of(left, right));
-            } else if (isTimeStamp) {
-                Expr left = Expr.from(vc,
-                        String.format("case when s.%s%s%s is null then '%s' else s.%s%s%s end",
-                                getQuoteString(), col, getQuoteString(),
-                                NULL_TIMESTAMP,
-                                getQuoteString(), col, getQuoteString()));
-                Expr right = Expr.from(vc,
-                        String.format("case when t.%s%s%s is null then '%s' else t.%s%s%s end",
-                                getQuoteString(), col, getQuoteString(),
-                                NULL_TIMESTAMP,
-                                getQuoteString(), col, getQuoteString()));
-                joinExprs.add(Pair.of(left, right));
-            } else {
-                Expr left = Expr.from(vc,
-                        String.format("case when s.%s%s%s is null then %d else s.%s%s%s end", 
-                                getQuoteString(), col, getQuoteString(),
-                                NULL_LONG,
-                                getQuoteString(), col, getQuoteString()));
-                Expr right = Expr.from(vc,
-                        String.format("case when t.%s%s%s is null then %d else t.%s%s%s end", 
-                                getQuoteString(), col, getQuoteString(),
-                                NULL_LONG,
-                                getQuoteString(), col, getQuoteString()));
-                joinExprs.add(Pair.of(left, right));
-            }
-        }
+        // equijoin expression that considers possible null values
+        List<Pair<Expr, Expr>> joinExprs = nullSafeJoinExprs(param.getColumnNames(), col2types, "s", "t");
 
         // where clause using rand function
-        String whereClause = String.format("%s < %d * %f / %d / %s", randNumColname, originalTableSize,
-                param.getSamplingRatio(), groupCount, groupSizeColName);
-
-        // this should set to an appropriate variable.
-        List<Pair<Integer, Double>> samplingProbForSize = vc.getConf().samplingProbabilitiesForStratifiedSamples();
-
-        whereClause += String.format(" OR %s < (case", randNumColname);
-
-        for (Pair<Integer, Double> sizeProb : samplingProbForSize) {
-            int size = sizeProb.getKey();
-            double prob = sizeProb.getValue();
-            whereClause += String.format(" when %s >= %d then %f * %d / %s", groupSizeColName, size, prob, size,
-                    groupSizeColName);
-        }
-        whereClause += " else 1.0 end)";
+        Cond whereClause = stratifiedSamplingCondition(originalTableSize, param.getSamplingRatio(), groupCount);
 
         // aliased select list
-        List<String> selectElems = new ArrayList<String>();
+        List<SelectElem> selectElems = new ArrayList<SelectElem>();
         for (String col : col2types.keySet()) {
-            selectElems.add(String.format("s.%s%s%s", getQuoteString(), col, getQuoteString()));
+            selectElems.add(b.elem(b.col("s", col)));
         }
 
+        List<SelectElem> sampledElems = new ArrayList<SelectElem>(selectElems);
+        sampledElems.add(b.elem(b.col(groupSizeColName)));
+
         // sample table
         TableUniqueName sampledNoRand = Relation.getTempTableName(vc, param.sampleTableName().getSchemaName());
         ExactRelation sampled = SingleRelation.from(vc, param.getOriginalTable())
-                .select(String.format("*, %s as %s", randomNumberExpression(param), randNumColname)).withAlias("s")
+                .select(b.allColumns(), b.as(Expr.from(vc, randomNumberExpression(param)), randNumColname))
+                .withAlias("s")
                 .join(SingleRelation.from(vc, groupSizeTemp).withAlias("t"), joinExprs).where(whereClause)
-                .select(Joiner.on(", ").join(selectElems) + ", " + groupSizeColName);
+                .selectElems(sampledElems);
         String sql1 = String.format("create table %s as %s", sampledNoRand, sampled.toSql());
 //        VerdictLogger.debug(this, "The query used for creating a stratified sample without sampling probabilities.");
 //        VerdictLogger.debugPretty(this, Relation.prettyfySql(vc, sql1), "  ");
         executeUpdate(sql1);
 
         // attach sampling probabilities and random partition number
-        ExactRelation sampledGroupSize = SingleRelation.from(vc, sampledNoRand).groupby(param.getColumnNames())
-                .agg("count(*) AS " + groupSizeInSampleColName);
+        ExactRelation sampledGroupSize = SingleRelation.from(vc, sampledNoRand)
+                .groupbyExprs(b.cols(param.getColumnNames()))
+                .agg(b.as(b.count(), groupSizeInSampleColName));
+        List<SelectElem> withRandElems = new ArrayList<SelectElem>(selectElems);
+        withRandElems.add(b.as(b.div(b.col(groupSizeInSampleColName), b.col(groupSizeColName)), samplingProbColName));
+        withRandElems.add(SelectElem.from(vc, randomPartitionColumn()));
         ExactRelation withRand = SingleRelation.from(vc, sampledNoRand).withAlias("s")
                 .join(sampledGroupSize.withAlias("t"), joinExprs)
-                .select(Joiner.on(", ").join(selectElems) + String.format(", %s  / %s as %s", groupSizeInSampleColName,
-                        groupSizeColName, samplingProbColName) + ", " + randomPartitionColumn());
+                .selectElems(withRandElems);
 
         String parquetString = "";
 
@@ -507,6 +600,61 @@ public abstract class Dbms {
         dropTable(sampledNoRand, false);
     }
 
+    /**
+     * Equi-join expressions on the given columns of two aliased tables. A null value
+     * is replaced by a placeholder of its column type so that nulls match each
+     * other.
+     */
+    protected List<Pair<Expr, Expr>> nullSafeJoinExprs(List<String> columns, Map<String, String> col2types,
+            String leftAlias, String rightAlias) {
+        ExprBuilder b = new ExprBuilder(vc);
+        List<Pair<Expr, Expr>> joinExprs = new ArrayList<Pair<Expr, Expr>>();
+        for (String col : columns) {
+            Expr nullValue = b.constant(NULL_LONG);
+            if (col2types.containsKey(col)) {
+                String type = col2types.get(col).toLowerCase();
+                if (type.contains("char") || type.contains("str")) {
+                    nullValue = b.string(NULL_STRING);
+                } else if (type.contains("time")) {
+                    nullValue = b.string(NULL_TIMESTAMP);
+                }
+            }
+
+            Expr left = b.nullSafe(b.col(leftAlias, col), nullValue);
+            Expr right = b.nullSafe(b.col(rightAlias, col), nullValue);
+            joinExprs.add(Pair.of(left, right));
+        }
+        return joinExprs;
+    }
+
+    /**
+     * The sampling condition of a stratified sample. A tuple is sampled with the
+     * probability that gives every group (in expectation) the same number of tuples;
+     * small groups are additionally sampled with the probabilities set by
+     * {@link VerdictConf#samplingProbabilitiesForStratifiedSamples()}.
+     */
+    protected Cond stratifiedSamplingCondition(long originalTableSize, double samplingRatio, long groupCount) {
+        ExprBuilder b = new ExprBuilder(vc);
+        Expr rand = b.col(randNumColname);
+        Expr groupSize = b.col(groupSizeColName);
+
+        Cond perGroup = b.lt(rand, b.div(
+                b.div(b.mul(b.constant(originalTableSize), b.decimal(samplingRatio)), b.constant(groupCount)),
+                groupSize));
+
+        List<Cond> conds = new ArrayList<Cond>();
+        List<Expr> probs = new ArrayList<Expr>();
+        for (Pair<Integer, Double> sizeProb : vc.getConf().samplingProbabilitiesForStratifiedSamples()) {
+            int size = sizeProb.getKey();
+            double prob = sizeProb.getValue();
+            conds.add(b.ge(groupSize, b.constant(size)));
+            probs.add(b.div(b.mul(b.decimal(prob), b.constant(size)), groupSize));
+        }
+        Cond smallGroup = b.lt(rand, b.caseWhen(conds, probs, b.constant("1.0")));
+
+        return b.or(perGroup, smallGroup);
+    }
+
     // protected abstract void justCreateStratifiedSampleTableof(SampleParam param)
     // throws VerdictException;
 
@@ -545,9 +693,10 @@ public abstract class Dbms {
         long total_size = vc.getMeta().getTableSize(param.getOriginalTable());
         long sample_size = vc.getMeta().getTableSize(temp);
 
-        ExactRelation withProb = sampled
-                                 .select(String.format("*, %d / %d AS %s", sample_size, total_size, samplingProbCol) + ", "
-                                         + universePartitionColumn(param.getColumnNames().get(0)));
+        ExprBuilder b = new ExprBuilder(vc);
+        ExactRelation withProb = sampled.select(b.allColumns(),
+                b.as(b.div(b.constant(sample_size), b.constant(total_size)), samplingProbCol),
+                SelectElem.from(vc, universePartitionColumn(param.getColumnNames().get(0))));
         
         String parquetString = "";
         if (vc.getConf().areSamplesStoredAsParquet()) {
@@ -643,6 +792,132 @@ public abstract class Dbms {
         moveTable(tempTable, metaSizeTableName);
     }
 
+    public void createMetaStatsTableInDBMS(TableUniqueName statsTableName) throws VerdictException {
+        String sql = String.format("CREATE TABLE IF NOT EXISTS %s", statsTableName) + " (schemaname STRING, "
+                + " tablename STRING, " + " columnname STRING, " + " mean DOUBLE, " + " variance DOUBLE, "
+                + " distinctcount BIGINT)";
+        executeUpdate(sql);
+        vc.getMeta().refreshTables(statsTableName.getDatabaseName());
+    }
+
+    /**
+     * Computes the mean and the variance of every numeric column of a sample table,
+     * and the number of distinct values of every column, with a single query. For
+     * a stratified sample on several columns, the number of strata is counted as
+     * well.
+     * 
+     * @param param
+     * @return a map from column names (or
+     *         {@link SampleColumnStats#columnsKey(List)} for the strata) to their
+     *         statistics. The numeric columns whose values are all null have no
+     *         mean and variance.
+     * @throws VerdictException
+     */
+    public Map<String, SampleColumnStats> computeSampleColumnStats(SampleParam param) throws VerdictException {
+        Map<String, String> col2types = vc.getMeta().getColumn2Types(param.getOriginalTable());
+        List<String> columns = new ArrayList<String>(col2types.keySet());
+
+        Map<String, SampleColumnStats> stats = new HashMap<String, SampleColumnStats>();
+        if (columns.isEmpty()) {
+            return stats;
+        }
+
+        ExprBuilder b = new ExprBuilder(vc);
+        List<Object> aggs = new ArrayList<Object>();
+        for (String col : columns) {
+            aggs.add(FuncExpr.countDistinct(b.col(col)));
+            if (SampleColumnStats.isNumericType(col2types.get(col))) {
+                aggs.add(FuncExpr.avg(b.col(col)));
+                aggs.add(FuncExpr.stddev(b.col(col)));
+            }
+        }
+        List<Object> row = SingleRelation.from(vc, param.sampleTableName()).agg(aggs).collect().get(0);
+        int i = 0;
+        for (String col : columns) {
+            long distinctCount = TypeCasting.toLong(row.get(i++));
+            double mean = 0;
+            double variance = 0;
+            if (SampleColumnStats.isNumericType(col2types.get(col))) {
+                Object m = row.get(i++);
+                Object stddev = row.get(i++);
+                if (m != null && stddev != null) {
+                    double sd = TypeCasting.toDouble(stddev);
+                    mean = TypeCasting.toDouble(m);
+                    variance = sd * sd;
+                }
+            }
+            stats.put(col, new SampleColumnStats(mean, variance, distinctCount));
+        }
+
+        // the number of strata, which the distinct counts of the columns only bound.
+        List<String> strataColumns = param.getColumnNames();
+        if (param.getSampleType().equals("stratified") && strataColumns.size() > 1) {
+            long strataCount = SingleRelation.from(vc, param.sampleTableName()).groupby(strataColumns)
+                    .agg(FuncExpr.count()).countValue();
+            stats.put(SampleColumnStats.columnsKey(strataColumns), new SampleColumnStats(0, 0, strataCount));
+        }
+        return stats;
+    }
+
+    public void updateSampleStatsEntriesIntoDBMS(SampleParam param, Map<String, SampleColumnStats> stats,
+            TableUniqueName metaStatsTableName) throws VerdictException {
+        // the stats table has the same key columns (schemaname, tablename) as the size table.
+        TableUniqueName tempTableName = createTempTableExlucdingSizeEntry(param, metaStatsTableName);
+        TableUniqueName sampleTableName = param.sampleTableName();
+        for (Map.Entry<String, SampleColumnStats> e : stats.entrySet()) {
+            List<Object> values = new ArrayList<Object>();
+            values.add(sampleTableName.getSchemaName());
+            values.add(sampleTableName.getTableName());
+            values.add(e.getKey());
+            values.add(e.getValue().mean);
+            values.add(e.getValue().variance);
+            values.add(e.getValue().distinctCount);
+            insertEntry(tempTableName, values);
+        }
+        moveTable(tempTableName, metaStatsTableName);
+    }
+
+    public void deleteSampleStatsEntriesFromDBMS(SampleParam param, TableUniqueName metaStatsTableName)
+            throws VerdictException {
+        TableUniqueName tempTable = createTempTableExlucdingSizeEntry(param, metaStatsTableName);
+        moveTable(tempTable, metaStatsTableName);
+    }
+
+    /**
+     * Creates the table that keeps the runtimes recorded by
+     * {@link edu.umich.verdict.relation.LatencyModel}, if not exists.
+     * 
+     * @param latencyTableName
+     * @throws VerdictException
+     */
+    public void createMetaLatencyTableInDBMS(TableUniqueName latencyTableName) throws VerdictException {
+        String sql = String.format("CREATE TABLE IF NOT EXISTS %s", latencyTableName) + " (dbms STRING, "
+                + " sampletype STRING, " + " bytes DOUBLE, " + " scans INT, " + " seconds DOUBLE, "
+                + " recordedat BIGINT)";
+        executeUpdate(sql);
+        vc.getMeta().refreshTables(latencyTableName.getDatabaseName());
+    }
+
+    /**
+     * Keeps only the latest rows of every (dbms, sampletype) in the table created by
+     * {@link #createMetaLatencyTableInDBMS(TableUniqueName)}.
+     * 
+     * @param latencyTableName
+     * @param keep
+     *            the number of rows kept for each
+     * @throws VerdictException
+     */
+    public void trimMetaLatencyTableInDBMS(TableUniqueName latencyTableName, int keep) throws VerdictException {
+        TableUniqueName tempTableName = Relation.getTempTableName(vc, latencyTableName.getSchemaName());
+        String columns = "dbms, sampletype, bytes, scans, seconds, recordedat";
+        executeUpdate(String.format(
+                "CREATE TABLE %s AS SELECT %s FROM (SELECT %s, row_number() OVER (PARTITION BY dbms, sampletype "
+                        + "ORDER BY recordedat DESC) AS verdict_rank FROM %s) AS verdict_ranked "
+                        + "WHERE verdict_rank <= %d",
+                tempTableName, columns, columns, latencyTableName, keep));
+        moveTable(tempTableName, latencyTableName);
+    }
+
     public void cacheTable(TableUniqueName tableName) {
     }
 
@@ -675,6 +950,44 @@ public abstract class Dbms {
      */
     protected abstract String randomNumberExpression(SampleParam param);
 
+    /**
+     * Column expression that generates a number between 0 and 1. The expressions
+     * for different streams generate independent numbers within a statement; used
+     * for drawing bootstrap multiplicities.
+     * 
+     * @param stream
+     * @return
+     */
+    public Expr independentRandomNumber(int stream) {
+        ExprBuilder b = new ExprBuilder(vc);
+        return b.func(FuncExpr.FuncName.RAND, b.add(b.func(FuncExpr.FuncName.UNIX_TIMESTAMP), b.constant(stream)));
+    }
+
+    /**
+     * The DBMS-native approximate count-distinct of an expression, computed with a
+     * sketch (e.g., HyperLogLog) instead of shuffling the distinct values.
+     * 
+     * @param expr
+     * @return null if the DBMS does not provide one.
+     */
+    public Expr approxCountDistinct(Expr expr) {
+        return null;
+    }
+
+    /**
+     * The DBMS-native (approximate) p-th quantile of an expression, which the
+     * percentiles that are not weighted by sampling probabilities are computed
+     * with, e.g., those of exact queries and of joins of several samples.
+     * 
+     * @param expr
+     * @param p
+     * @return null if the DBMS does not provide one; then, the percentiles on a
+     *         single table are computed from cumulative weights instead.
+     */
+    public Expr approxPercentile(Expr expr, Expr p) {
+        return null;
+    }
+
     public abstract String modOfHash(String col, int mod);
 
     protected abstract String modOfRand(int mod);
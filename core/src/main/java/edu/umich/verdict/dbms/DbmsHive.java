@@ -27,6 +27,8 @@ import edu.umich.verdict.VerdictContext;
 import edu.umich.verdict.datatypes.SampleParam;
 import edu.umich.verdict.datatypes.TableUniqueName;
 import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.expr.Expr;
+import edu.umich.verdict.relation.expr.FuncExpr;
 import edu.umich.verdict.util.StringManipulations;
 
 public class DbmsHive extends DbmsJDBC {
@@ -36,6 +38,15 @@ public class DbmsHive extends DbmsJDBC {
         super(vc, dbName, host, port, schema, user, password, jdbcClassName);
     }
 
+    public DbmsHive(Dbms another) {
+        super(another);
+    }
+
+    @Override
+    public Expr approxPercentile(Expr expr, Expr p) {
+        return new FuncExpr(FuncExpr.FuncName.HIVE_PERCENTILE_APPROX, expr, p);
+    }
+
     @Override
     public void insertEntry(TableUniqueName tableName, List<Object> values) throws VerdictException {
         StringBuilder sql = new StringBuilder(1000);
@@ -73,6 +84,28 @@ public class DbmsHive extends DbmsJDBC {
         return String.format("pmod(round(rand(unix_timestamp())*%d), %d) AS %s", pcount, pcount, partitionColumnName());
     }
 
+    /**
+     * Samples are created with CREATE TABLE AS SELECT, which stores them as text
+     * files by default; every column is read whatever a query references.
+     */
+    @Override
+    public boolean readsReferencedColumnsOnly() {
+        return false;
+    }
+
+    @Override
+    public double aggregationCostPerRow() {
+        return 16.0;
+    }
+
+    /**
+     * Every query runs as one or more MapReduce (or Tez) jobs.
+     */
+    @Override
+    public double queryOverheadSeconds() {
+        return 15.0;
+    }
+
     @Override
     public Dataset<Row> getDataset() {
         // TODO Auto-generated method stub
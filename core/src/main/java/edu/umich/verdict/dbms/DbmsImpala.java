@@ -16,9 +16,16 @@
 
 package edu.umich.verdict.dbms;
 
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
@@ -27,7 +34,12 @@ import com.google.common.base.Joiner;
 
 import edu.umich.verdict.VerdictContext;
 import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.datatypes.TableUniqueName;
 import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.expr.ConstantExpr;
+import edu.umich.verdict.relation.expr.Expr;
+import edu.umich.verdict.relation.expr.FuncExpr;
+import edu.umich.verdict.util.StringManipulations;
 
 public class DbmsImpala extends DbmsJDBC {
 
@@ -36,12 +48,32 @@ public class DbmsImpala extends DbmsJDBC {
         super(vc, dbName, host, port, schema, user, password, jdbcClassName);
     }
 
+    public DbmsImpala(Dbms another) {
+        super(another);
+    }
+
     @Override
     public String modOfHash(String col, int mod) {
         return String.format("abs(fnv_hash(cast(%s%s%s AS STRING))) %% %d",
                 getQuoteString(), col, getQuoteString(), mod);
     }
 
+    @Override
+    public Expr approxCountDistinct(Expr expr) {
+        return new FuncExpr(FuncExpr.FuncName.IMPALA_APPROX_COUNT_DISTINCT, expr);
+    }
+
+    /**
+     * Impala only provides the median.
+     */
+    @Override
+    public Expr approxPercentile(Expr expr, Expr p) {
+        if (p instanceof ConstantExpr && Double.valueOf(((ConstantExpr) p).getValue().toString()) == 0.5) {
+            return new FuncExpr(FuncExpr.FuncName.IMPALA_APPX_MEDIAN, expr);
+        }
+        return null;
+    }
+
     @Override
     public String modOfRand(int mod) {
         return String.format("abs(rand(unix_timestamp())) %% %d", mod);
@@ -74,6 +106,80 @@ public class DbmsImpala extends DbmsJDBC {
         return expr;
     }
 
+    /**
+     * Reads the total size from "show table stats"; for a partitioned table, the
+     * last row holds the total over the partitions.
+     */
+    @Override
+    public long getTableByteSize(TableUniqueName tableName) throws VerdictException {
+        try {
+            ResultSet rs = executeJdbcQuery(String.format("show table stats %s", tableName));
+            int sizeColumn = -1;
+            ResultSetMetaData meta = rs.getMetaData();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                if (meta.getColumnLabel(i).equalsIgnoreCase("size")) {
+                    sizeColumn = i;
+                }
+            }
+
+            String size = null;
+            while (rs.next()) {
+                if (sizeColumn > 0) {
+                    size = rs.getString(sizeColumn);
+                }
+            }
+            rs.close();
+            return (size == null) ? -1 : parseByteSize(size);
+        } catch (SQLException e) {
+            throw new VerdictException(e);
+        }
+    }
+
+    /**
+     * Parses a size printed by Impala, e.g., "512B", "1.50KB", or "12.34GB".
+     * 
+     * @return the number of bytes, or -1 if the size cannot be parsed.
+     */
+    static long parseByteSize(String size) {
+        Matcher m = Pattern.compile("([0-9.]+)\\s*([KMGTP]?)B", Pattern.CASE_INSENSITIVE).matcher(size.trim());
+        if (!m.matches()) {
+            return -1;
+        }
+        double bytes = Double.parseDouble(m.group(1));
+        int exponent = "KMGTP".indexOf(m.group(2).toUpperCase()) + 1;
+        return (long) (bytes * Math.pow(1024, exponent));
+    }
+
+    @Override
+    public double aggregationCostPerRow() {
+        return 4.0;
+    }
+
+    /**
+     * Inserts all the rows with a single statement.
+     */
+    @Override
+    public void insertEntries(TableUniqueName tableName, List<List<Object>> rows) throws VerdictException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<String> tuples = new ArrayList<String>();
+        for (List<Object> values : rows) {
+            tuples.add("(" + Joiner.on(", ").join(StringManipulations.quoteString(values, "'")) + ")");
+        }
+        executeUpdate(String.format("insert into table %s values %s", tableName, Joiner.on(", ").join(tuples)));
+    }
+
+    @Override
+    public double queryOverheadSeconds() {
+        return 0.3;
+    }
+
+    @Override
+    public double scanSecondsPerByte() {
+        return 1e-9;
+    }
+
     protected String randomPartitionColumn() {
         int pcount = partitionCount();
         return String.format("round(rand(unix_timestamp())*%d) %% %d AS %s", pcount, pcount, partitionColumnName());
@@ -22,11 +22,23 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -49,6 +61,31 @@ public abstract class DbmsJDBC extends Dbms {
 
     protected Statement stmt; // created Statements must be registered here.
 
+    // for opening more connections to the same database
+    private final String url;
+
+    private final String jdbcClassName;
+
+    /**
+     * Connections (other than {@link #conn}) kept for running statements at the
+     * same time; see {@link #executeJdbcQueries(List, int)}.
+     */
+    private final Queue<Connection> spareConnections;
+
+    /**
+     * Runs the describes of {@link #getColumns(Collection)}; created when first
+     * needed, shared with the copies of this object, and shut down on
+     * {@link #close()}.
+     */
+    private final AtomicReference<ExecutorService> describePool;
+
+    /**
+     * Runs the statements of {@link #executeJdbcQueries(List, int)}; created when
+     * first needed, shared with the copies of this object, and shut down on
+     * {@link #close()}.
+     */
+    private final AtomicReference<ExecutorService> queryPool;
+
     public Connection getDbmsConnection() {
         return conn;
     }
@@ -70,8 +107,18 @@ public abstract class DbmsJDBC extends Dbms {
         super(another);
         if (another instanceof DbmsJDBC) {
             conn = ((DbmsJDBC) another).conn;
+            url = ((DbmsJDBC) another).url;
+            jdbcClassName = ((DbmsJDBC) another).jdbcClassName;
+            spareConnections = ((DbmsJDBC) another).spareConnections;
+            describePool = ((DbmsJDBC) another).describePool;
+            queryPool = ((DbmsJDBC) another).queryPool;
         } else {
             conn = null;
+            url = null;
+            jdbcClassName = null;
+            spareConnections = new ConcurrentLinkedQueue<Connection>();
+            describePool = new AtomicReference<ExecutorService>();
+            queryPool = new AtomicReference<ExecutorService>();
         }
         stmt = null;
         allOpenStatements = new ArrayList<Statement>();
@@ -81,14 +128,22 @@ public abstract class DbmsJDBC extends Dbms {
             String password, String jdbcClassName) throws VerdictException {
         super(vc, dbName);
         currentSchema = Optional.fromNullable(schema);
-        String url = composeUrl(dbName, host, port, schema, user, password);
+        url = composeUrl(dbName, host, port, schema, user, password);
+        this.jdbcClassName = jdbcClassName;
+        spareConnections = new ConcurrentLinkedQueue<Connection>();
+        describePool = new AtomicReference<ExecutorService>();
+        queryPool = new AtomicReference<ExecutorService>();
         conn = makeDbmsConnection(url, jdbcClassName);
         stmt = null;
         allOpenStatements = new ArrayList<Statement>();
     }
 
     public ResultSet describeTableInResultSet(TableUniqueName tableUniqueName) throws VerdictException {
-        return executeJdbcQuery(String.format("describe %s", tableUniqueName));
+        return executeJdbcQuery(describeTableSql(tableUniqueName));
+    }
+
+    protected String describeTableSql(TableUniqueName tableUniqueName) {
+        return String.format("describe %s", tableUniqueName);
     }
 
     @Override
@@ -127,9 +182,19 @@ public abstract class DbmsJDBC extends Dbms {
 
     @Override
     public Map<String, String> getColumns(TableUniqueName table) throws VerdictException {
+        return readColumns(describeTableInResultSet(table));
+    }
+
+    /**
+     * Reads the (column, type) rows of a describe statement, up to the first
+     * comment row.
+     */
+    private Map<String, String> readColumns(ResultSet rs) throws VerdictException {
         Map<String, String> col2type = new LinkedHashMap<String, String>();
+        if (rs == null) {
+            return col2type;
+        }
         try {
-            ResultSet rs = describeTableInResultSet(table);
             while (rs.next()) {
                 String column = rs.getString(1);
                 if (column.substring(0,1).equals("#")) {
@@ -144,6 +209,65 @@ public abstract class DbmsJDBC extends Dbms {
         return col2type;
     }
 
+    /**
+     * Describes the tables concurrently, each on a connection of its own, with at
+     * most {@link edu.umich.verdict.VerdictConf#describeParallelism()} describes in
+     * flight. The tables whose columns cannot be retrieved are left out.
+     */
+    @Override
+    public Map<TableUniqueName, Map<String, String>> getColumns(Collection<TableUniqueName> tables)
+            throws VerdictException {
+        if (tables.size() <= 1 || url == null || vc.getConf().describeParallelism() <= 1) {
+            return super.getColumns(tables);
+        }
+
+        ExecutorService pool = pool(describePool, vc.getConf().describeParallelism(), "verdict-describe");
+        Map<TableUniqueName, Future<Map<String, String>>> futures = new LinkedHashMap<TableUniqueName, Future<Map<String, String>>>();
+        for (final TableUniqueName table : tables) {
+            futures.put(table, pool.submit(new Callable<Map<String, String>>() {
+                @Override
+                public Map<String, String> call() throws VerdictException {
+                    return readColumns(executeOnSpareConnection(describeTableSql(table)));
+                }
+            }));
+        }
+
+        Map<TableUniqueName, Map<String, String>> tab2columns = new HashMap<TableUniqueName, Map<String, String>>();
+        try {
+            for (Map.Entry<TableUniqueName, Future<Map<String, String>>> e : futures.entrySet()) {
+                try {
+                    tab2columns.put(e.getKey(), e.getValue().get());
+                } catch (ExecutionException ex) {
+                    VerdictLogger.warn(this, String.format("Could not retrieve the columns of %s: %s", e.getKey(),
+                            ex.getCause().getMessage()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VerdictException(e);
+        }
+        return tab2columns;
+    }
+
+    private ExecutorService pool(AtomicReference<ExecutorService> poolRef, int threads, final String threadName) {
+        ExecutorService pool = poolRef.get();
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, threadName);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            if (!poolRef.compareAndSet(null, pool)) {
+                pool.shutdown();
+                pool = poolRef.get();
+            }
+        }
+        return pool;
+    }
+
     String composeUrl(String dbms, String host, String port, String schema, String user, String password)
             throws VerdictException {
         StringBuilder url = new StringBuilder();
@@ -249,6 +373,98 @@ public abstract class DbmsJDBC extends Dbms {
         return hasResult;
     }
 
+    /**
+     * Runs the query on a statement of its own and returns that statement's result
+     * set, so threads sharing this object do not see each other's results. The
+     * result is not kept for {@link #getResultSet()}.
+     */
+    @Override
+    public ResultSet executeJdbcQuery(String sql) throws VerdictException {
+        VerdictLogger.debug(this, "About to run: " + sql);
+        Statement s = createStatement();
+        try {
+            return (s.execute(sql)) ? s.getResultSet() : null;
+        } catch (SQLException e) {
+            throw new VerdictException(e);
+        }
+    }
+
+    /**
+     * Runs the queries at the same time, each on a connection of its own, with at
+     * most verdict.planner.concurrent_sample_groups queries in flight (the threads
+     * are those of a pool kept for this context). The connections are opened when
+     * first needed and kept for later calls; the sample tables are referred to with
+     * their schemas, so the connections need not share the current schema.
+     */
+    @Override
+    public List<ResultSet> executeJdbcQueries(List<String> sqls, int parallelism) throws VerdictException {
+        parallelism = Math.min(sqls.size(), parallelism);
+        if (parallelism <= 1 || url == null) {
+            return super.executeJdbcQueries(sqls, parallelism);
+        }
+
+        ExecutorService pool = pool(queryPool, Math.max(parallelism, vc.getConf().concurrentSampleGroups()),
+                "verdict-query");
+        List<Future<ResultSet>> futures = new ArrayList<Future<ResultSet>>();
+        for (final String sql : sqls) {
+            futures.add(pool.submit(new Callable<ResultSet>() {
+                @Override
+                public ResultSet call() throws VerdictException {
+                    return executeOnSpareConnection(sql);
+                }
+            }));
+        }
+
+        List<ResultSet> results = new ArrayList<ResultSet>();
+        try {
+            for (Future<ResultSet> f : futures) {
+                results.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VerdictException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof VerdictException) {
+                throw (VerdictException) e.getCause();
+            }
+            throw new VerdictException(e);
+        }
+        return results;
+    }
+
+    private ResultSet executeOnSpareConnection(String sql) throws VerdictException {
+        Connection c = spareConnections.poll();
+        if (c == null) {
+            c = makeDbmsConnection(url, jdbcClassName);
+        }
+
+        VerdictLogger.debug(this, "About to run on a connection of its own: " + sql);
+        boolean reusable = false;
+        Statement s = null;
+        try {
+            s = c.createStatement();
+            ResultSet result = (s.execute(sql)) ? s.getResultSet() : null;
+            ResultSet rows = readFully(result);
+            reusable = true;
+            return rows;
+        } catch (SQLException e) {
+            throw new VerdictException(e);
+        } finally {
+            try {
+                if (s != null) {
+                    s.close();
+                }
+                if (reusable) {
+                    spareConnections.add(c);
+                } else {
+                    c.close();
+                }
+            } catch (SQLException e) {
+                VerdictLogger.debug(this, "Could not close a statement: " + e.getMessage());
+            }
+        }
+    }
+
     public void executeUpdate(String sql) throws VerdictException {
         // createStatementIfNotExists();
         VerdictLogger.debug(this, "About to run: " + sql);
@@ -262,7 +478,7 @@ public abstract class DbmsJDBC extends Dbms {
         }
     }
 
-    public Statement createStatement() throws VerdictException {
+    public synchronized Statement createStatement() throws VerdictException {
         try {
             stmt = conn.createStatement();
             allOpenStatements.add(stmt);
@@ -285,7 +501,7 @@ public abstract class DbmsJDBC extends Dbms {
 //        return stmt;
 //    }
 
-    public void closeStatement() throws VerdictException {
+    public synchronized void closeStatement() throws VerdictException {
         try {
             for (Statement s : allOpenStatements) {
                 if (s != null && !s.isClosed()) {
@@ -342,10 +558,19 @@ public abstract class DbmsJDBC extends Dbms {
     }
 
     public void close() throws VerdictException {
+        for (AtomicReference<ExecutorService> poolRef : Arrays.asList(describePool, queryPool)) {
+            ExecutorService pool = poolRef.getAndSet(null);
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
         try {
             closeStatement();
             if (conn != null)
                 conn.close();
+            for (Connection c = spareConnections.poll(); c != null; c = spareConnections.poll()) {
+                c.close();
+            }
         } catch (SQLException e) {
             throw new VerdictException(e);
         }
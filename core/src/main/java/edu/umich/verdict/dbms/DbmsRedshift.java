@@ -20,8 +20,13 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.spark.sql.Dataset;
@@ -38,7 +43,11 @@ import edu.umich.verdict.exceptions.VerdictException;
 import edu.umich.verdict.relation.ExactRelation;
 import edu.umich.verdict.relation.Relation;
 import edu.umich.verdict.relation.SingleRelation;
+import edu.umich.verdict.relation.condition.Cond;
 import edu.umich.verdict.relation.expr.Expr;
+import edu.umich.verdict.relation.expr.ExprBuilder;
+import edu.umich.verdict.relation.expr.FuncExpr;
+import edu.umich.verdict.relation.expr.SelectElem;
 import edu.umich.verdict.util.StringManipulations;
 import edu.umich.verdict.util.VerdictLogger;
 
@@ -55,6 +64,16 @@ public class DbmsRedshift extends DbmsJDBC {
         return "\"";
     }
 
+    @Override
+    public double aggregationCostPerRow() {
+        return 4.0;
+    }
+
+    @Override
+    public double scanSecondsPerByte() {
+        return 2e-9;
+    }
+
     @Override
     protected String modOfRand(int mod) {
         return String.format("RANDOM() %% %d", mod);
@@ -72,6 +91,24 @@ public class DbmsRedshift extends DbmsJDBC {
         return expr;
     }
 
+    /**
+     * RANDOM() is not seeded per call; its calls are independent already.
+     */
+    @Override
+    public Expr independentRandomNumber(int stream) {
+        return new ExprBuilder(vc).func(FuncExpr.FuncName.RANDOM);
+    }
+
+    @Override
+    public Expr approxCountDistinct(Expr expr) {
+        return new FuncExpr(FuncExpr.FuncName.REDSHIFT_APPROX_COUNT_DISTINCT, expr);
+    }
+
+    @Override
+    public Expr approxPercentile(Expr expr, Expr p) {
+        return new FuncExpr(FuncExpr.FuncName.REDSHIFT_APPROX_PERCENTILE, expr, p);
+    }
+
     @Override
     public void createCatalog(String catalog) throws VerdictException {
         String sql = String.format("create schema if not exists %s", catalog);
@@ -134,8 +171,9 @@ public class DbmsRedshift extends DbmsJDBC {
         long total_size = SingleRelation.from(vc, param.getOriginalTable()).countValue();
         long sample_size = SingleRelation.from(vc, temp).countValue();
 
-        ExactRelation withRand = SingleRelation.from(vc, temp).select("*, " + String
-                .format("cast (%d as float) / cast (%d as float) as %s", sample_size, total_size, samplingProbCol));
+        ExprBuilder b = new ExprBuilder(vc);
+        ExactRelation withRand = SingleRelation.from(vc, temp).select(b.allColumns(),
+                b.as(floatRatio(b, b.constant(sample_size), b.constant(total_size)), samplingProbCol));
         dropTable(param.sampleTableName());
         String sql = String.format("create table %s as %s", param.sampleTableName(), withRand.toSql());
         VerdictLogger.debug(this, "The query used for creating a temporary table without sampling probabilities:");
@@ -153,9 +191,10 @@ public class DbmsRedshift extends DbmsJDBC {
         long total_size = SingleRelation.from(vc, param.getOriginalTable()).countValue();
         long sample_size = sampled.countValue();
 
-        ExactRelation withProb = sampled
-                .select(String.format("*, cast (%d as float)  / cast (%d as float) AS %s", sample_size, total_size,
-                        samplingProbCol) + ", " + universePartitionColumn(param.getColumnNames().get(0)));
+        ExprBuilder b = new ExprBuilder(vc);
+        ExactRelation withProb = sampled.select(b.allColumns(),
+                b.as(floatRatio(b, b.constant(sample_size), b.constant(total_size)), samplingProbCol),
+                SelectElem.from(vc, universePartitionColumn(param.getColumnNames().get(0))));
 
         String sql = String.format("create table %s AS %s", param.sampleTableName(), withProb.toSql());
         VerdictLogger.debug(this, "The query used for creating a universe sample with sampling probability:");
@@ -165,6 +204,14 @@ public class DbmsRedshift extends DbmsJDBC {
         return sample_size;
     }
 
+    /**
+     * Redshift performs an integer division on integers; thus, both operands are
+     * cast to float.
+     */
+    private Expr floatRatio(ExprBuilder b, Expr numerator, Expr denominator) {
+        return b.div(b.cast(numerator, "float"), b.cast(denominator, "float"));
+    }
+
     @Override
     protected void createStratifiedSampleFromGroupSizeTemp(SampleParam param, TableUniqueName groupSizeTemp)
             throws VerdictException {
@@ -175,103 +222,46 @@ public class DbmsRedshift extends DbmsJDBC {
         long groupCount = SingleRelation.from(vc, groupSizeTemp).countValue();
         String samplingProbColName = vc.getDbms().samplingProbabilityColumnName();
 
-        // equijoin expression that considers possible null values
-        List<Pair<Expr, Expr>> joinExprs = new ArrayList<Pair<Expr, Expr>>();
-        for (String col : param.getColumnNames()) {
-            boolean isString = false;
-            boolean isTimeStamp = false;
-
-            if (col2types.containsKey(col)) {
-                if (col2types.get(col).toLowerCase().contains("char")
-                        || col2types.get(col).toLowerCase().contains("str")) {
-                    isString = true;
-                } else if (col2types.get(col).toLowerCase().contains("time")) {
-                    isTimeStamp = true;
-                }
-            }
+        ExprBuilder b = new ExprBuilder(vc);
 
-            if (isString) {
-                Expr left = Expr.from(vc,
-                        String.format("case when s.%s%s%s is null then '%s' else s.%s%s%s end",
-                                getQuoteString(), col, getQuoteString(),
-                                NULL_STRING,
-                                getQuoteString(), col, getQuoteString()));
-                Expr right = Expr.from(vc,
-                        String.format("case when t.%s%s%s is null then '%s' else t.%s%s%s end",
-                                getQuoteString(), col, getQuoteString(),
-                                NULL_STRING,
-                                getQuoteString(), col, getQuoteString()));
-                joinExprs.add(Pair.of(left, right));
-            } else if (isTimeStamp) {
-                Expr left = Expr.from(vc,
-                        String.format("case when s.%s%s%s is null then '%s' else s.%s%s%s end",
-                                getQuoteString(), col, getQuoteString(),
-                                NULL_TIMESTAMP,
-                                getQuoteString(), col, getQuoteString()));
-                Expr right = Expr.from(vc,
-                        String.format("case when t.%s%s%s is null then '%s' else t.%s%s%s end",
-                                getQuoteString(), col, getQuoteString(),
-                                NULL_TIMESTAMP,
-                                getQuoteString(), col, getQuoteString()));
-                joinExprs.add(Pair.of(left, right));
-            } else {
-                Expr left = Expr.from(vc,
-                        String.format("case when s.%s%s%s is null then %d else s.%s%s%s end", 
-                                getQuoteString(), col, getQuoteString(),
-                                NULL_LONG,
-                                getQuoteString(), col, getQuoteString()));
-                Expr right = Expr.from(vc,
-                        String.format("case when t.%s%s%s is null then %d else t.%s%s%s end", 
-                                getQuoteString(), col, getQuoteString(),
-                                NULL_LONG,
-                                getQuoteString(), col, getQuoteString()));
-                joinExprs.add(Pair.of(left, right));
-            }
-        }
+        // equijoin expression that considers possible null values
+        List<Pair<Expr, Expr>> joinExprs = nullSafeJoinExprs(param.getColumnNames(), col2types, "s", "t");
 
         // where clause using rand function
-        String whereClause = String.format("%s < %d * %f / %d / %s", randNumColname, originalTableSize,
-                param.getSamplingRatio(), groupCount, groupSizeColName);
-
-        // this should set to an appropriate variable.
-        List<Pair<Integer, Double>> samplingProbForSize = vc.getConf().samplingProbabilitiesForStratifiedSamples();
-
-        whereClause += String.format(" OR %s < (case", randNumColname);
-
-        for (Pair<Integer, Double> sizeProb : samplingProbForSize) {
-            int size = sizeProb.getKey();
-            double prob = sizeProb.getValue();
-            whereClause += String.format(" when %s >= %d then %f * %d / %s", groupSizeColName, size, prob, size,
-                    groupSizeColName);
-        }
-        whereClause += " else 1.0 end)";
+        Cond whereClause = stratifiedSamplingCondition(originalTableSize, param.getSamplingRatio(), groupCount);
 
         // aliased select list
-        List<String> selectElems = new ArrayList<String>();
+        List<SelectElem> selectElems = new ArrayList<SelectElem>();
         for (String col : col2types.keySet()) {
-            selectElems.add(String.format("s.%s%s%s", getQuoteString(), col, getQuoteString()));
+            selectElems.add(b.elem(b.col("s", col)));
         }
 
+        List<SelectElem> sampledElems = new ArrayList<SelectElem>(selectElems);
+        sampledElems.add(b.elem(b.col(groupSizeColName)));
+
         // sample table
         TableUniqueName sampledNoRand = Relation.getTempTableName(vc, param.sampleTableName().getSchemaName());
         ExactRelation sampled = SingleRelation.from(vc, param.getOriginalTable())
-                .select(String.format("*, %s as %s", randomNumberExpression(param), randNumColname)).withAlias("s")
+                .select(b.allColumns(), b.as(Expr.from(vc, randomNumberExpression(param)), randNumColname))
+                .withAlias("s")
                 .join(SingleRelation.from(vc, groupSizeTemp).withAlias("t"), joinExprs).where(whereClause)
-                .select(Joiner.on(", ").join(selectElems) + ", " + groupSizeColName);
+                .selectElems(sampledElems);
         String sql1 = String.format("create table %s as %s", sampledNoRand, sampled.toSql());
         VerdictLogger.debug(this, "The query used for creating a stratified sample without sampling probabilities.");
 //        VerdictLogger.debugPretty(this, Relation.prettyfySql(vc, sql1), "  ");
         executeUpdate(sql1);
 
         // attach sampling probabilities and random partition number
-        ExactRelation sampledGroupSize = SingleRelation.from(vc, sampledNoRand).groupby(param.getColumnNames())
-                .agg("count(*) AS " + groupSizeInSampleColName);
+        ExactRelation sampledGroupSize = SingleRelation.from(vc, sampledNoRand)
+                .groupbyExprs(b.cols(param.getColumnNames()))
+                .agg(b.as(b.count(), groupSizeInSampleColName));
+        List<SelectElem> withRandElems = new ArrayList<SelectElem>(selectElems);
+        withRandElems.add(b.as(floatRatio(b, b.col(groupSizeInSampleColName), b.col(groupSizeColName)),
+                samplingProbColName));
+        withRandElems.add(SelectElem.from(vc, randomPartitionColumn()));
         ExactRelation withRand = SingleRelation.from(vc, sampledNoRand).withAlias("s")
-                .join(sampledGroupSize.withAlias("t"), joinExprs).select(
-                        Joiner.on(", ").join(selectElems)
-                                + String.format(", cast(%s as float) / cast(%s as float) as %s",
-                                        groupSizeInSampleColName, groupSizeColName, samplingProbColName)
-                                + ", " + randomPartitionColumn());
+                .join(sampledGroupSize.withAlias("t"), joinExprs)
+                .selectElems(withRandElems);
 
         String parquetString = "";
 
@@ -337,7 +327,56 @@ public class DbmsRedshift extends DbmsJDBC {
         
         return rs;
     }
+
+    /**
+     * Retrieves the columns of all the tables with a single query on pg_table_def.
+     * pg_table_def only shows the schemas in the search path; thus, the search path
+     * is extended with the schemas of the tables while the query runs.
+     */
+    @Override
+    public Map<TableUniqueName, Map<String, String>> getColumns(Collection<TableUniqueName> tables)
+            throws VerdictException {
+        Set<String> schemas = new LinkedHashSet<String>();
+        List<String> predicates = new ArrayList<String>();
+        for (TableUniqueName t : tables) {
+            schemas.add(t.getSchemaName());
+            predicates.add(String.format("(schemaname = %s AND tablename = %s)", stringLiteral(t.getSchemaName()),
+                    stringLiteral(t.getTableName())));
+        }
+        if (predicates.isEmpty()) {
+            return new HashMap<TableUniqueName, Map<String, String>>();
+        }
+
+        Map<TableUniqueName, Map<String, String>> tab2columns = new HashMap<TableUniqueName, Map<String, String>>();
+        String search_path = getSearchPath();
+        setSearchPath(Joiner.on(",").join(schemas));
+        try {
+            ResultSet rs = executeJdbcQuery(String.format(
+                    "SELECT schemaname, tablename, \"column\", \"type\" FROM pg_table_def WHERE %s",
+                    Joiner.on(" OR ").join(predicates)));
+            while (rs.next()) {
+                TableUniqueName table = TableUniqueName.uname(rs.getString(1), rs.getString(2));
+                if (!tab2columns.containsKey(table)) {
+                    tab2columns.put(table, new LinkedHashMap<String, String>());
+                }
+                tab2columns.get(table).put(rs.getString(3), rs.getString(4));
+            }
+            rs.close();
+        } catch (SQLException e) {
+            throw new VerdictException(e);
+        } finally {
+            setSearchPath(search_path);
+        }
+        return tab2columns;
+    }
     
+    /**
+     * @return the string as a SQL string literal, with its single quotes doubled.
+     */
+    private static String stringLiteral(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
     private String getSearchPath() throws VerdictException {
         ResultSet rs = executeJdbcQuery("show search_path");
         List<String> searchList = new ArrayList<String>();
@@ -398,6 +437,24 @@ public class DbmsRedshift extends DbmsJDBC {
         VerdictLogger.debug(this, "Meta tables created.");
     }
 
+    @Override
+    public void createMetaStatsTableInDBMS(TableUniqueName statsTableName) throws VerdictException {
+        String sql = String.format("CREATE TABLE IF NOT EXISTS %s", statsTableName) + " (schemaname VARCHAR(120), "
+                + " tablename VARCHAR(120), " + " columnname VARCHAR(120), " + " mean FLOAT, " + " variance FLOAT, "
+                + " distinctcount BIGINT)";
+        executeUpdate(sql);
+        vc.getMeta().refreshTables(statsTableName.getDatabaseName());
+    }
+
+    @Override
+    public void createMetaLatencyTableInDBMS(TableUniqueName latencyTableName) throws VerdictException {
+        String sql = String.format("CREATE TABLE IF NOT EXISTS %s", latencyTableName) + " (dbms VARCHAR(120), "
+                + " sampletype VARCHAR(120), " + " bytes FLOAT, " + " scans INT, " + " seconds FLOAT, "
+                + " recordedat BIGINT)";
+        executeUpdate(sql);
+        vc.getMeta().refreshTables(latencyTableName.getDatabaseName());
+    }
+
     @Override
     public Dataset<Row> getDataset() {
         // TODO Auto-generated method stub
@@ -39,6 +39,8 @@ import edu.umich.verdict.VerdictContext;
 import edu.umich.verdict.datatypes.SampleParam;
 import edu.umich.verdict.datatypes.TableUniqueName;
 import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.expr.Expr;
+import edu.umich.verdict.relation.expr.FuncExpr;
 import edu.umich.verdict.util.StringManipulations;
 import edu.umich.verdict.util.VerdictLogger;
 
@@ -189,6 +191,16 @@ public class DbmsSpark2 extends Dbms {
         return String.format("crc32(cast(%s%s%s as string)) %% %d", getQuoteString(), col, getQuoteString(), mod);
     }
 
+    @Override
+    public Expr approxCountDistinct(Expr expr) {
+        return new FuncExpr(FuncExpr.FuncName.SPARK_APPROX_COUNT_DISTINCT, expr);
+    }
+
+    @Override
+    public Expr approxPercentile(Expr expr, Expr p) {
+        return new FuncExpr(FuncExpr.FuncName.HIVE_PERCENTILE_APPROX, expr, p);
+    }
+
     @Override
     protected String randomPartitionColumn() {
         int pcount = partitionCount();
@@ -18,6 +18,7 @@ package edu.umich.verdict.query;
 
 import edu.umich.verdict.VerdictContext;
 import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.parser.VerdictSQLParser;
 
 public class ByPassVerdictUpdateQuery extends Query {
 
@@ -25,6 +26,10 @@ public class ByPassVerdictUpdateQuery extends Query {
         super(vc, q);
     }
 
+    public ByPassVerdictUpdateQuery(VerdictContext vc, String q, VerdictSQLParser.Verdict_statementContext parsedStatement) {
+        super(vc, q, parsedStatement);
+    }
+
     @Override
     public void compute() throws VerdictException {
         vc.getDbms().executeUpdate(queryString);
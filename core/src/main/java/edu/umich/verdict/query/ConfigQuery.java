@@ -26,7 +26,6 @@ import edu.umich.verdict.datatypes.VerdictResultSet;
 import edu.umich.verdict.exceptions.VerdictException;
 import edu.umich.verdict.parser.VerdictSQLBaseVisitor;
 import edu.umich.verdict.parser.VerdictSQLParser;
-import edu.umich.verdict.util.StringManipulations;
 import edu.umich.verdict.util.VerdictLogger;
 
 public class ConfigQuery extends SelectQuery {
@@ -56,12 +55,15 @@ public class ConfigQuery extends SelectQuery {
         readKeyValueFromQuery();
     }
 
+    public ConfigQuery(VerdictContext vc, String q, VerdictSQLParser.Verdict_statementContext parsedStatement) {
+        super(vc, q, parsedStatement);
+        readKeyValueFromQuery();
+    }
+
     protected void readKeyValueFromQuery() {
         if (getKey() != null)
             return;
 
-        VerdictSQLParser p = StringManipulations.parserOf(queryString);
-
         VerdictSQLBaseVisitor<Pair<String, String>> visitor = new VerdictSQLBaseVisitor<Pair<String, String>>() {
             private Pair<String, String> keyValue;
 
@@ -83,7 +85,7 @@ public class ConfigQuery extends SelectQuery {
             }
         };
 
-        Pair<String, String> keyValue = visitor.visit(p.config_statement());
+        Pair<String, String> keyValue = visitor.visit(parsedStatement().config_statement());
         setKey(keyValue.getKey());
         setValue(keyValue.getValue());
     }
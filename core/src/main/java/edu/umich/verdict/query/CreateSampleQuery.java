@@ -17,8 +17,11 @@
 package edu.umich.verdict.query;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.TreeSet;
 
+import org.antlr.v4.runtime.Token;
 import org.apache.commons.lang3.tuple.Pair;
 
 import edu.umich.verdict.VerdictContext;
@@ -31,7 +34,6 @@ import edu.umich.verdict.parser.VerdictSQLParser.Column_nameContext;
 import edu.umich.verdict.relation.ApproxSingleRelation;
 import edu.umich.verdict.relation.expr.ColNameExpr;
 import edu.umich.verdict.relation.expr.FuncExpr;
-import edu.umich.verdict.util.StringManipulations;
 import edu.umich.verdict.util.VerdictLogger;
 
 /**
@@ -48,20 +50,26 @@ public class CreateSampleQuery extends Query {
         super(vc, q);
     }
 
+    public CreateSampleQuery(VerdictContext vc, String q, VerdictSQLParser.Verdict_statementContext parsedStatement) {
+        super(vc, q, parsedStatement);
+    }
+
     @Override
     public void compute() throws VerdictException {
-        VerdictSQLParser p = StringManipulations.parserOf(queryString);
         CreateSampleStatementVisitor visitor = new CreateSampleStatementVisitor();
-        visitor.visit(p.create_sample_statement());
+        visitor.visit(parsedStatement().create_sample_statement());
 
         TableUniqueName tableName = visitor.getTableName();
         TableUniqueName validTableName = (tableName.getSchemaName() != null) ? tableName
                 : TableUniqueName.uname(vc, tableName.getTableName());
-        Double samplingRatio = visitor.getSamplingRatio();
         String sampleType = visitor.getSampleType();
         List<String> columnNames = visitor.getColumnNames();
 
-        buildSamples(new SampleParam(vc, validTableName, sampleType, samplingRatio, columnNames));
+        // the smallest rung of a ladder first
+        for (Double samplingRatio : visitor.getSamplingRatios()) {
+            buildSamples(new SampleParam(vc, validTableName, sampleType, samplingRatio,
+                    new ArrayList<String>(columnNames)));
+        }
     }
     
     protected double heuristicSampleSizeSuggestion(SampleParam param) throws VerdictException {
@@ -172,6 +180,7 @@ public class CreateSampleQuery extends Query {
                 param.getSamplingRatio() * 100, param.getOriginalTable()));
         Pair<Long, Long> sampleAndOriginalSizes = vc.getDbms().createUniformRandomSampleTableOf(param);
         vc.getMeta().insertSampleInfo(param, sampleAndOriginalSizes.getLeft(), sampleAndOriginalSizes.getRight());
+        vc.getMeta().insertSampleStats(param);
     }
 
     protected void createUniverseSample(SampleParam param) throws VerdictException {
@@ -180,6 +189,7 @@ public class CreateSampleQuery extends Query {
                 param.getSamplingRatio() * 100, param.getOriginalTable(), columnName));
         Pair<Long, Long> sampleAndOriginalSizes = vc.getDbms().createUniverseSampleTableOf(param);
         vc.getMeta().insertSampleInfo(param, sampleAndOriginalSizes.getLeft(), sampleAndOriginalSizes.getRight());
+        vc.getMeta().insertSampleStats(param);
     }
 
     protected void createStratifiedSample(SampleParam param) throws VerdictException {
@@ -188,6 +198,7 @@ public class CreateSampleQuery extends Query {
                 param.getSamplingRatio() * 100, param.getOriginalTable(), columnName));
         Pair<Long, Long> sampleAndOriginalSizes = vc.getDbms().createStratifiedSampleTableOf(param);
         vc.getMeta().insertSampleInfo(param, sampleAndOriginalSizes.getLeft(), sampleAndOriginalSizes.getRight());
+        vc.getMeta().insertSampleStats(param);
     }
 
     /**
@@ -208,6 +219,8 @@ class CreateSampleStatementVisitor extends VerdictSQLBaseVisitor<Void> {
 
     private Double samplingRatio = -1.0;        // use a negative value for "not specified"
 
+    private List<Double> samplingRatios = new ArrayList<Double>();
+
     private String sampleType = "recommended";
 
     private List<String> columnNames = new ArrayList<String>();
@@ -220,6 +233,18 @@ class CreateSampleStatementVisitor extends VerdictSQLBaseVisitor<Void> {
         return samplingRatio;
     }
 
+    /**
+     * @return the distinct sampling ratios in the increasing order; a single
+     *         negative value if none is specified.
+     */
+    public List<Double> getSamplingRatios() {
+        if (samplingRatios.isEmpty()) {
+            return Arrays.asList(samplingRatio);
+        }
+        List<Double> ratios = new ArrayList<Double>(new TreeSet<Double>(samplingRatios));
+        return ratios;
+    }
+
     public String getSampleType() {
         return sampleType;
     }
@@ -232,6 +257,10 @@ class CreateSampleStatementVisitor extends VerdictSQLBaseVisitor<Void> {
     public Void visitCreate_sample_statement(VerdictSQLParser.Create_sample_statementContext ctx) {
         if (ctx.size != null) {
             samplingRatio = 0.01 * Double.valueOf(ctx.size.getText());
+            samplingRatios.add(samplingRatio);
+            for (Token t : ctx.ladder) {
+                samplingRatios.add(0.01 * Double.valueOf(t.getText()));
+            }
         }
         visitChildren(ctx);
         return null;
@@ -18,6 +18,7 @@ package edu.umich.verdict.query;
 
 import edu.umich.verdict.VerdictContext;
 import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.parser.VerdictSQLParser;
 import edu.umich.verdict.util.VerdictLogger;
 
 public class CreateTableAsSelectQuery extends Query {
@@ -26,6 +27,10 @@ public class CreateTableAsSelectQuery extends Query {
         super(vc, q);
     }
 
+    public CreateTableAsSelectQuery(VerdictContext vc, String q, VerdictSQLParser.Verdict_statementContext parsedStatement) {
+        super(vc, q, parsedStatement);
+    }
+
     @Override
     public void compute() throws VerdictException {
         VerdictLogger.error(this, "Not supported.");
@@ -21,7 +21,6 @@ import edu.umich.verdict.exceptions.VerdictException;
 import edu.umich.verdict.parser.VerdictSQLParser;
 import edu.umich.verdict.relation.ExactRelation;
 import edu.umich.verdict.relation.Relation;
-import edu.umich.verdict.util.StringManipulations;
 import edu.umich.verdict.util.VerdictLogger;
 
 public class CreateViewAsSelectQuery extends Query {
@@ -30,15 +29,17 @@ public class CreateViewAsSelectQuery extends Query {
         super(vc, q);
     }
 
+    public CreateViewAsSelectQuery(VerdictContext vc, String q, VerdictSQLParser.Verdict_statementContext parsedStatement) {
+        super(vc, q, parsedStatement);
+    }
+
     @Override
     public void compute() throws VerdictException {
-        VerdictSQLParser p = StringManipulations.parserOf(queryString);
-        Relation r = ExactRelation.from(vc, p.create_view().select_statement());
-        p.reset();
-        String viewName = p.create_view().view_name().getText();
+        VerdictSQLParser.Create_viewContext ctx = parsedStatement().create_view();
+        Relation r = ExactRelation.from(vc, ctx.select_statement());
+        String viewName = ctx.view_name().getText();
 
-        p.reset();
-        boolean exact = p.create_view().select_statement().EXACT() != null;
+        boolean exact = ctx.select_statement().EXACT() != null;
         if (!exact) {
             r = ((ExactRelation) r).approx();
         }
@@ -25,7 +25,6 @@ import edu.umich.verdict.exceptions.VerdictException;
 import edu.umich.verdict.parser.VerdictSQLBaseVisitor;
 import edu.umich.verdict.parser.VerdictSQLParser;
 import edu.umich.verdict.parser.VerdictSQLParser.Table_nameContext;
-import edu.umich.verdict.util.StringManipulations;
 import edu.umich.verdict.util.VerdictLogger;
 
 public class DescribeTableQuery extends SelectQuery {
@@ -34,10 +33,12 @@ public class DescribeTableQuery extends SelectQuery {
         super(vc, q);
     }
 
+    public DescribeTableQuery(VerdictContext vc, String q, VerdictSQLParser.Verdict_statementContext parsedStatement) {
+        super(vc, q, parsedStatement);
+    }
+
     @Override
     public void compute() throws VerdictException {
-        VerdictSQLParser p = StringManipulations.parserOf(queryString);
-
         VerdictSQLBaseVisitor<TableUniqueName> visitor = new VerdictSQLBaseVisitor<TableUniqueName>() {
             private TableUniqueName tableName;
 
@@ -58,7 +59,7 @@ public class DescribeTableQuery extends SelectQuery {
             }
         };
 
-        TableUniqueName tableName = visitor.visit(p.describe_table_statement());
+        TableUniqueName tableName = visitor.visit(parsedStatement().other_statement().describe_table_statement());
         TableUniqueName table = (tableName.getSchemaName() != null) ? tableName
                 : TableUniqueName.uname(vc, tableName.getTableName());
 
@@ -28,7 +28,6 @@ import edu.umich.verdict.exceptions.VerdictException;
 import edu.umich.verdict.parser.VerdictSQLBaseVisitor;
 import edu.umich.verdict.parser.VerdictSQLParser;
 import edu.umich.verdict.parser.VerdictSQLParser.Column_nameContext;
-import edu.umich.verdict.util.StringManipulations;
 import edu.umich.verdict.util.VerdictLogger;
 
 public class DropSampleQuery extends Query {
@@ -37,11 +36,14 @@ public class DropSampleQuery extends Query {
         super(vc, q);
     }
 
+    public DropSampleQuery(VerdictContext vc, String q, VerdictSQLParser.Verdict_statementContext parsedStatement) {
+        super(vc, q, parsedStatement);
+    }
+
     @Override
     public void compute() throws VerdictException {
-        VerdictSQLParser p = StringManipulations.parserOf(queryString);
         DeleteSampleStatementVisitor visitor = new DeleteSampleStatementVisitor();
-        visitor.visit(p.delete_sample_statement());
+        visitor.visit(parsedStatement().delete_sample_statement());
 
         TableUniqueName tableName = visitor.getTableName();
         Double samplingRatio = visitor.getSamplingRatio();
@@ -0,0 +1,441 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.query;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.datatypes.VerdictResultSet;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.ApproxAggregatedRelation;
+import edu.umich.verdict.relation.ApproxAggregatedRelation.Combining;
+import edu.umich.verdict.relation.ApproxAggregatedRelation.PartitionedColumn;
+import edu.umich.verdict.relation.ApproxLimitedRelation;
+import edu.umich.verdict.relation.ApproxOrderedRelation;
+import edu.umich.verdict.relation.ExactRelation;
+import edu.umich.verdict.relation.Relation;
+import edu.umich.verdict.relation.expr.ColNameExpr;
+import edu.umich.verdict.relation.expr.ConstantExpr;
+import edu.umich.verdict.relation.expr.Expr;
+import edu.umich.verdict.relation.expr.OrderByExpr;
+
+/**
+ * Combines the per-partition aggregates of subsampling in the client instead of
+ * in an extra aggregation of the DBMS (see
+ * {@link ApproxAggregatedRelation#rewriteWithSubsampledErrorBounds()}). Only the
+ * aggregates of every (group, partition) are fetched; as they are read from the
+ * result set, the weighted averages and the standard deviations (by Welford's
+ * method) are accumulated in arrays indexed by group. An ORDER BY on the result
+ * columns and a LIMIT on top of the aggregation are applied here as well.
+ */
+public class PartitionCombiner {
+
+    private final ExactRelation partitioned;
+
+    private final List<PartitionedColumn> columns;
+
+    private final double errorMultiplier;
+
+    private final List<OrderByExpr> orderby;
+
+    // -1 if there is no limit
+    private final long limit;
+
+    private PartitionCombiner(ExactRelation partitioned, List<PartitionedColumn> columns, double errorMultiplier,
+            List<OrderByExpr> orderby, long limit) {
+        this.partitioned = partitioned;
+        this.columns = columns;
+        this.errorMultiplier = errorMultiplier;
+        this.orderby = orderby;
+        this.limit = limit;
+    }
+
+    /**
+     * @param r
+     *            the relation a select statement is rewritten into
+     * @return null if the partitions are combined by the DBMS, i.e., if
+     *         verdict.error_bound.subsampling.combine_in_client is false, or if the
+     *         relation is not an aggregation on a sample (optionally ordered by its
+     *         columns and limited).
+     */
+    public static PartitionCombiner of(VerdictContext vc, Relation r) {
+        if (!vc.getConf().subsamplingCombineInClient() || !vc.getConf().errorBoundMethod().equals("subsampling")) {
+            return null;
+        }
+
+        long limit = -1;
+        if (r instanceof ApproxLimitedRelation) {
+            limit = ((ApproxLimitedRelation) r).getLimit();
+            r = ((ApproxLimitedRelation) r).getSource();
+        }
+        List<OrderByExpr> orderby = Collections.<OrderByExpr>emptyList();
+        if (r instanceof ApproxOrderedRelation) {
+            orderby = ((ApproxOrderedRelation) r).getOrderby();
+            r = ((ApproxOrderedRelation) r).getSource();
+        }
+        for (OrderByExpr o : orderby) {
+            if (orderbyColumn(o) == null) {
+                return null;
+            }
+        }
+        if (!(r instanceof ApproxAggregatedRelation)) {
+            return null;
+        }
+
+        ApproxAggregatedRelation a = (ApproxAggregatedRelation) r;
+        ExactRelation partitioned = a.rewriteWithUncombinedPartitions();
+        if (partitioned == null) {
+            return null;
+        }
+        return new PartitionCombiner(partitioned, a.partitionedColumns(partitioned), a.errorBoundMultiplier(),
+                orderby, limit);
+    }
+
+    /**
+     * @return the roles of the columns of {@link #partitionSql()}, in order.
+     */
+    List<PartitionedColumn> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the statement computing the aggregates of every (group, partition).
+     */
+    public String partitionSql() {
+        return partitioned.toSql();
+    }
+
+    /**
+     * Combines the result of {@link #partitionSql()} into the estimates and their
+     * error bounds.
+     * 
+     * @param partitions
+     *            closed after read
+     * @return
+     * @throws VerdictException
+     *             if the result does not have the expected columns
+     */
+    public ResultSet combine(ResultSet partitions) throws VerdictException {
+        try {
+            SampleGroupJoin.Table t = accumulate(partitions);
+            sort(t);
+            if (limit >= 0 && t.rows.size() > limit) {
+                t.rows.subList((int) limit, t.rows.size()).clear();
+            }
+            return new VerdictResultSet(t.toResultSet(), null);
+        } catch (SQLException e) {
+            throw new VerdictException(e);
+        }
+    }
+
+    /**
+     * The statistics of the partitions of every group; the i-th entry of an array is
+     * for the i-th group, and an array per aggregate column is kept for the
+     * per-aggregate statistics.
+     */
+    static class Accumulators {
+
+        int groupCount = 0;
+
+        double[] partitionCount;
+
+        double[] partitionSizeSum;
+
+        // the sum (or the weighted sum, or the extreme) of the estimates
+        double[][] value;
+
+        // the number of non-null estimates
+        double[][] count;
+
+        // the running mean and the sum of squared deviations, by Welford's method
+        double[][] mean;
+
+        double[][] m2;
+
+        Accumulators(int aggregateCount) {
+            int capacity = 16;
+            partitionCount = new double[capacity];
+            partitionSizeSum = new double[capacity];
+            value = new double[aggregateCount][capacity];
+            count = new double[aggregateCount][capacity];
+            mean = new double[aggregateCount][capacity];
+            m2 = new double[aggregateCount][capacity];
+        }
+
+        /**
+         * @return the index of a new group.
+         */
+        int addGroup() {
+            if (groupCount == partitionCount.length) {
+                int capacity = groupCount * 2;
+                partitionCount = Arrays.copyOf(partitionCount, capacity);
+                partitionSizeSum = Arrays.copyOf(partitionSizeSum, capacity);
+                for (int a = 0; a < value.length; a++) {
+                    value[a] = Arrays.copyOf(value[a], capacity);
+                    count[a] = Arrays.copyOf(count[a], capacity);
+                    mean[a] = Arrays.copyOf(mean[a], capacity);
+                    m2[a] = Arrays.copyOf(m2[a], capacity);
+                }
+            }
+            return groupCount++;
+        }
+
+        void add(int a, int g, PartitionedColumn column, double estimate, double partitionSize) {
+            Combining combining = column.getCombining();
+            double x = estimate;
+            double n = count[a][g];
+            if (combining.equals(Combining.SUM)) {
+                value[a][g] += estimate;
+                x = estimate / partitionSize;
+            } else if (combining.equals(Combining.DISJOINT_SUM)) {
+                value[a][g] += estimate;
+                x = estimate * column.getPartitionCount();
+            } else if (combining.equals(Combining.WEIGHTED_AVERAGE)) {
+                value[a][g] += estimate * partitionSize;
+            } else if (combining.equals(Combining.MIN)) {
+                value[a][g] = (n == 0) ? estimate : Math.min(value[a][g], estimate);
+            } else if (combining.equals(Combining.MAX)) {
+                value[a][g] = (n == 0) ? estimate : Math.max(value[a][g], estimate);
+            } else {
+                value[a][g] += estimate;
+            }
+
+            count[a][g] = n + 1;
+            double delta = x - mean[a][g];
+            mean[a][g] += delta / (n + 1);
+            m2[a][g] += delta * (x - mean[a][g]);
+        }
+
+        /**
+         * @return null if no partition of the group has the estimate.
+         */
+        Double estimate(int a, int g, Combining combining) {
+            if (count[a][g] == 0) {
+                return null;
+            }
+            if (combining.equals(Combining.AVERAGE)) {
+                return value[a][g] / count[a][g];
+            } else if (combining.equals(Combining.WEIGHTED_AVERAGE)) {
+                return value[a][g] / partitionSizeSum[g];
+            } else {
+                return value[a][g];
+            }
+        }
+
+        /**
+         * @return null if fewer than two partitions of the group have the estimate.
+         */
+        Double error(int a, int g, Combining combining, double multiplier) {
+            if (count[a][g] < 2) {
+                return null;
+            }
+            double stddev = Math.sqrt(m2[a][g] / (count[a][g] - 1));
+            if (combining.equals(Combining.SUM)) {
+                stddev *= partitionSizeSum[g];
+            }
+            double avgPartitionSize = partitionSizeSum[g] / partitionCount[g];
+            return stddev * Math.sqrt(avgPartitionSize) / Math.sqrt(partitionSizeSum[g]) * multiplier;
+        }
+    }
+
+    private SampleGroupJoin.Table accumulate(ResultSet rs) throws SQLException, VerdictException {
+        ResultSetMetaData meta = rs.getMetaData();
+        if (meta.getColumnCount() != columns.size()) {
+            throw new VerdictException(String.format("Expected %d columns of per-partition aggregates, but got %d.",
+                    columns.size(), meta.getColumnCount()));
+        }
+
+        // column indexes (starting from 1) by their roles
+        List<Integer> groupColumns = new ArrayList<Integer>();
+        List<Integer> aggColumns = new ArrayList<Integer>();
+        int partitionSizeColumn = -1;
+        for (int i = 0; i < columns.size(); i++) {
+            PartitionedColumn c = columns.get(i);
+            if (c.isGroup()) {
+                groupColumns.add(i + 1);
+            } else if (c.isAggregate()) {
+                aggColumns.add(i + 1);
+            } else if (c.getCombining().equals(Combining.PARTITION_SIZE)) {
+                partitionSizeColumn = i + 1;
+            }
+        }
+        if (partitionSizeColumn < 0) {
+            throw new VerdictException("The per-partition aggregates do not include the partition sizes.");
+        }
+
+        Accumulators acc = new Accumulators(aggColumns.size());
+        Map<List<Object>, Integer> groupIndexes = new HashMap<List<Object>, Integer>();
+        List<List<Object>> groupValues = new ArrayList<List<Object>>();
+        while (rs.next()) {
+            List<Object> key = new ArrayList<Object>(groupColumns.size());
+            for (int i : groupColumns) {
+                key.add(rs.getObject(i));
+            }
+            Integer g = groupIndexes.get(key);
+            if (g == null) {
+                g = acc.addGroup();
+                groupIndexes.put(key, g);
+                groupValues.add(key);
+            }
+
+            double partitionSize = rs.getDouble(partitionSizeColumn);
+            acc.partitionCount[g] += 1;
+            acc.partitionSizeSum[g] += partitionSize;
+            for (int a = 0; a < aggColumns.size(); a++) {
+                int i = aggColumns.get(a);
+                double estimate = rs.getDouble(i);
+                if (rs.wasNull()) {
+                    continue;
+                }
+                acc.add(a, g, columns.get(i - 1), estimate, partitionSize);
+            }
+        }
+        rs.close();
+
+        // the combined result: the group-by columns in the select list and the
+        // aggregates, each followed by its error bound.
+        SampleGroupJoin.Table t = new SampleGroupJoin.Table();
+        for (int i = 1; i <= columns.size(); i++) {
+            PartitionedColumn c = columns.get(i - 1);
+            if (c.getCombining().equals(Combining.GROUP)) {
+                t.labels.add(meta.getColumnLabel(i));
+                t.types.add(meta.getColumnType(i));
+                t.typeNames.add(meta.getColumnTypeName(i));
+            } else if (c.isAggregate()) {
+                t.labels.add(c.getAlias());
+                t.types.add(c.isRounded() ? Types.BIGINT : Types.DOUBLE);
+                t.typeNames.add(c.isRounded() ? "BIGINT" : "DOUBLE");
+                if (c.hasErrorBound()) {
+                    t.labels.add(Relation.errorBoundColumn(c.getAlias()));
+                    t.types.add(Types.DOUBLE);
+                    t.typeNames.add("DOUBLE");
+                }
+            }
+        }
+
+        for (int g = 0; g < acc.groupCount; g++) {
+            Object[] row = new Object[t.labels.size()];
+            int j = 0;
+            int k = 0;      // the position in the group key
+            int a = 0;      // the aggregate index
+            for (int i = 1; i <= columns.size(); i++) {
+                PartitionedColumn c = columns.get(i - 1);
+                if (c.isGroup()) {
+                    if (c.getCombining().equals(Combining.GROUP)) {
+                        row[j++] = groupValues.get(g).get(k);
+                    }
+                    k++;
+                } else if (c.isAggregate()) {
+                    Double estimate = acc.estimate(a, g, c.getCombining());
+                    if (estimate != null && c.isRounded()) {
+                        row[j++] = Math.round(estimate);
+                    } else {
+                        row[j++] = estimate;
+                    }
+                    if (c.hasErrorBound()) {
+                        row[j++] = acc.error(a, g, c.getCombining(), errorMultiplier);
+                    }
+                    a++;
+                }
+            }
+            t.rows.add(row);
+        }
+        return t;
+    }
+
+    /**
+     * Sorts the rows by the ORDER BY columns. As in most DBMSs, nulls come last in
+     * ascending order and first in descending order.
+     */
+    private void sort(SampleGroupJoin.Table t) throws VerdictException {
+        if (orderby.isEmpty()) {
+            return;
+        }
+
+        final int[] indexes = new int[orderby.size()];
+        final boolean[] descending = new boolean[orderby.size()];
+        for (int i = 0; i < orderby.size(); i++) {
+            String col = orderbyColumn(orderby.get(i));
+            indexes[i] = -1;
+            for (int j = 0; j < t.labels.size(); j++) {
+                if (t.labels.get(j).equalsIgnoreCase(col)) {
+                    indexes[i] = j;
+                    break;
+                }
+            }
+            if (indexes[i] < 0) {
+                throw new VerdictException(
+                        String.format("The order-by column %s is not found in the columns %s.", col, t.labels));
+            }
+            descending[i] = orderby.get(i).getDirection().isPresent()
+                    && orderby.get(i).getDirection().get().equalsIgnoreCase("desc");
+        }
+
+        Collections.sort(t.rows, new Comparator<Object[]>() {
+            @Override
+            public int compare(Object[] r1, Object[] r2) {
+                for (int i = 0; i < indexes.length; i++) {
+                    int c = compareValues(r1[indexes[i]], r2[indexes[i]]);
+                    if (c != 0) {
+                        return descending[i] ? -c : c;
+                    }
+                }
+                return 0;
+            }
+        });
+    }
+
+    /**
+     * @return the name of the result column by which rows are ordered; null if
+     *         they are ordered by an expression. An expression in the select list
+     *         is replaced by its alias (as a constant) when a query is parsed.
+     */
+    private static String orderbyColumn(OrderByExpr o) {
+        Expr e = o.getExpression();
+        if (e instanceof ColNameExpr) {
+            return ((ColNameExpr) e).getCol();
+        } else if (e instanceof ConstantExpr && ((ConstantExpr) e).getValue() instanceof String) {
+            return (String) ((ConstantExpr) e).getValue();
+        }
+        return null;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static int compareValues(Object v1, Object v2) {
+        if (v1 == null || v2 == null) {
+            return (v1 == null) ? ((v2 == null) ? 0 : 1) : -1;
+        }
+        if (v1 instanceof Number && v2 instanceof Number) {
+            return Double.compare(((Number) v1).doubleValue(), ((Number) v2).doubleValue());
+        }
+        if (v1 instanceof Comparable && v1.getClass().equals(v2.getClass())) {
+            return ((Comparable) v1).compareTo(v2);
+        }
+        return v1.toString().compareTo(v2.toString());
+    }
+
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.query;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.relation.Relation;
+
+/**
+ * A bounded LRU cache from a normalized select statement to the SQL statement
+ * Verdict rewrote it into. A cached entry is valid only for the sample catalog
+ * version (see {@link edu.umich.verdict.VerdictMeta#getSampleVersion()}) under
+ * which it was rewritten; the cache is also cleared whenever the catalog
+ * changes.
+ */
+public class PlanCache {
+
+    public static class Entry {
+
+        private final String sql;
+
+        private final long sampleVersion;
+
+        private final String plannedSampleType;
+
+        private final double plannedBytes;
+
+        private final int plannedScans;
+
+        public Entry(String sql, long sampleVersion) {
+            this(sql, sampleVersion, null, 0, 0);
+        }
+
+        public Entry(String sql, long sampleVersion, String plannedSampleType, double plannedBytes,
+                int plannedScans) {
+            this.sql = sql;
+            this.sampleVersion = sampleVersion;
+            this.plannedSampleType = plannedSampleType;
+            this.plannedBytes = plannedBytes;
+            this.plannedScans = plannedScans;
+        }
+
+        /**
+         * @return the rewritten sql statement sent to the DBMS.
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        public long getSampleVersion() {
+            return sampleVersion;
+        }
+
+        /**
+         * @return the sample type scanning the most bytes in the sql statement, or
+         *         null if unknown.
+         */
+        public String getPlannedSampleType() {
+            return plannedSampleType;
+        }
+
+        /**
+         * @return the bytes scanned by the sql statement (see
+         *         {@link edu.umich.verdict.relation.PlanTarget#getPlannedBytes()}).
+         */
+        public double getPlannedBytes() {
+            return plannedBytes;
+        }
+
+        /**
+         * @return the number of sample groups in the sql statement, or 0 if unknown.
+         */
+        public int getPlannedScans() {
+            return plannedScans;
+        }
+    }
+
+    private final int capacity;
+
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    public PlanCache(final int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    /**
+     * Returns the cached entry for the key if the entry was created under the given
+     * sample catalog version; returns null otherwise.
+     */
+    public synchronized Entry get(String key, long sampleVersion) {
+        Entry e = entries.get(key);
+        if (e != null && e.getSampleVersion() != sampleVersion) {
+            entries.remove(key);
+            e = null;
+        }
+
+        if (e == null) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return e;
+    }
+
+    public synchronized void put(String key, Entry e) {
+        if (isEnabled()) {
+            entries.put(key, e);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * A cache key consists of the current schema (which unqualified table names are
+     * resolved against), the configuration version, and the normalized query.
+     */
+    public static String keyOf(VerdictContext vc, String query) {
+        String schema = (vc.getCurrentSchema().isPresent()) ? vc.getCurrentSchema().get() : "";
+        return schema + "\n" + vc.getConf().getVersion() + "\n" + normalize(query);
+    }
+
+    /**
+     * The words that are case-insensitive in the queries, and thus lower-cased when
+     * normalized. Identifiers and aliases keep their case, since the column labels
+     * of a result follow them.
+     */
+    private static final Set<String> KEYWORDS = new HashSet<String>(Arrays.asList("select", "from", "where",
+            "group", "by", "having", "order", "limit", "as", "and", "or", "not", "in", "is", "null", "like",
+            "between", "exists", "join", "inner", "left", "right", "outer", "full", "cross", "on", "union", "all",
+            "distinct", "asc", "desc", "case", "when", "then", "else", "end", "cast", "with", "true", "false",
+            "count", "sum", "avg", "min", "max", "within", "seconds", "confidence", "trials", "bypass"));
+
+    /**
+     * Collapses whitespace and lower-cases the keywords that are not enclosed in
+     * quotes. Trailing semicolons are removed.
+     *
+     * @param query
+     * @return the query in the form used in the cache keys.
+     */
+    public static String normalize(String query) {
+        StringBuilder b = new StringBuilder(query.length());
+        char quote = 0;
+        boolean pendingSpace = false;
+        int wordStart = -1;
+        boolean qualified = false;
+
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            boolean inWord = quote == 0 && (Character.isLetterOrDigit(c) || c == '_');
+            if (!inWord && wordStart >= 0) {
+                if (!qualified) {
+                    lowerCaseKeyword(b, wordStart);
+                }
+                wordStart = -1;
+            }
+
+            if (quote != 0) {
+                b.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+            } else {
+                if (pendingSpace && b.length() > 0) {
+                    b.append(' ');
+                }
+                pendingSpace = false;
+                if (c == '\'' || c == '"' || c == '`') {
+                    quote = c;
+                }
+                if (inWord && wordStart < 0) {
+                    // the column names after a table name are not keywords.
+                    qualified = b.length() > 0 && b.charAt(b.length() - 1) == '.';
+                    wordStart = b.length();
+                }
+                b.append(c);
+            }
+        }
+        if (wordStart >= 0 && !qualified) {
+            lowerCaseKeyword(b, wordStart);
+        }
+
+        while (b.length() > 0 && b.charAt(b.length() - 1) == ';') {
+            b.setLength(b.length() - 1);
+        }
+        return b.toString().trim();
+    }
+
+    private static void lowerCaseKeyword(StringBuilder b, int wordStart) {
+        String word = b.substring(wordStart).toLowerCase();
+        if (KEYWORDS.contains(word)) {
+            b.replace(wordStart, b.length(), word);
+        }
+    }
+
+    /**
+     * Finds the error bound column of every aggregate column in the output of a
+     * rewritten query.
+     *
+     * @param columnLabels
+     *            the column labels of a result set in order.
+     * @return a map from the (1-based) index of an aggregate column to the index of
+     *         its error bound column.
+     */
+    public static Map<Integer, Integer> aggColumn2ErrorColumn(List<String> columnLabels) {
+        Map<String, Integer> label2index = new HashMap<String, Integer>();
+        for (int i = 0; i < columnLabels.size(); i++) {
+            label2index.put(columnLabels.get(i), i + 1);
+        }
+
+        Map<Integer, Integer> agg2error = new HashMap<Integer, Integer>();
+        for (int i = 0; i < columnLabels.size(); i++) {
+            String errorLabel = Relation.errorBoundColumn(columnLabels.get(i));
+            if (label2index.containsKey(errorLabel)) {
+                agg2error.put(i + 1, label2index.get(errorLabel));
+            }
+        }
+        return Collections.unmodifiableMap(agg2error);
+    }
+
+}
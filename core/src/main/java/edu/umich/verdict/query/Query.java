@@ -17,21 +17,22 @@
 package edu.umich.verdict.query;
 
 import java.sql.ResultSet;
+import java.util.List;
 
 //import org.apache.spark.sql.DataFrame;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
 
 import edu.umich.verdict.VerdictContext;
-import edu.umich.verdict.datatypes.Alias;
 //import edu.umich.verdict.dbms.DbmsSpark;
 import edu.umich.verdict.dbms.DbmsSpark2;
 import edu.umich.verdict.exceptions.VerdictException;
 import edu.umich.verdict.parser.VerdictSQLBaseVisitor;
 import edu.umich.verdict.parser.VerdictSQLParser;
+import edu.umich.verdict.relation.NamingContext;
 import edu.umich.verdict.relation.Relation;
-import edu.umich.verdict.util.StringManipulations;
 import edu.umich.verdict.util.VerdictLogger;
+import edu.umich.verdict.util.VerdictSQLParserFactory;
 
 /**
  * This class is responsible for instantiating the subclass that best suits to
@@ -46,6 +47,24 @@ public abstract class Query {
 
     protected final VerdictContext vc;
 
+    /**
+     * The parse tree of {@link #queryString}. {@link #getInstance(VerdictContext, String)} parses
+     * a query only once and hands the resulting tree to the subclass so that it is not parsed again.
+     */
+    private VerdictSQLParser.Verdict_statementContext parsedStatement;
+
+    /**
+     * The aliases in the SQL generated for this query are drawn from this naming
+     * context. It is bound to the thread that constructs or computes this query.
+     */
+    protected final NamingContext naming;
+
+    /**
+     * The fingerprint of {@link #queryString}; set by
+     * {@link #getInstance(VerdictContext, String)} or computed when first needed.
+     */
+    private QueryFingerprint fingerprint;
+
     protected ResultSet rs;
 
 //    protected DataFrame df;
@@ -67,11 +86,26 @@ public abstract class Query {
      * @param vc
      */
     public Query(VerdictContext vc, String q) {
+        this(vc, q, null);
+    }
+
+    /**
+     * This class should be instantiated by Query.
+     * 
+     * @param q
+     *            query string
+     * @param vc
+     * @param parsedStatement
+     *            the parse tree of the query string; if null, the query string is
+     *            parsed lazily when the tree is first needed.
+     */
+    public Query(VerdictContext vc, String q, VerdictSQLParser.Verdict_statementContext parsedStatement) {
         queryString = q;
         this.vc = vc;
+        this.parsedStatement = parsedStatement;
         vc.incrementQid();
         // vc.getMeta().clearSampleInfo();
-        Alias.resetAliasIndex();
+        naming = NamingContext.begin();
     }
     
     protected void setResultsFromRelation(Relation r) throws VerdictException {
@@ -84,10 +118,55 @@ public abstract class Query {
         }
     }
 
+    protected void setResultsFromSql(String sql) throws VerdictException {
+        VerdictLogger.debug(this, "A query to db: " + sql);
+        if (vc.getDbms().isJDBC()) {
+            rs = vc.getDbms().executeJdbcQuery(sql);
+        } else if (vc.getDbms().isSpark2()) {
+            ds = vc.getDbms().executeSpark2Query(sql);
+        }
+    }
+
     public String getQueryString() {
         return queryString;
     }
 
+    /**
+     * Returns the parse tree of this query. The query string is parsed at most once.
+     * 
+     * @return the parse tree of the query string
+     */
+    protected VerdictSQLParser.Verdict_statementContext parsedStatement() {
+        if (parsedStatement == null) {
+            parsedStatement = parse(queryString);
+        }
+        return parsedStatement;
+    }
+
+    /**
+     * Returns the fingerprint of this query, by which queries that differ only in
+     * their constants can be grouped together.
+     * 
+     * @return the fingerprint of the query string
+     */
+    public QueryFingerprint getFingerprint() {
+        if (fingerprint == null) {
+            fingerprint = QueryFingerprint.of(parsedStatement());
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @return the constants in the query string, in the order they appear.
+     */
+    public List<String> getLiterals() {
+        return getFingerprint().getLiterals();
+    }
+
+    protected static VerdictSQLParser.Verdict_statementContext parse(String queryString) {
+        return VerdictSQLParserFactory.parse(queryString, VerdictSQLParserFactory.VERDICT_STATEMENT);
+    }
+
     /**
      * This is the main entry point for all Verdict queries. Whether a given query
      * expects a result set to be returned will be determined by analyzing the query
@@ -131,6 +210,7 @@ public abstract class Query {
     }
 
     public ResultSet computeResultSet() throws VerdictException {
+        NamingContext.bind(naming);
         compute();
         ResultSet rs = getResultSet();
         return rs;
@@ -143,6 +223,7 @@ public abstract class Query {
 //    }
 
     public Dataset<Row> computeDataset() throws VerdictException {
+        NamingContext.bind(naming);
         compute();
         Dataset<Row> ds = getDataset();
         return ds;
@@ -150,11 +231,18 @@ public abstract class Query {
 
     public static Query getInstance(VerdictContext vc, String queryString) throws VerdictException {
         Query query = null;
-        Type queryType = getStatementType(queryString);
+        VerdictSQLParser.Verdict_statementContext ctx = parse(queryString);
+        Type queryType = getStatementType(ctx);
+        QueryFingerprint fingerprint = QueryFingerprint.of(ctx);
         VerdictLogger.debug(Query.class, String.format("[%d] A query type: %s", vc.getQid(), queryType.toString()));
+        if (VerdictLogger.isDebugEnabled()) {
+            VerdictLogger.debug(Query.class, String.format("[%d] A query fingerprint: %s (%s)", vc.getQid(),
+                    fingerprint.digest(), fingerprint.getFingerprint()));
+        }
 
         if (queryType.equals(Type.CONFIG)) {
-            query = new ConfigQuery(vc, queryString);
+            query = new ConfigQuery(vc, queryString, ctx);
+            query.fingerprint = fingerprint;
             if (((ConfigQuery) query).getKey().equals("bypass") || !vc.getConf().bypass()) {
                 return query;
             }
@@ -164,30 +252,30 @@ public abstract class Query {
             VerdictLogger.info("Verdict bypasses this query. Run \"set bypass=\'false\'\""
                     + " to enable Verdict's approximate query processing.");
             if (isUpdateType(queryType)) {
-                query = new ByPassVerdictUpdateQuery(vc, queryString);
+                query = new ByPassVerdictUpdateQuery(vc, queryString, ctx);
             } else {
-                query = new ByPassSelectQuery(vc, queryString);
+                query = new ByPassSelectQuery(vc, queryString, ctx);
             }
         } else {
             if (queryType.equals(Type.SELECT)) {
                 // query = SelectQuery.getInstance(vc, queryString);
-                query = new SelectQuery(vc, queryString);
+                query = new SelectQuery(vc, queryString, ctx);
             } else if (queryType.equals(Type.CREATE_SAMPLE)) {
-                query = new CreateSampleQuery(vc, queryString);
+                query = new CreateSampleQuery(vc, queryString, ctx);
             } else if (queryType.equals(Type.DROP_SAMPLE)) {
-                query = new DropSampleQuery(vc, queryString);
+                query = new DropSampleQuery(vc, queryString, ctx);
             } else if (queryType.equals(Type.SHOW_SAMPLE)) {
-                query = new ShowSamplesQuery(vc, queryString);
+                query = new ShowSamplesQuery(vc, queryString, ctx);
             } else if (queryType.equals(Type.DESCRIBE_TABLE)) {
-                query = new DescribeTableQuery(vc, queryString);
+                query = new DescribeTableQuery(vc, queryString, ctx);
             } else if (queryType.equals(Type.OTHER_USE)) {
-                query = new UseDatabaseQuery(vc, queryString);
+                query = new UseDatabaseQuery(vc, queryString, ctx);
             } else if (queryType.equals(Type.OTHER_SHOW_TABLES)) {
-                query = new ShowTablesQuery(vc, queryString);
+                query = new ShowTablesQuery(vc, queryString, ctx);
             } else if (queryType.equals(Type.OTHER_SHOW_DATABASES)) {
-                query = new ShowDatabasesQuery(vc, queryString);
+                query = new ShowDatabasesQuery(vc, queryString, ctx);
             } else if (queryType.equals(Type.OTHER_REFRESH)) {
-                query = new RefreshQuery(vc, queryString);
+                query = new RefreshQuery(vc, queryString, ctx);
                 //				} else if (queryType.equals(Type.CREATE_TABLE)) {
                 //					query = new CreateTableQuery(vc, queryString);
             } else if (queryType.equals(Type.CREATE_TABLE) ||
@@ -195,19 +283,20 @@ public abstract class Query {
                        queryType.equals(Type.DROP_VIEW) ||
                        queryType.equals(Type.CREATE_DATABASE) ||
                        queryType.equals(Type.DROP_DATABASE)) {
-                query = new ByPassVerdictUpdateQuery(vc, queryString);
+                query = new ByPassVerdictUpdateQuery(vc, queryString, ctx);
             } else if (queryType.equals(Type.OTHER_SHOW_CONFIG)) {
-                query = new ShowConfigQuery(vc, queryString);
+                query = new ShowConfigQuery(vc, queryString, ctx);
             } else if (queryType.equals(Type.CREATE_TABLE_AS_SELECT)) {
-                query = new CreateTableAsSelectQuery(vc, queryString);
+                query = new CreateTableAsSelectQuery(vc, queryString, ctx);
             } else if (queryType.equals(Type.CREATE_VIEW)) {
-                query = new CreateViewAsSelectQuery(vc, queryString);
+                query = new CreateViewAsSelectQuery(vc, queryString, ctx);
             } else {
                 VerdictLogger.error("Unsupported query: " + queryString);
                 throw new VerdictException("Unsupported query.");
             }
         }
 
+        query.fingerprint = fingerprint;
         return query;
     }
 
@@ -228,8 +317,10 @@ public abstract class Query {
     }
 
     protected static Type getStatementType(String queryString) {
-        VerdictSQLParser p = StringManipulations.parserOf(queryString);
+        return getStatementType(parse(queryString));
+    }
 
+    protected static Type getStatementType(VerdictSQLParser.Verdict_statementContext ctx) {
         VerdictSQLBaseVisitor<Type> visitor = new VerdictSQLBaseVisitor<Type>() {
             private Type type = Type.NOSUPPORT;
 
@@ -346,7 +437,7 @@ public abstract class Query {
             }
         };
 
-        return visitor.visit(p.verdict_statement());
+        return visitor.visit(ctx);
     }
 
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+import edu.umich.verdict.parser.VerdictSQLParser;
+
+/**
+ * The shape of a query, independent of the constants in it. Two queries that
+ * differ only in their constants, in the number of constants in an IN-list, in
+ * the case of keywords and identifiers, in how identifiers are quoted, or in
+ * whitespace have the same fingerprint.
+ * 
+ * A fingerprint is computed from the parse tree: every constant is replaced by
+ * '?', an IN-list consisting only of constants is replaced by a single '?', and
+ * identifiers are unquoted and lower-cased. The constants are collected, in the
+ * order they appear in the query, as its literals.
+ */
+public class QueryFingerprint {
+
+    public static final String PLACEHOLDER = "?";
+
+    private final String fingerprint;
+
+    private final List<String> literals;
+
+    private QueryFingerprint(String fingerprint, List<String> literals) {
+        this.fingerprint = fingerprint;
+        this.literals = Collections.unmodifiableList(literals);
+    }
+
+    public static QueryFingerprint of(ParserRuleContext tree) {
+        Builder b = new Builder();
+        b.visit(tree);
+        return new QueryFingerprint(b.fingerprint.toString(), b.literals);
+    }
+
+    public static QueryFingerprint of(String query) {
+        return of(Query.parse(query));
+    }
+
+    /**
+     * @return the normalized query text in which the constants are replaced by
+     *         {@link #PLACEHOLDER}.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the constants of the query as they appear in the query text (e.g.,
+     *         string constants keep their quotes).
+     */
+    public List<String> getLiterals() {
+        return literals;
+    }
+
+    /**
+     * @return a short hexadecimal digest of the fingerprint, suitable for logs.
+     */
+    public String digest() {
+        return Hashing.murmur3_128().hashString(fingerprint, Charsets.UTF_8).toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof QueryFingerprint) {
+            return fingerprint.equals(((QueryFingerprint) o).fingerprint);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return fingerprint.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return fingerprint;
+    }
+
+    private static class Builder {
+
+        private final StringBuilder fingerprint = new StringBuilder();
+
+        private final List<String> literals = new ArrayList<String>();
+
+        void visit(ParseTree t) {
+            if (t instanceof TerminalNode) {
+                Token token = ((TerminalNode) t).getSymbol();
+                if (token.getType() != Token.EOF && !token.getText().equals(";")) {
+                    append(token.getText().toLowerCase());
+                }
+            } else if (t instanceof VerdictSQLParser.ConstantContext) {
+                literals.add(t.getText());
+                append(PLACEHOLDER);
+            } else if (t instanceof VerdictSQLParser.IdContext) {
+                append(unquote(t.getText()).toLowerCase());
+            } else if (t instanceof VerdictSQLParser.Expression_listContext
+                    && t.getParent() instanceof VerdictSQLParser.In_predicateContext
+                    && isConstantList((VerdictSQLParser.Expression_listContext) t)) {
+                for (VerdictSQLParser.ExpressionContext e : ((VerdictSQLParser.Expression_listContext) t)
+                        .expression()) {
+                    literals.add(e.getText());
+                }
+                append(PLACEHOLDER);
+            } else {
+                for (int i = 0; i < t.getChildCount(); i++) {
+                    visit(t.getChild(i));
+                }
+            }
+        }
+
+        private void append(String token) {
+            if (fingerprint.length() > 0) {
+                fingerprint.append(' ');
+            }
+            fingerprint.append(token);
+        }
+
+        private static boolean isConstantList(VerdictSQLParser.Expression_listContext ctx) {
+            for (VerdictSQLParser.ExpressionContext e : ctx.expression()) {
+                if (!(e instanceof VerdictSQLParser.Primitive_expressionContext)
+                        || ((VerdictSQLParser.Primitive_expressionContext) e).constant() == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static String unquote(String id) {
+            if (id.length() >= 2 && (id.startsWith("\"") || id.startsWith("`") || id.startsWith("["))) {
+                return id.substring(1, id.length() - 1);
+            }
+            return id;
+        }
+    }
+
+}
@@ -20,7 +20,6 @@ import edu.umich.verdict.VerdictContext;
 import edu.umich.verdict.exceptions.VerdictException;
 import edu.umich.verdict.parser.VerdictSQLBaseVisitor;
 import edu.umich.verdict.parser.VerdictSQLParser;
-import edu.umich.verdict.util.StringManipulations;
 import edu.umich.verdict.util.VerdictLogger;
 
 public class RefreshQuery extends Query {
@@ -29,9 +28,12 @@ public class RefreshQuery extends Query {
         super(vc, q);
     }
 
+    public RefreshQuery(VerdictContext vc, String q, VerdictSQLParser.Verdict_statementContext parsedStatement) {
+        super(vc, q, parsedStatement);
+    }
+
     @Override
     public void compute() throws VerdictException {
-        VerdictSQLParser p = StringManipulations.parserOf(queryString);
         VerdictSQLBaseVisitor<String> visitor = new VerdictSQLBaseVisitor<String>() {
             @Override
             public String visitRefresh_statement(VerdictSQLParser.Refresh_statementContext ctx) {
@@ -42,7 +44,7 @@ public class RefreshQuery extends Query {
                 return schema;
             }
         };
-        String schema = visitor.visit(p.refresh_statement());
+        String schema = visitor.visit(parsedStatement().other_statement().refresh_statement());
         schema = (schema != null)? schema : ( (vc.getCurrentSchema().isPresent())? vc.getCurrentSchema().get() : null );
 
         vc.getMeta().clearSampleInfo();
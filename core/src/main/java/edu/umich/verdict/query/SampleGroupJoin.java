@@ -0,0 +1,326 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.query;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.ApproxAggregatedRelation;
+import edu.umich.verdict.relation.ApproxJoinedRelation;
+import edu.umich.verdict.relation.ApproxRelation;
+import edu.umich.verdict.relation.JoinedRelation.JoinType;
+import edu.umich.verdict.relation.Relation;
+import edu.umich.verdict.relation.expr.ColNameExpr;
+import edu.umich.verdict.relation.expr.Expr;
+
+/**
+ * A sample plan with several sample groups (e.g., a universe sample for a
+ * count-distinct and a uniform sample for sums) becomes a join of aggregations,
+ * one per sample group, on their group-by keys (see
+ * {@link edu.umich.verdict.relation.SamplePlan#toRelation(edu.umich.verdict.VerdictContext, String)}).
+ * Instead of sending the whole join to the DBMS as a single statement, the
+ * aggregations can run as separate statements at the same time, and their
+ * results be joined here; the result is the same as that of the single
+ * statement, i.e., the columns of every aggregation in order, for every
+ * combination of their rows agreeing on the join keys.
+ */
+public class SampleGroupJoin {
+
+    // either an aggregation (a leaf) or a join of two nodes
+    private final ApproxRelation aggregation;
+
+    private final SampleGroupJoin left;
+
+    private final SampleGroupJoin right;
+
+    private final List<String> leftKeys;
+
+    private final List<String> rightKeys;
+
+    private SampleGroupJoin(ApproxRelation aggregation) {
+        this.aggregation = aggregation;
+        this.left = null;
+        this.right = null;
+        this.leftKeys = null;
+        this.rightKeys = null;
+    }
+
+    private SampleGroupJoin(SampleGroupJoin left, SampleGroupJoin right, List<String> leftKeys,
+            List<String> rightKeys) {
+        this.aggregation = null;
+        this.left = left;
+        this.right = right;
+        this.leftKeys = leftKeys;
+        this.rightKeys = rightKeys;
+    }
+
+    /**
+     * @param r
+     *            the relation a select statement is rewritten into
+     * @return null if the relation is not a join of aggregations on the columns
+     *         of their results.
+     */
+    public static SampleGroupJoin of(Relation r) {
+        if (!(r instanceof ApproxJoinedRelation)) {
+            return null;
+        }
+        return nodeOf((ApproxRelation) r);
+    }
+
+    private static SampleGroupJoin nodeOf(ApproxRelation r) {
+        if (r instanceof ApproxAggregatedRelation) {
+            return new SampleGroupJoin(r);
+        }
+        if (!(r instanceof ApproxJoinedRelation)) {
+            return null;
+        }
+
+        ApproxJoinedRelation j = (ApproxJoinedRelation) r;
+        if (!j.getJoinType().equals(JoinType.INNER) && !j.getJoinType().equals(JoinType.CROSS)) {
+            return null;
+        }
+        List<String> leftKeys = new ArrayList<String>();
+        List<String> rightKeys = new ArrayList<String>();
+        if (j.getJoinType().equals(JoinType.INNER)) {
+            for (Pair<Expr, Expr> p : j.getJoinCols()) {
+                if (!(p.getLeft() instanceof ColNameExpr) || !(p.getRight() instanceof ColNameExpr)) {
+                    return null;
+                }
+                leftKeys.add(((ColNameExpr) p.getLeft()).getCol());
+                rightKeys.add(((ColNameExpr) p.getRight()).getCol());
+            }
+        }
+
+        SampleGroupJoin left = nodeOf(j.getSource1());
+        SampleGroupJoin right = nodeOf(j.getSource2());
+        if (left == null || right == null) {
+            return null;
+        }
+        return new SampleGroupJoin(left, right, leftKeys, rightKeys);
+    }
+
+    /**
+     * @return the statements computing the aggregations, in the order their
+     *         results are expected by {@link #combine(List)}.
+     */
+    public List<String> groupSqls() {
+        List<String> sqls = new ArrayList<String>();
+        collectSqls(sqls);
+        return sqls;
+    }
+
+    private void collectSqls(List<String> sqls) {
+        if (aggregation != null) {
+            sqls.add(aggregation.toSql());
+        } else {
+            left.collectSqls(sqls);
+            right.collectSqls(sqls);
+        }
+    }
+
+    /**
+     * Joins the results of the statements returned by {@link #groupSqls()}.
+     * 
+     * @param results
+     * @return
+     * @throws VerdictException
+     *             if a join key is not a column of the results it joins
+     */
+    public ResultSet combine(List<ResultSet> results) throws VerdictException {
+        try {
+            return evaluate(results.iterator()).toResultSet();
+        } catch (SQLException e) {
+            throw new VerdictException(e);
+        }
+    }
+
+    private Table evaluate(Iterator<ResultSet> results) throws SQLException, VerdictException {
+        if (aggregation != null) {
+            return Table.from(results.next());
+        }
+        Table l = left.evaluate(results);
+        Table r = right.evaluate(results);
+        return l.join(r, leftKeys, rightKeys);
+    }
+
+    /**
+     * The rows of a result set, held in memory.
+     */
+    static class Table {
+
+        final List<String> labels = new ArrayList<String>();
+
+        final List<Integer> types = new ArrayList<Integer>();
+
+        final List<String> typeNames = new ArrayList<String>();
+
+        final List<Object[]> rows = new ArrayList<Object[]>();
+
+        static Table from(ResultSet rs) throws SQLException {
+            Table t = new Table();
+            ResultSetMetaData meta = rs.getMetaData();
+            int columnCount = meta.getColumnCount();
+            for (int i = 1; i <= columnCount; i++) {
+                t.labels.add(meta.getColumnLabel(i));
+                t.types.add(meta.getColumnType(i));
+                t.typeNames.add(meta.getColumnTypeName(i));
+            }
+            while (rs.next()) {
+                Object[] row = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    row[i] = rs.getObject(i + 1);
+                }
+                t.rows.add(row);
+            }
+            rs.close();
+            return t;
+        }
+
+        /**
+         * A hash join on the given columns; null keys match nothing, and no keys
+         * make it a cross join.
+         */
+        Table join(Table other, List<String> keys, List<String> otherKeys) throws VerdictException {
+            int[] keyIndexes = indexesOf(keys);
+            int[] otherKeyIndexes = other.indexesOf(otherKeys);
+
+            Map<List<Object>, List<Object[]>> otherRowsByKey = new HashMap<List<Object>, List<Object[]>>();
+            for (Object[] row : other.rows) {
+                List<Object> key = keyOf(row, otherKeyIndexes);
+                if (key == null) {
+                    continue;
+                }
+                if (!otherRowsByKey.containsKey(key)) {
+                    otherRowsByKey.put(key, new ArrayList<Object[]>());
+                }
+                otherRowsByKey.get(key).add(row);
+            }
+
+            Table joined = new Table();
+            joined.labels.addAll(labels);
+            joined.labels.addAll(other.labels);
+            joined.types.addAll(types);
+            joined.types.addAll(other.types);
+            joined.typeNames.addAll(typeNames);
+            joined.typeNames.addAll(other.typeNames);
+            for (Object[] row : rows) {
+                List<Object> key = keyOf(row, keyIndexes);
+                if (key == null || !otherRowsByKey.containsKey(key)) {
+                    continue;
+                }
+                for (Object[] otherRow : otherRowsByKey.get(key)) {
+                    Object[] joinedRow = Arrays.copyOf(row, row.length + otherRow.length);
+                    System.arraycopy(otherRow, 0, joinedRow, row.length, otherRow.length);
+                    joined.rows.add(joinedRow);
+                }
+            }
+            return joined;
+        }
+
+        private int[] indexesOf(List<String> columns) throws VerdictException {
+            int[] indexes = new int[columns.size()];
+            for (int i = 0; i < columns.size(); i++) {
+                indexes[i] = -1;
+                for (int j = 0; j < labels.size(); j++) {
+                    if (labels.get(j).equalsIgnoreCase(columns.get(i))) {
+                        indexes[i] = j;
+                        break;
+                    }
+                }
+                if (indexes[i] < 0) {
+                    throw new VerdictException(
+                            String.format("The join key %s is not found in the columns %s.", columns.get(i), labels));
+                }
+            }
+            return indexes;
+        }
+
+        /**
+         * @return the values of the columns, numbers compared by their values
+         *         regardless of their types; null if any of them is null.
+         */
+        private static List<Object> keyOf(Object[] row, int[] indexes) {
+            List<Object> key = new ArrayList<Object>();
+            for (int i : indexes) {
+                Object v = row[i];
+                if (v == null) {
+                    return null;
+                }
+                if (v instanceof Double || v instanceof Float || v instanceof BigDecimal) {
+                    double d = ((Number) v).doubleValue();
+                    if (d == Math.rint(d) && Math.abs(d) < Long.MAX_VALUE) {
+                        v = Long.valueOf((long) d);
+                    } else {
+                        v = Double.valueOf(d);
+                    }
+                } else if (v instanceof Number && !(v instanceof BigInteger)) {
+                    v = ((Number) v).longValue();
+                }
+                key.add(v);
+            }
+            return key;
+        }
+
+        ResultSet toResultSet() throws SQLException {
+            RowSetMetaDataImpl meta = new RowSetMetaDataImpl();
+            meta.setColumnCount(labels.size());
+            for (int i = 1; i <= labels.size(); i++) {
+                meta.setColumnLabel(i, labels.get(i - 1));
+                meta.setColumnName(i, labels.get(i - 1));
+                meta.setColumnType(i, types.get(i - 1));
+                meta.setColumnTypeName(i, typeNames.get(i - 1));
+                meta.setNullable(i, ResultSetMetaData.columnNullable);
+            }
+
+            CachedRowSet rs = RowSetProvider.newFactory().createCachedRowSet();
+            rs.setMetaData(meta);
+            for (Object[] row : rows) {
+                // inserted after the current row; thus, appended after the last
+                rs.afterLast();
+                rs.moveToInsertRow();
+                for (int i = 0; i < row.length; i++) {
+                    if (row[i] == null) {
+                        rs.updateNull(i + 1);
+                    } else {
+                        rs.updateObject(i + 1, row[i]);
+                    }
+                }
+                rs.insertRow();
+                rs.moveToCurrentRow();
+            }
+            rs.beforeFirst();
+            return rs;
+        }
+    }
+
+}
@@ -16,14 +16,25 @@
 
 package edu.umich.verdict.query;
 
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.rowset.CachedRowSet;
+
 import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.dbms.Dbms;
 import edu.umich.verdict.exceptions.VerdictException;
-import edu.umich.verdict.parser.VerdictSQLBaseVisitor;
 import edu.umich.verdict.parser.VerdictSQLParser;
 import edu.umich.verdict.relation.ApproxRelation;
 import edu.umich.verdict.relation.ExactRelation;
+import edu.umich.verdict.relation.PlanTarget;
 import edu.umich.verdict.relation.Relation;
-import edu.umich.verdict.util.StringManipulations;
+import edu.umich.verdict.util.VerdictLogger;
+import edu.umich.verdict.util.VerdictSQLParserFactory;
 
 public class SelectQuery extends Query {
 
@@ -31,31 +42,252 @@ public class SelectQuery extends Query {
         super(vc, queryString);
     }
 
+    public SelectQuery(VerdictContext vc, String queryString, VerdictSQLParser.Verdict_statementContext parsedStatement) {
+        super(vc, queryString, parsedStatement);
+    }
+
     public static Relation queryToRelation(VerdictContext vc, String sql) throws VerdictException {
-        ExactRelation r = ExactRelation.from(vc, sql);
+        return queryToRelation(vc, VerdictSQLParserFactory.parse(sql, VerdictSQLParserFactory.SELECT_STATEMENT));
+    }
 
-        VerdictSQLParser p = StringManipulations.parserOf(sql);
-        VerdictSQLBaseVisitor<Boolean> visitor = new VerdictSQLBaseVisitor<Boolean>() {
-            @Override
-            public Boolean visitSelect_statement(VerdictSQLParser.Select_statementContext ctx) {
-                return (ctx.EXACT() != null) ? true : false;
-            }
-        };
-        Boolean exact = visitor.visit(p.select_statement());
+    /**
+     * Converts an already-parsed select statement into a relation. The parse tree is used for both
+     * building the relation and checking the EXACT keyword, so the query is not parsed again.
+     */
+    public static Relation queryToRelation(VerdictContext vc, VerdictSQLParser.Select_statementContext ctx)
+            throws VerdictException {
+        return queryToRelation(vc, ctx, PlanTarget.from(vc, ctx));
+    }
+
+    /**
+     * @param target
+     *            bound to the thread while the sample plans are chosen; may be null.
+     */
+    static Relation queryToRelation(VerdictContext vc, VerdictSQLParser.Select_statementContext ctx,
+            PlanTarget target) throws VerdictException {
+        ExactRelation r = ExactRelation.from(vc, ctx);
+        boolean exact = (ctx.EXACT() != null) ? true : false;
 
         if (exact) {
             return r;
         } else {
-            ApproxRelation a = r.approx();
-            return a;
+            PlanTarget.bind(target);
+            try {
+                ApproxRelation a = r.approx();
+                return a;
+            } finally {
+                PlanTarget.bind(null);
+            }
         }
     }
 
     @Override
     public void compute() throws VerdictException {
         super.compute();
-        Relation r = queryToRelation(vc, queryString);
-        setResultsFromRelation(r);
+
+        VerdictSQLParser.Select_statementContext ctx = parsedStatement().select_statement();
+        PlanTarget target = PlanTarget.from(vc, ctx);
+        double ladderError = vc.getConf().ladderRelativeError();
+        if (ladderError > 0 && target == null && ctx.EXACT() == null && vc.getDbms().isJDBC()) {
+            computeOnLadder(ctx, ladderError);
+            return;
+        }
+        if (target == null) {
+            // only collects the bytes the chosen plans scan.
+            target = new PlanTarget(null, vc.getConf().errorBoundConfidenceInPercentage());
+        }
+
+        PlanCache cache = vc.getPlanCache();
+        if (!cache.isEnabled() || vc.getConf().metaRefreshPolicy().equals("per_query")) {
+            Relation r = queryToRelation(vc, ctx, target);
+            if (setResultsFromSampleGroups(r) || setResultsFromPartitions(r)) {
+                return;
+            }
+            long start = System.nanoTime();
+            setResultsFromRelation(r);
+            recordLatency(target, target.getPlannedSampleType(), target.getPlannedBytes(), target.getPlannedScans(), start);
+            return;
+        }
+
+        String key = PlanCache.keyOf(vc, queryString);
+        PlanCache.Entry cached = cache.get(key, vc.getMeta().getSampleVersion());
+        if (cached != null) {
+            VerdictLogger.debug(this, String.format("Reuses a rewritten query (cache hits: %d, misses: %d).",
+                    cache.getHitCount(), cache.getMissCount()));
+            long start = System.nanoTime();
+            setResultsFromSql(cached.getSql());
+            recordLatency(target, cached.getPlannedSampleType(), cached.getPlannedBytes(), cached.getPlannedScans(), start);
+            return;
+        }
+
+        Relation r = queryToRelation(vc, ctx, target);
+        if (setResultsFromSampleGroups(r) || setResultsFromPartitions(r)) {
+            // the cache holds single statements whose results are returned as they are.
+            return;
+        }
+        String sql = r.toSql();
+        // read after rewriting since the rewriting may refresh the sample information.
+        long sampleVersion = vc.getMeta().getSampleVersion();
+        long start = System.nanoTime();
+        setResultsFromSql(sql);
+        recordLatency(target, target.getPlannedSampleType(), target.getPlannedBytes(), target.getPlannedScans(), start);
+        cache.put(key, new PlanCache.Entry(sql, sampleVersion, target.getPlannedSampleType(), target.getPlannedBytes(),
+                target.getPlannedScans()));
+    }
+
+    /**
+     * Runs the aggregations over the sample groups of the chosen plan, if there are
+     * more than one, as separate statements at the same time and joins their
+     * results (see {@link SampleGroupJoin}), when
+     * verdict.planner.concurrent_sample_groups is greater than 1. Their runtimes
+     * are not recorded in the latency model, which predicts the runtimes of single
+     * statements.
+     * 
+     * @return false if the query is to be run as a single statement.
+     */
+    private boolean setResultsFromSampleGroups(Relation r) throws VerdictException {
+        int parallelism = vc.getConf().concurrentSampleGroups();
+        if (parallelism <= 1 || !vc.getDbms().isJDBC()) {
+            return false;
+        }
+        SampleGroupJoin join = SampleGroupJoin.of(r);
+        if (join == null) {
+            return false;
+        }
+
+        List<String> sqls = join.groupSqls();
+        VerdictLogger.debug(this, String.format("Runs %d sample groups at the same time.", sqls.size()));
+        List<ResultSet> results = vc.getDbms().executeJdbcQueries(sqls, parallelism);
+        try {
+            rs = join.combine(results);
+        } catch (VerdictException e) {
+            VerdictLogger.debug(this, "Could not join the results of the sample groups (" + e.getMessage()
+                    + "); runs the query as a single statement.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Fetches the aggregates of every (group, partition) of the query and combines
+     * them here (see {@link PartitionCombiner}), when
+     * verdict.error_bound.subsampling.combine_in_client is true. Like the sample
+     * groups, the runtimes are not recorded in the latency model.
+     * 
+     * @return false if the query is to be run as a single statement.
+     */
+    private boolean setResultsFromPartitions(Relation r) throws VerdictException {
+        if (!vc.getDbms().isJDBC()) {
+            return false;
+        }
+        PartitionCombiner combiner = PartitionCombiner.of(vc, r);
+        if (combiner == null) {
+            return false;
+        }
+
+        String sql = combiner.partitionSql();
+        VerdictLogger.debug(this, "A query to db: " + sql);
+        ResultSet partitions = vc.getDbms().executeJdbcQuery(sql);
+        try {
+            rs = combiner.combine(partitions);
+        } catch (VerdictException e) {
+            VerdictLogger.debug(this, "Could not combine the partitions (" + e.getMessage()
+                    + "); runs the query as a single statement.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Runs the query on the smallest rungs of the sample ladders first, and on the
+     * next rungs only while the relative error bound of some aggregate value exceeds
+     * the threshold (or until no ladder has a higher rung). The rewritten queries
+     * are not cached since they differ by rung.
+     */
+    private void computeOnLadder(VerdictSQLParser.Select_statementContext ctx, double threshold)
+            throws VerdictException {
+        for (int rung = 0;; rung++) {
+            PlanTarget target = new PlanTarget(null, vc.getConf().errorBoundConfidenceInPercentage())
+                    .atLadderRung(rung);
+            Relation r = queryToRelation(vc, ctx, target);
+            long start = System.nanoTime();
+            setResultsFromSql(r.toSql());
+            recordLatency(target, target.getPlannedSampleType(), target.getPlannedBytes(), target.getPlannedScans(), start);
+            if (!target.hasHigherRung() || rs == null) {
+                return;
+            }
+
+            try {
+                // already read fully if its runtime was recorded.
+                if (!(rs instanceof CachedRowSet)) {
+                    rs = Dbms.readFully(rs);
+                }
+                CachedRowSet rows = (CachedRowSet) rs;
+                double error = maxRelativeError(rows);
+                rows.beforeFirst();
+                if (error <= threshold) {
+                    return;
+                }
+                VerdictLogger.info(this, String.format(
+                        "The relative error bound %.2f%% exceeds %.2f%% on the rung %d of the sample ladders;"
+                                + " runs the query on the next rung.",
+                        error * 100, threshold * 100, rung));
+            } catch (SQLException e) {
+                throw new VerdictException(e);
+            }
+        }
+    }
+
+    /**
+     * @return the largest ratio of an error bound to its aggregate value in the
+     *         result set, or 0 if it has no error bound columns.
+     */
+    static double maxRelativeError(ResultSet rows) throws SQLException {
+        ResultSetMetaData meta = rows.getMetaData();
+        List<String> labels = new ArrayList<String>();
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            labels.add(meta.getColumnLabel(i));
+        }
+        Map<Integer, Integer> agg2error = PlanCache.aggColumn2ErrorColumn(labels);
+
+        double maxError = 0;
+        while (rows.next()) {
+            for (Map.Entry<Integer, Integer> e : agg2error.entrySet()) {
+                double value = rows.getDouble(e.getKey());
+                if (rows.wasNull() || value == 0) {
+                    continue;
+                }
+                double error = rows.getDouble(e.getValue());
+                if (rows.wasNull()) {
+                    continue;
+                }
+                maxError = Math.max(maxError, Math.abs(error / value));
+            }
+        }
+        return maxError;
+    }
+
+    /**
+     * Records the runtime of the statement in the latency model if a sample plan was
+     * chosen for it, and if the model is in use: with the latency cost model, with a
+     * time bound, or if verdict.latency_model.record is true. The JDBC drivers (e.g.,
+     * of Hive and Impala) return a result set once its first rows are ready; thus,
+     * the rows are read fully before the runtime is taken. Otherwise, the result set
+     * is left as it is. Spark datasets are evaluated lazily, so their runtimes are
+     * not recorded.
+     */
+    private void recordLatency(PlanTarget target, String sampleType, double plannedBytes, int plannedScans,
+            long startNanos) throws VerdictException {
+        if (sampleType == null || ds != null) {
+            return;
+        }
+        if (!vc.getConf().latencyModelRecord() && !vc.getConf().costModel().equals("latency")
+                && !target.hasTimeBound()) {
+            return;
+        }
+        rs = Dbms.readFully(rs);
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        vc.getLatencyModel().record(sampleType, plannedBytes, plannedScans, seconds);
     }
 
 }
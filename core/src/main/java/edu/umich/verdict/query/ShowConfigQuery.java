@@ -20,6 +20,7 @@ import java.util.Map;
 
 import edu.umich.verdict.VerdictContext;
 import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.parser.VerdictSQLParser;
 
 public class ShowConfigQuery extends Query {
 
@@ -27,6 +28,10 @@ public class ShowConfigQuery extends Query {
         super(vc, q);
     }
 
+    public ShowConfigQuery(VerdictContext vc, String q, VerdictSQLParser.Verdict_statementContext parsedStatement) {
+        super(vc, q, parsedStatement);
+    }
+
     @Override
     public void compute() throws VerdictException {
         Map<String, String> conf = vc.getConf().getConfigs();
@@ -21,6 +21,7 @@ import edu.umich.verdict.dbms.DbmsJDBC;
 //import edu.umich.verdict.dbms.DbmsSpark;
 import edu.umich.verdict.dbms.DbmsSpark2;
 import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.parser.VerdictSQLParser;
 
 public class ShowDatabasesQuery extends SelectQuery {
 
@@ -28,6 +29,10 @@ public class ShowDatabasesQuery extends SelectQuery {
         super(vc, q);
     }
 
+    public ShowDatabasesQuery(VerdictContext vc, String q, VerdictSQLParser.Verdict_statementContext parsedStatement) {
+        super(vc, q, parsedStatement);
+    }
+
     @Override
     public void compute() throws VerdictException {
         if (vc.getDbms() instanceof DbmsJDBC) {
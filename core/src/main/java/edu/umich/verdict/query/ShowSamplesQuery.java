@@ -23,7 +23,6 @@ import edu.umich.verdict.parser.VerdictSQLParser;
 import edu.umich.verdict.relation.ExactRelation;
 import edu.umich.verdict.relation.Relation;
 import edu.umich.verdict.relation.SingleRelation;
-import edu.umich.verdict.util.StringManipulations;
 import edu.umich.verdict.util.VerdictLogger;
 
 public class ShowSamplesQuery extends SelectQuery {
@@ -32,9 +31,12 @@ public class ShowSamplesQuery extends SelectQuery {
         super(vc, q);
     }
 
+    public ShowSamplesQuery(VerdictContext vc, String q, VerdictSQLParser.Verdict_statementContext parsedStatement) {
+        super(vc, q, parsedStatement);
+    }
+
     @Override
     public void compute() throws VerdictException {
-        VerdictSQLParser p = StringManipulations.parserOf(queryString);
         VerdictSQLBaseVisitor<String> visitor = new VerdictSQLBaseVisitor<String>() {
             @Override
             public String visitShow_samples_statement(VerdictSQLParser.Show_samples_statementContext ctx) {
@@ -47,7 +49,7 @@ public class ShowSamplesQuery extends SelectQuery {
             }
         };
         
-        String database = visitor.visit(p.show_samples_statement());
+        String database = visitor.visit(parsedStatement().show_samples_statement());
         
         database = (database != null) ? database
                 : ((vc.getCurrentSchema().isPresent()) ? vc.getCurrentSchema().get() : null);
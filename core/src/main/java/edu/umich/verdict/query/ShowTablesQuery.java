@@ -23,7 +23,6 @@ import edu.umich.verdict.dbms.DbmsSpark2;
 import edu.umich.verdict.exceptions.VerdictException;
 import edu.umich.verdict.parser.VerdictSQLBaseVisitor;
 import edu.umich.verdict.parser.VerdictSQLParser;
-import edu.umich.verdict.util.StringManipulations;
 import edu.umich.verdict.util.VerdictLogger;
 
 public class ShowTablesQuery extends SelectQuery {
@@ -32,9 +31,12 @@ public class ShowTablesQuery extends SelectQuery {
         super(vc, q);
     }
 
+    public ShowTablesQuery(VerdictContext vc, String q, VerdictSQLParser.Verdict_statementContext parsedStatement) {
+        super(vc, q, parsedStatement);
+    }
+
     @Override
     public void compute() throws VerdictException {
-        VerdictSQLParser p = StringManipulations.parserOf(queryString);
         VerdictSQLBaseVisitor<String> visitor = new VerdictSQLBaseVisitor<String>() {
             private String schemaName = null;
 
@@ -50,7 +52,7 @@ public class ShowTablesQuery extends SelectQuery {
                 return schemaName;
             }
         };
-        String schema = visitor.visit(p.show_tables_statement());
+        String schema = visitor.visit(parsedStatement().other_statement().show_tables_statement());
         schema = (schema != null) ? schema : ((vc.getCurrentSchema().isPresent()) ? vc.getCurrentSchema().get() : null);
 
         if (schema == null) {
@@ -20,7 +20,6 @@ import edu.umich.verdict.VerdictContext;
 import edu.umich.verdict.exceptions.VerdictException;
 import edu.umich.verdict.parser.VerdictSQLBaseVisitor;
 import edu.umich.verdict.parser.VerdictSQLParser;
-import edu.umich.verdict.util.StringManipulations;
 
 public class UseDatabaseQuery extends Query {
 
@@ -28,10 +27,12 @@ public class UseDatabaseQuery extends Query {
         super(vc, q);
     }
 
+    public UseDatabaseQuery(VerdictContext vc, String q, VerdictSQLParser.Verdict_statementContext parsedStatement) {
+        super(vc, q, parsedStatement);
+    }
+
     @Override
     public void compute() throws VerdictException {
-        VerdictSQLParser p = StringManipulations.parserOf(queryString);
-
         VerdictSQLBaseVisitor<String> visitor = new VerdictSQLBaseVisitor<String>() {
             private String schemaName;
 
@@ -46,7 +47,7 @@ public class UseDatabaseQuery extends Query {
             }
         };
 
-        String schema = visitor.visit(p.use_statement());
+        String schema = visitor.visit(parsedStatement().other_statement().use_statement());
         vc.getDbms().changeDatabase(schema);
         vc.getMeta().refreshSampleInfoIfNeeded(schema, false);
         vc.getMeta().refreshTables(schema);
@@ -100,7 +100,8 @@ public class AggregatedRelation extends ExactRelation {
                 if (fexpr.getFuncName().equals(FuncExpr.FuncName.COUNT)
                         || fexpr.getFuncName().equals(FuncExpr.FuncName.AVG)
                         || fexpr.getFuncName().equals(FuncExpr.FuncName.SUM)
-                        || fexpr.getFuncName().equals(FuncExpr.FuncName.COUNT_DISTINCT)) {
+                        || fexpr.getFuncName().equals(FuncExpr.FuncName.COUNT_DISTINCT)
+                        || fexpr.getFuncName().equals(FuncExpr.FuncName.APPROX_PERCENTILE)) {
                     if (source instanceof GroupedRelation) {
                         if (a.sampleType().equals("universe") || a.sampleType().equals("stratified")
                                 || a.sampleType().equals("nosample")) {
@@ -152,6 +153,20 @@ public class AggregatedRelation extends ExactRelation {
     }
 
     public ApproxRelation approx() throws VerdictException {
+        // the outermost aggregation binds the memo of sample candidates, which the
+        // aggregations in its subqueries share.
+        if (SampleCandidates.current() != null) {
+            return approxWithCandidates();
+        }
+        SampleCandidates.bind(new SampleCandidates());
+        try {
+            return approxWithCandidates();
+        } finally {
+            SampleCandidates.bind(null);
+        }
+    }
+
+    private ApproxRelation approxWithCandidates() throws VerdictException {
         SamplePlans consolidatedPlans = candidatesAsRoot();
         SamplePlan plan = chooseBestPlan(consolidatedPlans);
 
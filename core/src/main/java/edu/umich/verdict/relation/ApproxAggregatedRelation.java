@@ -21,9 +21,9 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.google.common.base.Joiner;
-import com.google.common.base.Optional;
 
 import edu.umich.verdict.VerdictContext;
 import edu.umich.verdict.datatypes.TableUniqueName;
@@ -35,6 +35,7 @@ import edu.umich.verdict.relation.expr.CaseExpr;
 import edu.umich.verdict.relation.expr.ColNameExpr;
 import edu.umich.verdict.relation.expr.ConstantExpr;
 import edu.umich.verdict.relation.expr.Expr;
+import edu.umich.verdict.relation.expr.ExprBuilder;
 import edu.umich.verdict.relation.expr.ExprModifier;
 import edu.umich.verdict.relation.expr.FuncExpr;
 import edu.umich.verdict.relation.expr.OverClause;
@@ -80,17 +81,25 @@ public class ApproxAggregatedRelation extends ApproxRelation {
 
     @Override
     public ExactRelation rewriteForPointEstimate() {
-        ExactRelation newSource = source.rewriteForPointEstimate();
+        CumulativeWeights weights = null;
+        ExactRelation newSource = null;
+        if (weightsPercentiles()) {
+            weights = cumulativeWeightsForPointEstimate();
+            newSource = weights.getGrouped();
+        } else {
+            newSource = source.rewriteForPointEstimate();
+        }
 
         List<SelectElem> scaled = new ArrayList<SelectElem>();
         // List<ColNameExpr> samplingProbColumns =
         // newSource.accumulateSamplingProbColumns();
         for (SelectElem elem : elems) {
             if (!elem.isagg()) {
-                scaled.add(elem);
+                scaled.add((weights == null) ? elem
+                        : new SelectElem(vc, moved(elem.getExpr(), weights), elem.getAlias()));
             } else {
-                Expr agg = elem.getExpr();
-                scaled.add(new SelectElem(vc, transformForSingleFunction(agg), elem.getAlias()));
+                Expr agg = moved(elem.getExpr(), weights);
+                scaled.add(new SelectElem(vc, transformForSingleFunction(agg, weights), elem.getAlias()));
             }
         }
         ExactRelation r = new AggregatedRelation(vc, newSource, scaled);
@@ -102,94 +111,96 @@ public class ApproxAggregatedRelation extends ApproxRelation {
     public ExactRelation rewriteWithSubsampledErrorBounds() {
         // if this is not an approximate relation effectively, we don't need any special
         // rewriting.
-        if (!doesIncludeSample()) {
-            return getOriginalRelation();
+        if (!doesIncludeSample() && !usesCountDistinctSketches()) {
+            return exactRelation();
         }
 
-        ExactRelation r = rewriteWithPartition(true);
+        ExactRelation r = rewriteWithUncombinedPartitions();
+        List<PartitionedColumn> columns = partitionedColumns(r);
         // String newAlias = genTableAlias();
 
         // put another layer to combine per-partition aggregates
         List<SelectElem> newElems = new ArrayList<SelectElem>();
         List<SelectElem> oldElems = ((AggregatedRelation) r).getElemList();
         List<Expr> newGroupby = new ArrayList<Expr>();
+        ColNameExpr psize = new ColNameExpr(vc, partitionSizeAlias, r.getAlias());
 
         for (int i = 0; i < oldElems.size(); i++) {
             SelectElem elem = oldElems.get(i);
+            PartitionedColumn column = columns.get(i);
 
-            // used to identify the original aggregation type
-            Optional<SelectElem> originalElem = Optional.absent();
-            if (i < this.elems.size()) {
-                originalElem = Optional.fromNullable(this.elems.get(i));
-            }
-
-            if (!elem.isagg()) {
-                // skip the partition number
-                if (elem.aliasPresent() && elem.getAlias().equals(partitionColumnName())) {
-                    continue;
-                }
-
-                SelectElem newElem = null;
+            if (column.isGroup()) {
                 Expr newExpr = null;
                 if (elem.getAlias() == null) {
                     newExpr = elem.getExpr().withTableSubstituted(r.getAlias());
-                    newElem = new SelectElem(vc, newExpr, elem.getAlias());
                 } else {
                     newExpr = new ColNameExpr(vc, elem.getAlias(), r.getAlias());
-                    newElem = new SelectElem(vc, newExpr, elem.getAlias());
                 }
 
                 // groupby element may not be present in the select list.
-                if (originalElem.isPresent()) {
-                    newElems.add(newElem);
+                if (column.getCombining().equals(Combining.GROUP)) {
+                    newElems.add(new SelectElem(vc, newExpr, elem.getAlias()));
                 }
                 newGroupby.add(newExpr);
-            } else {
-                // skip the partition size column
-                if (elem.getAlias().equals(partitionSizeAlias)) {
-                    continue;
-                }
-
-                // skip the extra columns inserted
-                if (!originalElem.isPresent()) {
-                    continue;
-                }
+                continue;
+            }
 
-                ColNameExpr est = new ColNameExpr(vc, elem.getAlias(), r.getAlias());
-                ColNameExpr psize = new ColNameExpr(vc, partitionSizeAlias, r.getAlias());
+            // skip the partition number, the partition size, and the extra columns inserted
+            if (!column.isAggregate()) {
+                continue;
+            }
 
-                // average estimate
-                Expr averaged = null;
-                Expr originalExpr = originalElem.get().getExpr();
-                if (originalExpr.isCountDistinct()) {
-                    // for count-distinct (i.e., universe samples), weighted average should not be
-                    // used.
-                    averaged = FuncExpr.round(FuncExpr.avg(est));
-                } else if (originalExpr.isMax()) {
-                    averaged = FuncExpr.max(est);
-                } else if (originalExpr.isMin()) {
-                    averaged = FuncExpr.min(est);
-                } else {
-                    // weighted average
-                    averaged = BinaryOpExpr.from(vc, FuncExpr.sum(BinaryOpExpr.from(vc, est, psize, "*")),
-                            FuncExpr.sum(psize), "/");
-                    if (originalElem.get().getExpr().isCount()) {
-                        averaged = FuncExpr.round(averaged);
-                    }
+            ColNameExpr est = new ColNameExpr(vc, elem.getAlias(), r.getAlias());
+
+            // average estimate
+            Expr averaged = null;
+            if (column.getCombining().equals(Combining.SUM)) {
+                // the per-partition estimates are not scaled by the partition sizes;
+                // together they add up to the estimate.
+                averaged = FuncExpr.sum(est);
+            } else if (column.getCombining().equals(Combining.DISJOINT_SUM)) {
+                // the partitions have disjoint sets of values; the partitions without
+                // tuples add nothing.
+                averaged = FuncExpr.sum(est);
+            } else if (column.getCombining().equals(Combining.AVERAGE)) {
+                // for count-distinct (i.e., universe samples), weighted average should not be
+                // used.
+                averaged = FuncExpr.avg(est);
+            } else if (column.getCombining().equals(Combining.MAX)) {
+                averaged = FuncExpr.max(est);
+            } else if (column.getCombining().equals(Combining.MIN)) {
+                averaged = FuncExpr.min(est);
+            } else {
+                // weighted average
+                averaged = BinaryOpExpr.from(vc, FuncExpr.sum(BinaryOpExpr.from(vc, est, psize, "*")),
+                        FuncExpr.sum(psize), "/");
+            }
+            if (column.isRounded()) {
+                averaged = FuncExpr.round(averaged);
+            }
+            newElems.add(new SelectElem(vc, averaged, elem.getAlias()));
+
+            // error estimation
+            // scale by sqrt(subsample size) / sqrt(sample size)
+            if (column.hasErrorBound()) {
+                // the scaled per-partition estimates are (estimate / psize) * sum(psize),
+                // where sum(psize) is the same for all the partitions of a group.
+                boolean folded = column.getCombining().equals(Combining.SUM);
+                Expr scaledEst = est;
+                if (folded) {
+                    scaledEst = BinaryOpExpr.from(vc, est, psize, "/");
+                } else if (column.getCombining().equals(Combining.DISJOINT_SUM)) {
+                    scaledEst = BinaryOpExpr.from(vc, est, ConstantExpr.from(vc, column.getPartitionCount()), "*");
                 }
-                newElems.add(new SelectElem(vc, averaged, elem.getAlias()));
-
-                // error estimation
-                // scale by sqrt(subsample size) / sqrt(sample size)
-                if (originalExpr.isMax() || originalExpr.isMin()) {
-                    // no error estimations for extreme statistics
-                } else {
-                    Expr error = BinaryOpExpr.from(vc,
-                            BinaryOpExpr.from(vc, FuncExpr.stddev(est), FuncExpr.sqrt(FuncExpr.avg(psize)), "*"),
-                            FuncExpr.sqrt(FuncExpr.sum(psize)), "/");
-                    error = BinaryOpExpr.from(vc, error, ConstantExpr.from(vc, confidenceIntervalMultiplier()), "*");
-                    newElems.add(new SelectElem(vc, error, Relation.errorBoundColumn(elem.getAlias())));
+                Expr stddev = FuncExpr.stddev(scaledEst);
+                if (folded) {
+                    stddev = BinaryOpExpr.from(vc, stddev, FuncExpr.sum(psize), "*");
                 }
+                Expr error = BinaryOpExpr.from(vc,
+                        BinaryOpExpr.from(vc, stddev, FuncExpr.sqrt(FuncExpr.avg(psize)), "*"),
+                        FuncExpr.sqrt(FuncExpr.sum(psize)), "/");
+                error = BinaryOpExpr.from(vc, error, ConstantExpr.from(vc, confidenceIntervalMultiplier()), "*");
+                newElems.add(new SelectElem(vc, error, Relation.errorBoundColumn(elem.getAlias())));
             }
         }
 
@@ -229,6 +240,661 @@ public class ApproxAggregatedRelation extends ApproxRelation {
         return r;
     }
 
+    /**
+     * The aggregates of the subsampling partitions of every group, which
+     * {@link #rewriteWithSubsampledErrorBounds()} combines in another aggregation.
+     * {@link #partitionedColumns(ExactRelation)} tells how to combine them
+     * elsewhere, e.g., in the client.
+     * 
+     * @return null if this relation does not include a sample (and its
+     *         count-distincts are not computed with sketches).
+     */
+    public ExactRelation rewriteWithUncombinedPartitions() {
+        if (usesCountDistinctSketches()) {
+            return rewriteWithSketchedPartitions();
+        }
+        if (!doesIncludeSample()) {
+            return null;
+        }
+        boolean foldScaling = vc.getConf().subsamplingScaling().equals("folded");
+        return rewriteWithPartition(true, foldScaling, effectivePartitionCount());
+    }
+
+    /**
+     * How the partitions of a group are combined in a column.
+     */
+    public enum Combining {
+        /** a group-by column in the select list */
+        GROUP,
+        /** a group-by column not in the select list */
+        HIDDEN_GROUP,
+        /** the number of tuples in a partition */
+        PARTITION_SIZE,
+        /** dropped, e.g., the partition number */
+        NONE,
+        /** the sum of the estimates, which are not scaled by the partition sizes */
+        SUM,
+        /**
+         * the sum of the estimates of partitions with disjoint sets of values (e.g.,
+         * the distinct values of hash partitions); for the error bounds, each estimate
+         * is scaled by the partition count.
+         */
+        DISJOINT_SUM,
+        AVERAGE,
+        /** the average of the estimates weighted by the partition sizes */
+        WEIGHTED_AVERAGE,
+        MIN,
+        MAX
+    }
+
+    public static class PartitionedColumn {
+
+        private final Combining combining;
+
+        private final boolean rounded;
+
+        private final String alias;
+
+        private final int partitionCount;
+
+        PartitionedColumn(Combining combining, boolean rounded, String alias) {
+            this(combining, rounded, alias, 1);
+        }
+
+        PartitionedColumn(Combining combining, boolean rounded, String alias, int partitionCount) {
+            this.combining = combining;
+            this.rounded = rounded;
+            this.alias = alias;
+            this.partitionCount = partitionCount;
+        }
+
+        public Combining getCombining() {
+            return combining;
+        }
+
+        /**
+         * @return true if the combined estimate is rounded to an integer (counts).
+         */
+        public boolean isRounded() {
+            return rounded;
+        }
+
+        /**
+         * @return the alias of the column; may be null for a group-by column.
+         */
+        public String getAlias() {
+            return alias;
+        }
+
+        /**
+         * @return the number of the partitions the estimates of
+         *         {@link Combining#DISJOINT_SUM} are scaled by for the error bounds; 1 for
+         *         the other combinings.
+         */
+        public int getPartitionCount() {
+            return partitionCount;
+        }
+
+        public boolean isGroup() {
+            return combining.equals(Combining.GROUP) || combining.equals(Combining.HIDDEN_GROUP);
+        }
+
+        public boolean isAggregate() {
+            return !isGroup() && !combining.equals(Combining.PARTITION_SIZE) && !combining.equals(Combining.NONE);
+        }
+
+        /**
+         * The error bound of a combined estimate is the standard deviation of the
+         * per-partition estimates, scaled by sqrt(avg(partition size)) /
+         * sqrt(sum(partition size)) and the confidence interval multiplier. For
+         * {@link Combining#SUM}, the standard deviation is of the estimates divided
+         * by the partition sizes, multiplied by sum(partition size); for
+         * {@link Combining#DISJOINT_SUM}, of the estimates multiplied by the
+         * partition count.
+         */
+        public boolean hasErrorBound() {
+            return isAggregate() && !combining.equals(Combining.MIN) && !combining.equals(Combining.MAX);
+        }
+    }
+
+    /**
+     * @param partitioned
+     *            the relation returned by {@link #rewriteWithUncombinedPartitions()}
+     * @return how each column of the relation is combined, in order.
+     */
+    public List<PartitionedColumn> partitionedColumns(ExactRelation partitioned) {
+        boolean foldScaling = vc.getConf().subsamplingScaling().equals("folded");
+        boolean sketched = usesCountDistinctSketches();
+        List<SelectElem> partitionedElems = ((AggregatedRelation) partitioned).getElemList();
+        List<PartitionedColumn> columns = new ArrayList<PartitionedColumn>();
+
+        for (int i = 0; i < partitionedElems.size(); i++) {
+            SelectElem elem = partitionedElems.get(i);
+            // used to identify the original aggregation type
+            SelectElem originalElem = (i < this.elems.size()) ? this.elems.get(i) : null;
+
+            if (!elem.isagg()) {
+                if (elem.aliasPresent() && elem.getAlias().equals(partitionColumnName())) {
+                    columns.add(new PartitionedColumn(Combining.NONE, false, elem.getAlias()));
+                } else if (originalElem != null) {
+                    columns.add(new PartitionedColumn(Combining.GROUP, false, elem.getAlias()));
+                } else {
+                    columns.add(new PartitionedColumn(Combining.HIDDEN_GROUP, false, elem.getAlias()));
+                }
+            } else if (elem.getAlias().equals(partitionSizeAlias)) {
+                columns.add(new PartitionedColumn(Combining.PARTITION_SIZE, false, elem.getAlias()));
+            } else if (originalElem == null) {
+                columns.add(new PartitionedColumn(Combining.NONE, false, elem.getAlias()));
+            } else {
+                Expr originalExpr = originalElem.getExpr();
+                if (sketched) {
+                    columns.add(new PartitionedColumn(Combining.DISJOINT_SUM, true, elem.getAlias(),
+                            vc.getConf().subsamplingPartitionCount()));
+                } else if (foldScaling && isFoldable(originalExpr)) {
+                    columns.add(new PartitionedColumn(Combining.SUM, originalExpr.isCount(), elem.getAlias()));
+                } else if (originalExpr.isCountDistinct()) {
+                    columns.add(new PartitionedColumn(Combining.AVERAGE, true, elem.getAlias()));
+                } else if (originalExpr.isMax()) {
+                    columns.add(new PartitionedColumn(Combining.MAX, false, elem.getAlias()));
+                } else if (originalExpr.isMin()) {
+                    columns.add(new PartitionedColumn(Combining.MIN, false, elem.getAlias()));
+                } else {
+                    columns.add(new PartitionedColumn(Combining.WEIGHTED_AVERAGE, originalExpr.isCount(),
+                            elem.getAlias()));
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * @return the multiplier of the standard deviations in the error bounds.
+     */
+    public double errorBoundMultiplier() {
+        return confidenceIntervalMultiplier();
+    }
+
+    /**
+     * Computes the estimates and their error bounds in a single aggregation. With
+     * the tuple-level sampling probability p, sum(x) is estimated by the sum of y =
+     * x/p over the n sampled tuples, and its variance by n/(n-1) * (sum(y^2) -
+     * sum(y)^2/n), i.e., as if the tuples were drawn with replacement. Like
+     * subsampling, this conditions on the sample size, so count(*) on a uniform
+     * sample has no error. avg(x) is the ratio of the two, whose variance is
+     * obtained by linearization. A count-distinct on a universe sample of ratio r is
+     * estimated by count(distinct x)/r, with variance count(distinct x) (1-r) / r^2.
+     * 
+     * The variance formulas treat the sampled tuples as independent. When this does
+     * not hold (universe samples for non-count-distinct aggregates, joins of several
+     * samples, or aggregations over aggregations), or when an aggregate is part of a
+     * larger expression, this method falls back to subsampling.
+     */
+    @Override
+    public ExactRelation rewriteWithAnalyticErrorBounds() {
+        if (usesCountDistinctSketches()) {
+            return rewriteWithSubsampledErrorBounds();
+        }
+        if (!doesIncludeSample()) {
+            return exactRelation();
+        }
+        if (!supportsAnalyticErrorBounds()) {
+            VerdictLogger.debug(this, "Closed-form error bounds are not available; falls back to subsampling.");
+            return rewriteWithSubsampledErrorBounds();
+        }
+
+        // the partitioned sources carry the tuple-level sampling probabilities. we
+        // simply do not group by their partition column.
+        ExactRelation newSource = null;
+        if (source instanceof ApproxGroupedRelation) {
+            ApproxGroupedRelation grouped = (ApproxGroupedRelation) source;
+            newSource = new GroupedRelation(vc, grouped.getSource().rewriteWithPartition(),
+                    grouped.groupbyWithTablesSubstituted());
+        } else {
+            newSource = source.rewriteWithPartition();
+        }
+
+        Expr prob = source.tupleProbabilityColumn();
+        Expr ratio = source.tableSamplingRatio();
+        Expr z = ConstantExpr.from(vc, confidenceIntervalMultiplier());
+
+        List<SelectElem> newElems = new ArrayList<SelectElem>();
+        for (SelectElem elem : elems) {
+            if (!elem.isagg()) {
+                newElems.add(elem);
+                continue;
+            }
+
+            FuncExpr f = (FuncExpr) elem.getExpr();
+            newElems.add(new SelectElem(vc, analyticEstimate(f, prob, ratio), elem.getAlias()));
+
+            Expr variance = analyticVariance(f, prob, ratio);
+            if (variance != null) {
+                Expr error = BinaryOpExpr.from(vc, FuncExpr.sqrt(variance), z, "*");
+                newElems.add(new SelectElem(vc, error, Relation.errorBoundColumn(elem.getAlias())));
+            }
+        }
+
+        ExactRelation r = new AggregatedRelation(vc, newSource, newElems);
+        r.setAlias(getAlias());
+        return r;
+    }
+
+    /**
+     * True if every aggregate is a single COUNT, SUM, AVG, COUNT-DISTINCT, MIN, or
+     * MAX, and the source is a (filtered, grouped, or projected) single sample
+     * table: uniform or stratified, or universe if all the aggregates are
+     * count-distincts.
+     */
+    protected boolean supportsAnalyticErrorBounds() {
+        if (sampleTableCount(source) != 1) {
+            return false;
+        }
+
+        for (SelectElem elem : elems) {
+            if (!elem.isagg()) {
+                continue;
+            }
+            if (!(elem.getExpr() instanceof FuncExpr)) {
+                return false;
+            }
+            FuncExpr.FuncName name = ((FuncExpr) elem.getExpr()).getFuncName();
+            if (name.equals(FuncExpr.FuncName.COUNT_DISTINCT)) {
+                continue;
+            }
+            if (!name.equals(FuncExpr.FuncName.COUNT) && !name.equals(FuncExpr.FuncName.SUM)
+                    && !name.equals(FuncExpr.FuncName.AVG) && !name.equals(FuncExpr.FuncName.MIN)
+                    && !name.equals(FuncExpr.FuncName.MAX)) {
+                return false;
+            }
+            if (sampleType().equals("universe")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The number of sample tables in the relation, or -1 if the relation includes
+     * an aggregation or a relation whose tuples we cannot trace back to sample
+     * tables.
+     */
+    private static int sampleTableCount(ApproxRelation r) {
+        if (r instanceof ApproxSingleRelation) {
+            return r.sampleType().equals("nosample") ? 0 : 1;
+        } else if (r instanceof ApproxJoinedRelation) {
+            int c1 = sampleTableCount(((ApproxJoinedRelation) r).getSource1());
+            int c2 = sampleTableCount(((ApproxJoinedRelation) r).getSource2());
+            return (c1 < 0 || c2 < 0) ? -1 : c1 + c2;
+        } else if (r instanceof ApproxFilteredRelation) {
+            return sampleTableCount(((ApproxFilteredRelation) r).getSource());
+        } else if (r instanceof ApproxGroupedRelation) {
+            return sampleTableCount(((ApproxGroupedRelation) r).getSource());
+        } else if (r instanceof ApproxProjectedRelation) {
+            return sampleTableCount(((ApproxProjectedRelation) r).getSource());
+        } else {
+            return -1;
+        }
+    }
+
+    private Expr analyticEstimate(FuncExpr f, Expr prob, Expr ratio) {
+        Expr weight = BinaryOpExpr.from(vc, ConstantExpr.from(vc, 1.0), prob, "/");
+
+        if (f.getFuncName().equals(FuncExpr.FuncName.COUNT)) {
+            return FuncExpr.round(FuncExpr.sum(weight));
+        } else if (f.getFuncName().equals(FuncExpr.FuncName.SUM)) {
+            return FuncExpr.sum(BinaryOpExpr.from(vc, f.getUnaryExpr(), weight, "*"));
+        } else if (f.getFuncName().equals(FuncExpr.FuncName.AVG)) {
+            Expr sumEst = FuncExpr.sum(BinaryOpExpr.from(vc, f.getUnaryExpr(), weight, "*"));
+            return BinaryOpExpr.from(vc, sumEst, countNotNull(f.getUnaryExpr(), weight), "/");
+        } else if (f.getFuncName().equals(FuncExpr.FuncName.COUNT_DISTINCT) && sampleType().equals("universe")) {
+            return FuncExpr.round(BinaryOpExpr.from(vc, f, ratio, "/"));
+        } else {
+            return f;
+        }
+    }
+
+    /**
+     * The estimated variance of {@link #analyticEstimate(FuncExpr, Expr, Expr)};
+     * null if there is no error bound for the aggregate.
+     */
+    private Expr analyticVariance(FuncExpr f, Expr prob, Expr ratio) {
+        Expr weight = BinaryOpExpr.from(vc, ConstantExpr.from(vc, 1.0), prob, "/");
+        Expr sqWeight = BinaryOpExpr.from(vc, weight, weight, "*");
+
+        if (f.getFuncName().equals(FuncExpr.FuncName.COUNT)) {
+            return withReplacementVariance(FuncExpr.sum(weight), FuncExpr.sum(sqWeight), FuncExpr.count());
+        } else if (f.getFuncName().equals(FuncExpr.FuncName.SUM)) {
+            Expr x = f.getUnaryExpr();
+            Expr y = BinaryOpExpr.from(vc, x, weight, "*");
+            return withReplacementVariance(FuncExpr.sum(y),
+                    FuncExpr.sum(BinaryOpExpr.from(vc, BinaryOpExpr.from(vc, x, x, "*"), sqWeight, "*")),
+                    FuncExpr.count());
+        } else if (f.getFuncName().equals(FuncExpr.FuncName.AVG)) {
+            // the variance of the sum of w(x - avg), divided by the squared sum of w. the
+            // squares are expanded so that they are computed in the same pass as avg.
+            Expr x = f.getUnaryExpr();
+            Expr avg = analyticEstimate(f, prob, ratio);
+            Expr sumSq = FuncExpr.sum(BinaryOpExpr.from(vc, BinaryOpExpr.from(vc, x, x, "*"), sqWeight, "*"));
+            Expr sumLin = FuncExpr.sum(BinaryOpExpr.from(vc, x, sqWeight, "*"));
+            Expr sumOne = countNotNull(x, sqWeight);
+            Expr n = new FuncExpr(FuncExpr.FuncName.COUNT, x);
+            Expr totalWeight = countNotNull(x, weight);
+
+            Expr squares = BinaryOpExpr.from(vc, sumSq,
+                    BinaryOpExpr.from(vc, BinaryOpExpr.from(vc, ConstantExpr.from(vc, 2.0), avg, "*"), sumLin, "*"),
+                    "-");
+            squares = BinaryOpExpr.from(vc, squares,
+                    BinaryOpExpr.from(vc, BinaryOpExpr.from(vc, avg, avg, "*"), sumOne, "*"), "+");
+            Expr variance = BinaryOpExpr.from(vc, withReplacementFactor(n), squares, "*");
+            return BinaryOpExpr.from(vc, variance, BinaryOpExpr.from(vc, totalWeight, totalWeight, "*"), "/");
+        } else if (f.getFuncName().equals(FuncExpr.FuncName.COUNT_DISTINCT) && sampleType().equals("universe")) {
+            Expr keyVarWeight = BinaryOpExpr.from(vc,
+                    BinaryOpExpr.from(vc, ConstantExpr.from(vc, 1.0), ratio, "-"),
+                    BinaryOpExpr.from(vc, ratio, ratio, "*"), "/");
+            return BinaryOpExpr.from(vc, f, keyVarWeight, "*");
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * n/(n-1) * (sum(y^2) - sum(y)^2/n). The absolute value guards against tiny
+     * negative values caused by rounding errors (e.g., for count(*) on a uniform
+     * sample, whose variance is zero).
+     */
+    private Expr withReplacementVariance(Expr sum, Expr sumOfSquares, Expr n) {
+        Expr squares = BinaryOpExpr.from(vc, sumOfSquares,
+                BinaryOpExpr.from(vc, BinaryOpExpr.from(vc, sum, sum, "*"), n, "/"), "-");
+        return new FuncExpr(FuncExpr.FuncName.ABS, BinaryOpExpr.from(vc, withReplacementFactor(n), squares, "*"));
+    }
+
+    private Expr withReplacementFactor(Expr n) {
+        return BinaryOpExpr.from(vc, n, BinaryOpExpr.from(vc, n, ConstantExpr.from(vc, 1.0), "-"), "/");
+    }
+
+    /**
+     * Computes the estimates and their bootstrap error bounds in a single scan of
+     * the sample. Every sampled tuple carries B Poisson(1) multiplicities, one per
+     * bootstrap trial (B is verdict.error_bound.bootstrapping.num_of_trials), and
+     * every aggregate element is computed once more per trial in the same
+     * aggregation, with its aggregate functions weighted by that trial's
+     * multiplicities. The error bound is the standard deviation of the B replicates,
+     * computed from their deviations from their mean, which is projected first.
+     * Since whole select elements are recomputed, this also bounds nonlinear
+     * expressions of aggregates (e.g., ratios). Every trial adds columns to the
+     * query; thus, B is capped at verdict.error_bound.bootstrapping.max_trials, and
+     * the sums over the trials are balanced so that the expressions stay shallow.
+     * 
+     * Tuples are resampled independently, which requires a single sample table;
+     * universe samples qualify only for count-distincts. Other aggregations fall
+     * back to subsampling.
+     */
+    @Override
+    public ExactRelation rewriteWithBootstrappedErrorBounds() {
+        if (usesCountDistinctSketches()) {
+            return rewriteWithSubsampledErrorBounds();
+        }
+        if (!doesIncludeSample()) {
+            return exactRelation();
+        }
+        if (!supportsBootstrappedErrorBounds()) {
+            VerdictLogger.debug(this, "Tuples cannot be resampled independently; falls back to subsampling.");
+            return rewriteWithSubsampledErrorBounds();
+        }
+
+        ExprBuilder b = new ExprBuilder(vc);
+        int trials = Math.max(2,
+                Math.min(vc.getConf().bootstrappingTrialCount(), vc.getConf().bootstrappingMaxTrials()));
+        if (vc.getConf().bootstrappingTrialCount() > trials) {
+            VerdictLogger.warn(this, String.format(
+                    "%d bootstrap trials are requested, but at most %d are computed "
+                            + "(verdict.error_bound.bootstrapping.max_trials).",
+                    vc.getConf().bootstrappingTrialCount(), trials));
+        }
+        String randCol = vc.getConf().bootstrappingRandomValueColumn();
+        String mulCol = vc.getConf().bootstrappingMultiplicityColumn();
+
+        ExactRelation sampled = null;
+        List<Expr> groupby = new ArrayList<Expr>();
+        if (source instanceof ApproxGroupedRelation) {
+            ApproxGroupedRelation grouped = (ApproxGroupedRelation) source;
+            sampled = grouped.getSource().rewriteWithPartition();
+            groupby = grouped.groupbyWithTablesSubstituted();
+        } else {
+            sampled = source.rewriteWithPartition();
+        }
+
+        // a uniform random number per tuple and trial, from which the multiplicity is
+        // drawn. the multiplicities are projected separately since each of them
+        // refers to its random number several times.
+        List<SelectElem> randElems = new ArrayList<SelectElem>();
+        List<SelectElem> mulElems = new ArrayList<SelectElem>();
+        randElems.add(b.allColumns());
+        mulElems.add(b.allColumns());
+        for (int t = 1; t <= trials; t++) {
+            randElems.add(b.as(vc.getDbms().independentRandomNumber(t), randCol + t));
+            mulElems.add(b.as(poissonMultiplicity(b, b.col(randCol + t)), mulCol + t));
+        }
+        ExactRelation resampled = sampled.selectElems(randElems).selectElems(mulElems);
+        String tab = resampled.getAlias();
+
+        List<Expr> newGroupby = new ArrayList<Expr>();
+        for (Expr g : groupby) {
+            newGroupby.add(g.withTableSubstituted(tab));
+        }
+        ExactRelation newSource = resampled;
+        if (newGroupby.size() > 0) {
+            newSource = new GroupedRelation(vc, resampled, newGroupby);
+        }
+
+        Expr prob = source.tupleProbabilityColumn().withTableSubstituted(tab);
+        Expr ratio = source.tableSamplingRatio();
+
+        // the estimates and the replicates, then the means of the replicates, then
+        // their standard deviations
+        List<SelectElem> aggElems = new ArrayList<SelectElem>();
+        List<SelectElem> meanElems = new ArrayList<SelectElem>();
+        List<SelectElem> errorElems = new ArrayList<SelectElem>();
+        meanElems.add(b.allColumns());
+        String aggAlias = genTableAlias();
+        String meanAlias = genTableAlias();
+        for (SelectElem elem : elems) {
+            if (!elem.isagg()) {
+                aggElems.add(new SelectElem(vc, elem.getExpr().withTableSubstituted(tab), elem.getAlias()));
+                if (elem.getAlias() == null) {
+                    errorElems.add(new SelectElem(vc, elem.getExpr().withTableSubstituted(meanAlias)));
+                } else {
+                    errorElems.add(new SelectElem(vc, new ColNameExpr(vc, elem.getAlias(), meanAlias), elem.getAlias()));
+                }
+                continue;
+            }
+
+            Expr agg = elem.getExpr().withTableSubstituted(tab);
+            aggElems.add(new SelectElem(vc, resampledAggregate(agg, prob, ratio, null), elem.getAlias()));
+            errorElems.add(new SelectElem(vc, new ColNameExpr(vc, elem.getAlias(), meanAlias), elem.getAlias()));
+
+            // no error estimations for extreme statistics
+            if (elem.getExpr().isMax() || elem.getExpr().isMin()) {
+                continue;
+            }
+
+            List<String> replicateAliases = new ArrayList<String>();
+            List<Expr> replicates = new ArrayList<Expr>();
+            for (int t = 1; t <= trials; t++) {
+                String replicateAlias = genColumnAlias();
+                Expr replicate = resampledAggregate(agg, prob, ratio, b.col(tab, mulCol + t));
+                aggElems.add(new SelectElem(vc, replicate, replicateAlias));
+                replicateAliases.add(replicateAlias);
+                replicates.add(new ColNameExpr(vc, replicateAlias, aggAlias));
+            }
+
+            String meanColumn = genColumnAlias();
+            meanElems.add(b.as(b.div(balancedSum(b, replicates), b.constant(trials)), meanColumn));
+
+            Expr mean = new ColNameExpr(vc, meanColumn, meanAlias);
+            List<Expr> squaredDeviations = new ArrayList<Expr>();
+            for (String replicateAlias : replicateAliases) {
+                Expr deviation = b.sub(new ColNameExpr(vc, replicateAlias, meanAlias), mean);
+                squaredDeviations.add(b.mul(deviation, deviation));
+            }
+            Expr variance = b.div(balancedSum(b, squaredDeviations), b.constant(trials - 1));
+            Expr error = b.mul(FuncExpr.sqrt(variance), ConstantExpr.from(vc, confidenceIntervalMultiplier()));
+            errorElems.add(new SelectElem(vc, error, Relation.errorBoundColumn(elem.getAlias())));
+        }
+
+        ExactRelation r = new AggregatedRelation(vc, newSource, aggElems);
+        r.setAlias(aggAlias);
+        r = new ProjectedRelation(vc, r, meanElems);
+        r.setAlias(meanAlias);
+        r = new ProjectedRelation(vc, r, errorElems);
+        r.setAlias(getAlias());
+        return r;
+    }
+
+    /**
+     * The sum of the terms as a balanced tree of additions, whose depth grows with
+     * the logarithm of the number of terms.
+     */
+    private static Expr balancedSum(ExprBuilder b, List<Expr> terms) {
+        if (terms.size() == 1) {
+            return terms.get(0);
+        }
+        int half = terms.size() / 2;
+        return b.add(balancedSum(b, terms.subList(0, half)), balancedSum(b, terms.subList(half, terms.size())));
+    }
+
+    /**
+     * True if the source is a (filtered, grouped, or projected) single sample table
+     * whose tuples are sampled independently for the aggregates: uniform or
+     * stratified, or universe if all the aggregates are count-distincts.
+     */
+    protected boolean supportsBootstrappedErrorBounds() {
+        if (!isSingleSampleTable(source) || hasPercentiles()) {
+            return false;
+        }
+        if (!sampleType().equals("universe")) {
+            return true;
+        }
+
+        final boolean[] nonDistinctAggregate = new boolean[] { false };
+        ExprModifier v = new ExprModifier(vc) {
+            @Override
+            public Expr visitExpr(Expr expr) {
+                if (expr.isagg() && expr instanceof FuncExpr && !expr.isCountDistinct()) {
+                    nonDistinctAggregate[0] = true;
+                }
+                return super.visitExpr(expr);
+            }
+        };
+        for (SelectElem elem : elems) {
+            if (elem.isagg()) {
+                v.visit(elem.getExpr());
+            }
+        }
+        return !nonDistinctAggregate[0];
+    }
+
+    private static boolean isSingleSampleTable(ApproxRelation r) {
+        if (r instanceof ApproxSingleRelation) {
+            return !r.sampleType().equals("nosample");
+        } else if (r instanceof ApproxFilteredRelation) {
+            return isSingleSampleTable(((ApproxFilteredRelation) r).getSource());
+        } else if (r instanceof ApproxGroupedRelation) {
+            return isSingleSampleTable(((ApproxGroupedRelation) r).getSource());
+        } else if (r instanceof ApproxProjectedRelation) {
+            return isSingleSampleTable(((ApproxProjectedRelation) r).getSource());
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * True if the relation is a (filtered, grouped, or projected) single table,
+     * either a sample or an original table.
+     */
+    private static boolean isSingleTable(ApproxRelation r) {
+        if (r instanceof ApproxSingleRelation) {
+            return true;
+        } else if (r instanceof ApproxFilteredRelation) {
+            return isSingleTable(((ApproxFilteredRelation) r).getSource());
+        } else if (r instanceof ApproxGroupedRelation) {
+            return isSingleTable(((ApproxGroupedRelation) r).getSource());
+        } else if (r instanceof ApproxProjectedRelation) {
+            return isSingleTable(((ApproxProjectedRelation) r).getSource());
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * A Poisson(1) random number drawn by inverting its cumulative distribution at
+     * the given uniform random number.
+     */
+    private Expr poissonMultiplicity(ExprBuilder b, Expr uniform) {
+        List<Cond> conds = new ArrayList<Cond>();
+        List<Expr> values = new ArrayList<Expr>();
+        double pmf = Math.exp(-1);
+        double cdf = pmf;
+        for (int k = 0; k < 7; k++) {
+            conds.add(b.lt(uniform, b.decimal(cdf)));
+            values.add(b.constant(k));
+            pmf = pmf / (k + 1);
+            cdf += pmf;
+        }
+        return b.caseWhen(conds, values, b.constant(7));
+    }
+
+    /**
+     * Scales the aggregate functions in the expression with the sampling
+     * probabilities and, if given, weights the tuples with the multiplicities of a
+     * bootstrap trial.
+     */
+    private Expr resampledAggregate(Expr expr, final Expr prob, final Expr ratio, final Expr multiplicity) {
+        final ExprBuilder b = new ExprBuilder(vc);
+
+        ExprModifier v = new ExprModifier(vc) {
+            @Override
+            public Expr visitExpr(Expr e) {
+                if (!(e instanceof FuncExpr) || !e.isagg()) {
+                    return super.visitExpr(e);
+                }
+
+                FuncExpr f = (FuncExpr) e;
+                Expr weight = b.div(b.constant(1.0), prob);
+                if (multiplicity != null) {
+                    weight = b.mul(multiplicity, weight);
+                }
+
+                if (f.getFuncName().equals(FuncExpr.FuncName.COUNT)) {
+                    Expr est = FuncExpr.sum(weight);
+                    return (multiplicity == null) ? FuncExpr.round(est) : est;
+                } else if (f.getFuncName().equals(FuncExpr.FuncName.SUM)) {
+                    return FuncExpr.sum(b.mul(f.getUnaryExpr(), weight));
+                } else if (f.getFuncName().equals(FuncExpr.FuncName.AVG)) {
+                    return b.div(FuncExpr.sum(b.mul(f.getUnaryExpr(), weight)),
+                            countNotNull(f.getUnaryExpr(), weight));
+                }
+
+                // the others are computed on the tuples drawn at least once.
+                Expr x = f.getUnaryExpr();
+                if (multiplicity != null) {
+                    x = b.caseWhen(b.compare(multiplicity, ">", b.constant(0)), x, b.constant("NULL"));
+                }
+                if (f.getFuncName().equals(FuncExpr.FuncName.COUNT_DISTINCT)) {
+                    Expr est = new FuncExpr(FuncExpr.FuncName.COUNT_DISTINCT, x);
+                    if (sampleType().equals("universe")) {
+                        est = b.div(est, ratio);
+                    }
+                    return (multiplicity == null) ? FuncExpr.round(est) : est;
+                } else {
+                    return new FuncExpr(f.getFuncName(), x);
+                }
+            }
+        };
+
+        return v.visit(expr);
+    }
+
     /**
      * This relation must include partition numbers, and the answers must be scaled
      * properly. Note that {@link ApproxRelation#rewriteWithSubsampledErrorBounds()}
@@ -249,7 +915,7 @@ public class ApproxAggregatedRelation extends ApproxRelation {
      */
     @Override
     protected ExactRelation rewriteWithPartition() {
-        return rewriteWithPartition(false);
+        return rewriteWithPartition(false, false);
     }
 
     /**
@@ -260,22 +926,49 @@ public class ApproxAggregatedRelation extends ApproxRelation {
      * @param projectUnprojectedGroups
      *            This option is used by
      *            {@link ApproxAggregatedRelation#rewriteWithSubsampledErrorBounds()}.
+     * @param foldScaling
+     *            If true, COUNT and SUM (when not part of larger expressions) are not
+     *            scaled by the partition sizes, which needs a window function per
+     *            group; {@link ApproxAggregatedRelation#rewriteWithSubsampledErrorBounds()}
+     *            scales them in its combining aggregation instead.
      * @return
      */
-    protected ExactRelation rewriteWithPartition(boolean projectUnprojectedGroups) {
-        ExactRelation newSource = partitionedSource();
+    protected ExactRelation rewriteWithPartition(boolean projectUnprojectedGroups, boolean foldScaling) {
+        return rewriteWithPartition(projectUnprojectedGroups, foldScaling, vc.getConf().subsamplingPartitionCount());
+    }
+
+    /**
+     * @param partitionCount
+     *            The number of partitions the subsampling partitions are collapsed
+     *            into; see {@link #effectivePartitionCount()}.
+     */
+    protected ExactRelation rewriteWithPartition(boolean projectUnprojectedGroups, boolean foldScaling,
+            int partitionCount) {
+        // the percentiles are computed per partition from the cumulative weights,
+        // which are projected over the sample before grouping.
+        CumulativeWeights weights = null;
+        ExactRelation newSource = null;
+        if (weightsPercentiles()) {
+            weights = cumulativeWeightsForPartitions(partitionCount);
+            newSource = weights.getGrouped();
+        } else {
+            newSource = partitionedSource(partitionCount);
+        }
 
         List<SelectElem> scaledElems = new ArrayList<SelectElem>();
         List<Expr> groupby = new ArrayList<Expr>();
         if (source instanceof ApproxGroupedRelation) {
-            groupby.addAll(((ApproxGroupedRelation) source).getGroupby());
+            groupby.addAll(moved(((ApproxGroupedRelation) source).getGroupby(), weights));
         }
         ColNameExpr partitionColExpr = newSource.partitionColumn();
-        Expr tupleSamplingProbExpr = source.tupleProbabilityColumn();
+        Expr tupleSamplingProbExpr = moved(source.tupleProbabilityColumn(), weights);
         Expr tableSamplingRatioExpr = source.tableSamplingRatio();
 
         SingleFunctionTransformerForSubsampling transformer = new SingleFunctionTransformerForSubsampling(vc, groupby,
-                partitionColExpr, tupleSamplingProbExpr, tableSamplingRatioExpr);
+                partitionColExpr, tupleSamplingProbExpr, tableSamplingRatioExpr, partitionCount, true, weights);
+        SingleFunctionTransformerForSubsampling unscaledTransformer = new SingleFunctionTransformerForSubsampling(vc,
+                groupby, partitionColExpr, tupleSamplingProbExpr, tableSamplingRatioExpr, partitionCount, false,
+                weights);
 
         // copies groupby expressions (used if projectUnprojectedGroups is set to true)
         // this extra groupby is needed when the user-submitted query does not include the groupby columns
@@ -283,7 +976,7 @@ public class ApproxAggregatedRelation extends ApproxRelation {
         // these extra grouping attributes will be projected out eventually.
         List<ColNameExpr> unappearingGroups = new ArrayList<ColNameExpr>();
         if (source instanceof ApproxGroupedRelation) {
-            for (Expr e : ((ApproxGroupedRelation) source).getGroupby()) {
+            for (Expr e : moved(((ApproxGroupedRelation) source).getGroupby(), weights)) {
                 if (e instanceof ColNameExpr) {
                     unappearingGroups.add((ColNameExpr) e);
                 }
@@ -293,7 +986,8 @@ public class ApproxAggregatedRelation extends ApproxRelation {
         for (SelectElem elem : elems) {
             if (!elem.isagg()) {
                 // group-by attribute
-                scaledElems.add(elem);
+                scaledElems.add((weights == null) ? elem
+                        : new SelectElem(vc, moved(elem.getExpr(), weights), elem.getAlias()));
 
                 // update unappearingGroups by removing the attributes that appeared
                 Expr e = elem.getExpr();
@@ -309,10 +1003,10 @@ public class ApproxAggregatedRelation extends ApproxRelation {
                     }
                 }
             } else {
-                Expr agg = elem.getExpr();
+                Expr agg = moved(elem.getExpr(), weights);
                 // Expr scaled = transformForSingleFunctionWithPartitionSize(agg, groupby,
                 // partitionColExpr, tupleSamplingProbExpr, tableSamplingRatio);
-                Expr scaled = transformer.call(agg);
+                Expr scaled = (foldScaling && isFoldable(agg)) ? unscaledTransformer.call(agg) : transformer.call(agg);
                 scaledElems.add(new SelectElem(vc, scaled, elem.getAlias()));
             }
         }
@@ -325,9 +1019,10 @@ public class ApproxAggregatedRelation extends ApproxRelation {
         }
 
         // insert partition number if exists
-        ColNameExpr partitionCol = newSource.partitionColumn();
+        ColNameExpr partitionCol = (weights == null) ? newSource.partitionColumn() : weights.getPartitionColumn();
         if (partitionCol != null) {
-            scaledElems.add(new SelectElem(vc, newSource.partitionColumn(), partitionColumnName()));
+            scaledElems.add(
+                    new SelectElem(vc, collapsedPartition(partitionCol, partitionCount), partitionColumnName()));
         }
 
         // to compute the partition size
@@ -343,14 +1038,446 @@ public class ApproxAggregatedRelation extends ApproxRelation {
         return r;
     }
 
-    private ExactRelation partitionedSource() {
+    /**
+     * True if the partition sizes can be applied to the aggregate after combining
+     * the partitions.
+     */
+    private static boolean isFoldable(Expr agg) {
+        if (!(agg instanceof FuncExpr)) {
+            return false;
+        }
+        FuncExpr.FuncName name = ((FuncExpr) agg).getFuncName();
+        return name.equals(FuncExpr.FuncName.COUNT) || name.equals(FuncExpr.FuncName.SUM);
+    }
+
+    private boolean hasPercentiles() {
+        return !percentiles().isEmpty();
+    }
+
+    /**
+     * True if the percentiles are computed from cumulative weights: on a single
+     * sample table, and on a single original table if the DBMS does not provide
+     * the percentile functions.
+     */
+    private boolean weightsPercentiles() {
+        if (!hasPercentiles()) {
+            return false;
+        }
+        if (isSingleSampleTable(source)) {
+            return true;
+        }
+        return isSingleTable(source) && !hasNativePercentiles();
+    }
+
+    private boolean hasNativePercentiles() {
+        for (FuncExpr f : percentiles()) {
+            if (vc.getDbms().approxPercentile(f.getExpressions().get(0), f.getExpressions().get(1)) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The query on the original tables, for a relation that includes no sample.
+     */
+    private ExactRelation exactRelation() {
+        return weightsPercentiles() ? rewriteForPointEstimate() : getOriginalRelation();
+    }
+
+    private List<FuncExpr> percentiles() {
+        final List<FuncExpr> percentiles = new ArrayList<FuncExpr>();
+        ExprModifier v = new ExprModifier(vc) {
+            @Override
+            public Expr visitExpr(Expr expr) {
+                if (expr.isPercentile()) {
+                    percentiles.add((FuncExpr) expr);
+                }
+                return super.visitExpr(expr);
+            }
+        };
+        for (SelectElem elem : elems) {
+            if (elem.isagg()) {
+                v.visit(elem.getExpr());
+            }
+        }
+        return percentiles;
+    }
+
+    private static Expr moved(Expr expr, CumulativeWeights weights) {
+        return (weights == null) ? expr : moved(expr, weights.getAlias());
+    }
+
+    private static List<Expr> moved(List<Expr> exprs, CumulativeWeights weights) {
+        return (weights == null) ? new ArrayList<Expr>(exprs) : moved(exprs, weights.getAlias());
+    }
+
+    private static Expr moved(Expr expr, String tab) {
+        return expr.withTableSubstituted(tab);
+    }
+
+    private static List<Expr> moved(List<Expr> exprs, String tab) {
+        List<Expr> movedExprs = new ArrayList<Expr>();
+        for (Expr e : exprs) {
+            movedExprs.add(moved(e, tab));
+        }
+        return movedExprs;
+    }
+
+    /**
+     * The cumulative weights within every group and (collapsed) partition.
+     */
+    private CumulativeWeights cumulativeWeightsForPartitions(int partitionCount) {
+        ExactRelation sampled = null;
+        List<Expr> groupby = new ArrayList<Expr>();
+        if (source instanceof ApproxGroupedRelation) {
+            ApproxGroupedRelation grouped = (ApproxGroupedRelation) source;
+            sampled = grouped.getSource().rewriteWithPartition();
+            groupby = grouped.groupbyWithTablesSubstituted();
+        } else {
+            sampled = source.rewriteWithPartition();
+        }
+        groupby.add(collapsedPartition(sampled.partitionColumn(), partitionCount));
+        return new CumulativeWeights(sampled, groupby);
+    }
+
+    /**
+     * The cumulative weights within every group.
+     */
+    private CumulativeWeights cumulativeWeightsForPointEstimate() {
+        ExactRelation sampled = null;
+        List<Expr> groupby = new ArrayList<Expr>();
         if (source instanceof ApproxGroupedRelation) {
+            ApproxGroupedRelation grouped = (ApproxGroupedRelation) source;
+            sampled = grouped.getSource().rewriteForPointEstimate();
+            groupby = grouped.groupbyWithTablesSubstituted();
+        } else {
+            sampled = source.rewriteForPointEstimate();
+        }
+        return new CumulativeWeights(sampled, groupby);
+    }
+
+    /**
+     * A tuple with sampling probability p stands for 1/p tuples of the original
+     * table. For every percentile argument x, this projects over the sample the
+     * running sum of these weights in the order of x and their total, both over
+     * the tuples whose x is not null and within the same window. The weighted p-th
+     * quantile of a window is then the smallest x whose running sum reaches p times
+     * the total, i.e., min(case when running &gt;= p * total then x end) grouped by
+     * the window.
+     */
+    class CumulativeWeights {
+
+        private final ExactRelation grouped;
+
+        private final String alias;
+
+        private final ColNameExpr partitionColumn;
+
+        /** the percentile arguments, with the table substituted */
+        private final List<Expr> arguments = new ArrayList<Expr>();
+
+        private final List<String> runningWeights = new ArrayList<String>();
+
+        private final List<String> totalWeights = new ArrayList<String>();
+
+        /**
+         * @param sampled
+         *            the sample, not grouped
+         * @param window
+         *            the expressions on the sample by which the weights are
+         *            partitioned; the grouped relation is grouped by them.
+         */
+        CumulativeWeights(ExactRelation sampled, List<Expr> window) {
+            ExprBuilder b = new ExprBuilder(vc);
+            Expr weight = b.div(b.constant(1.0), source.tupleProbabilityColumn());
+
+            List<Expr> sampledArguments = new ArrayList<Expr>();
+            List<SelectElem> windowElems = new ArrayList<SelectElem>();
+            windowElems.add(b.allColumns());
+            for (FuncExpr f : percentiles()) {
+                Expr x = f.getExpressions().get(0);
+                if (sampledArguments.contains(x)) {
+                    continue;
+                }
+                sampledArguments.add(x);
+                Expr w = b.caseWhen(b.isNull(x), b.constant(0), weight);
+                String running = genColumnAlias();
+                String total = genColumnAlias();
+                windowElems.add(b.as(new FuncExpr(FuncExpr.FuncName.SUM, w,
+                        OverClause.cumulative(window, Arrays.asList(x))), running));
+                windowElems.add(b.as(new FuncExpr(FuncExpr.FuncName.SUM, w, new OverClause(window)), total));
+                runningWeights.add(running);
+                totalWeights.add(total);
+            }
+
+            ExactRelation weighted = sampled.selectElems(windowElems);
+            alias = weighted.getAlias();
+            for (Expr x : sampledArguments) {
+                arguments.add(x.withTableSubstituted(alias));
+            }
+            ColNameExpr sampledPartition = sampled.partitionColumn();
+            partitionColumn = (sampledPartition == null) ? null
+                    : new ColNameExpr(vc, sampledPartition.getCol(), alias);
+
+            List<Expr> groupby = new ArrayList<Expr>();
+            for (Expr e : window) {
+                groupby.add(e.withTableSubstituted(alias));
+            }
+            grouped = groupby.isEmpty() ? weighted : new GroupedRelation(vc, weighted, groupby);
+        }
+
+        /**
+         * @return the projection of the cumulative weights, grouped by the window.
+         */
+        ExactRelation getGrouped() {
+            return grouped;
+        }
+
+        String getAlias() {
+            return alias;
+        }
+
+        ColNameExpr getPartitionColumn() {
+            return partitionColumn;
+        }
+
+        /**
+         * @param f
+         *            a percentile over the projection of the cumulative weights
+         */
+        Expr quantile(FuncExpr f) {
+            Expr x = f.getExpressions().get(0);
+            int i = arguments.indexOf(x);
+            if (i < 0) {
+                return f;
+            }
+            ExprBuilder b = new ExprBuilder(vc);
+            Cond reached = b.ge(b.col(alias, runningWeights.get(i)),
+                    b.mul(f.getExpressions().get(1), b.col(alias, totalWeights.get(i))));
+            return FuncExpr.min(new CaseExpr(vc, Arrays.<Cond>asList(reached), Arrays.<Expr>asList(x)));
+        }
+    }
+
+    /**
+     * @return the DBMS-native approximate count-distinct of expr if
+     *         verdict.count_distinct.native_sketch is set; null otherwise or if the
+     *         DBMS does not provide one.
+     */
+    private Expr nativeCountDistinct(Expr expr) {
+        if (!vc.getConf().countDistinctNativeSketch()) {
+            return null;
+        }
+        return vc.getDbms().approxCountDistinct(expr);
+    }
+
+    /**
+     * True if this relation does not include a sample but its aggregates are
+     * count-distincts on a single column of a single table, and they are computed
+     * with the DBMS-native sketches (see {@link #rewriteWithSketchedPartitions()}).
+     */
+    protected boolean usesCountDistinctSketches() {
+        if (doesIncludeSample() || !isSingleTable(source)) {
+            return false;
+        }
+        ColNameExpr col = countDistinctColumn();
+        return col != null && nativeCountDistinct(col) != null;
+    }
+
+    /**
+     * @return the column all the aggregates count the distinct values of, or null
+     *         if there is no such column.
+     */
+    private ColNameExpr countDistinctColumn() {
+        ColNameExpr col = null;
+        for (SelectElem elem : elems) {
+            if (!elem.isagg()) {
+                continue;
+            }
+            Expr agg = elem.getExpr();
+            if (!(agg instanceof FuncExpr) || !agg.isCountDistinct()
+                    || !(((FuncExpr) agg).getUnaryExpr() instanceof ColNameExpr)) {
+                return null;
+            }
+            ColNameExpr arg = (ColNameExpr) ((FuncExpr) agg).getUnaryExpr();
+            if (col == null) {
+                col = arg;
+            } else if (!col.getCol().equals(arg.getCol())) {
+                return null;
+            }
+        }
+        return col;
+    }
+
+    /**
+     * Count-distincts on an original table, with the same columns as
+     * {@link #rewriteWithPartition(boolean, boolean, int)}. As for universe
+     * samples, the tuples are partitioned by the hash of the column, so that every
+     * distinct value belongs to a single partition. The distinct values of every
+     * (group, partition) are counted with the DBMS-native sketch. Since the
+     * partitions are disjoint, their counts add up to the estimate (a partition
+     * without tuples adds nothing); the variance of the counts scaled by the
+     * partition count gives the error bounds (see {@link Combining#DISJOINT_SUM}).
+     * Only the sketches are shuffled, not the distinct values.
+     */
+    protected ExactRelation rewriteWithSketchedPartitions() {
+        ExprBuilder b = new ExprBuilder(vc);
+        int partitionCount = vc.getConf().subsamplingPartitionCount();
+        ColNameExpr col = countDistinctColumn();
+
+        ExactRelation table = null;
+        List<Expr> groupby = new ArrayList<Expr>();
+        if (source instanceof ApproxGroupedRelation) {
+            ApproxGroupedRelation grouped = (ApproxGroupedRelation) source;
+            table = grouped.getSource().rewriteForPointEstimate();
+            groupby = grouped.groupbyWithTablesSubstituted();
+        } else {
+            table = source.rewriteForPointEstimate();
+        }
+        Expr hash = ConstantExpr.from(vc, vc.getDbms().modOfHash(col.getCol(), partitionCount));
+        ExactRelation hashed = table.selectElems(Arrays.asList(b.allColumns(), b.as(hash, partitionColumnName())));
+        String tab = hashed.getAlias();
+        ColNameExpr partitionCol = new ColNameExpr(vc, partitionColumnName(), tab);
+
+        List<Expr> newGroupby = moved(groupby, tab);
+        List<String> groupColumns = new ArrayList<String>();
+        for (Expr g : newGroupby) {
+            if (g instanceof ColNameExpr) {
+                groupColumns.add(((ColNameExpr) g).getCol());
+            }
+        }
+        newGroupby.add(partitionCol);
+
+        List<SelectElem> partitionedElems = new ArrayList<SelectElem>();
+        for (SelectElem elem : elems) {
+            Expr e = moved(elem.getExpr(), tab);
+            if (!elem.isagg()) {
+                partitionedElems.add(new SelectElem(vc, e, elem.getAlias()));
+                if (e instanceof ColNameExpr) {
+                    groupColumns.remove(((ColNameExpr) e).getCol());
+                }
+            } else {
+                Expr sketch = nativeCountDistinct(((FuncExpr) e).getUnaryExpr());
+                partitionedElems.add(new SelectElem(vc, sketch, elem.getAlias()));
+            }
+        }
+
+        // the group-by columns not in the select list, the partition number, the
+        // partition size, and the sampling probability.
+        for (String g : groupColumns) {
+            partitionedElems.add(new SelectElem(vc, new ColNameExpr(vc, g, tab)));
+        }
+        partitionedElems.add(new SelectElem(vc, partitionCol, partitionColumnName()));
+        partitionedElems.add(new SelectElem(vc, FuncExpr.count(), partitionSizeAlias));
+        partitionedElems.add(new SelectElem(vc, FuncExpr.avg(ConstantExpr.from(vc, samplingProbability())),
+                samplingProbabilityColumnName()));
+
+        ExactRelation r = new AggregatedRelation(vc, new GroupedRelation(vc, hashed, newGroupby), partitionedElems);
+        r.setAlias(getAlias());
+        return r;
+    }
+
+    private ExactRelation partitionedSource(int partitionCount) {
+        if (source instanceof ApproxGroupedRelation) {
+            if (partitionCount < vc.getConf().subsamplingPartitionCount()) {
+                // group by the collapsed partitions instead of the original ones.
+                ApproxGroupedRelation grouped = (ApproxGroupedRelation) source;
+                ExactRelation newSource = grouped.getSource().rewriteWithPartition();
+                List<Expr> newGroupby = grouped.groupbyWithTablesSubstituted();
+                newGroupby.add(collapsedPartition(newSource.partitionColumn(), partitionCount));
+                return new GroupedRelation(vc, newSource, newGroupby);
+            }
             return source.rewriteWithPartition();
         } else {
             return (new ApproxGroupedRelation(vc, source, Arrays.<Expr>asList())).rewriteWithPartition();
         }
     }
 
+    private Expr collapsedPartition(ColNameExpr partitionCol, int partitionCount) {
+        if (partitionCount < vc.getConf().subsamplingPartitionCount()) {
+            return BinaryOpExpr.from(vc, partitionCol, ConstantExpr.from(vc, partitionCount), "%");
+        }
+        return partitionCol;
+    }
+
+    /**
+     * The number of partitions used for subsampling. A group-by query produces a
+     * row per group and partition before the partitions are combined; when the
+     * sample has many groups, this many rows are both costly and too few per
+     * partition to be useful. In that case, the partitions are collapsed into k
+     * partitions (verdict_vpart % k), where k divides the partition count (so that
+     * the collapsed partitions are of the same size) and is the largest such
+     * divisor that keeps the rows within both the number of groups times
+     * max_intermediate_rows and the sample size, unless that is fewer than
+     * min_partition_count.
+     * 
+     * @return the partition count in the configuration if the partitions are not
+     *         collapsed.
+     */
+    protected int effectivePartitionCount() {
+        int partitionCount = vc.getConf().subsamplingPartitionCount();
+        if (!vc.getConf().subsamplingAdaptivePartitionCount() || !(source instanceof ApproxGroupedRelation)
+                || sampleTableCount(source) < 1) {
+            return partitionCount;
+        }
+
+        List<ApproxSingleRelation> samples = new ArrayList<ApproxSingleRelation>();
+        ErrorPredictor.collectSamples(source, samples);
+        if (samples.size() != 1) {
+            return partitionCount;
+        }
+        ApproxSingleRelation sample = samples.get(0);
+        Set<String> sampleColumns = vc.getMeta().getColumns(sample.getSampleName());
+        if (sampleColumns == null || !sampleColumns.contains(partitionColumnName())) {
+            return partitionCount;
+        }
+
+        // the groups must be the columns of the sample table.
+        List<String> groupColumns = new ArrayList<String>();
+        for (Expr e : ((ApproxGroupedRelation) source).getGroupby()) {
+            if (!(e instanceof ColNameExpr) || !sampleColumns.contains(((ColNameExpr) e).getCol())) {
+                return partitionCount;
+            }
+            groupColumns.add(((ColNameExpr) e).getCol());
+        }
+        if (groupColumns.isEmpty()) {
+            return partitionCount;
+        }
+
+        long groupCount = vc.getMeta().getGroupCardinality(sample.getSampleName(), groupColumns);
+        if (groupCount <= 0) {
+            return partitionCount;
+        }
+
+        // at most max_intermediate_rows rows, and at least one tuple per group and
+        // partition on average.
+        long target = Math.min(vc.getConf().subsamplingMaxIntermediateRows() / groupCount,
+                sample.getSampleSize() / groupCount);
+        if (target >= partitionCount) {
+            return partitionCount;
+        }
+
+        // the largest divisor within the target, but no fewer partitions than
+        // min_partition_count.
+        int k = (int) Math.max(target, 1);
+        while (partitionCount % k != 0) {
+            k--;
+        }
+        int minPartitionCount = Math.min(Math.max(vc.getConf().subsamplingMinPartitionCount(), 1), partitionCount);
+        if (k < minPartitionCount) {
+            k = minPartitionCount;
+            while (partitionCount % k != 0) {
+                k++;
+            }
+        }
+        if (k == partitionCount) {
+            return partitionCount;
+        }
+        VerdictLogger.debug(this, String.format("%d groups in %s; subsampling partitions are collapsed from %d to %d.",
+                groupCount, sample.getSampleName(), partitionCount, k));
+        return k;
+    }
+
     @Override
     protected Map<TableUniqueName, String> tableSubstitution() {
         return Collections.<TableUniqueName, String>emptyMap();
@@ -391,13 +1518,24 @@ public class ApproxAggregatedRelation extends ApproxRelation {
 
         final Expr tableSamplingRatioExpr;
 
+        final int partitionCount;
+
+        final boolean scaleWithPartitionSize;
+
+        /** null if the percentiles are not weighted */
+        final CumulativeWeights weights;
+
         public SingleFunctionTransformerForSubsampling(VerdictContext vc, List<Expr> groupby,
-                ColNameExpr partitionColExpr, Expr tupleSamplingProbExpr, Expr tableSamplingRatioExpr) {
+                ColNameExpr partitionColExpr, Expr tupleSamplingProbExpr, Expr tableSamplingRatioExpr,
+                int partitionCount, boolean scaleWithPartitionSize, CumulativeWeights weights) {
             super(vc);
             this.groupby = groupby;
             this.partitionColExpr = partitionColExpr;
             this.tupleSamplingProbExpr = tupleSamplingProbExpr;
             this.tableSamplingRatioExpr = tableSamplingRatioExpr;
+            this.partitionCount = partitionCount;
+            this.scaleWithPartitionSize = scaleWithPartitionSize;
+            this.weights = weights;
         }
 
         public Expr call(Expr expr) {
@@ -422,6 +1560,9 @@ public class ApproxAggregatedRelation extends ApproxRelation {
                     // scale with sampling probability
                     Expr scaled = FuncExpr
                             .sum(BinaryOpExpr.from(vc, ConstantExpr.from(vc, 1.0), tupleSamplingProbExpr, "/"));
+                    if (!scaleWithPartitionSize) {
+                        return scaled;
+                    }
                     // scale with partition size
                     scaled = BinaryOpExpr.from(vc, scaled, FuncExpr.count(), "/");
                     scaled = BinaryOpExpr.from(vc, scaled,
@@ -429,22 +1570,29 @@ public class ApproxAggregatedRelation extends ApproxRelation {
                     return scaled;
                 } else if (f.getFuncName().equals(FuncExpr.FuncName.COUNT_DISTINCT)) {
                     if (source.sampleType().contains("universe")) {
-                        Expr est = new FuncExpr(FuncExpr.FuncName.COUNT_DISTINCT, f.getUnaryExpr());
+                        Expr est = nativeCountDistinct(f.getUnaryExpr());
+                        if (est == null) {
+                            est = new FuncExpr(FuncExpr.FuncName.COUNT_DISTINCT, f.getUnaryExpr());
+                        }
                         // scale with sampling ratio
                         Expr scaled = BinaryOpExpr.from(vc, est, tableSamplingRatioExpr, "/");
                         // scale with partition size
                         scaled = BinaryOpExpr.from(vc, scaled,
-                                ConstantExpr.from(vc, vc.getConf().subsamplingPartitionCount()), "*");
+                                ConstantExpr.from(vc, partitionCount), "*");
                         // est = scaleWithPartitionSize(est, groupby, partitionCol, forErrorEst);
                         return scaled;
                     } else {
                         VerdictLogger.warn(
                                 "Universe sample should be built on the column for accurate distinct-count computations.");
-                        return f;
+                        Expr sketch = nativeCountDistinct(f.getUnaryExpr());
+                        return (sketch == null) ? f : sketch;
                     }
                 } else if (f.getFuncName().equals(FuncExpr.FuncName.SUM)) {
                     // scale with sampling probability
                     Expr scaled = FuncExpr.sum(BinaryOpExpr.from(vc, f.getUnaryExpr(), tupleSamplingProbExpr, "/"));
+                    if (!scaleWithPartitionSize) {
+                        return scaled;
+                    }
                     // scale with partition size
                     scaled = BinaryOpExpr.from(vc, scaled, FuncExpr.count(), "/");
                     scaled = BinaryOpExpr.from(vc, scaled,
@@ -467,6 +1615,9 @@ public class ApproxAggregatedRelation extends ApproxRelation {
                     // // this count-est filters out the null expressions.
                     // Expr countEst = countNotNull(s.getUnaryExpr(), scale);
                     return scaled;
+                } else if (f.isPercentile() && weights != null) {
+                    // the quantile of a partition is an estimate of the quantile of the group as is.
+                    return weights.quantile(f);
                 } else { // expected not to be visited
                     return f;
                 }
@@ -527,7 +1678,7 @@ public class ApproxAggregatedRelation extends ApproxRelation {
         return scaled;
     }
 
-    private Expr transformForSingleFunction(Expr f) {
+    private Expr transformForSingleFunction(Expr f, final CumulativeWeights weights) {
         final Map<TableUniqueName, String> sub = source.tableSubstitution();
 
         ExprModifier v = new ExprModifier(vc) {
@@ -550,7 +1701,10 @@ public class ApproxAggregatedRelation extends ApproxRelation {
                     } else if (f.getFuncName().equals(FuncExpr.FuncName.COUNT_DISTINCT)) {
                         String dbname = vc.getDbms().getName();
                         Expr scale = scaleForSampling(samplingProbExprs);
-                        if (dbname.equals("impala")) {
+                        Expr sketch = nativeCountDistinct(s.getUnaryExpr());
+                        if (sketch != null) {
+                            return FuncExpr.round(BinaryOpExpr.from(vc, sketch, scale, "*"));
+                        } else if (dbname.equals("impala")) {
                             return FuncExpr.round(BinaryOpExpr.from(vc,
                                     new FuncExpr(FuncExpr.FuncName.IMPALA_APPROX_COUNT_DISTINCT, s.getUnaryExpr()),
                                     scale, "*"));
@@ -567,6 +1721,8 @@ public class ApproxAggregatedRelation extends ApproxRelation {
                         // this count-est filters out the null expressions.
                         Expr countEst = countNotNull(s.getUnaryExpr(), scale);
                         return BinaryOpExpr.from(vc, sumEst, countEst, "/");
+                    } else if (f.isPercentile() && weights != null) {
+                        return weights.quantile(f);
                     } else { // expected not to be visited
                         return s;
                     }
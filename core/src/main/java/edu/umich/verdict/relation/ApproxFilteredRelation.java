@@ -17,6 +17,7 @@
 package edu.umich.verdict.relation;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -24,11 +25,14 @@ import org.apache.commons.lang3.tuple.Pair;
 
 import edu.umich.verdict.VerdictContext;
 import edu.umich.verdict.datatypes.TableUniqueName;
+import edu.umich.verdict.relation.condition.AndCond;
 import edu.umich.verdict.relation.condition.CompCond;
 import edu.umich.verdict.relation.condition.Cond;
 import edu.umich.verdict.relation.condition.CondModifier;
 import edu.umich.verdict.relation.condition.CondVisitor;
+import edu.umich.verdict.relation.condition.InCond;
 import edu.umich.verdict.relation.expr.ColNameExpr;
+import edu.umich.verdict.relation.expr.ConstantExpr;
 import edu.umich.verdict.relation.expr.Expr;
 import edu.umich.verdict.relation.expr.ExprModifier;
 import edu.umich.verdict.relation.expr.ExprVisitor;
@@ -40,6 +44,12 @@ import edu.umich.verdict.util.VerdictLogger;
 
 public class ApproxFilteredRelation extends ApproxRelation {
 
+    /**
+     * The selectivity assumed for an equality predicate on a single value when the
+     * number of strata of the sample is unknown.
+     */
+    static final double EQUALITY_SELECTIVITY = 0.1;
+
     private ApproxRelation source;
 
     private Cond cond;
@@ -126,6 +136,20 @@ public class ApproxFilteredRelation extends ApproxRelation {
         return r;
     }
 
+    @Override
+    public ExactRelation rewriteWithAnalyticErrorBounds() {
+        ExactRelation r = new FilteredRelation(vc, source.rewriteWithAnalyticErrorBounds(), getFilter());
+        r.setAlias(getAlias());
+        return r;
+    }
+
+    @Override
+    public ExactRelation rewriteWithBootstrappedErrorBounds() {
+        ExactRelation r = new FilteredRelation(vc, source.rewriteWithBootstrappedErrorBounds(), getFilter());
+        r.setAlias(getAlias());
+        return r;
+    }
+
     @Override
     public ExactRelation rewriteWithPartition() {
         // check if there's any comparison operations with subqueries.
@@ -254,6 +278,109 @@ public class ApproxFilteredRelation extends ApproxRelation {
         return source.samplingProbability();
     }
 
+    /**
+     * Adjusts the effective sampling probability of the source when the filter
+     * selects specific values of the columns the sample is built on.
+     * <ul>
+     * <li>A stratified sample allocates its rows evenly across the strata, so the
+     * rows of a few selected strata are sampled more densely than the table as a
+     * whole; the probability is divided by the fraction of the strata selected.</li>
+     * <li>A universe sample keeps all or none of the rows of a value, so if the
+     * filter selects fewer values than the sample is expected to keep, the
+     * probability is scaled down by the expected number of kept values.</li>
+     * </ul>
+     * Other filters (e.g., ranges) leave the probability unchanged.
+     */
+    @Override
+    public double effectiveSamplingProbability() {
+        double prob = source.effectiveSamplingProbability();
+        String type = sampleType();
+        if (!type.equals("stratified") && !type.equals("universe")) {
+            return prob;
+        }
+
+        List<String> sampleColumns = source.getColumnsOnWhichSamplesAreCreated();
+        if (sampleColumns.isEmpty()) {
+            return prob;
+        }
+        Map<String, Integer> valueCounts = equalityValueCounts(cond);
+        int selectedValues = 1;
+        for (String col : sampleColumns) {
+            if (!valueCounts.containsKey(col.toLowerCase())) {
+                return prob;
+            }
+            selectedValues *= valueCounts.get(col.toLowerCase());
+        }
+
+        if (type.equals("stratified")) {
+            long strata = strataCount(sampleColumns);
+            double selectivity = (strata > 0) ? Math.min(1.0, selectedValues / (double) strata)
+                    : Math.min(1.0, selectedValues * EQUALITY_SELECTIVITY);
+            return Math.min(1.0, prob / selectivity);
+        } else {
+            return prob * Math.min(1.0, selectedValues * prob);
+        }
+    }
+
+    /**
+     * @return the number of strata in the sample under this filter, as recorded in
+     *         the statistics of the sample when it was built, or -1 if it is
+     *         unknown.
+     */
+    private long strataCount(List<String> sampleColumns) {
+        List<ApproxSingleRelation> samples = new ArrayList<ApproxSingleRelation>();
+        ErrorPredictor.collectSamples(source, samples);
+        if (samples.size() != 1) {
+            return -1;
+        }
+        return vc.getMeta().getGroupCardinality(samples.get(0).getSampleName(), sampleColumns);
+    }
+
+    /**
+     * The columns that the conjuncts of the condition restrict to a list of
+     * constants (with "=" or "in"), mapped to the number of the constants.
+     */
+    static Map<String, Integer> equalityValueCounts(Cond cond) {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        collectEqualityValueCounts(cond, counts);
+        return counts;
+    }
+
+    private static void collectEqualityValueCounts(Cond cond, Map<String, Integer> counts) {
+        if (cond instanceof AndCond) {
+            collectEqualityValueCounts(((AndCond) cond).getLeft(), counts);
+            collectEqualityValueCounts(((AndCond) cond).getRight(), counts);
+        } else if (cond instanceof CompCond) {
+            CompCond c = (CompCond) cond;
+            if (!c.getOp().equals("=")) {
+                return;
+            }
+            if (c.getLeft() instanceof ColNameExpr && c.getRight() instanceof ConstantExpr) {
+                putMin(counts, ((ColNameExpr) c.getLeft()).getCol(), 1);
+            } else if (c.getRight() instanceof ColNameExpr && c.getLeft() instanceof ConstantExpr) {
+                putMin(counts, ((ColNameExpr) c.getRight()).getCol(), 1);
+            }
+        } else if (cond instanceof InCond) {
+            InCond c = (InCond) cond;
+            if (c.isNot() || c.getExpressionList() == null || !(c.getLeft() instanceof ColNameExpr)) {
+                return;
+            }
+            for (Expr e : c.getExpressionList()) {
+                if (!(e instanceof ConstantExpr)) {
+                    return;
+                }
+            }
+            putMin(counts, ((ColNameExpr) c.getLeft()).getCol(), c.getExpressionList().size());
+        }
+    }
+
+    private static void putMin(Map<String, Integer> counts, String col, int count) {
+        String key = col.toLowerCase();
+        if (!counts.containsKey(key) || counts.get(key) > count) {
+            counts.put(key, count);
+        }
+    }
+
     @Override
     protected boolean doesIncludeSample() {
         return source.doesIncludeSample();
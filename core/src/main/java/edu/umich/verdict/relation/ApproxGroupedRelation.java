@@ -167,18 +167,27 @@ public class ApproxGroupedRelation extends ApproxRelation {
     // ApproxAggregatedRelation.
     @Override
     public double samplingProbability() {
+        return samplingProbabilityGiven(source.samplingProbability());
+    }
+
+    @Override
+    public double effectiveSamplingProbability() {
+        return samplingProbabilityGiven(source.effectiveSamplingProbability());
+    }
+
+    private double samplingProbabilityGiven(double sourceProb) {
         Set<String> groupbyStr = columnNamesInGroupby();
         Set<String> sampleColumns = new HashSet<String>(source.getColumnsOnWhichSamplesAreCreated());
 
         if (sampleColumns.equals(groupbyStr)) {
             if (sampleType().equals("universe")) {
-                return Math.min(2 * source.samplingProbability(), 1.0);
+                return Math.min(2 * sourceProb, 1.0);
             } else if (sampleType().equals("nosample")) {
-                return Math.min(5 * source.samplingProbability(), 1.0);
+                return Math.min(5 * sourceProb, 1.0);
             }
         }
 
-        return source.samplingProbability();
+        return sourceProb;
     }
 
     @Override
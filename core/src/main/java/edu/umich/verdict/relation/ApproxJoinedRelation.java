@@ -86,6 +86,18 @@ public class ApproxJoinedRelation extends ApproxRelation {
         this(vc, source1, source2, Arrays.<Pair<Expr, Expr>>asList());
     }
 
+    public ApproxRelation getSource1() {
+        return source1;
+    }
+
+    public ApproxRelation getSource2() {
+        return source2;
+    }
+
+    public List<Pair<Expr, Expr>> getJoinCols() {
+        return joinCols;
+    }
+
     public static ApproxJoinedRelation from(VerdictJDBCContext vc, ApproxRelation source1, ApproxRelation source2,
             List<Pair<Expr, Expr>> joinCols) {
         ApproxJoinedRelation r = new ApproxJoinedRelation(vc, source1, source2, joinCols);
@@ -138,6 +150,22 @@ public class ApproxJoinedRelation extends ApproxRelation {
         return new JoinedRelation(vc, r1, r2, newJoinCond);
     }
 
+    @Override
+    public ExactRelation rewriteWithAnalyticErrorBounds() {
+        ExactRelation r1 = source1.rewriteWithAnalyticErrorBounds();
+        ExactRelation r2 = source2.rewriteWithAnalyticErrorBounds();
+        List<Pair<Expr, Expr>> newJoinCond = joinCondWithTablesSubstitutioned();
+        return new JoinedRelation(vc, r1, r2, newJoinCond);
+    }
+
+    @Override
+    public ExactRelation rewriteWithBootstrappedErrorBounds() {
+        ExactRelation r1 = source1.rewriteWithBootstrappedErrorBounds();
+        ExactRelation r2 = source2.rewriteWithBootstrappedErrorBounds();
+        List<Pair<Expr, Expr>> newJoinCond = joinCondWithTablesSubstitutioned();
+        return new JoinedRelation(vc, r1, r2, newJoinCond);
+    }
+
     @Override
     public ExactRelation rewriteWithPartition() {
         ExactRelation newSource1 = source1.rewriteWithPartition();
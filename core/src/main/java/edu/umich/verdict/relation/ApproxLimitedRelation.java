@@ -42,6 +42,14 @@ public class ApproxLimitedRelation extends ApproxRelation {
         this.alias = source.alias;
     }
 
+    public ApproxRelation getSource() {
+        return source;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
     @Override
     public ExactRelation rewriteForPointEstimate() {
         ExactRelation r = new LimitedRelation(vc, source.rewriteForPointEstimate(), limit);
@@ -56,6 +64,20 @@ public class ApproxLimitedRelation extends ApproxRelation {
         return r;
     }
 
+    @Override
+    public ExactRelation rewriteWithAnalyticErrorBounds() {
+        ExactRelation r = new LimitedRelation(vc, source.rewriteWithAnalyticErrorBounds(), limit);
+        r.setAlias(getAlias());
+        return r;
+    }
+
+    @Override
+    public ExactRelation rewriteWithBootstrappedErrorBounds() {
+        ExactRelation r = new LimitedRelation(vc, source.rewriteWithBootstrappedErrorBounds(), limit);
+        r.setAlias(getAlias());
+        return r;
+    }
+
     @Override
     public ExactRelation rewriteWithPartition() {
         ExactRelation r = new LimitedRelation(vc, source.rewriteWithPartition(), limit);
@@ -42,6 +42,14 @@ public class ApproxOrderedRelation extends ApproxRelation {
         this.alias = source.alias;
     }
 
+    public ApproxRelation getSource() {
+        return source;
+    }
+
+    public List<OrderByExpr> getOrderby() {
+        return orderby;
+    }
+
     @Override
     public ExactRelation rewriteForPointEstimate() {
         ExactRelation r = new OrderedRelation(vc, source.rewriteForPointEstimate(), orderby);
@@ -57,6 +65,22 @@ public class ApproxOrderedRelation extends ApproxRelation {
         return r;
     }
 
+    @Override
+    public ExactRelation rewriteWithAnalyticErrorBounds() {
+        ExactRelation newSource = source.rewriteWithAnalyticErrorBounds();
+        ExactRelation r = new OrderedRelation(vc, newSource, orderby);
+        r.setAlias(getAlias());
+        return r;
+    }
+
+    @Override
+    public ExactRelation rewriteWithBootstrappedErrorBounds() {
+        ExactRelation newSource = source.rewriteWithBootstrappedErrorBounds();
+        ExactRelation r = new OrderedRelation(vc, newSource, orderby);
+        r.setAlias(getAlias());
+        return r;
+    }
+
     @Override
     public ExactRelation rewriteWithPartition() {
         ExactRelation r = new OrderedRelation(vc, source.rewriteWithPartition(), orderby);
@@ -44,6 +44,10 @@ public class ApproxProjectedRelation extends ApproxRelation {
         this.elems = elems;
     }
 
+    public ApproxRelation getSource() {
+        return source;
+    }
+
     public List<SelectElem> getSelectElems() {
         return elems;
     }
@@ -102,6 +106,28 @@ public class ApproxProjectedRelation extends ApproxRelation {
         return r;
     }
 
+    @Override
+    public ExactRelation rewriteWithAnalyticErrorBounds() {
+        if (!doesIncludeSample()) {
+            return getOriginalRelation();
+        }
+
+        ExactRelation r = new ProjectedRelation(vc, source.rewriteWithAnalyticErrorBounds(), elems);
+        r.setAlias(getAlias());
+        return r;
+    }
+
+    @Override
+    public ExactRelation rewriteWithBootstrappedErrorBounds() {
+        if (!doesIncludeSample()) {
+            return getOriginalRelation();
+        }
+
+        ExactRelation r = new ProjectedRelation(vc, source.rewriteWithBootstrappedErrorBounds(), elems);
+        r.setAlias(getAlias());
+        return r;
+    }
+
     /**
      * Returns an ExactProjectRelation instance. The returned relation must include
      * the partition column. If the source relation is an ApproxAggregatedRelation,
@@ -48,10 +48,19 @@ public abstract class ApproxRelation extends Relation {
 
     protected ExactRelation original;
 
+    /**
+     * The confidence of the {@link PlanTarget} bound while this relation was
+     * planned (e.g., "AT 99% CONFIDENCE"), or null if none was bound; the error
+     * bounds are computed at this confidence.
+     */
+    private final Double targetConfidence;
+
     public ApproxRelation(VerdictContext vc) {
         super(vc);
         approximate = true;
         original = null;
+        PlanTarget target = PlanTarget.current();
+        targetConfidence = (target == null) ? null : target.getConfidence();
     }
 
     protected void setOriginalRelation(ExactRelation r) {
@@ -92,6 +101,14 @@ public abstract class ApproxRelation extends Relation {
         return new ApproxGroupedRelation(vc, this, groups);
     }
 
+    public ApproxGroupedRelation groupby(Expr... groups) {
+        return groupbyExprs(Arrays.asList(groups));
+    }
+
+    public ApproxGroupedRelation groupbyExprs(List<Expr> groups) {
+        return new ApproxGroupedRelation(vc, this, new ArrayList<Expr>(groups));
+    }
+
     /*
      * Approx
      */
@@ -113,7 +130,13 @@ public abstract class ApproxRelation extends Relation {
 
         // now insert aggregation list
         for (Object e : elems) {
-            se.add(SelectElem.from(vc, e.toString()));
+            if (e instanceof SelectElem) {
+                se.add((SelectElem) e);
+            } else if (e instanceof Expr) {
+                se.add(new SelectElem(vc, (Expr) e));
+            } else {
+                se.add(SelectElem.from(vc, e.toString()));
+            }
         }
         return new ApproxAggregatedRelation(vc, this, se);
     }
@@ -153,6 +176,8 @@ public abstract class ApproxRelation extends Relation {
             return rewriteForPointEstimate();
         } else if (vc.getConf().errorBoundMethod().equals("subsampling")) {
             return rewriteWithSubsampledErrorBounds();
+        } else if (vc.getConf().errorBoundMethod().equals("analytic")) {
+            return rewriteWithAnalyticErrorBounds();
         } else if (vc.getConf().errorBoundMethod().equals("bootstrapping")) {
             return rewriteWithBootstrappedErrorBounds();
         } else {
@@ -186,6 +211,24 @@ public abstract class ApproxRelation extends Relation {
         return null;
     }
 
+    /**
+     * Creates an exact relation that computes approximate aggregates and their
+     * error bounds in closed form. Unlike subsampling, the error bounds are
+     * computed in the same aggregation pass as the estimates (from the sums of the
+     * squared, inverse-probability-weighted values), so no partitions and no window
+     * functions are needed.
+     * 
+     * Aggregations for which closed-form bounds are not available are rewritten with
+     * {@link ApproxRelation#rewriteWithSubsampledErrorBounds()} instead.
+     * 
+     * @return
+     */
+    public ExactRelation rewriteWithAnalyticErrorBounds() {
+        VerdictLogger.error(this,
+                String.format("Calling a method, %s, on unappropriate class", "rewriteWithAnalyticErrorBounds()"));
+        return null;
+    }
+
     /**
      * Internal method for
      * {@link ApproxRelation#rewriteWithSubsampledErrorBounds()}.
@@ -204,7 +247,17 @@ public abstract class ApproxRelation extends Relation {
     // returns effective partition column name for a possibly joined table.
     // protected abstract ColNameExpr partitionColumn();
 
+    /**
+     * Creates an exact relation that computes approximate aggregates and their
+     * error bounds using the bootstrap. All the bootstrap trials are computed in a
+     * single scan of the sample tables: each tuple carries a Poisson(1)
+     * multiplicity per trial.
+     * 
+     * @return
+     */
     public ExactRelation rewriteWithBootstrappedErrorBounds() {
+        VerdictLogger.error(this,
+                String.format("Calling a method, %s, on unappropriate class", "rewriteWithBootstrappedErrorBounds()"));
         return null;
     }
 
@@ -245,6 +298,18 @@ public abstract class ApproxRelation extends Relation {
      */
     public abstract double samplingProbability();
 
+    /**
+     * The sampling probability used for ranking sample plans. Unlike
+     * {@link #samplingProbability()}, which the rewritten queries rely on, this
+     * may reflect how the relation uses the sample (e.g., a filter on the columns
+     * of a stratified sample).
+     * 
+     * @return
+     */
+    public double effectiveSamplingProbability() {
+        return samplingProbability();
+    }
+
     public abstract double cost();
 
     /**
@@ -337,26 +402,38 @@ public abstract class ApproxRelation extends Relation {
      */
 
     protected double confidenceIntervalMultiplier() {
-        double confidencePercentage = vc.getConf().errorBoundConfidenceInPercentage();
-        if (confidencePercentage == 0.999) {
-            return 3.291;
-        } else if (confidencePercentage == 0.995) {
-            return 2.807;
-        } else if (confidencePercentage == 0.99) {
-            return 2.576;
-        } else if (confidencePercentage == 0.95) {
-            return 1.96;
-        } else if (confidencePercentage == 0.90) {
-            return 1.645;
-        } else if (confidencePercentage == 0.85) {
-            return 1.44;
-        } else if (confidencePercentage == 0.80) {
-            return 1.282;
-        } else {
-            VerdictLogger.warn(this,
-                    String.format("Unsupported confidence: %s%%. Uses the default 95%%.", confidencePercentage * 100));
-            return 1.96; // 95% by default.
+        double confidence = (targetConfidence != null) ? targetConfidence
+                : vc.getConf().errorBoundConfidenceInPercentage();
+        return confidenceIntervalMultiplier(confidence);
+    }
+
+    /**
+     * {confidence, the multiplier of the standard error for a two-sided confidence
+     * interval}
+     */
+    private static final double[][] confidenceMultipliers = { { 0.80, 1.282 }, { 0.85, 1.44 }, { 0.90, 1.645 },
+            { 0.95, 1.96 }, { 0.99, 2.576 }, { 0.995, 2.807 }, { 0.999, 3.291 } };
+
+    /**
+     * For a confidence not in the table, the multiplier of the next higher
+     * confidence is used (or of the highest one).
+     */
+    static double confidenceIntervalMultiplier(double confidence) {
+        for (double[] row : confidenceMultipliers) {
+            if (Math.abs(confidence - row[0]) < 1e-9) {
+                return row[1];
+            }
+        }
+        double[] higher = confidenceMultipliers[confidenceMultipliers.length - 1];
+        for (double[] row : confidenceMultipliers) {
+            if (confidence < row[0]) {
+                higher = row;
+                break;
+            }
         }
+        VerdictLogger.warn(String.format("Unsupported confidence: %s%%. Uses %s%%.", confidence * 100,
+                higher[0] * 100));
+        return higher[1];
     }
 
     protected Expr exprWithTableNamesSubstituted(Expr expr, Map<TableUniqueName, String> sub) {
@@ -150,6 +150,22 @@ public class ApproxSingleRelation extends ApproxRelation {
         return r;
     }
 
+    /**
+     * No Approximation is performed when this method is called directly.
+     */
+    @Override
+    public ExactRelation rewriteWithAnalyticErrorBounds() {
+        return rewriteWithSubsampledErrorBounds();
+    }
+
+    /**
+     * No Approximation is performed when this method is called directly.
+     */
+    @Override
+    public ExactRelation rewriteWithBootstrappedErrorBounds() {
+        return rewriteWithSubsampledErrorBounds();
+    }
+
     @Override
     public ExactRelation rewriteWithPartition() {
         ExactRelation r = SingleRelation.from(vc, getSampleName());
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.dbms.Dbms;
+import edu.umich.verdict.relation.condition.AndCond;
+import edu.umich.verdict.relation.condition.BetweenCond;
+import edu.umich.verdict.relation.condition.CompCond;
+import edu.umich.verdict.relation.condition.Cond;
+import edu.umich.verdict.relation.condition.InCond;
+import edu.umich.verdict.relation.condition.IsCond;
+import edu.umich.verdict.relation.condition.LikeCond;
+import edu.umich.verdict.relation.condition.NotCond;
+import edu.umich.verdict.relation.condition.OrCond;
+import edu.umich.verdict.relation.expr.BinaryOpExpr;
+import edu.umich.verdict.relation.expr.CaseExpr;
+import edu.umich.verdict.relation.expr.ColNameExpr;
+import edu.umich.verdict.relation.expr.Expr;
+import edu.umich.verdict.relation.expr.FuncExpr;
+import edu.umich.verdict.relation.expr.SelectElem;
+
+/**
+ * The cost of a sample group is the cost of scanning the bytes of its tables plus
+ * the cost of aggregating the rows it reads, weighted by the coefficients of the
+ * DBMS ({@link Dbms#scanCostPerByte()} and {@link Dbms#aggregationCostPerRow()}).
+ * 
+ * The bytes scanned from a table are its stored size (if the DBMS reports one)
+ * or its row count times its row width; the row width is computed from the
+ * column types in {@link edu.umich.verdict.VerdictMeta#getColumn2Types(edu.umich.verdict.datatypes.TableUniqueName)}.
+ * If the DBMS reads only the referenced columns, the bytes are scaled down to
+ * the width of the columns the sample group references.
+ */
+public class ByteSizeCostModel extends CostModel {
+
+    /**
+     * The width assumed for a string of unspecified length and for a column of an
+     * unknown type.
+     */
+    static final int STRING_WIDTH = 16;
+
+    static final int DEFAULT_WIDTH = 8;
+
+    /**
+     * The width assumed for a row of a relation whose columns are not known.
+     */
+    static final int DEFAULT_ROW_WIDTH = 64;
+
+    public ByteSizeCostModel(VerdictContext vc) {
+        super(vc);
+    }
+
+    @Override
+    public double cost(SampleGroup group) {
+        int aggregateCount = 0;
+        for (SelectElem e : group.getElems()) {
+            if (e.isagg()) {
+                aggregateCount++;
+            }
+        }
+
+        Dbms dbms = vc.getDbms();
+        double bytes = bytesScanned(group);
+        double rows = group.getSample().cost();
+        return dbms.scanCostPerByte() * bytes + dbms.aggregationCostPerRow() * rows * Math.max(1, aggregateCount);
+    }
+
+    /**
+     * @return the number of bytes the DBMS reads for computing the sample group.
+     */
+    public double bytesScanned(SampleGroup group) {
+        Set<String> columns = new HashSet<String>();
+        for (SelectElem e : group.getElems()) {
+            collectColumns(e.getExpr(), columns);
+        }
+        collectColumns(group.getSample(), columns);
+        return bytesScanned(group.getSample(), columns);
+    }
+
+    protected double bytesScanned(ApproxRelation r, Set<String> columns) {
+        if (r instanceof ApproxSingleRelation) {
+            return bytesScanned((ApproxSingleRelation) r, columns);
+        } else if (r instanceof ApproxJoinedRelation) {
+            return bytesScanned(((ApproxJoinedRelation) r).getSource1(), columns)
+                    + bytesScanned(((ApproxJoinedRelation) r).getSource2(), columns);
+        } else if (r instanceof ApproxFilteredRelation) {
+            // the subqueries in the filter are costed by their row counts.
+            ApproxRelation source = ((ApproxFilteredRelation) r).getSource();
+            return bytesScanned(source, columns) + (r.cost() - source.cost()) * DEFAULT_ROW_WIDTH;
+        } else if (r instanceof ApproxGroupedRelation) {
+            return bytesScanned(((ApproxGroupedRelation) r).getSource(), columns);
+        } else if (r instanceof ApproxAggregatedRelation) {
+            return bytesScanned(((ApproxAggregatedRelation) r).getSource(), columns);
+        } else if (r instanceof ApproxProjectedRelation) {
+            return bytesScanned(((ApproxProjectedRelation) r).getSource(), columns);
+        } else {
+            return r.cost() * DEFAULT_ROW_WIDTH;
+        }
+    }
+
+    protected double bytesScanned(ApproxSingleRelation r, Set<String> columns) {
+        Map<String, String> col2type = vc.getMeta().getColumn2Types(r.getOriginalTableName());
+
+        int fullWidth = 0;
+        int referencedWidth = 0;
+        int narrowest = Integer.MAX_VALUE;
+        if (col2type != null) {
+            for (Map.Entry<String, String> e : col2type.entrySet()) {
+                int width = typeWidth(e.getValue());
+                fullWidth += width;
+                narrowest = Math.min(narrowest, width);
+                if (columns.contains(e.getKey().toLowerCase())) {
+                    referencedWidth += width;
+                }
+            }
+        }
+        if (fullWidth == 0) {
+            fullWidth = DEFAULT_ROW_WIDTH;
+            referencedWidth = DEFAULT_ROW_WIDTH;
+        } else if (referencedWidth == 0) {
+            // e.g., count(*) still reads a column.
+            referencedWidth = narrowest;
+        }
+        if (!r.getSampleType().equals("nosample")) {
+            // the sampling probability column
+            fullWidth += typeWidth("double");
+            referencedWidth += typeWidth("double");
+        }
+
+        double width = (vc.getDbms().readsReferencedColumnsOnly()) ? referencedWidth : fullWidth;
+        long storedBytes = vc.getMeta().getTableByteSize(r.getSampleName());
+        if (storedBytes > 0) {
+            return storedBytes * (width / fullWidth);
+        } else {
+            return r.cost() * width;
+        }
+    }
+
+    /**
+     * The number of bytes a value of the type takes, roughly.
+     */
+    static int typeWidth(String type) {
+        String t = type.toLowerCase().trim();
+        int paren = t.indexOf('(');
+        String base = (paren < 0) ? t : t.substring(0, paren).trim();
+        int length = (paren < 0) ? -1 : leadingNumber(t.substring(paren + 1));
+
+        if (base.equals("boolean") || base.equals("bool") || base.equals("tinyint")) {
+            return 1;
+        } else if (base.equals("smallint")) {
+            return 2;
+        } else if (base.equals("int") || base.equals("integer") || base.equals("float") || base.equals("real")
+                || base.equals("date")) {
+            return 4;
+        } else if (base.equals("bigint") || base.equals("double") || base.equals("double precision")
+                || base.equals("decimal") || base.equals("numeric") || base.startsWith("timestamp")) {
+            return 8;
+        } else if (base.equals("char") || base.equals("character")) {
+            return (length > 0) ? length : 1;
+        } else if (base.equals("string") || base.equals("varchar") || base.equals("character varying")
+                || base.equals("text")) {
+            return (length > 0) ? Math.min(length, STRING_WIDTH) : STRING_WIDTH;
+        } else {
+            return DEFAULT_WIDTH;
+        }
+    }
+
+    private static int leadingNumber(String s) {
+        int i = 0;
+        while (i < s.length() && Character.isDigit(s.charAt(i))) {
+            i++;
+        }
+        return (i == 0) ? -1 : Integer.parseInt(s.substring(0, i));
+    }
+
+    /*
+     * Referenced columns
+     */
+
+    static void collectColumns(ApproxRelation r, Set<String> columns) {
+        if (r instanceof ApproxAggregatedRelation) {
+            for (SelectElem e : ((ApproxAggregatedRelation) r).getElemList()) {
+                collectColumns(e.getExpr(), columns);
+            }
+            collectColumns(((ApproxAggregatedRelation) r).getSource(), columns);
+        } else if (r instanceof ApproxGroupedRelation) {
+            for (Expr e : ((ApproxGroupedRelation) r).getGroupby()) {
+                collectColumns(e, columns);
+            }
+            collectColumns(((ApproxGroupedRelation) r).getSource(), columns);
+        } else if (r instanceof ApproxFilteredRelation) {
+            collectColumns(((ApproxFilteredRelation) r).getFilter(), columns);
+            collectColumns(((ApproxFilteredRelation) r).getSource(), columns);
+        } else if (r instanceof ApproxProjectedRelation) {
+            for (SelectElem e : ((ApproxProjectedRelation) r).getSelectElems()) {
+                collectColumns(e.getExpr(), columns);
+            }
+            collectColumns(((ApproxProjectedRelation) r).getSource(), columns);
+        } else if (r instanceof ApproxJoinedRelation) {
+            for (Pair<Expr, Expr> p : ((ApproxJoinedRelation) r).getJoinCols()) {
+                collectColumns(p.getLeft(), columns);
+                collectColumns(p.getRight(), columns);
+            }
+            collectColumns(((ApproxJoinedRelation) r).getSource1(), columns);
+            collectColumns(((ApproxJoinedRelation) r).getSource2(), columns);
+        }
+    }
+
+    static void collectColumns(Expr expr, Set<String> columns) {
+        if (expr instanceof ColNameExpr) {
+            columns.add(((ColNameExpr) expr).getCol().toLowerCase());
+        } else if (expr instanceof FuncExpr) {
+            if (((FuncExpr) expr).getExpressions() == null) {
+                return;
+            }
+            for (Expr e : ((FuncExpr) expr).getExpressions()) {
+                collectColumns(e, columns);
+            }
+        } else if (expr instanceof BinaryOpExpr) {
+            collectColumns(((BinaryOpExpr) expr).getLeft(), columns);
+            collectColumns(((BinaryOpExpr) expr).getRight(), columns);
+        } else if (expr instanceof CaseExpr) {
+            for (Cond c : ((CaseExpr) expr).getConditions()) {
+                collectColumns(c, columns);
+            }
+            for (Expr e : ((CaseExpr) expr).getExpressions()) {
+                collectColumns(e, columns);
+            }
+        }
+    }
+
+    static void collectColumns(Cond cond, Set<String> columns) {
+        if (cond instanceof AndCond) {
+            collectColumns(((AndCond) cond).getLeft(), columns);
+            collectColumns(((AndCond) cond).getRight(), columns);
+        } else if (cond instanceof OrCond) {
+            collectColumns(((OrCond) cond).getLeft(), columns);
+            collectColumns(((OrCond) cond).getRight(), columns);
+        } else if (cond instanceof NotCond) {
+            collectColumns(((NotCond) cond).getCond(), columns);
+        } else if (cond instanceof CompCond) {
+            collectColumns(((CompCond) cond).getLeft(), columns);
+            collectColumns(((CompCond) cond).getRight(), columns);
+        } else if (cond instanceof BetweenCond) {
+            collectColumns(((BetweenCond) cond).getCol(), columns);
+            collectColumns(((BetweenCond) cond).getLeft(), columns);
+            collectColumns(((BetweenCond) cond).getRight(), columns);
+        } else if (cond instanceof InCond) {
+            collectColumns(((InCond) cond).getLeft(), columns);
+        } else if (cond instanceof IsCond) {
+            collectColumns(((IsCond) cond).getLeft(), columns);
+        } else if (cond instanceof LikeCond) {
+            collectColumns(((LikeCond) cond).getLeft(), columns);
+            collectColumns(((LikeCond) cond).getRight(), columns);
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.util.StackTraceReader;
+import edu.umich.verdict.util.VerdictLogger;
+
+/**
+ * Estimates the cost of computing the expressions of a {@link SampleGroup} from
+ * its sample. {@link SamplePlan#cost()} is the sum of the costs of its sample
+ * groups, and {@link SamplePlans#bestPlan(double)} compares plans by it; only
+ * the ratios among the costs matter.
+ */
+public abstract class CostModel {
+
+    protected VerdictContext vc;
+
+    public CostModel(VerdictContext vc) {
+        this.vc = vc;
+    }
+
+    public abstract double cost(SampleGroup group);
+
+    /**
+     * Creates the cost model for the name in verdict.cost_model: "bytes", "rows",
+     * "latency", or the name of a subclass with a constructor taking a VerdictContext.
+     * Falls back to {@link ByteSizeCostModel} if the class cannot be instantiated.
+     */
+    public static CostModel from(VerdictContext vc, String name) {
+        if (name.equals("bytes")) {
+            return new ByteSizeCostModel(vc);
+        } else if (name.equals("rows")) {
+            return new RowCountCostModel(vc);
+        } else if (name.equals("latency")) {
+            return new LatencyCostModel(vc);
+        }
+
+        try {
+            Class<?> c = Class.forName(name);
+            return (CostModel) c.getConstructor(VerdictContext.class).newInstance(vc);
+        } catch (Exception e) {
+            VerdictLogger.error(CostModel.class,
+                    String.format("Could not instantiate the cost model %s; the default one is used.", name));
+            VerdictLogger.debug(CostModel.class, StackTraceReader.stackTrace2String(e));
+            return new ByteSizeCostModel(vc);
+        }
+    }
+
+}
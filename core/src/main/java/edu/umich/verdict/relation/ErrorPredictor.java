@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.datatypes.SampleColumnStats;
+import edu.umich.verdict.relation.expr.ColNameExpr;
+import edu.umich.verdict.relation.expr.Expr;
+import edu.umich.verdict.relation.expr.FuncExpr;
+import edu.umich.verdict.relation.expr.SelectElem;
+
+/**
+ * Predicts the relative errors of the aggregates a sample plan computes, before
+ * running it, from the sizes of the samples and the column statistics stored
+ * when the samples were created (see
+ * {@link edu.umich.verdict.VerdictMeta#getSampleColumnStats(edu.umich.verdict.datatypes.TableUniqueName)}).
+ * 
+ * For a sample of n rows drawn with probability p, the relative standard error is
+ * sqrt((1-p)/n) for count, sqrt((1-p)/n) * sqrt(1 + cv^2) for sum, and
+ * sqrt((1-p)/n) * cv for avg, where cv is the coefficient of variation of the
+ * aggregated column (assumed to be 1 if unknown). The predictions assume that
+ * the aggregates are computed over the entire sample; selective filters and
+ * group-by clauses make the actual errors larger.
+ */
+public class ErrorPredictor {
+
+    static final double DEFAULT_CV = 1.0;
+
+    private VerdictContext vc;
+
+    public ErrorPredictor(VerdictContext vc) {
+        this.vc = vc;
+    }
+
+    /**
+     * @return the largest relative error among the aggregates of the plan.
+     */
+    public double relativeError(SamplePlan plan, double confidence) {
+        double error = 0;
+        for (SampleGroup g : plan.getSampleGroups()) {
+            error = Math.max(error, relativeError(g, confidence));
+        }
+        return error;
+    }
+
+    /**
+     * @return the largest relative error among the aggregates of the sample group.
+     */
+    public double relativeError(SampleGroup group, double confidence) {
+        List<ApproxSingleRelation> samples = new ArrayList<ApproxSingleRelation>();
+        collectSamples(group.getSample(), samples);
+        if (samples.isEmpty()) {
+            return 0; // the original tables
+        }
+
+        double error = 0;
+        for (SelectElem e : group.getElems()) {
+            for (FuncExpr f : e.getExpr().extractFuncExpr()) {
+                if (f.isagg()) {
+                    error = Math.max(error, relativeStandardError(f, samples));
+                }
+            }
+        }
+        return ApproxRelation.confidenceIntervalMultiplier(confidence) * error;
+    }
+
+    protected double relativeStandardError(FuncExpr f, List<ApproxSingleRelation> samples) {
+        // the smallest sample bounds the number of joined rows.
+        ApproxSingleRelation smallest = null;
+        for (ApproxSingleRelation s : samples) {
+            if (smallest == null || s.getSampleSize() < smallest.getSampleSize()) {
+                smallest = s;
+            }
+        }
+        if (smallest.getSampleSize() <= 0 || smallest.getOriginalTableSize() <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double n = smallest.getSampleSize();
+        double p = Math.min(1.0, n / smallest.getOriginalTableSize());
+        double base = Math.sqrt((1 - p) / n);
+
+        switch (f.getFuncName()) {
+        case COUNT:
+            return base;
+        case SUM:
+            double cv = coefficientOfVariation(f, samples);
+            return base * Math.sqrt(1 + cv * cv);
+        case AVG:
+            return base * coefficientOfVariation(f, samples);
+        case COUNT_DISTINCT:
+            for (ApproxSingleRelation s : samples) {
+                if (s.getSampleType().equals("stratified") && isOnSampleColumn(f, s)) {
+                    return 0;
+                }
+            }
+            return base;
+        default:
+            return 0;
+        }
+    }
+
+    private double coefficientOfVariation(FuncExpr f, List<ApproxSingleRelation> samples) {
+        Expr e = f.getUnaryExpr();
+        if (!(e instanceof ColNameExpr)) {
+            return DEFAULT_CV;
+        }
+        String col = ((ColNameExpr) e).getCol();
+        for (ApproxSingleRelation s : samples) {
+            Map<String, SampleColumnStats> stats = vc.getMeta().getSampleColumnStats(s.getSampleName());
+            for (Map.Entry<String, SampleColumnStats> c : stats.entrySet()) {
+                if (c.getKey().equalsIgnoreCase(col)) {
+                    double cv = c.getValue().coefficientOfVariation();
+                    return (cv < 0) ? DEFAULT_CV : cv;
+                }
+            }
+        }
+        return DEFAULT_CV;
+    }
+
+    private boolean isOnSampleColumn(FuncExpr f, ApproxSingleRelation s) {
+        Expr e = f.getUnaryExpr();
+        return (e instanceof ColNameExpr) && s.getColumnsOnWhichSamplesAreCreated().contains(((ColNameExpr) e).getCol());
+    }
+
+    /**
+     * Collects the sampled tables (excluding the original tables) read by the
+     * relation, not including those in subqueries.
+     */
+    static void collectSamples(ApproxRelation r, List<ApproxSingleRelation> samples) {
+        if (r instanceof ApproxSingleRelation) {
+            if (!((ApproxSingleRelation) r).getSampleType().equals("nosample")) {
+                samples.add((ApproxSingleRelation) r);
+            }
+        } else if (r instanceof ApproxJoinedRelation) {
+            collectSamples(((ApproxJoinedRelation) r).getSource1(), samples);
+            collectSamples(((ApproxJoinedRelation) r).getSource2(), samples);
+        } else if (r instanceof ApproxFilteredRelation) {
+            collectSamples(((ApproxFilteredRelation) r).getSource(), samples);
+        } else if (r instanceof ApproxGroupedRelation) {
+            collectSamples(((ApproxGroupedRelation) r).getSource(), samples);
+        } else if (r instanceof ApproxAggregatedRelation) {
+            collectSamples(((ApproxAggregatedRelation) r).getSource(), samples);
+        } else if (r instanceof ApproxProjectedRelation) {
+            collectSamples(((ApproxProjectedRelation) r).getSource(), samples);
+        }
+    }
+
+}
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -56,9 +57,9 @@ import edu.umich.verdict.relation.expr.LateralFunc;
 import edu.umich.verdict.relation.expr.OrderByExpr;
 import edu.umich.verdict.relation.expr.SelectElem;
 import edu.umich.verdict.util.StackTraceReader;
-import edu.umich.verdict.util.StringManipulations;
 import edu.umich.verdict.util.TypeCasting;
 import edu.umich.verdict.util.VerdictLogger;
+import edu.umich.verdict.util.VerdictSQLParserFactory;
 
 /**
  * Base class for exact relations (and any relational operations on them).
@@ -73,9 +74,8 @@ public abstract class ExactRelation extends Relation {
     }
 
     public static ExactRelation from(VerdictContext vc, String sql) {
-        VerdictSQLParser p = StringManipulations.parserOf(sql);
         RelationGen g = new RelationGen(vc);
-        return g.visit(p.select_statement());
+        return g.visit(VerdictSQLParserFactory.parse(sql, VerdictSQLParserFactory.SELECT_STATEMENT));
     }
 
     public static ExactRelation from(VerdictContext vc, VerdictSQLParser.Select_statementContext ctx) {
@@ -123,8 +123,21 @@ public abstract class ExactRelation extends Relation {
     }
 
     public ExactRelation select(String elems) {
-        VerdictSQLParser p = StringManipulations.parserOf(elems);
-        return select(p.select_list());
+        return select(VerdictSQLParserFactory.parse(elems, VerdictSQLParserFactory.SELECT_LIST));
+    }
+
+    public ExactRelation select(SelectElem... elems) {
+        return selectElems(Arrays.asList(elems));
+    }
+
+    /**
+     * Projects onto the given select elements as they are, i.e., without parsing.
+     * 
+     * @param elems
+     * @return
+     */
+    public ExactRelation selectElems(List<SelectElem> elems) {
+        return new ProjectedRelation(vc, this, new ArrayList<SelectElem>(elems));
     }
 
     public ExactRelation select(VerdictSQLParser.Select_listContext ctx) {
@@ -192,6 +205,8 @@ public abstract class ExactRelation extends Relation {
         for (Object e : elems) {
             if (e instanceof SelectElem) {
                 se.add((SelectElem) e);
+            } else if (e instanceof Expr) {
+                se.add(new SelectElem(vc, (Expr) e));
             } else {
                 se.add(SelectElem.from(vc, e.toString()));
             }
@@ -240,6 +255,14 @@ public abstract class ExactRelation extends Relation {
         return new GroupedRelation(vc, this, groups);
     }
 
+    public GroupedRelation groupby(Expr... groups) {
+        return groupbyExprs(Arrays.asList(groups));
+    }
+
+    public GroupedRelation groupbyExprs(List<Expr> groups) {
+        return new GroupedRelation(vc, this, new ArrayList<Expr>(groups));
+    }
+
     /*
      * Approx Aggregation
      */
@@ -407,9 +430,10 @@ public abstract class ExactRelation extends Relation {
      */
     protected SamplePlans consolidate(List<List<SampleGroup>> candidates_list) {
         SamplePlans plans = new SamplePlans();
+        int beamWidth = vc.getConf().plannerBeamWidth();
         // create candidate plans
         for (List<SampleGroup> groups : candidates_list) {
-            plans.consolidateNewExpr(groups);
+            plans.consolidateNewExpr(groups, beamWidth);
         }
         return plans;
         // double relative_cost_ratio = vc.getConf().getRelativeTargetCost();
@@ -418,11 +442,54 @@ public abstract class ExactRelation extends Relation {
     }
 
     protected SamplePlan chooseBestPlan(SamplePlans plans) {
-        double relative_cost_ratio = vc.getConf().getRelativeTargetCost();
-        SamplePlan best = plans.bestPlan(relative_cost_ratio);
+        PlanTarget target = PlanTarget.current();
+        SamplePlan best = null;
+        if (target != null && target.hasTimeBound()) {
+            best = plans.mostAccuratePlanWithin(new ErrorPredictor(vc), vc.getLatencyModel(), target.getSeconds(),
+                    target.getConfidence());
+        } else if (target != null && target.hasErrorBound()) {
+            best = plans.cheapestPlanWithin(new ErrorPredictor(vc), target.getRelativeError(),
+                    target.getConfidence());
+        }
+        if (best == null && target != null && (target.hasTimeBound() || target.hasErrorBound())) {
+            VerdictLogger.warn(this, String.format("No sample plan is predicted to be %s.", target));
+        }
+
+        if (best == null) {
+            double relative_cost_ratio = vc.getConf().getRelativeTargetCost();
+            best = plans.bestPlan(relative_cost_ratio);
+        }
+
+        if (target != null && best != null) {
+            LatencyModel latency = vc.getLatencyModel();
+            for (SampleGroup g : best.getSampleGroups()) {
+                target.noteScan(g.sampleType(), latency.bytesScanned(g));
+            }
+            noteHigherRungs(target, best);
+        }
         return best;
     }
 
+    /**
+     * Notes if the ladder of a sample in the chosen plan has a rung above the one
+     * the query is restricted to; the ladders of the samples that were considered
+     * but not chosen do not matter, since the plan on their next rungs is the same.
+     */
+    private void noteHigherRungs(PlanTarget target, SamplePlan plan) {
+        if (target.getLadderRung() == null) {
+            return;
+        }
+        for (SampleGroup g : plan.getSampleGroups()) {
+            List<ApproxSingleRelation> samples = new ArrayList<ApproxSingleRelation>();
+            ErrorPredictor.collectSamples(g.getSample(), samples);
+            for (ApproxSingleRelation s : samples) {
+                if (vc.getMeta().getSampleLadder(s.param).size() > target.getLadderRung() + 1) {
+                    target.noteHigherRung();
+                }
+            }
+        }
+    }
+
     /*
      * Helpers
      */
@@ -556,6 +623,10 @@ class RelationGen extends VerdictSQLBaseVisitor<ExactRelation> {
 
     @Override
     public ExactRelation visitSelect_statement(VerdictSQLParser.Select_statementContext ctx) {
+        // the columns of all the tables in this statement (including its subqueries) are
+        // retrieved at once, before the table sources are resolved one by one.
+        vc.getMeta().prefetchColumns(referencedTables(ctx));
+
         ExactRelation r = visit(ctx.query_expression());
 
         // If the raw select elements are present in order-by or group-by clauses, we replace them
@@ -591,6 +662,23 @@ class RelationGen extends VerdictSQLBaseVisitor<ExactRelation> {
         return r;
     }
 
+    /**
+     * Collects the names of the base tables referenced anywhere in the given parse
+     * tree.
+     */
+    private Set<TableUniqueName> referencedTables(VerdictSQLParser.Select_statementContext ctx) {
+        final Set<TableUniqueName> tables = new LinkedHashSet<TableUniqueName>();
+        VerdictSQLBaseVisitor<Void> collector = new VerdictSQLBaseVisitor<Void>() {
+            @Override
+            public Void visitTable_name_with_hint(VerdictSQLParser.Table_name_with_hintContext ctx) {
+                tables.add(TableUniqueName.uname(vc, ctx.table_name().getText()));
+                return null;
+            }
+        };
+        collector.visit(ctx);
+        return tables;
+    }
+
     class TableSourceResolver extends TableNameReplacerInExpr {
 
         private Map<TableUniqueName, Pair<String, Set<String>>> tabAliasColumns;
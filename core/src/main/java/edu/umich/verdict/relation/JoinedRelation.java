@@ -36,6 +36,7 @@ import edu.umich.verdict.relation.condition.CompCond;
 import edu.umich.verdict.relation.condition.Cond;
 import edu.umich.verdict.relation.expr.ColNameExpr;
 import edu.umich.verdict.relation.expr.Expr;
+import edu.umich.verdict.relation.expr.FuncExpr;
 import edu.umich.verdict.relation.expr.LateralFunc.LateralFuncName;
 import edu.umich.verdict.util.VerdictLogger;
 
@@ -62,6 +63,9 @@ public class JoinedRelation extends ExactRelation {
 
 	private JoinType joinType = JoinType.INNER;
 
+    // null until the universe join advisor is consulted
+    private Boolean prefersUniverseSamples = null;
+
 	public ExactRelation getLeftSource() {
         return source1;
     }
@@ -217,20 +221,124 @@ public class JoinedRelation extends ExactRelation {
         List<ApproxRelation> ofSources1 = source1.nBestSamples(elem, n);
         List<ApproxRelation> ofSources2 = source2.nBestSamples(elem, n);
         List<ApproxRelation> joined = new ArrayList<ApproxRelation>();
+        boolean universeJoinFound = false;
+        boolean exactOnly = hasNonNativePercentile(elem);
 
         for (ApproxRelation a1 : ofSources1) {
             for (ApproxRelation a2 : ofSources2) {
                 ApproxJoinedRelation j = new ApproxJoinedRelation(vc, a1, a2, joinCols);
                 j.setJoinType(getJoinType());
+                if (exactOnly && j.doesIncludeSample()) {
+                    continue;
+                }
                 if (expectedSampleType(j.sampleType())) {
                     joined.add(j);
+                    universeJoinFound |= areMatchingUniverseSamples(a1, a2, joinCols);
                 }
             }
         }
 
+        // the universe samples of large tables on their join keys are used instead
+        // of joining other samples of both.
+        if (universeJoinFound && prefersUniverseSamples()) {
+            List<ApproxRelation> preferred = new ArrayList<ApproxRelation>();
+            for (ApproxRelation a : joined) {
+                ApproxJoinedRelation j = (ApproxJoinedRelation) a;
+                if (j.getSource1().sampleType().equals("nosample") || j.getSource2().sampleType().equals("nosample")
+                        || areMatchingUniverseSamples(j.getSource1(), j.getSource2(), joinCols)) {
+                    preferred.add(j);
+                }
+            }
+            joined = preferred;
+        }
+
         return joined;
     }
 
+    /**
+     * True if the expression has a percentile that the DBMS cannot compute
+     * natively. The percentiles on samples are otherwise computed from cumulative
+     * weights, which are projected over a single table only; thus, such a
+     * percentile on a join is computed on the original tables.
+     */
+    private boolean hasNonNativePercentile(Expr elem) {
+        for (FuncExpr f : elem.extractFuncExpr()) {
+            if (f.isPercentile()
+                    && vc.getDbms().approxPercentile(f.getExpressions().get(0), f.getExpressions().get(1)) == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Consults {@link UniverseJoinAdvisor} once per relation if this is an
+     * equi-join on a single column of two base tables.
+     */
+    private boolean prefersUniverseSamples() {
+        if (prefersUniverseSamples == null) {
+            prefersUniverseSamples = false;
+            if (joinType.equals(JoinType.INNER) && joinCols.size() == 1) {
+                Pair<Expr, Expr> cols = joinCols.get(0);
+                SingleRelation t1 = baseTableOf(source1, cols.getLeft());
+                SingleRelation t2 = baseTableOf(source2, cols.getRight());
+                if (t1 == null || t2 == null) {
+                    t1 = baseTableOf(source1, cols.getRight());
+                    t2 = baseTableOf(source2, cols.getLeft());
+                    cols = Pair.of(cols.getRight(), cols.getLeft());
+                }
+                if (t1 != null && t2 != null) {
+                    prefersUniverseSamples = vc.getUniverseJoinAdvisor().prefersUniverseSamples(t1.getTableName(),
+                            ((ColNameExpr) cols.getLeft()).getCol(), t2.getTableName(),
+                            ((ColNameExpr) cols.getRight()).getCol());
+                }
+            }
+        }
+        return prefersUniverseSamples;
+    }
+
+    /**
+     * @return the only base table in the source (not looking into subqueries) that
+     *         the column belongs to, or null if there is none.
+     */
+    private SingleRelation baseTableOf(ExactRelation source, Expr expr) {
+        if (!(expr instanceof ColNameExpr)) {
+            return null;
+        }
+        ColNameExpr col = (ColNameExpr) expr;
+        List<SingleRelation> tables = new ArrayList<SingleRelation>();
+        collectBaseTables(source, tables);
+
+        SingleRelation found = null;
+        for (SingleRelation t : tables) {
+            boolean owns;
+            if (col.getTab() != null) {
+                owns = col.getTab().equalsIgnoreCase(t.getTableName().getTableName())
+                        || (t.getAlias() != null && col.getTab().equalsIgnoreCase(t.getAlias()));
+            } else {
+                owns = vc.getMeta().getColumns(t.getTableName()).contains(col.getCol());
+            }
+            if (owns) {
+                if (found != null) {
+                    return null;
+                }
+                found = t;
+            }
+        }
+        return found;
+    }
+
+    private static void collectBaseTables(ExactRelation r, List<SingleRelation> tables) {
+        if (r instanceof SingleRelation) {
+            tables.add((SingleRelation) r);
+        } else if (r instanceof JoinedRelation) {
+            collectBaseTables(((JoinedRelation) r).getLeftSource(), tables);
+            collectBaseTables(((JoinedRelation) r).getRightSource(), tables);
+        } else if (r instanceof FilteredRelation) {
+            collectBaseTables(((FilteredRelation) r).getSource(), tables);
+        }
+    }
+
     private boolean expectedSampleType(String sampleType) {
         return availableJoinTypes.contains(sampleType);
     }
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import edu.umich.verdict.VerdictContext;
+
+/**
+ * The cost of a sample group is its runtime (in seconds) predicted by the
+ * {@link LatencyModel} of the context, which is fitted to the runtimes of past
+ * select statements; the overhead of running a query is excluded since every
+ * plan pays it.
+ */
+public class LatencyCostModel extends CostModel {
+
+    public LatencyCostModel(VerdictContext vc) {
+        super(vc);
+    }
+
+    @Override
+    public double cost(SampleGroup group) {
+        return vc.getLatencyModel().predictScanSeconds(group);
+    }
+
+}
@@ -0,0 +1,430 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.datatypes.TableUniqueName;
+import edu.umich.verdict.dbms.Dbms;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.expr.FuncExpr;
+import edu.umich.verdict.util.TypeCasting;
+import edu.umich.verdict.util.VerdictLogger;
+
+/**
+ * Predicts how long (in seconds) the DBMS takes to run a sample plan. A sample
+ * group of a sample type takes
+ * 
+ * secondsPerByte * bytes + secondsPerScan,
+ * 
+ * where bytes are the bytes it scans (see
+ * {@link ByteSizeCostModel#bytesScanned(SampleGroup)}); a plan takes the sum of
+ * those of its sample groups plus a fixed overhead.
+ * 
+ * The coefficients are fitted by least squares to the runtimes of recent select
+ * statements, which {@link edu.umich.verdict.query.SelectQuery} records with
+ * {@link #record(String, double, int, double)}. There is a fit for every sample
+ * type (the type of the sample group scanning the most bytes in a statement)
+ * and one for all statements. A sample type without enough runtimes uses the
+ * latter, which in turn uses the coefficients of the DBMS
+ * ({@link Dbms#queryOverheadSeconds()} and {@link Dbms#scanSecondsPerByte()})
+ * scaled to fit the runtimes recorded so far.
+ * 
+ * A model belongs to a context and thus to a single DBMS. Runtimes are recorded
+ * without locking; they are also stored into the meta database of the current
+ * schema, in batches of verdict.latency_model.flush_size, when the context is
+ * destroyed (see {@link #flush()}), so that no select statement waits for them.
+ * Each stored runtime has the time it was recorded; only the latest
+ * verdict.latency_model.history of every sample type are kept, and they are read
+ * back when the model is first used with a current schema.
+ */
+public class LatencyModel {
+
+    /**
+     * The number of recorded runtimes needed for fitting all the coefficients.
+     */
+    static final int MIN_FIT_SIZE = 10;
+
+    /**
+     * The key of the fit to the runtimes of all sample types.
+     */
+    static final String ALL_TYPES = "*";
+
+    /**
+     * Bytes are counted in this unit while fitting, for numerical stability.
+     */
+    private static final double BYTE_UNIT = 1e9;
+
+    private VerdictContext vc;
+
+    private ByteSizeCostModel bytes;
+
+    private final ConcurrentMap<String, Regression> regressions = new ConcurrentHashMap<String, Regression>();
+
+    private final ConcurrentLinkedQueue<List<Object>> unsaved = new ConcurrentLinkedQueue<List<Object>>();
+
+    private final AtomicInteger unsavedCount = new AtomicInteger();
+
+    private final AtomicBoolean loaded = new AtomicBoolean(false);
+
+    public LatencyModel(VerdictContext vc) {
+        this.vc = vc;
+        this.bytes = new ByteSizeCostModel(vc);
+    }
+
+    /**
+     * The most recent runtimes of one kind, kept in a ring buffer, and the
+     * coefficients fitted to them.
+     */
+    static class Regression {
+
+        private final AtomicReferenceArray<double[]> ring;
+
+        private final AtomicLong count = new AtomicLong();
+
+        /**
+         * The fit and the count at which it was made; refitted once the count changes.
+         */
+        private final AtomicReference<Object[]> fit = new AtomicReference<Object[]>();
+
+        Regression(int capacity) {
+            ring = new AtomicReferenceArray<double[]>(Math.max(1, capacity));
+        }
+
+        /**
+         * @param observation
+         *            {bytes, scans, seconds}
+         */
+        void add(double[] observation) {
+            long i = count.getAndIncrement();
+            ring.set((int) (i % ring.length()), observation);
+        }
+
+        int size() {
+            return (int) Math.min(count.get(), ring.length());
+        }
+
+        List<double[]> history() {
+            List<double[]> h = new ArrayList<double[]>();
+            for (int i = 0; i < ring.length(); i++) {
+                double[] o = ring.get(i);
+                if (o != null) {
+                    h.add(o);
+                }
+            }
+            return h;
+        }
+
+        /**
+         * @return {overhead, secondsPerByte, secondsPerScan}, or null if there are
+         *         not enough runtimes or they are not fitted by nonnegative
+         *         coefficients.
+         */
+        double[] coefficients() {
+            long c = count.get();
+            Object[] f = fit.get();
+            if (f == null || (Long) f[0] != c) {
+                f = new Object[] { c, (c >= MIN_FIT_SIZE) ? fit(history()) : null };
+                fit.set(f);
+            }
+            return (double[]) f[1];
+        }
+    }
+
+    /**
+     * @return the predicted runtime of the plan in seconds.
+     */
+    public double predictSeconds(SamplePlan plan) {
+        double seconds = coefficients(ALL_TYPES)[0];
+        for (SampleGroup g : plan.getSampleGroups()) {
+            seconds += predictScanSeconds(g);
+        }
+        return seconds;
+    }
+
+    /**
+     * @return the predicted time (in seconds) to compute the sample group,
+     *         excluding the overhead of running a query.
+     */
+    public double predictScanSeconds(SampleGroup group) {
+        double[] c = coefficients(group.sampleType());
+        return c[1] * bytesScanned(group) + c[2];
+    }
+
+    /**
+     * @return the predicted runtime of a statement whose plans scan the given bytes
+     *         with the given number of sample groups.
+     */
+    public double predictSeconds(String sampleType, double bytes, int scans) {
+        double[] c = coefficients(sampleType);
+        return c[0] + c[1] * bytes + c[2] * scans;
+    }
+
+    public double bytesScanned(SampleGroup group) {
+        return bytes.bytesScanned(group);
+    }
+
+    /**
+     * Records the runtime of a select statement. Only the last
+     * verdict.latency_model.history runtimes are kept for each sample type.
+     * 
+     * @param sampleType
+     *            the type of the sample group scanning the most bytes
+     * @param bytes
+     *            the bytes scanned by the plans chosen for the statement
+     * @param scans
+     *            the number of sample groups in the plans
+     * @param seconds
+     *            the runtime
+     */
+    public void record(String sampleType, double bytes, int scans, double seconds) {
+        loadIfNeeded();
+        add(sampleType, new double[] { bytes, scans, seconds });
+
+        if (vc.getConf().latencyModelFlushSize() > 0) {
+            unsaved.add(Arrays.<Object>asList(vc.getDbms().getName(), sampleType, bytes, scans, seconds,
+                    System.currentTimeMillis()));
+            // only the recent runtimes are used for fitting; older unsaved ones are dropped.
+            if (unsavedCount.incrementAndGet() > vc.getConf().latencyModelHistory() && unsaved.poll() != null) {
+                unsavedCount.decrementAndGet();
+            }
+        }
+    }
+
+    public int historySize(String sampleType) {
+        Regression r = regressions.get(sampleType);
+        return (r == null) ? 0 : r.size();
+    }
+
+    private void add(String sampleType, double[] observation) {
+        regression(sampleType).add(observation);
+        regression(ALL_TYPES).add(observation);
+    }
+
+    private Regression regression(String key) {
+        Regression r = regressions.get(key);
+        if (r == null) {
+            regressions.putIfAbsent(key, new Regression(vc.getConf().latencyModelHistory()));
+            r = regressions.get(key);
+        }
+        return r;
+    }
+
+    protected double[] coefficients(String sampleType) {
+        loadIfNeeded();
+        double[] c = regression(sampleType).coefficients();
+        if (c == null) {
+            c = regression(ALL_TYPES).coefficients();
+        }
+        if (c == null) {
+            c = scaledPrior(regression(ALL_TYPES).history());
+        }
+        return c;
+    }
+
+    private double[] scaledPrior(List<double[]> history) {
+        Dbms dbms = vc.getDbms();
+        double[] prior = new double[] { dbms.queryOverheadSeconds(), dbms.scanSecondsPerByte(), 0 };
+        double dot = 0, norm = 0;
+        for (double[] h : history) {
+            double p = prior[0] + prior[1] * h[0];
+            dot += p * h[2];
+            norm += p * p;
+        }
+        double scale = (norm > 0) ? dot / norm : 1.0;
+        return new double[] { prior[0] * scale, prior[1] * scale, 0 };
+    }
+
+    static double[] fit(List<double[]> history) {
+        double[] c = leastSquares(history, 3);
+        if (c == null) {
+            // e.g., every plan had a single sample group.
+            c = leastSquares(history, 2);
+        }
+        if (c != null && c[0] >= 0 && c[1] >= 0 && c[2] >= 0) {
+            return c;
+        }
+        return null;
+    }
+
+    /**
+     * Solves the normal equations for the first k coefficients (the others are 0).
+     * 
+     * @return the coefficients, or null if the equations are singular.
+     */
+    private static double[] leastSquares(List<double[]> history, int k) {
+        double[][] a = new double[k][k + 1];
+        for (double[] h : history) {
+            double[] x = new double[] { 1.0, h[0] / BYTE_UNIT, h[1] };
+            for (int i = 0; i < k; i++) {
+                for (int j = 0; j < k; j++) {
+                    a[i][j] += x[i] * x[j];
+                }
+                a[i][k] += x[i] * h[2];
+            }
+        }
+
+        // Gaussian elimination with partial pivoting
+        for (int col = 0; col < k; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < k; row++) {
+                if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+                    pivot = row;
+                }
+            }
+            if (Math.abs(a[pivot][col]) < 1e-9) {
+                return null;
+            }
+            double[] tmp = a[col];
+            a[col] = a[pivot];
+            a[pivot] = tmp;
+            for (int row = 0; row < k; row++) {
+                if (row != col) {
+                    double f = a[row][col] / a[col][col];
+                    for (int j = col; j <= k; j++) {
+                        a[row][j] -= f * a[col][j];
+                    }
+                }
+            }
+        }
+
+        double[] c = new double[3];
+        for (int i = 0; i < k; i++) {
+            c[i] = a[i][k] / a[i][i];
+        }
+        c[1] /= BYTE_UNIT;
+        return c;
+    }
+
+    /*
+     * Persistence
+     */
+
+    /**
+     * @return the table in the meta database of the current schema, or null if
+     *         there is no current schema.
+     */
+    private TableUniqueName latencyTable() {
+        if (!vc.getCurrentSchema().isPresent()) {
+            return null;
+        }
+        return vc.getMeta().getMetaLatencyTableForOriginalSchema(vc.getCurrentSchema().get());
+    }
+
+    /**
+     * Reads the runtimes stored for this DBMS, once there is a current schema to
+     * read them from.
+     */
+    private void loadIfNeeded() {
+        if (loaded.get()) {
+            return;
+        }
+        TableUniqueName table = latencyTable();
+        if (table == null || !loaded.compareAndSet(false, true)) {
+            return;
+        }
+        if (!vc.getMeta().getDatabases().contains(table.getSchemaName())) {
+            return;
+        }
+        Set<String> tables = vc.getMeta().getTables(table.getSchemaName());
+        if (tables == null || !tables.contains(table.getTableName())) {
+            return;
+        }
+
+        try {
+            // the latest runtimes of every sample type, added from the oldest so that the
+            // ring buffers end up with the latest ones.
+            String ofDbms = String.format("dbms = '%s'", vc.getDbms().getName());
+            List<List<Object>> types = SingleRelation.from(vc, table).where(ofDbms).groupby("sampletype")
+                    .agg(FuncExpr.count()).collect();
+            List<List<Object>> rows = new ArrayList<List<Object>>();
+            for (List<Object> type : types) {
+                if (type.get(0) == null) {
+                    continue;
+                }
+                String sampleType = type.get(0).toString();
+                rows.addAll(SingleRelation.from(vc, table)
+                        .where(String.format("%s AND sampletype = '%s'", ofDbms, sampleType))
+                        .select("sampletype, bytes, scans, seconds, recordedat").orderby("recordedat desc")
+                        .limit(vc.getConf().latencyModelHistory()).collect());
+            }
+            Collections.sort(rows, new Comparator<List<Object>>() {
+                @Override
+                public int compare(List<Object> r1, List<Object> r2) {
+                    return Long.compare(TypeCasting.toLong(r1.get(4)), TypeCasting.toLong(r2.get(4)));
+                }
+            });
+            for (List<Object> row : rows) {
+                add(row.get(0).toString(), new double[] { TypeCasting.toDouble(row.get(1)),
+                        TypeCasting.toDouble(row.get(2)), TypeCasting.toDouble(row.get(3)) });
+            }
+            VerdictLogger.debug(this, String.format("Read %d runtimes from %s.", rows.size(), table));
+        } catch (VerdictException e) {
+            VerdictLogger.warn(this, String.format("Could not read the runtimes in %s: %s", table, e.getMessage()));
+        }
+    }
+
+    /**
+     * Writes the unsaved runtimes, verdict.latency_model.flush_size of them per
+     * statement, and removes the stored runtimes beyond the latest
+     * verdict.latency_model.history of every sample type; called when the context
+     * is destroyed. Failing to do so only loses them; thus, errors are logged but
+     * not thrown.
+     */
+    public void flush() {
+        int flushSize = vc.getConf().latencyModelFlushSize();
+        TableUniqueName table = latencyTable();
+        if (flushSize <= 0 || table == null || unsaved.isEmpty()) {
+            return;
+        }
+
+        try {
+            vc.getMetaDbms().createMetaLatencyTableInDBMS(table);
+            List<List<Object>> rows = new ArrayList<List<Object>>();
+            List<Object> row;
+            while ((row = unsaved.poll()) != null) {
+                unsavedCount.decrementAndGet();
+                rows.add(row);
+                if (rows.size() == flushSize) {
+                    vc.getMetaDbms().insertEntries(table, rows);
+                    rows = new ArrayList<List<Object>>();
+                }
+            }
+            if (!rows.isEmpty()) {
+                vc.getMetaDbms().insertEntries(table, rows);
+            }
+            vc.getMetaDbms().trimMetaLatencyTableInDBMS(table, vc.getConf().latencyModelHistory());
+        } catch (VerdictException e) {
+            VerdictLogger.warn(this, String.format("Could not store the runtimes into %s: %s", table, e.getMessage()));
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the table and column aliases that appear in the SQL statements
+ * produced while planning a single query. Every query creates its own naming
+ * context and binds it to the thread that plans the query (see
+ * {@link edu.umich.verdict.query.Query}); the relations and expressions built
+ * during the planning draw their names from {@link #current()}. Thus, queries
+ * planned concurrently, even on the same VerdictContext, never share or reset
+ * each other's counters, and the SQL generated for a query does not depend on
+ * what was planned before it.
+ *
+ * Temporary table names are different: they name actual tables, so they must be
+ * unique across queries and are drawn from a process-wide counter.
+ */
+public class NamingContext {
+
+    private static final AtomicInteger tempTableNo = new AtomicInteger(1);
+
+    private static final ThreadLocal<NamingContext> current = new ThreadLocal<NamingContext>() {
+        @Override
+        protected NamingContext initialValue() {
+            return new NamingContext();
+        }
+    };
+
+    private int tableAliasNo = 1;
+
+    private int columnAliasNo = 1;
+
+    private int selectElemAliasNo = 1;
+
+    private int nestedAliasNo = 0;
+
+    /**
+     * @return the naming context bound to the current thread. A thread that has not
+     *         bound one gets its own.
+     */
+    public static NamingContext current() {
+        return current.get();
+    }
+
+    /**
+     * Binds the naming context to the current thread.
+     *
+     * @param naming
+     */
+    public static void bind(NamingContext naming) {
+        current.set(naming);
+    }
+
+    /**
+     * Creates a fresh naming context and binds it to the current thread.
+     *
+     * @return the new naming context
+     */
+    public static NamingContext begin() {
+        NamingContext naming = new NamingContext();
+        bind(naming);
+        return naming;
+    }
+
+    public String nextTableAlias() {
+        return String.format("vt%d", tableAliasNo++);
+    }
+
+    public String nextColumnAlias() {
+        return String.format("vc%d", columnAliasNo++);
+    }
+
+    /**
+     * @return the number attached to the alias of an unaliased select element.
+     */
+    public int nextSelectElemAliasNo() {
+        return selectElemAliasNo++;
+    }
+
+    /**
+     * @return the number attached to the aliases of nested queries (see
+     *         {@link edu.umich.verdict.datatypes.Alias}).
+     */
+    public int nextNestedAliasNo() {
+        return ++nestedAliasNo;
+    }
+
+    public static int nextTempTableNo() {
+        return tempTableNo.getAndIncrement();
+    }
+
+}
@@ -44,6 +44,16 @@ public class NoApproxRelation extends ApproxRelation {
         return r;
     }
 
+    @Override
+    public ExactRelation rewriteWithAnalyticErrorBounds() {
+        return r;
+    }
+
+    @Override
+    public ExactRelation rewriteWithBootstrappedErrorBounds() {
+        return r;
+    }
+
     @Override
     public ExactRelation rewriteForPointEstimate() {
         return r;
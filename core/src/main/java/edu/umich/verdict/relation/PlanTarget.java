@@ -0,0 +1,244 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Joiner;
+
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.parser.VerdictSQLParser;
+
+/**
+ * What a query asks of its sample plan, given by the clauses at the end of a
+ * select statement, e.g., "WITHIN 1% ERROR AT 95% CONFIDENCE" or "WITHIN 2
+ * SECONDS" (or by verdict.time_bound_seconds). Without such a clause,
+ * {@link SamplePlans#bestPlan(double)} trades cost and sampling probability
+ * with verdict.relative_target_cost.
+ * 
+ * The target also collects the bytes the chosen plans scan (and with which
+ * sample types), so that the runtime of the query can be recorded in the
+ * {@link LatencyModel}.
+ * 
+ * Like {@link NamingContext}, the target of the query being planned is bound to
+ * the planning thread (see
+ * {@link edu.umich.verdict.query.SelectQuery#queryToRelation(VerdictContext, VerdictSQLParser.Select_statementContext)}),
+ * so that every aggregation in the query, including those in its subqueries,
+ * sees it.
+ */
+public class PlanTarget {
+
+    private static final ThreadLocal<PlanTarget> current = new ThreadLocal<PlanTarget>();
+
+    private Double relativeError;
+
+    private Double seconds;
+
+    private double confidence;
+
+    private double plannedBytes = 0;
+
+    private int plannedScans = 0;
+
+    private Map<String, Double> plannedBytesPerType = new HashMap<String, Double>();
+
+    private Integer ladderRung = null;
+
+    private boolean higherRungExists = false;
+
+    public PlanTarget(Double relativeError, double confidence) {
+        this(relativeError, null, confidence);
+    }
+
+    public PlanTarget(Double relativeError, Double seconds, double confidence) {
+        this.relativeError = relativeError;
+        this.seconds = seconds;
+        this.confidence = confidence;
+    }
+
+    /**
+     * @param vc
+     * @param ctx
+     * @return the target specified in the select statement, or null if there is
+     *         none.
+     */
+    public static PlanTarget from(VerdictContext vc, VerdictSQLParser.Select_statementContext ctx) {
+        Double relativeError = null;
+        double confidence = vc.getConf().errorBoundConfidenceInPercentage();
+        VerdictSQLParser.Error_clauseContext e = ctx.error_clause();
+        if (e != null) {
+            relativeError = Double.parseDouble(e.error.getText()) / 100;
+            if (e.confidence != null) {
+                confidence = Double.parseDouble(e.confidence.getText()) / 100;
+            }
+        }
+
+        Double seconds = null;
+        VerdictSQLParser.Time_clauseContext t = ctx.time_clause();
+        if (t != null) {
+            seconds = Double.parseDouble(t.seconds.getText());
+        } else if (vc.getConf().timeBoundSeconds() > 0) {
+            seconds = vc.getConf().timeBoundSeconds();
+        }
+
+        if (relativeError == null && seconds == null) {
+            return null;
+        }
+        return new PlanTarget(relativeError, seconds, confidence);
+    }
+
+    /**
+     * @return the target bound to the current thread, or null if none is bound.
+     */
+    public static PlanTarget current() {
+        return current.get();
+    }
+
+    /**
+     * Binds the target to the current thread; null unbinds the current one.
+     * 
+     * @param target
+     */
+    public static void bind(PlanTarget target) {
+        if (target == null) {
+            current.remove();
+        } else {
+            current.set(target);
+        }
+    }
+
+    public boolean hasErrorBound() {
+        return relativeError != null;
+    }
+
+    public boolean hasTimeBound() {
+        return seconds != null;
+    }
+
+    /**
+     * @return the largest relative error allowed (e.g., 0.01 for 1%), or null.
+     */
+    public Double getRelativeError() {
+        return relativeError;
+    }
+
+    /**
+     * @return the time (in seconds) the query should finish in, or null.
+     */
+    public Double getSeconds() {
+        return seconds;
+    }
+
+    /**
+     * @return the confidence at which the relative error must be met (e.g., 0.95).
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Restricts the samples to the given rung of their ladders (see
+     * {@link edu.umich.verdict.VerdictMeta#getSampleLadder(edu.umich.verdict.datatypes.SampleParam)}),
+     * or to the largest rung if a ladder is shorter.
+     * 
+     * @param rung
+     *            0 for the smallest samples
+     * @return this target
+     */
+    public PlanTarget atLadderRung(int rung) {
+        this.ladderRung = rung;
+        return this;
+    }
+
+    /**
+     * @return the rung the samples are restricted to, or null if they are not.
+     */
+    public Integer getLadderRung() {
+        return ladderRung;
+    }
+
+    /**
+     * Notes that the ladder of a sample in a chosen plan has a rung above the
+     * current one.
+     */
+    public void noteHigherRung() {
+        higherRungExists = true;
+    }
+
+    public boolean hasHigherRung() {
+        return higherRungExists;
+    }
+
+    /**
+     * Adds the bytes scanned by a sample group of a chosen plan; called for every
+     * sample group of the plans chosen for the query.
+     * 
+     * @param sampleType
+     * @param bytes
+     */
+    public void noteScan(String sampleType, double bytes) {
+        plannedBytes += bytes;
+        plannedScans++;
+        Double b = plannedBytesPerType.get(sampleType);
+        plannedBytesPerType.put(sampleType, (b == null) ? bytes : b + bytes);
+    }
+
+    /**
+     * @return the bytes scanned by the plans chosen for the query.
+     */
+    public double getPlannedBytes() {
+        return plannedBytes;
+    }
+
+    /**
+     * @return the number of sample groups in the plans chosen for the query, or 0
+     *         if no plan has been chosen.
+     */
+    public int getPlannedScans() {
+        return plannedScans;
+    }
+
+    /**
+     * @return the sample type scanning the most bytes in the plans chosen for the
+     *         query, or null if no plan has been chosen.
+     */
+    public String getPlannedSampleType() {
+        String type = null;
+        for (Map.Entry<String, Double> e : plannedBytesPerType.entrySet()) {
+            if (type == null || e.getValue() > plannedBytesPerType.get(type)) {
+                type = e.getKey();
+            }
+        }
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        List<String> bounds = new ArrayList<String>();
+        if (hasErrorBound()) {
+            bounds.add(String.format("within %s%% error at %s%% confidence", relativeError * 100, confidence * 100));
+        }
+        if (hasTimeBound()) {
+            bounds.add(String.format("within %s seconds", seconds));
+        }
+        return (bounds.isEmpty()) ? "no target" : Joiner.on(" and ").join(bounds);
+    }
+
+}
@@ -53,9 +53,9 @@ import edu.umich.verdict.relation.expr.SelectElem;
 import edu.umich.verdict.relation.expr.SubqueryExpr;
 import edu.umich.verdict.util.ResultSetConversion;
 import edu.umich.verdict.util.StackTraceReader;
-import edu.umich.verdict.util.StringManipulations;
 import edu.umich.verdict.util.TypeCasting;
 import edu.umich.verdict.util.VerdictLogger;
+import edu.umich.verdict.util.VerdictSQLParserFactory;
 
 /**
  * Both {@link ExactRelation} and {@link ApproxRelation} must extends this
@@ -255,38 +255,25 @@ public abstract class Relation {
     }
 
     public static String prettyfySql(VerdictContext vc, String sql) {
-        VerdictSQLParser p = StringManipulations.parserOf(sql);
         PrettyPrintVisitor r = new PrettyPrintVisitor(vc, sql);
-        return r.visit(p.verdict_statement());
+        return r.visit(VerdictSQLParserFactory.parse(sql, VerdictSQLParserFactory.VERDICT_STATEMENT));
     }
 
-    private static int tab_alias_no = 1;
-
     public static String genTableAlias() {
-        String n = String.format("vt%d", tab_alias_no);
-        tab_alias_no++;
-        return n;
+        return NamingContext.current().nextTableAlias();
     }
 
-    private static int col_alias_no = 1;
-
     public static String genColumnAlias() {
-        String n = String.format("vc%d", col_alias_no);
-        col_alias_no++;
-        return n;
+        return NamingContext.current().nextColumnAlias();
     }
 
-    private static int temp_tab_no = 1;
-
     public static TableUniqueName getTempTableName(VerdictContext vc) {
-        String n = String.format("vt%d_%d", vc.getContextId() % 100, temp_tab_no);
-        temp_tab_no++;
+        String n = String.format("vt%d_%d", vc.getContextId() % 100, NamingContext.nextTempTableNo());
         return TableUniqueName.uname(vc, n);
     }
 
     public static TableUniqueName getTempTableName(VerdictContext vc, String schema) {
-        String n = String.format("vt%d_%d", vc.getContextId() % 100, temp_tab_no);
-        temp_tab_no++;
+        String n = String.format("vt%d_%d", vc.getContextId() % 100, NamingContext.nextTempTableNo());
         return TableUniqueName.uname(schema, n);
     }
 
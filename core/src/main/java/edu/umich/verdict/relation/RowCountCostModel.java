@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import edu.umich.verdict.VerdictContext;
+
+/**
+ * The cost of a sample group is the number of rows in the tables it scans (see
+ * {@link ApproxRelation#cost()}), regardless of how wide they are.
+ */
+public class RowCountCostModel extends CostModel {
+
+    public RowCountCostModel(VerdictContext vc) {
+        super(vc);
+    }
+
+    @Override
+    public double cost(SampleGroup group) {
+        return group.getSample().cost();
+    }
+
+}
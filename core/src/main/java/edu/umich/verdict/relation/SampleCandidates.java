@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.datatypes.TableUniqueName;
+
+/**
+ * Remembers, for the query being planned, the samples found for every base table
+ * and the candidates {@link SingleRelation#nBestSamples(edu.umich.verdict.relation.expr.Expr, int)}
+ * returned for every kind of aggregate. Without it, every select element of an
+ * aggregation refreshes the sample meta data, looks up the samples of each
+ * table it reads, and scores them again, even though the answer is the same
+ * for all the elements aggregating the same columns in the same way.
+ * 
+ * Like {@link PlanTarget}, the memo is bound to the planning thread; it is bound
+ * by the outermost {@link AggregatedRelation#approx()}, so that the
+ * aggregations in subqueries share it and the next query starts afresh. When no
+ * memo is bound, nothing is remembered.
+ */
+public class SampleCandidates {
+
+    private static final ThreadLocal<SampleCandidates> current = new ThreadLocal<SampleCandidates>();
+
+    private Set<String> refreshedSchemas = new HashSet<String>();
+
+    private Map<TableUniqueName, List<Pair<SampleParam, TableUniqueName>>> samplesOf = new HashMap<TableUniqueName, List<Pair<SampleParam, TableUniqueName>>>();
+
+    private Map<ExactRelation, Map<String, List<ApproxRelation>>> candidatesOf = new IdentityHashMap<ExactRelation, Map<String, List<ApproxRelation>>>();
+
+    /**
+     * @return the memo bound to the current thread, or null if none is bound.
+     */
+    public static SampleCandidates current() {
+        return current.get();
+    }
+
+    /**
+     * Binds the memo to the current thread; null unbinds the current one.
+     * 
+     * @param memo
+     */
+    public static void bind(SampleCandidates memo) {
+        if (memo == null) {
+            current.remove();
+        } else {
+            current.set(memo);
+        }
+    }
+
+    /**
+     * Refreshes the sample meta data of the schema unless it has already been
+     * refreshed for this query.
+     * 
+     * @param vc
+     * @param schema
+     */
+    public void refreshSampleInfoIfNeeded(VerdictContext vc, String schema) {
+        if (refreshedSchemas.add(schema)) {
+            vc.getMeta().refreshSampleInfoIfNeeded(schema, false);
+        }
+    }
+
+    /**
+     * @param vc
+     * @param table
+     * @return the samples of the table (see
+     *         {@link edu.umich.verdict.VerdictMeta#getSampleInfoFor(TableUniqueName)}),
+     *         looked up once per query. The caller gets its own copy.
+     */
+    public List<Pair<SampleParam, TableUniqueName>> samplesOf(VerdictContext vc, TableUniqueName table) {
+        List<Pair<SampleParam, TableUniqueName>> samples = samplesOf.get(table);
+        if (samples == null) {
+            samples = vc.getMeta().getSampleInfoFor(table);
+            samplesOf.put(table, samples);
+        }
+        return new ArrayList<Pair<SampleParam, TableUniqueName>>(samples);
+    }
+
+    /**
+     * @param r
+     * @param aggregateKey
+     *            identifies the kind of aggregates the candidates are for
+     * @return the candidates remembered for the relation and the kind of
+     *         aggregates, or null if there are none.
+     */
+    public List<ApproxRelation> candidatesOf(ExactRelation r, String aggregateKey) {
+        Map<String, List<ApproxRelation>> candidates = candidatesOf.get(r);
+        if (candidates == null || !candidates.containsKey(aggregateKey)) {
+            return null;
+        }
+        return new ArrayList<ApproxRelation>(candidates.get(aggregateKey));
+    }
+
+    public void remember(ExactRelation r, String aggregateKey, List<ApproxRelation> candidates) {
+        if (!candidatesOf.containsKey(r)) {
+            candidatesOf.put(r, new HashMap<String, List<ApproxRelation>>());
+        }
+        candidatesOf.get(r).put(aggregateKey, new ArrayList<ApproxRelation>(candidates));
+    }
+
+}
@@ -58,11 +58,15 @@ public class SampleGroup {
     }
 
     public double samplingProb() {
-        return sample.samplingProbability();
+        return sample.effectiveSamplingProbability();
     }
 
+    /**
+     * The cost of answering the elements with the sample, as estimated by the cost
+     * model of the context (see {@link CostModel}).
+     */
     public double cost() {
-        return sample.cost();
+        return sample.getVerdictContext().getCostModel().cost(this);
     }
 
     public String sampleType() {
@@ -109,6 +109,33 @@ public class SamplePlan {
         return sampleGroups.size() / samplingProb;
     }
 
+    /**
+     * The cost of the plan {@link #createByMerge(SampleGroup)} would return, computed
+     * without copying this plan.
+     * 
+     * @param group
+     * @return
+     */
+    public double costByMerge(SampleGroup group) {
+        for (SampleGroup g : sampleGroups) {
+            if (g.isEqualSample(group)) {
+                SampleGroup merged = g.duplicate();
+                merged.addElem(group.getElems());
+                return cost() - g.cost() + merged.cost();
+            }
+        }
+        return cost() + group.cost();
+    }
+
+    /**
+     * @param group
+     * @return true if merging the group into this plan results in a plan with a
+     *         single sample group.
+     */
+    public boolean isSingleGroupByMerge(SampleGroup group) {
+        return sampleGroups.size() == 1 && sampleGroups.get(0).isEqualSample(group);
+    }
+
     /**
      * creates and returns a new SamplePlan by merging the new sample group.
      * 
@@ -21,6 +21,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 
 public class SamplePlans {
 
@@ -43,27 +44,99 @@ public class SamplePlans {
     }
 
     /**
-     * Creates candidate plans that can answer one more expression.
+     * Creates candidate plans that can answer one more expression, keeping at most
+     * 10 plans that combine multiple samples.
      * 
      * @param groups
      *            A candidate approx relations that can answer an expression
      */
     public void consolidateNewExpr(List<SampleGroup> groups) {
+        consolidateNewExpr(groups, 10);
+    }
+
+    /**
+     * Creates candidate plans that can answer one more expression. Every existing
+     * plan is extended with every candidate sample group, but only the
+     * 'beamWidth' cheapest extensions that combine multiple samples are
+     * materialized; the costs of the others are computed without copying the
+     * plans. The extensions that use a single sample are always kept, so that
+     * {@link #bestPlan(double)} can find the plan that uses the original tables.
+     * 
+     * @param groups
+     *            A candidate approx relations that can answer an expression
+     * @param beamWidth
+     *            The number of multi-sample plans to keep
+     */
+    public void consolidateNewExpr(List<SampleGroup> groups, int beamWidth) {
         List<SamplePlan> newPlans = new ArrayList<SamplePlan>();
 
         if (plans.size() == 0) {
             for (SampleGroup group : groups) {
                 newPlans.add(new SamplePlan(Arrays.asList(group)));
             }
-        } else {
-            for (SamplePlan oldPlan : plans) {
-                for (SampleGroup group : groups) {
+            this.plans = newPlans;
+            return;
+        }
+
+        // the most expensive extension kept so far is at the head.
+        PriorityQueue<Extension> beam = new PriorityQueue<Extension>(Math.max(beamWidth, 1),
+                new Comparator<Extension>() {
+                    @Override
+                    public int compare(Extension a, Extension b) {
+                        return Double.compare(b.cost, a.cost);
+                    }
+                });
+
+        for (SamplePlan oldPlan : plans) {
+            for (SampleGroup group : groups) {
+                if (oldPlan.isSingleGroupByMerge(group)) {
                     newPlans.add(oldPlan.createByMerge(group));
+                    continue;
+                }
+                if (beamWidth <= 0) {
+                    continue;
                 }
+
+                double cost = oldPlan.costByMerge(group);
+                if (beam.size() < beamWidth) {
+                    beam.add(new Extension(oldPlan, group, cost));
+                } else if (cost < beam.peek().cost) {
+                    beam.poll();
+                    beam.add(new Extension(oldPlan, group, cost));
+                }
+            }
+        }
+
+        List<Extension> kept = new ArrayList<Extension>(beam);
+        Collections.sort(kept, new Comparator<Extension>() {
+            @Override
+            public int compare(Extension a, Extension b) {
+                return Double.compare(a.cost, b.cost);
             }
+        });
+        for (Extension e : kept) {
+            newPlans.add(e.plan.createByMerge(e.group));
         }
+
         this.plans = newPlans;
-        prune(10);
+    }
+
+    /**
+     * A plan extended with a sample group, before the extended plan is created.
+     */
+    private static class Extension {
+
+        final SamplePlan plan;
+
+        final SampleGroup group;
+
+        final double cost;
+
+        Extension(SamplePlan plan, SampleGroup group, double cost) {
+            this.plan = plan;
+            this.group = group;
+            this.cost = cost;
+        }
     }
 
     // keeps the top 'num' number of plans.
@@ -152,6 +225,52 @@ public class SamplePlans {
         }
     }
 
+    /**
+     * @param predictor
+     * @param relativeError
+     * @param confidence
+     * @return the cheapest plan whose predicted relative error is at most the given
+     *         one, or null if there is none.
+     */
+    public SamplePlan cheapestPlanWithin(ErrorPredictor predictor, double relativeError, double confidence) {
+        SamplePlan best = null;
+        for (SamplePlan plan : plans) {
+            if (predictor.relativeError(plan, confidence) > relativeError) {
+                continue;
+            }
+            if (best == null || plan.cost() < best.cost()) {
+                best = plan;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param predictor
+     * @param latency
+     * @param seconds
+     * @param confidence
+     * @return the plan with the smallest predicted relative error among those
+     *         predicted to finish within the given time (the cheaper one if tied),
+     *         or null if there is none.
+     */
+    public SamplePlan mostAccuratePlanWithin(ErrorPredictor predictor, LatencyModel latency, double seconds,
+            double confidence) {
+        SamplePlan best = null;
+        double bestError = Double.POSITIVE_INFINITY;
+        for (SamplePlan plan : plans) {
+            if (latency.predictSeconds(plan) > seconds) {
+                continue;
+            }
+            double error = predictor.relativeError(plan, confidence);
+            if (best == null || error < bestError || (error == bestError && plan.cost() < best.cost())) {
+                best = plan;
+                bestError = error;
+            }
+        }
+        return best;
+    }
+
     private double computeScore(double cost, double samplingProbability) {
         return samplingProbability / Math.sqrt(cost);
     }
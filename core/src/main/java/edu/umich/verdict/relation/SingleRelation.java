@@ -20,9 +20,12 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.commons.lang3.tuple.Pair;
 
+import com.google.common.base.Joiner;
+
 import edu.umich.verdict.VerdictContext;
 import edu.umich.verdict.datatypes.SampleParam;
 import edu.umich.verdict.datatypes.SampleSizeInfo;
@@ -85,21 +88,35 @@ public class SingleRelation extends ExactRelation {
 
     @Override
     protected List<ApproxRelation> nBestSamples(Expr elem, int n) throws VerdictException {
+        SampleCandidates memo = SampleCandidates.current();
+        String aggregateKey = aggregateKey(elem);
+        if (memo != null) {
+            List<ApproxRelation> remembered = memo.candidatesOf(this, aggregateKey);
+            if (remembered != null) {
+                return remembered;
+            }
+        }
+
         // refresh meta data if needed.
         String schema = getTableName().getSchemaName();
-        vc.getMeta().refreshSampleInfoIfNeeded(schema, false);
+        List<Pair<SampleParam, TableUniqueName>> availableSamples;
+        if (memo != null) {
+            memo.refreshSampleInfoIfNeeded(vc, schema);
+            availableSamples = memo.samplesOf(vc, getTableName());
+        } else {
+            vc.getMeta().refreshSampleInfoIfNeeded(schema, false);
+            availableSamples = vc.getMeta().getSampleInfoFor(getTableName());
+        }
 
         List<ApproxRelation> samples = new ArrayList<ApproxRelation>();
 
-        // Get all the samples
-        List<Pair<SampleParam, TableUniqueName>> availableSamples = vc.getMeta().getSampleInfoFor(getTableName());
         // add a relation itself in case there's no available sample.
         availableSamples.add(Pair.of(asSampleParam(), getTableName()));
 
         for (Pair<SampleParam, TableUniqueName> pair : availableSamples) {
             SampleParam param = pair.getLeft();
             double samplingProb = samplingProb(param, elem);
-            if (samplingProb < 0) {
+            if (samplingProb < 0 || !isOnCurrentLadderRung(param)) {
                 continue;
             }
             ApproxRelation a = new ApproxSingleRelation(vc, pair.getLeft());
@@ -107,9 +124,64 @@ public class SingleRelation extends ExactRelation {
             samples.add(a);
         }
 
+        if (memo != null) {
+            memo.remember(this, aggregateKey, samples);
+        }
         return samples;
     }
 
+    /**
+     * Which samples {@link #samplingProb(SampleParam, Expr)} allows depends only
+     * on the aggregate functions in the expression and the columns they
+     * aggregate, so the expressions with the same key get the same candidates.
+     * 
+     * @param expr
+     * @return e.g., "count_distinct(user_id),linear(price)" for
+     *         "count(distinct user_id) + sum(price) / count(*)"
+     */
+    private String aggregateKey(Expr expr) {
+        Set<String> keys = new TreeSet<String>();
+        for (FuncExpr f : expr.extractFuncExpr()) {
+            if (!f.isagg()) {
+                continue;
+            }
+            FuncExpr.FuncName fname = f.getFuncName();
+            if (fname.equals(FuncExpr.FuncName.COUNT_DISTINCT)) {
+                keys.add(String.format("count_distinct(%s)", aggregatedColumn(f)));
+            } else if (fname.equals(FuncExpr.FuncName.COUNT) || fname.equals(FuncExpr.FuncName.SUM)
+                    || fname.equals(FuncExpr.FuncName.AVG) || fname.equals(FuncExpr.FuncName.APPROX_PERCENTILE)) {
+                keys.add(String.format("linear(%s)", aggregatedColumn(f)));
+            } else {
+                keys.add("other");
+            }
+        }
+        return Joiner.on(",").join(keys);
+    }
+
+    private String aggregatedColumn(FuncExpr fexpr) {
+        if (fexpr.getUnaryExpr() instanceof ColNameExpr) {
+            return ((ColNameExpr) fexpr.getUnaryExpr()).getCol();
+        }
+        return fexpr.getUnaryExprInString();
+    }
+
+    /**
+     * @return false if the sample is not on the ladder rung the query being planned
+     *         is restricted to (see {@link PlanTarget#atLadderRung(int)}).
+     */
+    private boolean isOnCurrentLadderRung(SampleParam param) {
+        PlanTarget target = PlanTarget.current();
+        if (target == null || target.getLadderRung() == null || param.getSampleType().equals(NOSAMPLE)) {
+            return true;
+        }
+        List<SampleParam> ladder = vc.getMeta().getSampleLadder(param);
+        if (ladder.isEmpty()) {
+            return true;
+        }
+        int rung = target.getLadderRung();
+        return ladder.get(Math.min(rung, ladder.size() - 1)).equals(param);
+    }
+
     /**
      * Computes an effective sampling probability for a given sample and an
      * aggregate expression to compute with the sample. A negative return value
@@ -135,10 +207,7 @@ public class SingleRelation extends ExactRelation {
         Set<String> cols = vc.getMeta().getColumns(getTableName());
         List<Double> probs = new ArrayList<Double>();
         for (FuncExpr fexpr : funcs) {
-            String fcol = fexpr.getUnaryExprInString();
-            if (fexpr.getUnaryExpr() instanceof ColNameExpr) {
-                fcol = ((ColNameExpr) fexpr.getUnaryExpr()).getCol();
-            }
+            String fcol = aggregatedColumn(fexpr);
 
             if (fexpr.getFuncName().equals(FuncExpr.FuncName.COUNT_DISTINCT)) {
                 if (cols.contains(fcol)) {
@@ -160,7 +229,8 @@ public class SingleRelation extends ExactRelation {
                 }
             } else if (fexpr.getFuncName().equals(FuncExpr.FuncName.COUNT)
                     || fexpr.getFuncName().equals(FuncExpr.FuncName.SUM)
-                    || fexpr.getFuncName().equals(FuncExpr.FuncName.AVG)) { // COUNT, SUM, AVG
+                    || fexpr.getFuncName().equals(FuncExpr.FuncName.AVG)
+                    || fexpr.getFuncName().equals(FuncExpr.FuncName.APPROX_PERCENTILE)) { // COUNT, SUM, AVG
                 SampleSizeInfo size = vc.getMeta().getSampleSizeOf(param.sampleTableName());
 
                 if (size == null) {
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.datatypes.SampleSizeInfo;
+import edu.umich.verdict.datatypes.TableUniqueName;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.util.VerdictLogger;
+
+/**
+ * Watches the equi-joins between two large tables (both with at least
+ * verdict.planner.universe_join.min_rows rows). Joining uniform samples of both
+ * shrinks the join to the product of their sampling ratios, while joining
+ * universe samples on the join keys keeps every matching pair of the sampled
+ * keys (see {@link Relation#areMatchingUniverseSamples(ApproxRelation, ApproxRelation, List)}).
+ * Thus, when both tables have universe samples on the join keys, the planner
+ * uses them instead of joining other samples of both; when they do not,
+ * depending on verdict.planner.universe_join.action, this recommends creating
+ * them ("recommend") or creates them in the background ("create").
+ * 
+ * Every pair of joined columns is considered once per context; the sizes of the
+ * tables are those recorded for their samples, so tables without samples are
+ * never considered large. The samples are built on a connection of their own;
+ * the sample information of the tables is refreshed by the next query that
+ * consults this advisor after they are built.
+ */
+public class UniverseJoinAdvisor {
+
+    private final VerdictContext vc;
+
+    private final Set<String> advised = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private ExecutorService builder;
+
+    /**
+     * The tables whose universe samples were built but are not yet known to the
+     * sample information of {@link #vc}.
+     */
+    private final Queue<TableUniqueName> built = new ConcurrentLinkedQueue<TableUniqueName>();
+
+    public UniverseJoinAdvisor(VerdictContext vc) {
+        this.vc = vc;
+    }
+
+    /**
+     * @param table1
+     * @param column1
+     *            the join key of table1
+     * @param table2
+     * @param column2
+     *            the join key of table2
+     * @return true if both tables are large and have universe samples on the join
+     *         keys, i.e., if the planner should use them.
+     */
+    public boolean prefersUniverseSamples(TableUniqueName table1, String column1, TableUniqueName table2,
+            String column2) {
+        refreshBuiltSamples();
+
+        long minRows = vc.getConf().universeJoinMinRows();
+        if (tableSize(table1) < minRows || tableSize(table2) < minRows) {
+            return false;
+        }
+
+        boolean has1 = hasUniverseSample(table1, column1);
+        boolean has2 = hasUniverseSample(table2, column2);
+        if (has1 && has2) {
+            return true;
+        }
+
+        String key = String.format("%s.%s=%s.%s", table1, column1, table2, column2);
+        if (!advised.add(key)) {
+            return false;
+        }
+        String action = vc.getConf().universeJoinAction();
+        if (action.equals("recommend")) {
+            VerdictLogger.info(this, String.format(
+                    "%s and %s are joined on %s = %s. Joins of their universe samples on these columns would be"
+                            + " more accurate than joins of their uniform samples; consider%s%s.",
+                    table1, table2, column1, column2,
+                    (has1) ? "" : String.format(" \"create universe sample of %s on %s\"", table1, column1),
+                    (has2) ? "" : String.format(" \"create universe sample of %s on %s\"", table2, column2)));
+        } else if (action.equals("create")) {
+            if (!has1) {
+                buildInBackground(table1, column1);
+            }
+            if (!has2) {
+                buildInBackground(table2, column2);
+            }
+        }
+        return false;
+    }
+
+    private boolean hasUniverseSample(TableUniqueName table, String column) {
+        for (Pair<SampleParam, TableUniqueName> e : samplesOf(table)) {
+            SampleParam param = e.getLeft();
+            if (param.getSampleType().equals("universe") && param.getColumnNames().size() == 1
+                    && param.getColumnNames().get(0).equalsIgnoreCase(column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the size of the table recorded for its samples, or 0 if it has none.
+     */
+    private long tableSize(TableUniqueName table) {
+        for (Pair<SampleParam, TableUniqueName> e : samplesOf(table)) {
+            SampleSizeInfo size = vc.getMeta().getSampleSizeOf(e.getRight());
+            if (size != null) {
+                return size.originalTableSize;
+            }
+        }
+        return 0;
+    }
+
+    private List<Pair<SampleParam, TableUniqueName>> samplesOf(TableUniqueName table) {
+        SampleCandidates memo = SampleCandidates.current();
+        return (memo != null) ? memo.samplesOf(vc, table) : vc.getMeta().getSampleInfoFor(table);
+    }
+
+    /**
+     * Refreshes the sample information of the schemas of the samples built in the
+     * background, on the thread of the query rather than on the builder's.
+     */
+    private void refreshBuiltSamples() {
+        Set<String> schemas = new LinkedHashSet<String>();
+        for (TableUniqueName t = built.poll(); t != null; t = built.poll()) {
+            schemas.add(t.getSchemaName());
+        }
+        for (String schema : schemas) {
+            vc.getMeta().refreshSampleInfo(schema, false);
+        }
+    }
+
+    private synchronized void buildInBackground(final TableUniqueName table, String column) {
+        if (builder == null) {
+            builder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "verdict-universe-sample-builder");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+
+        final String sql = String.format("create universe sample of %s on %s", table, column);
+        VerdictLogger.info(this, String.format("Runs \"%s\" in the background for joins on %s.", sql, column));
+        builder.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (vc instanceof VerdictJDBCContext) {
+                        // a context with a connection of its own, so that the statements of the
+                        // queries running meanwhile are not disturbed.
+                        VerdictContext bvc = VerdictJDBCContext.from(vc.getConf());
+                        try {
+                            bvc.execute(sql);
+                        } finally {
+                            bvc.destroy();
+                        }
+                    } else {
+                        vc.execute(sql);
+                    }
+                    built.add(table);
+                } catch (VerdictException e) {
+                    VerdictLogger.warn(UniverseJoinAdvisor.this,
+                            String.format("Could not run \"%s\": %s", sql, e.getMessage()));
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops the samples being built in the background, if any.
+     */
+    public synchronized void shutdown() {
+        if (builder != null) {
+            builder.shutdownNow();
+            builder = null;
+        }
+    }
+
+}
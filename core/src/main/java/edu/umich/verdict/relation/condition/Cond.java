@@ -26,7 +26,7 @@ import edu.umich.verdict.parser.VerdictSQLParser;
 import edu.umich.verdict.parser.VerdictSQLParser.Search_conditionContext;
 import edu.umich.verdict.relation.ExactRelation;
 import edu.umich.verdict.relation.expr.Expr;
-import edu.umich.verdict.util.StringManipulations;
+import edu.umich.verdict.util.VerdictSQLParserFactory;
 
 public abstract class Cond {
 
@@ -34,8 +34,7 @@ public abstract class Cond {
     }
 
     public static Cond from(VerdictContext vc, String cond) {
-        VerdictSQLParser p = StringManipulations.parserOf(cond);
-        return from(vc, p.search_condition());
+        return from(vc, VerdictSQLParserFactory.parse(cond, VerdictSQLParserFactory.SEARCH_CONDITION));
     }
 
     // public static Cond from(Search_conditionContext ctx) {
@@ -20,13 +20,12 @@ import java.util.ArrayList;
 import java.util.List;
 
 import edu.umich.verdict.VerdictContext;
-import edu.umich.verdict.parser.VerdictSQLParser;
 import edu.umich.verdict.parser.VerdictSQLParser.Case_exprContext;
 import edu.umich.verdict.parser.VerdictSQLParser.ExpressionContext;
 import edu.umich.verdict.parser.VerdictSQLParser.Search_conditionContext;
 import edu.umich.verdict.relation.condition.Cond;
-import edu.umich.verdict.util.StringManipulations;
 import edu.umich.verdict.util.VerdictLogger;
+import edu.umich.verdict.util.VerdictSQLParserFactory;
 
 /**
  * For (CASE (WHEN condition THEN expression)+ ELSE expression END)
@@ -61,8 +60,7 @@ public class CaseExpr extends Expr {
     }
 
     public static CaseExpr from(VerdictContext vc, String expr) {
-        VerdictSQLParser p = StringManipulations.parserOf(expr);
-        return from(vc, p.case_expr());
+        return from(vc, VerdictSQLParserFactory.parse(expr, VerdictSQLParserFactory.CASE_EXPR));
     }
 
     public static CaseExpr from(VerdictContext vc, Case_exprContext ctx) {
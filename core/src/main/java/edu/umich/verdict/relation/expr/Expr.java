@@ -24,6 +24,7 @@ import edu.umich.verdict.parser.VerdictSQLBaseVisitor;
 import edu.umich.verdict.parser.VerdictSQLParser;
 import edu.umich.verdict.util.StringManipulations;
 import edu.umich.verdict.util.VerdictLogger;
+import edu.umich.verdict.util.VerdictSQLParserFactory;
 
 public abstract class Expr {
 
@@ -49,8 +50,7 @@ public abstract class Expr {
     }
 
     public static Expr from(VerdictContext vc, String expr) {
-        VerdictSQLParser p = StringManipulations.parserOf(expr);
-        return from(vc, p.expression());
+        return from(vc, VerdictSQLParserFactory.parse(expr, VerdictSQLParserFactory.EXPRESSION));
     }
 
     private static Expr from(VerdictContext vc, Object obj) {
@@ -117,6 +117,10 @@ public abstract class Expr {
         return false;
     }
 
+    public boolean isPercentile() {
+        return false;
+    }
+
     public boolean isMax() {
         return false;
     }
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation.expr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.relation.condition.AndCond;
+import edu.umich.verdict.relation.condition.CompCond;
+import edu.umich.verdict.relation.condition.Cond;
+import edu.umich.verdict.relation.condition.IsCond;
+import edu.umich.verdict.relation.condition.NullCond;
+import edu.umich.verdict.relation.condition.OrCond;
+
+/**
+ * Builds expressions, conditions, and select elements directly as objects. The
+ * expressions Verdict generates internally (e.g., while creating samples) should
+ * be built with this class rather than by formatting a string and parsing it
+ * back with {@link Expr#from(VerdictContext, String)}.
+ */
+public class ExprBuilder {
+
+    private final VerdictContext vc;
+
+    public ExprBuilder(VerdictContext vc) {
+        this.vc = vc;
+    }
+
+    public VerdictContext getVerdictContext() {
+        return vc;
+    }
+
+    /*
+     * Leaves
+     */
+
+    public ColNameExpr col(String col) {
+        return new ColNameExpr(vc, col);
+    }
+
+    public ColNameExpr col(String tab, String col) {
+        return new ColNameExpr(vc, col, tab);
+    }
+
+    public List<Expr> cols(String tab, List<String> cols) {
+        List<Expr> exprs = new ArrayList<Expr>();
+        for (String c : cols) {
+            exprs.add(col(tab, c));
+        }
+        return exprs;
+    }
+
+    public List<Expr> cols(List<String> cols) {
+        return cols(null, cols);
+    }
+
+    public StarExpr star() {
+        return new StarExpr();
+    }
+
+    /**
+     * A numeric literal (or any other value whose string form is valid SQL).
+     */
+    public ConstantExpr constant(Object value) {
+        return ConstantExpr.from(vc, value);
+    }
+
+    /**
+     * A double literal in a fixed-point notation; {@link Double#toString()} may
+     * produce an exponent, which not every DBMS accepts.
+     */
+    public ConstantExpr decimal(double value) {
+        return ConstantExpr.from(vc, String.format("%f", value));
+    }
+
+    /**
+     * A single-quoted string literal.
+     */
+    public ConstantExpr string(String value) {
+        return ConstantExpr.from(vc, "'" + value.replace("'", "''") + "'");
+    }
+
+    /*
+     * Operators and functions
+     */
+
+    public BinaryOpExpr add(Expr left, Expr right) {
+        return BinaryOpExpr.from(vc, left, right, "+");
+    }
+
+    public BinaryOpExpr sub(Expr left, Expr right) {
+        return BinaryOpExpr.from(vc, left, right, "-");
+    }
+
+    public BinaryOpExpr mul(Expr left, Expr right) {
+        return BinaryOpExpr.from(vc, left, right, "*");
+    }
+
+    public BinaryOpExpr div(Expr left, Expr right) {
+        return BinaryOpExpr.from(vc, left, right, "/");
+    }
+
+    public FuncExpr func(FuncExpr.FuncName fname, Expr... args) {
+        return new FuncExpr(fname, Arrays.asList(args), null);
+    }
+
+    public FuncExpr cast(Expr e, String dataType) {
+        return new FuncExpr(FuncExpr.FuncName.CAST, e, constant(dataType));
+    }
+
+    public FuncExpr count() {
+        return FuncExpr.count();
+    }
+
+    /**
+     * (CASE WHEN c1 THEN e1 WHEN c2 THEN e2 ... ELSE otherwise END). The last
+     * argument is the else expression.
+     */
+    public CaseExpr caseWhen(List<Cond> conds, List<Expr> exprs, Expr otherwise) {
+        List<Expr> allExprs = new ArrayList<Expr>(exprs);
+        allExprs.add(otherwise);
+        return new CaseExpr(vc, new ArrayList<Cond>(conds), allExprs);
+    }
+
+    public CaseExpr caseWhen(Cond cond, Expr then, Expr otherwise) {
+        return caseWhen(Arrays.asList(cond), Arrays.<Expr>asList(then), otherwise);
+    }
+
+    /**
+     * (CASE WHEN e IS NULL THEN replacement ELSE e END); used for equi-joins that
+     * must match null values.
+     */
+    public CaseExpr nullSafe(Expr e, Expr replacement) {
+        return caseWhen(isNull(e), replacement, e);
+    }
+
+    /*
+     * Conditions
+     */
+
+    public Cond isNull(Expr e) {
+        return new IsCond(e, new NullCond(true));
+    }
+
+    public Cond isNotNull(Expr e) {
+        return new IsCond(e, new NullCond(false));
+    }
+
+    public Cond compare(Expr left, String op, Expr right) {
+        return CompCond.from(vc, left, op, right);
+    }
+
+    public Cond eq(Expr left, Expr right) {
+        return compare(left, "=", right);
+    }
+
+    public Cond lt(Expr left, Expr right) {
+        return compare(left, "<", right);
+    }
+
+    public Cond ge(Expr left, Expr right) {
+        return compare(left, ">=", right);
+    }
+
+    public Cond and(Cond left, Cond right) {
+        return AndCond.from(left, right);
+    }
+
+    public Cond or(Cond left, Cond right) {
+        return OrCond.from(left, right);
+    }
+
+    /*
+     * Select list
+     */
+
+    public SelectElem as(Expr e, String alias) {
+        return new SelectElem(vc, e, alias);
+    }
+
+    public SelectElem elem(Expr e) {
+        return new SelectElem(vc, e);
+    }
+
+    public SelectElem allColumns() {
+        return new SelectElem(vc, star());
+    }
+
+    public List<SelectElem> elems(List<Expr> exprs) {
+        List<SelectElem> elems = new ArrayList<SelectElem>();
+        for (Expr e : exprs) {
+            elems.add(elem(e));
+        }
+        return elems;
+    }
+
+}
@@ -25,12 +25,12 @@ import com.google.common.collect.ImmutableMap;
 import edu.umich.verdict.VerdictContext;
 import edu.umich.verdict.parser.VerdictSQLBaseVisitor;
 import edu.umich.verdict.parser.VerdictSQLParser;
-import edu.umich.verdict.util.StringManipulations;
+import edu.umich.verdict.util.VerdictSQLParserFactory;
 
 public class FuncExpr extends Expr {
 
     public enum FuncName {
-        COUNT, SUM, AVG, COUNT_DISTINCT, EXTRACT, IMPALA_APPROX_COUNT_DISTINCT, ROUND, MAX, MIN, FLOOR, CEIL, EXP, LN, LOG10, LOG2, SIN, COS, TAN, SIGN, STRTOL, RAND, RANDOM, FNV_HASH, ABS, STDDEV, SQRT, MOD, PMOD, YEAR, QUARTER, MONTH, DAY, HOUR, MINUTE, SECOND, WEEKOFYEAR, CAST, CONV, SUBSTR, MD5, CRC32, UNIX_TIMESTAMP, CURRENT_TIMESTAMP, UNKNOWN, LOWER, UPPER, ASCII, CHARACTER_LENGTH, POW, E, PI, FACTORIAL, CBRT, PERCENTILE, SPLIT, LENGTH, INSTR, TRIM, ASIN, ACOS, ATAN, DEGREES, RADIANS, POSITIVE, NEGATIVE, ENCODE, DECODE, BROUND, BIN, HEX, UNHEX, SHIFTLEFT, SHIFTRIGHT, SHIFTRIGHTUNSIGNED, FROM_UNIXTIME, TO_DATE, NVL, CHR, FIND_IN_SET, FORMAT_NUMBER, GET_JSON_OBJECT, IN_FILE, LOCATE, LTRIM, REPEAT, REVERSE, SPACE, AES_ENCRYPT, AES_DECRYPT, SHA1, SHA2
+        COUNT, SUM, AVG, COUNT_DISTINCT, APPROX_PERCENTILE, IMPALA_APPX_MEDIAN, HIVE_PERCENTILE_APPROX, REDSHIFT_APPROX_PERCENTILE, EXTRACT, IMPALA_APPROX_COUNT_DISTINCT, SPARK_APPROX_COUNT_DISTINCT, REDSHIFT_APPROX_COUNT_DISTINCT, ROUND, MAX, MIN, FLOOR, CEIL, EXP, LN, LOG10, LOG2, SIN, COS, TAN, SIGN, STRTOL, RAND, RANDOM, FNV_HASH, ABS, STDDEV, SQRT, MOD, PMOD, YEAR, QUARTER, MONTH, DAY, HOUR, MINUTE, SECOND, WEEKOFYEAR, CAST, CONV, SUBSTR, MD5, CRC32, UNIX_TIMESTAMP, CURRENT_TIMESTAMP, UNKNOWN, LOWER, UPPER, ASCII, CHARACTER_LENGTH, POW, E, PI, FACTORIAL, CBRT, PERCENTILE, SPLIT, LENGTH, INSTR, TRIM, ASIN, ACOS, ATAN, DEGREES, RADIANS, POSITIVE, NEGATIVE, ENCODE, DECODE, BROUND, BIN, HEX, UNHEX, SHIFTLEFT, SHIFTRIGHT, SHIFTRIGHTUNSIGNED, FROM_UNIXTIME, TO_DATE, NVL, CHR, FIND_IN_SET, FORMAT_NUMBER, GET_JSON_OBJECT, IN_FILE, LOCATE, LTRIM, REPEAT, REVERSE, SPACE, AES_ENCRYPT, AES_DECRYPT, SHA1, SHA2
     }
 
     protected List<Expr> expressions;
@@ -131,6 +131,10 @@ public class FuncExpr extends Expr {
     protected static Map<FuncName, String> functionPattern = ImmutableMap.<FuncName, String>builder()
             .put(FuncName.ABS, "abs(%s)")
             .put(FuncName.ACOS, "acos(%s)")
+            .put(FuncName.APPROX_PERCENTILE, "approx_percentile(%s, %s)")
+            .put(FuncName.IMPALA_APPX_MEDIAN, "appx_median(%s)")
+            .put(FuncName.HIVE_PERCENTILE_APPROX, "percentile_approx(%s, %s)")
+            .put(FuncName.REDSHIFT_APPROX_PERCENTILE, "approximate percentile_disc(%2$s) within group (order by %1$s)")
             .put(FuncName.AES_DECRYPT, "aes_decrypt(%s, %s)")
             .put(FuncName.AES_ENCRYPT, "aes_encrypt(%s, %s)")
             .put(FuncName.ASCII, "ascii(%s)")
@@ -193,6 +197,7 @@ public class FuncExpr extends Expr {
             .put(FuncName.RADIANS, "radians(%s)")
             .put(FuncName.RAND, "rand(%s)")
             .put(FuncName.RANDOM, "random(%s)")
+            .put(FuncName.REDSHIFT_APPROX_COUNT_DISTINCT, "approximate count(distinct %s)")
             .put(FuncName.REPEAT, "repeat(%s, %s)")
             .put(FuncName.REVERSE, "reverse(%s)")
             .put(FuncName.ROUND, "round(%s)")
@@ -205,6 +210,7 @@ public class FuncExpr extends Expr {
             .put(FuncName.SIGN, "sign(%s)")
             .put(FuncName.SIN, "sin(%s)")
             .put(FuncName.SPACE, "space(%s)")
+            .put(FuncName.SPARK_APPROX_COUNT_DISTINCT, "approx_count_distinct(%s)")
             .put(FuncName.SPLIT, "split(%s, %s)")
             .put(FuncName.SQRT, "sqrt(%s)")
             .put(FuncName.STDDEV, "stddev(%s)")
@@ -278,8 +284,7 @@ public class FuncExpr extends Expr {
     }
 
     public static FuncExpr from(VerdictContext vc, String expr) {
-        VerdictSQLParser p = StringManipulations.parserOf(expr);
-        return from(vc, p.function_call());
+        return from(vc, VerdictSQLParserFactory.parse(expr, VerdictSQLParserFactory.FUNCTION_CALL));
     }
 
     public static FuncExpr from(final VerdictContext vc, VerdictSQLParser.Function_callContext ctx) {
@@ -310,6 +315,10 @@ public class FuncExpr extends Expr {
                     fname = FuncName.MIN;
                 } else if (ctx.MAX() != null) {
                     fname = FuncName.MAX;
+                } else if (ctx.MEDIAN() != null) {
+                    return approxPercentile(expr, ConstantExpr.from(vc, 0.5));
+                } else if (ctx.APPROX_PERCENTILE() != null) {
+                    return approxPercentile(expr, Expr.from(vc, ctx.expression()));
                 } else {
                     fname = FuncName.UNKNOWN;
                 }
@@ -423,6 +432,14 @@ public class FuncExpr extends Expr {
         return new FuncExpr(FuncName.MAX, expr);
     }
 
+    /**
+     * The p-th quantile (0 &lt;= p &lt;= 1) of expr; MEDIAN(expr) is parsed into
+     * APPROX_PERCENTILE(expr, 0.5).
+     */
+    public static FuncExpr approxPercentile(Expr expr, Expr p) {
+        return new FuncExpr(FuncName.APPROX_PERCENTILE, expr, p);
+    }
+
     public static FuncExpr stddev(Expr expr) {
         return new FuncExpr(FuncName.STDDEV, expr);
     }
@@ -445,6 +462,13 @@ public class FuncExpr extends Expr {
 
     @Override
     public String toString() {
+        if (funcname.equals(FuncName.APPROX_PERCENTILE) && overClause == null) {
+            Expr nativePercentile = nativePercentile();
+            if (nativePercentile != null) {
+                return nativePercentile.toString();
+            }
+        }
+
         StringBuilder sql = new StringBuilder(50);
         if (expressions.size() == 0) {
             sql.append(String.format(functionPattern.get(funcname), ""));
@@ -464,6 +488,21 @@ public class FuncExpr extends Expr {
         return sql.toString();
     }
 
+    /**
+     * The DBMS-native percentile function for this percentile. The context of this
+     * expression is a dummy one (see {@link VerdictContext#dummyContext()}); thus,
+     * the DBMS is looked up through the context of the argument.
+     * 
+     * @return null if the DBMS does not provide one.
+     */
+    private Expr nativePercentile() {
+        VerdictContext argumentContext = expressions.get(0).getVerdictContext();
+        if (argumentContext == null || argumentContext.getDbms() == null) {
+            return null;
+        }
+        return argumentContext.getDbms().approxPercentile(expressions.get(0), expressions.get(1));
+    }
+
     @Override
     public <T> T accept(ExprVisitor<T> v) {
         return v.call(this);
@@ -473,7 +512,12 @@ public class FuncExpr extends Expr {
     public boolean isagg() {
         if (funcname.equals(FuncName.AVG) || funcname.equals(FuncName.SUM) || funcname.equals(FuncName.COUNT)
                 || funcname.equals(FuncName.COUNT_DISTINCT) || funcname.equals(FuncName.IMPALA_APPROX_COUNT_DISTINCT)
-                || funcname.equals(FuncName.MIN) || funcname.equals(FuncName.MAX)) {
+                || funcname.equals(FuncName.SPARK_APPROX_COUNT_DISTINCT)
+                || funcname.equals(FuncName.REDSHIFT_APPROX_COUNT_DISTINCT)
+                || funcname.equals(FuncName.MIN) || funcname.equals(FuncName.MAX)
+                || funcname.equals(FuncName.APPROX_PERCENTILE) || funcname.equals(FuncName.IMPALA_APPX_MEDIAN)
+                || funcname.equals(FuncName.HIVE_PERCENTILE_APPROX)
+                || funcname.equals(FuncName.REDSHIFT_APPROX_PERCENTILE)) {
             return true;
         } else {
             for (Expr expr : expressions) {
@@ -502,6 +546,15 @@ public class FuncExpr extends Expr {
         }
     }
 
+    @Override
+    public boolean isPercentile() {
+        if (funcname.equals(FuncName.APPROX_PERCENTILE)) {
+            return true;
+        } else {
+            return false;
+        }
+    }
+
     @Override
     public boolean isCount() {
         if (funcname.equals(FuncName.COUNT)) {
@@ -21,7 +21,7 @@ import com.google.common.base.Optional;
 import edu.umich.verdict.VerdictContext;
 import edu.umich.verdict.parser.VerdictSQLBaseVisitor;
 import edu.umich.verdict.parser.VerdictSQLParser;
-import edu.umich.verdict.util.StringManipulations;
+import edu.umich.verdict.util.VerdictSQLParserFactory;
 
 public class OrderByExpr extends Expr {
 
@@ -48,7 +48,6 @@ public class OrderByExpr extends Expr {
     }
 
     public static OrderByExpr from(final VerdictContext vc, String expr) {
-        VerdictSQLParser p = StringManipulations.parserOf(expr);
         VerdictSQLBaseVisitor<OrderByExpr> v = new VerdictSQLBaseVisitor<OrderByExpr>() {
             @Override
             public OrderByExpr visitOrder_by_expression(VerdictSQLParser.Order_by_expressionContext ctx) {
@@ -56,7 +55,7 @@ public class OrderByExpr extends Expr {
                 return new OrderByExpr(vc, Expr.from(vc, ctx.expression()), dir);
             }
         };
-        return v.visit(p.order_by_expression());
+        return v.visit(VerdictSQLParserFactory.parse(expr, VerdictSQLParserFactory.ORDER_BY_EXPRESSION));
     }
 
     @Override
@@ -22,36 +22,57 @@ import java.util.List;
 import com.google.common.base.Joiner;
 
 import edu.umich.verdict.VerdictContext;
-import edu.umich.verdict.parser.VerdictSQLParser;
 import edu.umich.verdict.parser.VerdictSQLParser.ExpressionContext;
 import edu.umich.verdict.parser.VerdictSQLParser.Over_clauseContext;
 import edu.umich.verdict.parser.VerdictSQLParser.Partition_by_clauseContext;
-import edu.umich.verdict.util.StringManipulations;
+import edu.umich.verdict.util.VerdictSQLParserFactory;
 
 public class OverClause {
 
     protected List<Expr> partitionBy;
 
+    /**
+     * If not empty, the window is the rows from the first row of the partition up
+     * to the current row in this order.
+     */
+    protected List<Expr> orderBy;
+
     public OverClause() {
-        this.partitionBy = new ArrayList<Expr>();
+        this(new ArrayList<Expr>());
     }
 
     public OverClause(List<Expr> partitionBy) {
+        this(partitionBy, new ArrayList<Expr>());
+    }
+
+    public OverClause(List<Expr> partitionBy, List<Expr> orderBy) {
         this.partitionBy = partitionBy;
+        this.orderBy = orderBy;
+    }
+
+    /**
+     * A running window, e.g., sum(x) over this window is the cumulative sum of x
+     * in the order.
+     */
+    public static OverClause cumulative(List<Expr> partitionBy, List<Expr> orderBy) {
+        return new OverClause(partitionBy, orderBy);
     }
 
     public static OverClause from(VerdictContext vc, String partitionByInString) {
-        VerdictSQLParser p = StringManipulations.parserOf(partitionByInString);
-        return from(vc, p.over_clause());
+        return from(vc, VerdictSQLParserFactory.parse(partitionByInString, VerdictSQLParserFactory.OVER_CLAUSE));
     }
 
     @Override
     public String toString() {
+        List<String> clauses = new ArrayList<String>();
         if (partitionBy.size() > 0) {
-            return String.format("OVER (partition by %s)", Joiner.on(", ").join(partitionBy));
-        } else {
-            return "OVER ()";
+            clauses.add(String.format("partition by %s", Joiner.on(", ").join(partitionBy)));
+        }
+        if (orderBy.size() > 0) {
+            clauses.add(String.format("order by %s rows between unbounded preceding and current row",
+                    Joiner.on(", ").join(orderBy)));
         }
+        return String.format("OVER (%s)", Joiner.on(" ").join(clauses));
     }
 
     public static OverClause from(VerdictContext vc, Over_clauseContext over_clause) {
@@ -21,7 +21,8 @@ import com.google.common.base.Optional;
 import edu.umich.verdict.VerdictContext;
 import edu.umich.verdict.parser.VerdictSQLBaseVisitor;
 import edu.umich.verdict.parser.VerdictSQLParser;
-import edu.umich.verdict.util.StringManipulations;
+import edu.umich.verdict.relation.NamingContext;
+import edu.umich.verdict.util.VerdictSQLParserFactory;
 
 public class SelectElem {
 
@@ -51,8 +52,7 @@ public class SelectElem {
     }
 
     public static SelectElem from(VerdictContext vc, String elem) {
-        VerdictSQLParser p = StringManipulations.parserOf(elem);
-        return from(vc, p.select_list_elem());
+        return from(vc, VerdictSQLParserFactory.parse(elem, VerdictSQLParserFactory.SELECT_LIST_ELEM));
     }
 
     public static SelectElem from(final VerdictContext vc, VerdictSQLParser.Select_list_elemContext ctx) {
@@ -80,16 +80,14 @@ public class SelectElem {
         return v.visit(ctx);
     }
 
-    private static int column_alias_num = 1;
-
     public static String genColumnAlias(Expr expr) {
         String a;
+        int aliasNo = NamingContext.current().nextSelectElemAliasNo();
         if (expr instanceof ColNameExpr) {
             a = ((ColNameExpr) expr).getCol();
         } else {
-            a = String.format("%s_%d", expr.getText().substring(0, 1), column_alias_num);
+            a = String.format("%s_%d", expr.getText().substring(0, 1), aliasNo);
         }
-        column_alias_num++;
         return a;
     }
 
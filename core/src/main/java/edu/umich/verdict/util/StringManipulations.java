@@ -19,20 +19,14 @@ package edu.umich.verdict.util;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.CommonTokenStream;
-
 import com.google.common.base.Optional;
 
 import edu.umich.verdict.VerdictJDBCContext;
 import edu.umich.verdict.datatypes.TableUniqueName;
-import edu.umich.verdict.parser.VerdictSQLLexer;
 import edu.umich.verdict.parser.VerdictSQLParser;
 
 public class StringManipulations {
 
-    public static int viewNameId = 0;
-
     /**
      * Returns an effective schema name of a table name specified in a query. For
      * instance, given "default.products", this method returns "default".
@@ -123,10 +117,12 @@ public class StringManipulations {
             return schema.get() + "." + tableNameOfTableName(originalTableName);
     }
 
+    /**
+     * Returns a parser in the default (LL) prediction mode. Prefer
+     * {@link VerdictSQLParserFactory#parse(String, VerdictSQLParserFactory.Rule)}, which is faster.
+     */
     public static VerdictSQLParser parserOf(String text) {
-        VerdictSQLLexer l = new VerdictSQLLexer(new ANTLRInputStream(text));
-        VerdictSQLParser p = new VerdictSQLParser(new CommonTokenStream(l));
-        return p;
+        return VerdictSQLParserFactory.parserOf(text);
     }
 
     public static List<String> quoteEveryString(List<String> list, String with) {
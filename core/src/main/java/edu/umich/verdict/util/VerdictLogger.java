@@ -54,6 +54,10 @@ public class VerdictLogger {
     public static void warn(Object msg) {
         logger.warn(msg);
     }
+
+    public static boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
+    }
     
     private static String enclosingMethodName() {
         return Thread.currentThread().getStackTrace()[3].getMethodName();
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.util;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import edu.umich.verdict.parser.VerdictSQLLexer;
+import edu.umich.verdict.parser.VerdictSQLParser;
+
+/**
+ * Parses VerdictSQL text in two stages. The first stage uses SLL prediction with
+ * an error strategy that gives up at the first syntax error; this is much faster
+ * than the full LL prediction and succeeds for virtually all inputs. Only if the
+ * first stage fails, the input is parsed again with the full LL prediction and
+ * the default error recovery, which produces the same tree (and error messages)
+ * as before.
+ *
+ * The DFA and the prediction context cache are static members of the generated
+ * {@link VerdictSQLParser}; thus, every parser instance (in every thread) shares
+ * and grows the same cache. {@link #warmUp()} fills the cache with the decisions
+ * made for typical statements so that the first user queries do not pay for it.
+ */
+public class VerdictSQLParserFactory {
+
+    /**
+     * The grammar rule with which a parse starts.
+     */
+    public static abstract class Rule<T extends ParserRuleContext> {
+        public abstract T invoke(VerdictSQLParser p);
+    }
+
+    public static final Rule<VerdictSQLParser.Verdict_statementContext> VERDICT_STATEMENT =
+            new Rule<VerdictSQLParser.Verdict_statementContext>() {
+        @Override
+        public VerdictSQLParser.Verdict_statementContext invoke(VerdictSQLParser p) {
+            return p.verdict_statement();
+        }
+    };
+
+    public static final Rule<VerdictSQLParser.Select_statementContext> SELECT_STATEMENT =
+            new Rule<VerdictSQLParser.Select_statementContext>() {
+        @Override
+        public VerdictSQLParser.Select_statementContext invoke(VerdictSQLParser p) {
+            return p.select_statement();
+        }
+    };
+
+    public static final Rule<VerdictSQLParser.Select_listContext> SELECT_LIST =
+            new Rule<VerdictSQLParser.Select_listContext>() {
+        @Override
+        public VerdictSQLParser.Select_listContext invoke(VerdictSQLParser p) {
+            return p.select_list();
+        }
+    };
+
+    public static final Rule<VerdictSQLParser.Select_list_elemContext> SELECT_LIST_ELEM =
+            new Rule<VerdictSQLParser.Select_list_elemContext>() {
+        @Override
+        public VerdictSQLParser.Select_list_elemContext invoke(VerdictSQLParser p) {
+            return p.select_list_elem();
+        }
+    };
+
+    public static final Rule<VerdictSQLParser.Search_conditionContext> SEARCH_CONDITION =
+            new Rule<VerdictSQLParser.Search_conditionContext>() {
+        @Override
+        public VerdictSQLParser.Search_conditionContext invoke(VerdictSQLParser p) {
+            return p.search_condition();
+        }
+    };
+
+    public static final Rule<VerdictSQLParser.ExpressionContext> EXPRESSION =
+            new Rule<VerdictSQLParser.ExpressionContext>() {
+        @Override
+        public VerdictSQLParser.ExpressionContext invoke(VerdictSQLParser p) {
+            return p.expression();
+        }
+    };
+
+    public static final Rule<VerdictSQLParser.Order_by_expressionContext> ORDER_BY_EXPRESSION =
+            new Rule<VerdictSQLParser.Order_by_expressionContext>() {
+        @Override
+        public VerdictSQLParser.Order_by_expressionContext invoke(VerdictSQLParser p) {
+            return p.order_by_expression();
+        }
+    };
+
+    public static final Rule<VerdictSQLParser.Over_clauseContext> OVER_CLAUSE =
+            new Rule<VerdictSQLParser.Over_clauseContext>() {
+        @Override
+        public VerdictSQLParser.Over_clauseContext invoke(VerdictSQLParser p) {
+            return p.over_clause();
+        }
+    };
+
+    public static final Rule<VerdictSQLParser.Case_exprContext> CASE_EXPR =
+            new Rule<VerdictSQLParser.Case_exprContext>() {
+        @Override
+        public VerdictSQLParser.Case_exprContext invoke(VerdictSQLParser p) {
+            return p.case_expr();
+        }
+    };
+
+    public static final Rule<VerdictSQLParser.Function_callContext> FUNCTION_CALL =
+            new Rule<VerdictSQLParser.Function_callContext>() {
+        @Override
+        public VerdictSQLParser.Function_callContext invoke(VerdictSQLParser p) {
+            return p.function_call();
+        }
+    };
+
+    /**
+     * Statements covering the common query shapes; used for {@link #warmUp()}.
+     */
+    private static final String[] warmUpStatements = {
+            "select count(*), sum(a * (1 - b)), avg(c) from s.t where d >= '1994-01-01' and e between 0.05 and 0.07",
+            "select a, b, count(distinct c) as cd from t1 inner join t2 on t1.k = t2.k group by a, b order by a desc limit 10",
+            "select x.a, sum(x.b) from (select a, b from t where c in (1, 2, 3) and d like '%abc%') x group by x.a",
+            "select a, case when b < 5 then 1 else 2 end as c, count(*) over (partition by a) from t where b is not null",
+            "select sum(a) / count(*) as r, stddev(b), round(min(c)), max(d) from t left outer join u on t.k = u.k",
+            "create 1% uniform sample of s.t",
+            "create universe sample of t on a",
+            "drop samples of t",
+            "show samples",
+            "set loglevel = \"debug\"",
+            "use s",
+            "show tables",
+            "describe t",
+            "refresh s"
+    };
+
+    private static final AtomicLong llFallbackCount = new AtomicLong();
+
+    private static final AtomicBoolean warmedUp = new AtomicBoolean(false);
+
+    public static VerdictSQLParser parserOf(String text) {
+        VerdictSQLLexer l = new VerdictSQLLexer(new ANTLRInputStream(text));
+        VerdictSQLParser p = new VerdictSQLParser(new CommonTokenStream(l));
+        return p;
+    }
+
+    /**
+     * Parses the text starting with the given rule; tries SLL first and falls back
+     * to LL on a syntax error.
+     *
+     * @param text
+     * @param rule
+     * @return
+     */
+    public static <T extends ParserRuleContext> T parse(String text, Rule<T> rule) {
+        VerdictSQLParser p = parserOf(text);
+        p.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        p.removeErrorListeners();
+        p.setErrorHandler(new BailErrorStrategy());
+
+        try {
+            return rule.invoke(p);
+        } catch (ParseCancellationException e) {
+            llFallbackCount.incrementAndGet();
+            VerdictLogger.debug(VerdictSQLParserFactory.class, "SLL parsing failed; falls back to LL parsing.");
+
+            p.reset();          // rewinds the token stream as well
+            p.addErrorListener(ConsoleErrorListener.INSTANCE);
+            p.setErrorHandler(new DefaultErrorStrategy());
+            p.getInterpreter().setPredictionMode(PredictionMode.LL);
+            return rule.invoke(p);
+        }
+    }
+
+    /**
+     * Parses representative statements to fill the shared DFA cache. Only the first
+     * call does the work.
+     */
+    public static void warmUp() {
+        if (!warmedUp.compareAndSet(false, true)) {
+            return;
+        }
+        for (String s : warmUpStatements) {
+            parse(s, VERDICT_STATEMENT);
+        }
+    }
+
+    /**
+     * @return the number of parses that needed the second (LL) stage.
+     */
+    public static long getLLFallbackCount() {
+        return llFallbackCount.get();
+    }
+
+}
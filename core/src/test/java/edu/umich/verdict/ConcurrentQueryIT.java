@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.query.SelectQuery;
+import edu.umich.verdict.relation.NamingContext;
+
+/**
+ * Runs select queries from many threads on a single VerdictJDBCContext. The
+ * expected results are computed first on {@link #vc}; the threads then share a
+ * fresh context whose caches (e.g., of sample information and columns) are cold,
+ * so that they are filled while other threads read them.
+ */
+public class ConcurrentQueryIT extends TestBase {
+
+    protected int threadCount = 8;
+
+    protected int rounds = 5;
+
+    protected List<String> queries = Arrays.asList(
+            "select count(*) from orders",
+            "select order_dow, count(*) from orders group by order_dow order by order_dow",
+            "select order_hour_of_day, sum(days_since_prior), avg(days_since_prior) from orders "
+                    + "group by order_hour_of_day order by order_hour_of_day",
+            "select avg(days_since_prior) from orders where order_dow = 1",
+            "select count(*) from (select order_dow, count(*) as c from orders group by order_dow) t");
+
+    @Test
+    public void concurrentPlanningTest() throws Exception {
+        final Map<String, String> expected = new HashMap<String, String>();
+        for (String q : queries) {
+            expected.put(q, plan(vc, q));
+        }
+
+        final VerdictJDBCContext cold = coldContext();
+        try {
+            runConcurrently(new Task() {
+                @Override
+                public void run(String q) throws Exception {
+                    assertEquals(expected.get(q), plan(cold, q));
+                }
+            });
+        } finally {
+            cold.destroy();
+        }
+    }
+
+    @Test
+    public void concurrentSelectQueryTest() throws Exception {
+        final Map<String, List<Object>> expected = new HashMap<String, List<Object>>();
+        for (String q : queries) {
+            expected.put(q, firstColumn(vc.executeJdbcQuery(q)));
+        }
+
+        final VerdictJDBCContext cold = coldContext();
+        try {
+            runConcurrently(new Task() {
+                @Override
+                public void run(String q) throws Exception {
+                    List<Object> actual = firstColumn(cold.executeJdbcQuery(q));
+                    assertEquals(expected.get(q).size(), actual.size());
+                    if (q.contains("group by")) {
+                        assertEquals(expected.get(q), actual);      // the group keys
+                    }
+                }
+            });
+        } finally {
+            cold.destroy();
+        }
+    }
+
+    /**
+     * A new context on the same DBMS, with no sample information or columns cached.
+     */
+    protected VerdictJDBCContext coldContext() throws VerdictException {
+        VerdictJDBCContext cold = VerdictJDBCContext.from(vc.getConf());
+        cold.getMeta().clearSampleInfo();
+        return cold;
+    }
+
+    protected interface Task {
+        void run(String query) throws Exception;
+    }
+
+    /**
+     * Every thread runs all the queries for the given number of rounds, starting
+     * at a different query so that different queries overlap.
+     */
+    protected void runConcurrently(final Task task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+        for (int t = 0; t < threadCount; t++) {
+            final int offset = t;
+            futures.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int r = 0; r < rounds; r++) {
+                        for (int i = 0; i < queries.size(); i++) {
+                            task.run(queries.get((i + offset) % queries.size()));
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        try {
+            for (Future<Void> f : futures) {
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * The SQL statement {@link SelectQuery} sends to the DBMS for the query.
+     */
+    protected String plan(VerdictContext context, String query) throws VerdictException {
+        NamingContext.begin();
+        return SelectQuery.queryToRelation(context, query).toSql();
+    }
+
+    protected List<Object> firstColumn(ResultSet rs) throws SQLException {
+        List<Object> column = new ArrayList<Object>();
+        while (rs.next()) {
+            column.add(rs.getObject(1));
+        }
+        rs.close();
+        return column;
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.umich.verdict;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.umich.verdict.datatypes.SampleColumnStats;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.datatypes.SampleSizeInfo;
+import edu.umich.verdict.datatypes.TableUniqueName;
+
+/**
+ * Sample information given by the tests instead of read from the DBMS. Tables,
+ * samples, and their statistics are added in the constructors of subclasses;
+ * refreshing is a no-op.
+ */
+public class StaticSampleMeta extends VerdictMeta {
+
+    private Map<TableUniqueName, Long> rowCounts = new HashMap<TableUniqueName, Long>();
+
+    public StaticSampleMeta(VerdictContext vc) {
+        super(vc);
+    }
+
+    /**
+     * @param table
+     * @param rowCount
+     *            the number of rows of the table
+     * @param columnsAndTypes
+     *            column names, each followed by its type
+     */
+    public void addTable(TableUniqueName table, long rowCount, String... columnsAndTypes) {
+        Map<String, String> col2type = new LinkedHashMap<String, String>();
+        for (int i = 0; i + 1 < columnsAndTypes.length; i += 2) {
+            col2type.put(columnsAndTypes[i], columnsAndTypes[i + 1]);
+        }
+        tab2columns.put(table, col2type);
+        rowCounts.put(table, rowCount);
+    }
+
+    /**
+     * Adds a sample whose size is its sampling ratio times the size of its original
+     * table.
+     * 
+     * @return the sample table
+     */
+    public TableUniqueName addSample(SampleParam param) {
+        long rowCount = rowCounts.get(param.getOriginalTable());
+        return addSample(param, Math.round(rowCount * param.getSamplingRatio()));
+    }
+
+    /**
+     * @return the sample table
+     */
+    public TableUniqueName addSample(SampleParam param, long sampleSize) {
+        TableUniqueName original = param.getOriginalTable();
+        TableUniqueName sampleTable = param.sampleTableName();
+        if (!sampleNameMeta.containsKey(original)) {
+            sampleNameMeta.put(original, new HashMap<SampleParam, TableUniqueName>());
+        }
+        sampleNameMeta.get(original).put(param, sampleTable);
+        sampleSizeMeta.put(sampleTable, new SampleSizeInfo(sampleSize, rowCounts.get(original)));
+        tab2columns.put(sampleTable, tab2columns.get(original));
+        return sampleTable;
+    }
+
+    public void addColumnStats(TableUniqueName sampleTable, String column, SampleColumnStats stats) {
+        if (!sampleStatsMeta.containsKey(sampleTable)) {
+            sampleStatsMeta.put(sampleTable, new HashMap<String, SampleColumnStats>());
+        }
+        sampleStatsMeta.get(sampleTable).put(column, stats);
+    }
+
+    public void setByteSize(TableUniqueName table, long byteSize) {
+        tableByteSizes.put(table, byteSize);
+    }
+
+    @Override
+    public void refreshSampleInfoIfNeeded(String schemaName, boolean isCreateSample) {}
+
+    @Override
+    public void refreshSampleInfo(String schemaName, boolean isCreateSample) {}
+}
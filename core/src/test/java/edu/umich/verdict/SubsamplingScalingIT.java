@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.util.VerdictLogger;
+
+/**
+ * Runs group-by queries with both ways of scaling the subsampled estimates by the
+ * partition sizes (verdict.error_bound.subsampling.scaling), checks that they
+ * compute the same estimates and error bounds, and reports their runtimes.
+ */
+public class SubsamplingScalingIT extends TestBase {
+
+    protected int repeats = 3;
+
+    protected List<String> queries = Arrays.asList(
+            "select order_dow, count(*), sum(days_since_prior) from orders group by order_dow order by order_dow",
+            "select user_id, count(*), sum(days_since_prior) from orders group by user_id order by user_id limit 100",
+            "select order_number, order_hour_of_day, sum(days_since_prior) from orders "
+                    + "group by order_number, order_hour_of_day order by order_number, order_hour_of_day limit 100");
+
+    @Test
+    public void scalingTest() throws VerdictException, SQLException {
+        for (String q : queries) {
+            List<List<Object>> window = run(q, "window");
+            List<List<Object>> folded = run(q, "folded");
+
+            assertEquals(window.size(), folded.size());
+            for (int i = 0; i < window.size(); i++) {
+                for (int j = 0; j < window.get(i).size(); j++) {
+                    Object w = window.get(i).get(j);
+                    Object f = folded.get(i).get(j);
+                    if (w instanceof Number && f instanceof Number) {
+                        double wv = ((Number) w).doubleValue();
+                        double fv = ((Number) f).doubleValue();
+                        assertEquals(wv, fv, Math.abs(wv) * 1e-6 + 1e-6);
+                    } else {
+                        assertEquals(w, f);
+                    }
+                }
+            }
+        }
+    }
+
+    private List<List<Object>> run(String query, String scaling) throws VerdictException, SQLException {
+        vc.getConf().set("verdict.error_bound.subsampling.scaling", scaling);
+        List<List<Object>> rows = null;
+        long total = 0;
+        for (int i = 0; i < repeats; i++) {
+            long start = System.currentTimeMillis();
+            rows = collect(vc.executeJdbcQuery(query));
+            total += System.currentTimeMillis() - start;
+        }
+        VerdictLogger.info(this, String.format("%s scaling: %d ms on average for %s", scaling, total / repeats, query));
+        return rows;
+    }
+
+    private List<List<Object>> collect(ResultSet rs) throws SQLException {
+        List<List<Object>> rows = new ArrayList<List<Object>>();
+        int columnCount = rs.getMetaData().getColumnCount();
+        while (rs.next()) {
+            List<Object> row = new ArrayList<Object>();
+            for (int i = 1; i <= columnCount; i++) {
+                row.add(rs.getObject(i));
+            }
+            rows.add(row);
+        }
+        rs.close();
+        return rows;
+    }
+
+}
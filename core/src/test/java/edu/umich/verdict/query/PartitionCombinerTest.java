@@ -0,0 +1,204 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.dbms.DbmsDummy;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.query.SampleGroupJoinTest.OrdersMeta;
+import edu.umich.verdict.relation.ApproxAggregatedRelation;
+import edu.umich.verdict.relation.ApproxAggregatedRelation.Combining;
+import edu.umich.verdict.relation.ApproxAggregatedRelation.PartitionedColumn;
+import edu.umich.verdict.relation.ApproxGroupedRelation;
+import edu.umich.verdict.relation.ApproxRelation;
+import edu.umich.verdict.relation.ApproxSingleRelation;
+import edu.umich.verdict.relation.NamingContext;
+import edu.umich.verdict.relation.SingleRelation;
+import edu.umich.verdict.relation.expr.Expr;
+import edu.umich.verdict.relation.expr.FuncExpr;
+import edu.umich.verdict.relation.expr.SelectElem;
+
+public class PartitionCombinerTest {
+
+    VerdictJDBCContext vc;
+
+    @Before
+    public void setUp() throws VerdictException {
+        VerdictConf conf = new VerdictConf();
+        conf.setDbms("dummy");
+        conf.set("verdict.error_bound.subsampling.combine_in_client", "true");
+        vc = VerdictJDBCContext.from(conf);
+        vc.setMeta(new OrdersMeta(vc));
+    }
+
+    private PartitionCombiner combinerOf(String query) throws VerdictException {
+        NamingContext.begin();
+        return PartitionCombiner.of(vc, SelectQuery.queryToRelation(vc, query));
+    }
+
+    @Test
+    public void ofTest() throws VerdictException {
+        PartitionCombiner combiner = combinerOf(
+                "select order_dow, sum(days_since_prior) as s from s.orders group by order_dow order by order_dow");
+        assertNotNull(combiner);
+        assertFalse(combiner.partitionSql().toLowerCase().contains("stddev"));
+
+        // not an order-by column
+        assertNull(combinerOf("select order_dow, sum(days_since_prior) as s from s.orders group by order_dow "
+                + "order by s + 1"));
+
+        vc.getConf().set("verdict.error_bound.subsampling.combine_in_client", "false");
+        assertNull(combinerOf("select order_dow, sum(days_since_prior) as s from s.orders group by order_dow"));
+    }
+
+    /**
+     * An empty table with the columns of the per-partition aggregates, grouped by
+     * order_dow.
+     */
+    private SampleGroupJoin.Table partitionTable(List<PartitionedColumn> columns) {
+        SampleGroupJoin.Table partitions = new SampleGroupJoin.Table();
+        for (int i = 0; i < columns.size(); i++) {
+            String alias = columns.get(i).getAlias();
+            partitions.labels.add(columns.get(i).isGroup() ? "order_dow" : ((alias == null) ? "c" + i : alias));
+            partitions.types.add(Types.DOUBLE);
+            partitions.typeNames.add("double");
+        }
+        return partitions;
+    }
+
+    /**
+     * The per-partition rows of a group: the group key, and the estimate and the
+     * size of each partition.
+     */
+    private void addPartitions(SampleGroupJoin.Table t, List<PartitionedColumn> columns, double key,
+            double[] estimates, double[] sizes) {
+        for (int p = 0; p < estimates.length; p++) {
+            Object[] row = new Object[columns.size()];
+            for (int i = 0; i < columns.size(); i++) {
+                Combining c = columns.get(i).getCombining();
+                if (columns.get(i).isGroup()) {
+                    row[i] = key;
+                } else if (columns.get(i).isAggregate()) {
+                    row[i] = estimates[p];
+                } else if (c.equals(Combining.PARTITION_SIZE)) {
+                    row[i] = sizes[p];
+                } else {
+                    row[i] = 0.0;
+                }
+            }
+            t.rows.add(row);
+        }
+    }
+
+    @Test
+    public void combineTest() throws VerdictException, SQLException {
+        PartitionCombiner combiner = combinerOf("select order_dow, sum(days_since_prior) as s from s.orders "
+                + "group by order_dow order by order_dow desc");
+        List<PartitionedColumn> columns = combiner.getColumns();
+
+        SampleGroupJoin.Table partitions = partitionTable(columns);
+        addPartitions(partitions, columns, 1.0, new double[] { 10, 12, 14 }, new double[] { 5, 5, 10 });
+        addPartitions(partitions, columns, 2.0, new double[] { 7 }, new double[] { 4 });
+
+        ResultSet rs = combiner.combine(partitions.toResultSet());
+        assertEquals(3, rs.getMetaData().getColumnCount());
+        assertEquals("s_err", rs.getMetaData().getColumnLabel(3));
+
+        // descending order; a single partition has no error bound.
+        assertTrue(rs.next());
+        assertEquals(2.0, rs.getDouble(1), 1e-9);
+        assertEquals(7.0, rs.getDouble(2), 1e-9);
+        rs.getObject(3);
+        assertTrue(rs.wasNull());
+
+        // the average weighted by the partition sizes, and stddev * sqrt(20/3) / sqrt(20) * 1.96
+        assertTrue(rs.next());
+        assertEquals(1.0, rs.getDouble(1), 1e-9);
+        assertEquals(12.5, rs.getDouble(2), 1e-9);
+        assertEquals(2.0 / Math.sqrt(3) * 1.96, rs.getDouble(3), 1e-9);
+        assertFalse(rs.next());
+    }
+
+    /**
+     * The count-distincts of hash partitions on an original table add up, whether
+     * or not every partition has tuples.
+     */
+    @Test
+    public void sketchedCountDistinctTest() throws VerdictException, SQLException {
+        vc.getConf().set("verdict.count_distinct.native_sketch", "true");
+        vc.setDbms(new DbmsDummy(vc) {
+            @Override
+            public Expr approxCountDistinct(Expr expr) {
+                return new FuncExpr(FuncExpr.FuncName.IMPALA_APPROX_COUNT_DISTINCT, expr);
+            }
+
+            @Override
+            public String modOfHash(String col, int mod) {
+                return String.format("abs(fnv_hash(%s)) %% %d", col, mod);
+            }
+        });
+        NamingContext.begin();
+        ApproxRelation table = ApproxSingleRelation.asis(SingleRelation.from(vc, SampleGroupJoinTest.orders));
+        ApproxAggregatedRelation a = new ApproxAggregatedRelation(vc,
+                new ApproxGroupedRelation(vc, table, Arrays.asList(Expr.from(vc, "order_dow"))),
+                Arrays.asList(SelectElem.from(vc, "order_dow"),
+                        new SelectElem(vc, FuncExpr.countDistinct(Expr.from(vc, "user_id")), "d")));
+        PartitionCombiner combiner = PartitionCombiner.of(vc, a);
+        assertNotNull(combiner);
+        List<PartitionedColumn> columns = combiner.getColumns();
+        assertEquals(Combining.DISJOINT_SUM, columns.get(1).getCombining());
+
+        // three distinct values, in three of the partitions; and a value in each
+        // of the partitions.
+        SampleGroupJoin.Table partitions = partitionTable(columns);
+        addPartitions(partitions, columns, 1.0, new double[] { 1, 1, 1 }, new double[] { 10, 20, 5 });
+        int partitionCount = vc.getConf().subsamplingPartitionCount();
+        double[] ones = new double[partitionCount];
+        Arrays.fill(ones, 1.0);
+        addPartitions(partitions, columns, 2.0, ones, ones);
+
+        ResultSet rs = combiner.combine(partitions.toResultSet());
+        int rows = 0;
+        while (rs.next()) {
+            rows++;
+            if (rs.getDouble(1) == 1.0) {
+                assertEquals(3, rs.getLong(2));
+                assertEquals(0.0, rs.getDouble(3), 1e-9);
+            } else {
+                assertEquals(partitionCount, rs.getLong(2));
+            }
+        }
+        assertEquals(2, rows);
+    }
+
+}
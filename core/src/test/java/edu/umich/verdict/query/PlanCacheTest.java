@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class PlanCacheTest {
+
+    @Test
+    public void normalizeTest() {
+        assertEquals("select count(*) from t where a = 'Hello  World'",
+                PlanCache.normalize("SELECT  count(*)\n FROM t\n WHERE a = 'Hello  World';"));
+        assertEquals(PlanCache.normalize("select A from `MyTable`"),
+                PlanCache.normalize("  Select A\tFrom `MyTable` ; "));
+    }
+
+    @Test
+    public void normalizeKeepsIdentifierCaseTest() {
+        // the aliases name the columns of the results.
+        assertEquals("select count(*) as Cnt from t", PlanCache.normalize("SELECT COUNT(*) AS Cnt FROM t"));
+        assertNotEquals(PlanCache.normalize("select count(*) as Cnt from t"),
+                PlanCache.normalize("select count(*) as cnt from t"));
+        assertEquals("select t.Count from T t", PlanCache.normalize("SELECT t.Count FROM T t"));
+    }
+
+    @Test
+    public void lruTest() {
+        PlanCache cache = new PlanCache(2);
+        cache.put("q1", new PlanCache.Entry("sql1", 0));
+        cache.put("q2", new PlanCache.Entry("sql2", 0));
+        cache.get("q1", 0);
+        cache.put("q3", new PlanCache.Entry("sql3", 0));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("q2", 0));
+        assertEquals("sql1", cache.get("q1", 0).getSql());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void staleVersionTest() {
+        PlanCache cache = new PlanCache(10);
+        cache.put("q1", new PlanCache.Entry("sql1", 3));
+        assertNull(cache.get("q1", 4));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void errorColumnTest() {
+        Map<Integer, Integer> m = PlanCache.aggColumn2ErrorColumn(Arrays.asList("g", "c", "s", "c_err", "s_err"));
+        assertEquals(2, m.size());
+        assertEquals(Integer.valueOf(4), m.get(2));
+        assertEquals(Integer.valueOf(5), m.get(3));
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class QueryFingerprintTest {
+
+    @Test
+    public void constantsTest() {
+        QueryFingerprint f = QueryFingerprint
+                .of("select count(*) from orders where order_dow = 3 and eval_set = 'prior' and days_since_prior > 1.5");
+        assertEquals("select count ( * ) from orders where order_dow = ? and eval_set = ? and days_since_prior > ?",
+                f.getFingerprint());
+        assertEquals(Arrays.asList("3", "'prior'", "1.5"), f.getLiterals());
+    }
+
+    @Test
+    public void sameShapeTest() {
+        QueryFingerprint f1 = QueryFingerprint.of("SELECT `Order_Dow`, COUNT(*) FROM orders WHERE user_id = 10\n"
+                + "GROUP BY `Order_Dow`;");
+        QueryFingerprint f2 = QueryFingerprint.of("select order_dow, count(*) from ORDERS where user_id = 42 "
+                + "group by order_dow");
+        assertEquals(f1, f2);
+        assertEquals(f1.digest(), f2.digest());
+        assertEquals(Arrays.asList("10"), f1.getLiterals());
+        assertEquals(Arrays.asList("42"), f2.getLiterals());
+    }
+
+    @Test
+    public void inListTest() {
+        QueryFingerprint f1 = QueryFingerprint.of("select count(*) from orders where order_dow in (1, 2)");
+        QueryFingerprint f2 = QueryFingerprint.of("select count(*) from orders where order_dow in (1, 2, 3, 4)");
+        assertEquals("select count ( * ) from orders where order_dow in ( ? )", f1.getFingerprint());
+        assertEquals(f1, f2);
+        assertEquals(Arrays.asList("1", "2", "3", "4"), f2.getLiterals());
+
+        QueryFingerprint f3 = QueryFingerprint.of("select count(*) from orders where order_dow in (1, user_id)");
+        assertNotEquals(f1, f3);
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import edu.umich.verdict.StaticSampleMeta;
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.datatypes.TableUniqueName;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.NamingContext;
+
+public class SampleGroupJoinTest {
+
+    static final TableUniqueName orders = TableUniqueName.uname("s", "orders");
+
+    /**
+     * An orders table with a uniform sample and two universe samples.
+     */
+    static class OrdersMeta extends StaticSampleMeta {
+
+        public OrdersMeta(VerdictContext vc) {
+            super(vc);
+            addTable(orders, 3400000L, "user_id", "int", "order_dow", "int", "days_since_prior", "double");
+
+            addSample(new SampleParam(vc, orders, "uniform", 0.01, Arrays.<String>asList()));
+            addSample(new SampleParam(vc, orders, "universe", 0.01, Arrays.asList("user_id")));
+            addSample(new SampleParam(vc, orders, "universe", 0.01, Arrays.asList("order_dow")));
+        }
+    }
+
+    private SampleGroupJoin joinOf(String query) throws VerdictException {
+        VerdictConf conf = new VerdictConf();
+        conf.setDbms("dummy");
+        VerdictJDBCContext vc = VerdictJDBCContext.from(conf);
+        vc.setMeta(new OrdersMeta(vc));
+        NamingContext.begin();
+        return SampleGroupJoin.of(SelectQuery.queryToRelation(vc, query));
+    }
+
+    @Test
+    public void ofTest() throws VerdictException {
+        // a universe sample for each count-distinct
+        SampleGroupJoin join = joinOf("select count(distinct user_id), count(distinct order_dow) from s.orders");
+        assertNotNull(join);
+        assertEquals(2, join.groupSqls().size());
+        for (String sql : join.groupSqls()) {
+            assertFalse(sql.toLowerCase().contains(" join "));
+        }
+
+        assertNull(joinOf("select sum(days_since_prior) from s.orders"));
+    }
+
+    private SampleGroupJoin.Table table(String[] labels, Object[]... rows) {
+        SampleGroupJoin.Table t = new SampleGroupJoin.Table();
+        for (String label : labels) {
+            t.labels.add(label);
+            t.types.add(Types.DOUBLE);
+            t.typeNames.add("double");
+        }
+        t.rows.addAll(Arrays.asList(rows));
+        return t;
+    }
+
+    @Test
+    public void joinTest() throws VerdictException, SQLException {
+        SampleGroupJoin.Table counts = table(new String[] { "order_dow", "c" }, new Object[] { 1, 10L },
+                new Object[] { 2, 20L }, new Object[] { null, 5L });
+        SampleGroupJoin.Table sums = table(new String[] { "ORDER_DOW", "s" }, new Object[] { 2.0, 200.0 },
+                new Object[] { 1L, 100.0 }, new Object[] { 3, 300.0 }, new Object[] { null, 50.0 });
+
+        // numeric keys match regardless of their types; null keys match nothing.
+        ResultSet rs = counts.join(sums, Arrays.asList("order_dow"), Arrays.asList("order_dow")).toResultSet();
+        assertEquals(4, rs.getMetaData().getColumnCount());
+        assertEquals("s", rs.getMetaData().getColumnLabel(4));
+        assertTrue(rs.next());
+        assertEquals(10L, rs.getLong(2));
+        assertEquals(100.0, rs.getDouble(4), 1e-9);
+        assertTrue(rs.next());
+        assertEquals(20L, rs.getLong(2));
+        assertEquals(200.0, rs.getDouble(4), 1e-9);
+        assertFalse(rs.next());
+
+        // without keys, every pair of rows
+        rs = counts.join(sums, Arrays.<String>asList(), Arrays.<String>asList()).toResultSet();
+        int rows = 0;
+        while (rs.next()) {
+            rows++;
+        }
+        assertEquals(12, rows);
+    }
+
+    @Test(expected = VerdictException.class)
+    public void missingKeyTest() throws VerdictException {
+        SampleGroupJoin.Table counts = table(new String[] { "order_dow", "c" }, new Object[] { 1, 10L });
+        counts.join(counts, Arrays.asList("order_dow"), Arrays.asList("d"));
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.query;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+
+import org.junit.Test;
+
+import edu.umich.verdict.util.VerdictSQLParserFactory;
+
+public class SampleLadderQueryTest {
+
+    private CachedRowSet rows(String[] labels, double[][] values) throws SQLException {
+        RowSetMetaDataImpl meta = new RowSetMetaDataImpl();
+        meta.setColumnCount(labels.length);
+        for (int i = 0; i < labels.length; i++) {
+            meta.setColumnName(i + 1, labels[i]);
+            meta.setColumnLabel(i + 1, labels[i]);
+            meta.setColumnType(i + 1, Types.DOUBLE);
+        }
+        CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+        rows.setMetaData(meta);
+        for (double[] row : values) {
+            rows.moveToInsertRow();
+            for (int i = 0; i < row.length; i++) {
+                rows.updateDouble(i + 1, row[i]);
+            }
+            rows.insertRow();
+            rows.moveToCurrentRow();
+        }
+        rows.beforeFirst();
+        return rows;
+    }
+
+    @Test
+    public void maxRelativeErrorTest() throws SQLException {
+        String[] labels = { "g", "s", "s_err", "c", "c_err" };
+        double[][] values = { { 1, 100, 2, 10, 0.5 }, { 2, 200, 30, 20, 1 } };
+        assertEquals(0.15, SelectQuery.maxRelativeError(rows(labels, values)), 1e-9);
+
+        // without error bound columns
+        assertEquals(0.0, SelectQuery.maxRelativeError(rows(new String[] { "s" }, new double[][] { { 1 } })), 1e-9);
+    }
+
+    @Test
+    public void createLadderTest() {
+        CreateSampleStatementVisitor visitor = new CreateSampleStatementVisitor();
+        visitor.visit(VerdictSQLParserFactory.parse("create 10%, 0.1%, 1% uniform sample of s.t",
+                VerdictSQLParserFactory.VERDICT_STATEMENT).create_sample_statement());
+        assertEquals(Arrays.asList(0.001, 0.01, 0.1), visitor.getSamplingRatios());
+
+        visitor = new CreateSampleStatementVisitor();
+        visitor.visit(VerdictSQLParserFactory.parse("create sample of s.t",
+                VerdictSQLParserFactory.VERDICT_STATEMENT).create_sample_statement());
+        assertEquals(Arrays.asList(-1.0), visitor.getSamplingRatios());
+    }
+
+}
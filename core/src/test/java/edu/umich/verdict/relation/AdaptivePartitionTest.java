@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.datatypes.SampleColumnStats;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.datatypes.SampleSizeInfo;
+import edu.umich.verdict.datatypes.TableUniqueName;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.AnalyticErrorBoundTest.LineitemMeta;
+import edu.umich.verdict.relation.expr.Expr;
+import edu.umich.verdict.relation.expr.FuncExpr;
+import edu.umich.verdict.relation.expr.SelectElem;
+
+public class AdaptivePartitionTest {
+
+    /**
+     * The samples have the partition column, and every group-by has the given
+     * number of groups.
+     */
+    static class PartitionedMeta extends LineitemMeta {
+
+        long groupCount;
+
+        public PartitionedMeta(VerdictContext vc) {
+            super(vc);
+            for (TableUniqueName sampleTable : sampleNameMeta.get(AnalyticErrorBoundTest.lineitem).values()) {
+                Map<String, String> col2type = new LinkedHashMap<String, String>(tab2columns.get(sampleTable));
+                col2type.put(vc.getDbms().partitionColumnName(), "int");
+                tab2columns.put(sampleTable, col2type);
+            }
+        }
+
+        void setSampleSize(TableUniqueName sampleTable, long sampleSize) {
+            sampleSizeMeta.put(sampleTable, new SampleSizeInfo(sampleSize, 6000000L));
+        }
+
+        @Override
+        public long getGroupCardinality(TableUniqueName sampleTableName, List<String> columns) {
+            return groupCount;
+        }
+    }
+
+    VerdictJDBCContext vc;
+
+    PartitionedMeta meta;
+
+    @Before
+    public void setUp() throws VerdictException {
+        VerdictConf conf = new VerdictConf();
+        conf.setDbms("dummy");
+        vc = VerdictJDBCContext.from(conf);
+        meta = new PartitionedMeta(vc);
+        vc.setMeta(meta);
+    }
+
+    private SampleParam uniformParam() {
+        return new SampleParam(vc, AnalyticErrorBoundTest.lineitem, "uniform", AnalyticErrorBoundTest.samplingRatio,
+                Arrays.<String>asList());
+    }
+
+    private TableUniqueName uniformSample() {
+        return uniformParam().sampleTableName();
+    }
+
+    private ApproxAggregatedRelation groupbyCount() {
+        NamingContext.begin();
+        return ApproxSingleRelation.from(vc, uniformParam()).groupby("l_orderkey")
+                .agg(new SelectElem(vc, FuncExpr.sum(Expr.from(vc, "l_quantity")), "s"));
+    }
+
+    @Test
+    public void groupCountFromStatisticsTest() {
+        // counted from the distinct counts stored with the sample; no query is run.
+        LineitemMeta stats = new LineitemMeta(vc);
+        stats.addColumnStats(uniformSample(), "l_orderkey", new SampleColumnStats(0, 0, 20000));
+        stats.addColumnStats(uniformSample(), "l_quantity", new SampleColumnStats(25, 156.25, 50));
+        assertEquals(20000, stats.getGroupCardinality(uniformSample(), Arrays.asList("l_orderkey")));
+
+        // no more groups than the 60000 sample rows.
+        assertEquals(60000, stats.getGroupCardinality(uniformSample(), Arrays.asList("l_orderkey", "l_quantity")));
+
+        assertEquals(-1, stats.getGroupCardinality(uniformSample(), Arrays.asList("l_shipmode")));
+    }
+
+    @Test
+    public void fewGroupsTest() {
+        meta.groupCount = 50;
+        ApproxAggregatedRelation a = groupbyCount();
+        assertTrue(a.effectivePartitionCount() == 100);
+        assertFalse(a.rewriteWithSubsampledErrorBounds().toSql().contains("%"));
+    }
+
+    @Test
+    public void manyGroupsTest() {
+        // 60000 sample rows over 20000 groups: 3 rows per group, but at least 10
+        // partitions.
+        meta.groupCount = 20000;
+        ApproxAggregatedRelation a = groupbyCount();
+        assertTrue(a.effectivePartitionCount() == 10);
+        String sql = a.rewriteWithSubsampledErrorBounds().toSql();
+        assertTrue(sql.contains("% 10)"));
+        assertTrue(sql.contains("s_err"));
+
+        vc.getConf().set("verdict.error_bound.subsampling.adaptive_partition_count", "false");
+        assertFalse(groupbyCount().rewriteWithSubsampledErrorBounds().toSql().contains("%"));
+    }
+
+    @Test
+    public void divisorTest() {
+        // 1,000,000 rows allow 33 partitions for 30000 groups; 100 is collapsed
+        // into 25 partitions of the same size instead, staying under the cap.
+        meta.groupCount = 30000;
+        meta.setSampleSize(uniformSample(), 3000000L);
+        ApproxAggregatedRelation a = groupbyCount();
+        assertTrue(a.effectivePartitionCount() == 25);
+        assertTrue(a.effectivePartitionCount() * meta.groupCount <= vc.getConf().subsamplingMaxIntermediateRows());
+        assertTrue(a.rewriteWithSubsampledErrorBounds().toSql().contains("% 25)"));
+    }
+
+    @Test
+    public void nonDivisorTargetTest() {
+        // 1,000,000 rows allow 66 partitions for 15000 groups, which does not
+        // divide 100; the largest divisor below it is 50.
+        meta.groupCount = 15000;
+        meta.setSampleSize(uniformSample(), 3000000L);
+        assertTrue(groupbyCount().effectivePartitionCount() == 50);
+
+        // no fewer than min_partition_count partitions, rounded up to a divisor.
+        meta.groupCount = 150000;
+        vc.getConf().set("verdict.error_bound.subsampling.min_partition_count", "15");
+        assertTrue(groupbyCount().effectivePartitionCount() == 20);
+    }
+
+}
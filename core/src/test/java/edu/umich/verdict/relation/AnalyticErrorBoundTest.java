@@ -0,0 +1,185 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umich.verdict.StaticSampleMeta;
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.datatypes.TableUniqueName;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.expr.Expr;
+import edu.umich.verdict.relation.expr.FuncExpr;
+import edu.umich.verdict.relation.expr.SelectElem;
+
+public class AnalyticErrorBoundTest {
+
+    static final TableUniqueName lineitem = TableUniqueName.uname("s", "lineitem");
+
+    static final double samplingRatio = 0.01;
+
+    /**
+     * A lineitem table with a uniform sample and a universe sample on l_orderkey.
+     */
+    static class LineitemMeta extends StaticSampleMeta {
+
+        public LineitemMeta(VerdictContext vc) {
+            super(vc);
+            addTable(lineitem, 6000000L, "l_orderkey", "int", "l_quantity", "double");
+
+            addSample(new SampleParam(vc, lineitem, "uniform", samplingRatio, Arrays.<String>asList()));
+            addSample(new SampleParam(vc, lineitem, "universe", samplingRatio, Arrays.asList("l_orderkey")));
+        }
+    }
+
+    VerdictJDBCContext vc;
+
+    @Before
+    public void setUp() throws VerdictException {
+        VerdictConf conf = new VerdictConf();
+        conf.setDbms("dummy");
+        conf.set("verdict.error_bound.method", "analytic");
+        vc = VerdictJDBCContext.from(conf);
+        vc.setMeta(new LineitemMeta(vc));
+        NamingContext.begin();
+    }
+
+    private ApproxAggregatedRelation aggregate(String sampleType, List<String> columns, SelectElem... elems) {
+        ApproxRelation sample = ApproxSingleRelation.from(vc,
+                new SampleParam(vc, lineitem, sampleType, samplingRatio, columns));
+        return new ApproxAggregatedRelation(vc, sample, Arrays.asList(elems));
+    }
+
+    @Test
+    public void singlePassTest() {
+        ApproxAggregatedRelation a = aggregate("uniform", Arrays.<String>asList(),
+                new SelectElem(vc, FuncExpr.count(), "c"),
+                new SelectElem(vc, FuncExpr.sum(Expr.from(vc, "l_quantity")), "s"),
+                new SelectElem(vc, FuncExpr.avg(Expr.from(vc, "l_quantity")), "a"));
+        assertTrue(a.supportsAnalyticErrorBounds());
+
+        String sql = a.rewrite().toSql().toLowerCase();
+        assertTrue(sql.contains("c_err"));
+        assertTrue(sql.contains("s_err"));
+        assertTrue(sql.contains("a_err"));
+        // no window functions and no partitions
+        assertFalse(sql.contains(" over "));
+        assertFalse(sql.contains("group by"));
+    }
+
+    @Test
+    public void fallbackTest() {
+        // tuples of a universe sample are not sampled independently.
+        ApproxAggregatedRelation universeSum = aggregate("universe", Arrays.asList("l_orderkey"),
+                new SelectElem(vc, FuncExpr.sum(Expr.from(vc, "l_quantity")), "s"));
+        assertFalse(universeSum.supportsAnalyticErrorBounds());
+
+        ApproxAggregatedRelation universeCountDistinct = aggregate("universe", Arrays.asList("l_orderkey"),
+                new SelectElem(vc, FuncExpr.countDistinct(Expr.from(vc, "l_orderkey")), "d"));
+        assertTrue(universeCountDistinct.supportsAnalyticErrorBounds());
+
+        // an aggregate within a larger expression
+        ApproxAggregatedRelation ratio = aggregate("uniform", Arrays.<String>asList(),
+                new SelectElem(vc, Expr.from(vc, "sum(l_quantity) / count(*)"), "r"));
+        assertFalse(ratio.supportsAnalyticErrorBounds());
+        assertTrue(ratio.rewrite().toSql().toLowerCase().contains(" over "));
+    }
+
+    /**
+     * On synthetic data, the closed-form standard deviations of the sum and the
+     * average agree with the ones computed by subsampling (with the same scaling as
+     * {@link ApproxAggregatedRelation#rewriteWithSubsampledErrorBounds()}).
+     */
+    @Test
+    public void agreesWithSubsamplingTest() {
+        Random random = new Random(0);
+        int partitionCount = 100;
+        double p = 0.05;
+
+        List<Double> sample = new ArrayList<Double>();
+        List<Integer> partitions = new ArrayList<Integer>();
+        for (int i = 0; i < 1000000; i++) {
+            double x = random.nextGaussian() * 10 + 50;
+            if (random.nextDouble() < p) {
+                sample.add(x);
+                partitions.add(random.nextInt(partitionCount));
+            }
+        }
+        int n = sample.size();
+
+        // closed form, as in ApproxAggregatedRelation#rewriteWithAnalyticErrorBounds()
+        double sumY = 0, sumY2 = 0, sumLin = 0, sumW2 = 0;
+        for (double x : sample) {
+            sumY += x / p;
+            sumY2 += x * x / (p * p);
+            sumLin += x / (p * p);
+            sumW2 += 1 / (p * p);
+        }
+        double factor = n / (n - 1.0);
+        double count = n / p;
+        double avg = sumY / count;
+        double analyticSumStd = Math.sqrt(factor * (sumY2 - sumY * sumY / n));
+        double analyticAvgStd = Math.sqrt(factor * (sumY2 - 2 * avg * sumLin + avg * avg * sumW2) / (count * count));
+
+        // subsampling: per-partition estimates scaled to the whole sample
+        double[] partSum = new double[partitionCount];
+        int[] partSize = new int[partitionCount];
+        for (int i = 0; i < n; i++) {
+            partSum[partitions.get(i)] += sample.get(i) / p;
+            partSize[partitions.get(i)]++;
+        }
+        double[] sumEsts = new double[partitionCount];
+        double[] avgEsts = new double[partitionCount];
+        double avgSize = 0;
+        for (int j = 0; j < partitionCount; j++) {
+            sumEsts[j] = partSum[j] / partSize[j] * n;
+            avgEsts[j] = partSum[j] / (partSize[j] / p);
+            avgSize += partSize[j] / (double) partitionCount;
+        }
+        double subsampledSumStd = stddev(sumEsts) * Math.sqrt(avgSize) / Math.sqrt(n);
+        double subsampledAvgStd = stddev(avgEsts) * Math.sqrt(avgSize) / Math.sqrt(n);
+
+        assertEquals(1.0, analyticSumStd / subsampledSumStd, 0.2);
+        assertEquals(1.0, analyticAvgStd / subsampledAvgStd, 0.2);
+    }
+
+    private static double stddev(double[] values) {
+        double mean = 0;
+        for (double v : values) {
+            mean += v / values.length;
+        }
+        double sq = 0;
+        for (double v : values) {
+            sq += (v - mean) * (v - mean);
+        }
+        return Math.sqrt(sq / (values.length - 1));
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.AnalyticErrorBoundTest.LineitemMeta;
+import edu.umich.verdict.relation.expr.Expr;
+import edu.umich.verdict.relation.expr.FuncExpr;
+import edu.umich.verdict.relation.expr.SelectElem;
+
+public class BootstrappedErrorBoundTest {
+
+    VerdictJDBCContext vc;
+
+    @Before
+    public void setUp() throws VerdictException {
+        VerdictConf conf = new VerdictConf();
+        conf.setDbms("dummy");
+        conf.set("verdict.error_bound.method", "bootstrapping");
+        conf.set("verdict.error_bound.bootstrapping.num_of_trials", "10");
+        vc = VerdictJDBCContext.from(conf);
+        vc.setMeta(new LineitemMeta(vc));
+        NamingContext.begin();
+    }
+
+    private ApproxAggregatedRelation aggregate(SampleParam param, SelectElem... elems) {
+        return new ApproxAggregatedRelation(vc, ApproxSingleRelation.from(vc, param), Arrays.asList(elems));
+    }
+
+    private SampleParam sample(String sampleType, List<String> columns) {
+        return new SampleParam(vc, AnalyticErrorBoundTest.lineitem, sampleType, AnalyticErrorBoundTest.samplingRatio,
+                columns);
+    }
+
+    private static int occurrences(String s, String sub) {
+        int count = 0;
+        for (int i = s.indexOf(sub); i >= 0; i = s.indexOf(sub, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void singleScanTest() {
+        SampleParam param = sample("uniform", Arrays.<String>asList());
+        ApproxAggregatedRelation a = aggregate(param,
+                new SelectElem(vc, FuncExpr.sum(Expr.from(vc, "l_quantity")), "s"),
+                new SelectElem(vc, Expr.from(vc, "sum(l_quantity) / count(*)"), "r"));
+        assertTrue(a.supportsBootstrappedErrorBounds());
+
+        String sql = a.rewrite().toSql().toLowerCase();
+        assertTrue(sql.contains("s_err"));
+        assertTrue(sql.contains("r_err"));
+
+        // all ten trials are computed from a single scan of the sample.
+        assertEquals(1, occurrences(sql, param.sampleTableName().getTableName()));
+        for (int t = 1; t <= 10; t++) {
+            assertTrue(sql.contains("__mul" + t));
+        }
+        assertFalse(sql.contains("__mul11"));
+        assertFalse(sql.contains(" over "));
+    }
+
+    private static int maxNestingDepth(String s) {
+        int depth = 0, max = 0;
+        for (char c : s.toCharArray()) {
+            if (c == '(') {
+                max = Math.max(max, ++depth);
+            } else if (c == ')') {
+                depth--;
+            }
+        }
+        return max;
+    }
+
+    @Test
+    public void sqlSizeTest() {
+        // 100 trials are capped at verdict.error_bound.bootstrapping.max_trials (32).
+        vc.getConf().set("verdict.error_bound.bootstrapping.num_of_trials", "100");
+        SampleParam param = sample("uniform", Arrays.<String>asList());
+        String sql = aggregate(param, new SelectElem(vc, FuncExpr.sum(Expr.from(vc, "l_quantity")), "s"))
+                .rewrite().toSql().toLowerCase();
+
+        assertTrue(sql.contains("__mul32"));
+        assertFalse(sql.contains("__mul33"));
+        // the sums over the trials are balanced, and the variance is not wrapped in abs().
+        assertTrue(maxNestingDepth(sql) < 30);
+        assertFalse(sql.contains("abs("));
+        assertTrue(sql.length() < 40000);
+    }
+
+    @Test
+    public void fallbackTest() {
+        // tuples of a universe sample are not sampled independently.
+        ApproxAggregatedRelation universeSum = aggregate(sample("universe", Arrays.asList("l_orderkey")),
+                new SelectElem(vc, FuncExpr.sum(Expr.from(vc, "l_quantity")), "s"));
+        assertFalse(universeSum.supportsBootstrappedErrorBounds());
+        assertTrue(universeSum.rewrite().toSql().toLowerCase().contains(" over "));
+
+        ApproxAggregatedRelation universeCountDistinct = aggregate(sample("universe", Arrays.asList("l_orderkey")),
+                new SelectElem(vc, FuncExpr.countDistinct(Expr.from(vc, "l_orderkey")), "d"));
+        assertTrue(universeCountDistinct.supportsBootstrappedErrorBounds());
+    }
+
+}
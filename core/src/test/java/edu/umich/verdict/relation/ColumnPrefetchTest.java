@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import edu.umich.verdict.StaticSampleMeta;
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.datatypes.TableUniqueName;
+import edu.umich.verdict.exceptions.VerdictException;
+
+public class ColumnPrefetchTest {
+
+    static class RecordingMeta extends StaticSampleMeta {
+
+        List<Set<TableUniqueName>> batches = new ArrayList<Set<TableUniqueName>>();
+
+        public RecordingMeta(VerdictContext vc) {
+            super(vc);
+        }
+
+        @Override
+        public void prefetchColumns(Collection<TableUniqueName> tableNames) {
+            batches.add(new HashSet<TableUniqueName>(tableNames));
+            super.prefetchColumns(tableNames);
+        }
+    }
+
+    @Test
+    public void allTablesInOneBatchTest() throws VerdictException {
+        VerdictConf conf = new VerdictConf();
+        conf.setDbms("dummy");
+        VerdictJDBCContext vc = VerdictJDBCContext.from(conf);
+        RecordingMeta meta = new RecordingMeta(vc);
+        vc.setMeta(meta);
+
+        ExactRelation.from(vc, "select n_name, count(*) from s.lineitem inner join s.orders on l_orderkey = o_orderkey, "
+                + "(select * from s.nation) t where o_custkey = 1 group by n_name");
+
+        Set<TableUniqueName> expected = new HashSet<TableUniqueName>(Arrays.asList(
+                TableUniqueName.uname("s", "lineitem"), TableUniqueName.uname("s", "orders"),
+                TableUniqueName.uname("s", "nation")));
+        assertEquals(expected, meta.batches.get(0));
+        for (Set<TableUniqueName> batch : meta.batches) {
+            assertTrue(expected.containsAll(batch));
+        }
+    }
+
+}
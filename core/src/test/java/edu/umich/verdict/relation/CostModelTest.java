@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umich.verdict.StaticSampleMeta;
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.datatypes.TableUniqueName;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.expr.SelectElem;
+
+public class CostModelTest {
+
+    static final TableUniqueName lineitem = TableUniqueName.uname("s", "lineitem");
+
+    /**
+     * A lineitem table with two samples of similar sampling ratios: a uniform sample
+     * stored in a wide format (A), and a slightly larger universe sample stored in
+     * a compact format (B).
+     */
+    static class StaticMeta extends StaticSampleMeta {
+
+        public StaticMeta(VerdictContext vc) {
+            super(vc);
+            addTable(lineitem, 6000000L, "l_orderkey", "int", "l_quantity", "double", "l_comment", "string");
+            setByteSize(lineitem, 6000000000L);
+
+            setByteSize(addSample(new SampleParam(vc, lineitem, "uniform", 0.01, Arrays.<String>asList()), 60000),
+                    60000000L);
+            setByteSize(addSample(new SampleParam(vc, lineitem, "universe", 0.0105, Arrays.asList("l_orderkey")),
+                    72000), 6000000L);
+        }
+    }
+
+    VerdictConf conf;
+
+    VerdictJDBCContext vc;
+
+    @Before
+    public void setUp() throws VerdictException {
+        conf = new VerdictConf();
+        conf.setDbms("dummy");
+        vc = VerdictJDBCContext.from(conf);
+        vc.setMeta(new StaticMeta(vc));
+    }
+
+    private SampleGroup group(String sampleType, Double ratio, List<String> columns, String elem) {
+        SampleParam param = new SampleParam(vc, lineitem, sampleType, ratio, columns);
+        return new SampleGroup(ApproxSingleRelation.from(vc, param), Arrays.asList(SelectElem.from(vc, elem)));
+    }
+
+    private SamplePlans candidates(String elem) {
+        SamplePlans plans = new SamplePlans();
+        plans.add(new SamplePlan(Arrays.asList(group("nosample", 1.0, null, elem))));
+        plans.add(new SamplePlan(
+                Arrays.asList(group("uniform", 0.01, Arrays.<String>asList(), elem))));
+        plans.add(new SamplePlan(
+                Arrays.asList(group("universe", 0.0105, Arrays.asList("l_orderkey"), elem))));
+        return plans;
+    }
+
+    private String chosenSampleType(String costModel) {
+        conf.set("verdict.cost_model", costModel);
+        SamplePlan best = candidates("sum(l_quantity)").bestPlan(1.0);
+        return best.getSampleGroups().get(0).sampleType();
+    }
+
+    @Test
+    public void wideColumnCostsMoreTest() {
+        conf.set("verdict.cost_model", "bytes");
+        double narrow = group("uniform", 0.01, Arrays.<String>asList(), "sum(l_quantity)").cost();
+        double wide = group("uniform", 0.01, Arrays.<String>asList(), "sum(l_comment)").cost();
+        assertTrue(wide > narrow);
+    }
+
+    @Test
+    public void rowCountModelTest() {
+        // A reads fewer rows with almost the same sampling ratio.
+        assertEquals("uniform", chosenSampleType("rows"));
+    }
+
+    @Test
+    public void byteSizeModelTest() {
+        // B reads a tenth of the bytes of A.
+        assertEquals("universe", chosenSampleType("bytes"));
+    }
+
+    @Test
+    public void unknownModelFallsBackTest() {
+        conf.set("verdict.cost_model", "no.such.CostModel");
+        assertTrue(vc.getCostModel() instanceof ByteSizeCostModel);
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umich.verdict.StaticSampleMeta;
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.datatypes.SampleColumnStats;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.datatypes.TableUniqueName;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.expr.SelectElem;
+import edu.umich.verdict.util.VerdictSQLParserFactory;
+
+public class ErrorPredictorTest {
+
+    static final TableUniqueName lineitem = TableUniqueName.uname("s", "lineitem");
+
+    /**
+     * A lineitem table of 6M rows with a 0.1% and a 1% uniform sample; l_quantity has
+     * a coefficient of variation of 0.5 in both.
+     */
+    static class StatsMeta extends StaticSampleMeta {
+
+        public StatsMeta(VerdictContext vc) {
+            super(vc);
+            addTable(lineitem, 6000000L, "l_orderkey", "int", "l_quantity", "double");
+
+            for (double ratio : new double[] { 0.001, 0.01 }) {
+                TableUniqueName sampleTable = addSample(
+                        new SampleParam(vc, lineitem, "uniform", ratio, Arrays.<String>asList()));
+                addColumnStats(sampleTable, "l_quantity", new SampleColumnStats(25, 156.25));
+            }
+        }
+    }
+
+    VerdictJDBCContext vc;
+
+    @Before
+    public void setUp() throws VerdictException {
+        VerdictConf conf = new VerdictConf();
+        conf.setDbms("dummy");
+        conf.set("verdict.cost_model", "rows");
+        vc = VerdictJDBCContext.from(conf);
+        vc.setMeta(new StatsMeta(vc));
+    }
+
+    private SamplePlan plan(double ratio, String elem) {
+        SampleParam param = (ratio == 1.0) ? new SampleParam(vc, lineitem, "nosample", 1.0, null)
+                : new SampleParam(vc, lineitem, "uniform", ratio, Arrays.<String>asList());
+        return new SamplePlan(Arrays.asList(
+                new SampleGroup(ApproxSingleRelation.from(vc, param), Arrays.asList(SelectElem.from(vc, elem)))));
+    }
+
+    private Double chosenRatio(double relativeError) {
+        SamplePlans plans = new SamplePlans();
+        plans.add(plan(1.0, "sum(l_quantity)"));
+        plans.add(plan(0.001, "sum(l_quantity)"));
+        plans.add(plan(0.01, "sum(l_quantity)"));
+        SamplePlan best = plans.cheapestPlanWithin(new ErrorPredictor(vc), relativeError, 0.95);
+        return (best == null) ? null : ((ApproxSingleRelation) best.getSampleGroups().get(0).getSample()).getSamplingRatio();
+    }
+
+    @Test
+    public void predictionTest() {
+        ErrorPredictor predictor = new ErrorPredictor(vc);
+        // 1.96 * sqrt(0.999 / 6000) * sqrt(1 + 0.5^2)
+        assertEquals(0.0283, predictor.relativeError(plan(0.001, "sum(l_quantity)"), 0.95), 1e-4);
+        // 1.96 * sqrt(0.99 / 60000) * 0.5
+        assertEquals(0.00398, predictor.relativeError(plan(0.01, "avg(l_quantity)"), 0.95), 1e-5);
+        assertEquals(0.0, predictor.relativeError(plan(1.0, "count(*)"), 0.95), 1e-9);
+    }
+
+    @Test
+    public void smallestSufficientSampleTest() {
+        assertEquals(0.001, chosenRatio(0.05), 1e-9);
+        assertEquals(0.01, chosenRatio(0.01), 1e-9);
+        assertEquals(1.0, chosenRatio(0.001), 1e-9);
+    }
+
+    @Test
+    public void zScoreTest() {
+        assertEquals(1.96, ApproxRelation.confidenceIntervalMultiplier(0.95), 1e-9);
+        assertEquals(2.576, ApproxRelation.confidenceIntervalMultiplier(0.97), 1e-9);
+    }
+
+    @Test
+    public void targetConfidenceTest() {
+        // the error bounds are at the confidence of the target bound while planning,
+        // not at the session's.
+        SampleParam param = new SampleParam(vc, lineitem, "uniform", 0.01, Arrays.<String>asList());
+        PlanTarget.bind(new PlanTarget(0.01, 0.99));
+        ApproxRelation a;
+        try {
+            a = ApproxSingleRelation.from(vc, param).agg(SelectElem.from(vc, "sum(l_quantity) as s"));
+        } finally {
+            PlanTarget.bind(null);
+        }
+        assertEquals(2.576, a.confidenceIntervalMultiplier(), 1e-9);
+
+        a = ApproxSingleRelation.from(vc, param).agg(SelectElem.from(vc, "sum(l_quantity) as s"));
+        assertEquals(1.96, a.confidenceIntervalMultiplier(), 1e-9);
+    }
+
+    @Test
+    public void errorClauseTest() {
+        PlanTarget target = PlanTarget.from(vc, VerdictSQLParserFactory.parse(
+                "select count(*) from t within 1% error at 90% confidence", VerdictSQLParserFactory.SELECT_STATEMENT));
+        assertEquals(0.01, target.getRelativeError(), 1e-9);
+        assertEquals(0.90, target.getConfidence(), 1e-9);
+
+        assertNull(PlanTarget.from(vc, VerdictSQLParserFactory.parse("select count(*) from t",
+                VerdictSQLParserFactory.SELECT_STATEMENT)));
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.expr.SelectElem;
+import edu.umich.verdict.util.VerdictSQLParserFactory;
+
+public class LatencyModelTest {
+
+    VerdictConf conf;
+
+    VerdictJDBCContext vc;
+
+    @Before
+    public void setUp() throws VerdictException {
+        conf = new VerdictConf();
+        conf.setDbms("dummy");
+        vc = VerdictJDBCContext.from(conf);
+        vc.setMeta(new ErrorPredictorTest.StatsMeta(vc));
+    }
+
+    private SamplePlan plan(double ratio) {
+        SampleParam param = (ratio == 1.0) ? new SampleParam(vc, ErrorPredictorTest.lineitem, "nosample", 1.0, null)
+                : new SampleParam(vc, ErrorPredictorTest.lineitem, "uniform", ratio, Arrays.<String>asList());
+        return new SamplePlan(Arrays.asList(new SampleGroup(ApproxSingleRelation.from(vc, param),
+                Arrays.asList(SelectElem.from(vc, "sum(l_quantity)")))));
+    }
+
+    private Double chosenRatio(double seconds) {
+        SamplePlans plans = new SamplePlans();
+        plans.add(plan(1.0));
+        plans.add(plan(0.001));
+        plans.add(plan(0.01));
+        SamplePlan best = plans.mostAccuratePlanWithin(new ErrorPredictor(vc), vc.getLatencyModel(), seconds, 0.95);
+        return (best == null) ? null
+                : ((ApproxSingleRelation) best.getSampleGroups().get(0).getSample()).getSamplingRatio();
+    }
+
+    @Test
+    public void priorTest() {
+        // 0.5 seconds of overhead and 100MB/s
+        LatencyModel model = new LatencyModel(vc);
+        assertEquals(1.5, model.predictSeconds("uniform", 1e8, 1), 1e-9);
+
+        // the prior is scaled to the recorded runtimes.
+        model.record("uniform", 1e8, 1, 3.0);
+        assertEquals(3.0, model.predictSeconds("uniform", 1e8, 1), 1e-9);
+    }
+
+    private void recordLinear(LatencyModel model, String sampleType, double overhead, double secondsPerByte) {
+        for (int i = 0; i < 2 * LatencyModel.MIN_FIT_SIZE; i++) {
+            double bytes = (i + 1) * 1e8;
+            int scans = 1 + i % 2;
+            model.record(sampleType, bytes, scans, overhead + secondsPerByte * bytes + 0.5 * scans);
+        }
+    }
+
+    @Test
+    public void fitTest() {
+        LatencyModel model = new LatencyModel(vc);
+        recordLinear(model, "uniform", 1.0, 2e-9);
+        assertEquals(1.0 + 2.0 + 1.5, model.predictSeconds("uniform", 1e9, 3), 1e-6);
+    }
+
+    @Test
+    public void perSampleTypeFitTest() {
+        LatencyModel model = new LatencyModel(vc);
+        recordLinear(model, "uniform", 1.0, 2e-9);
+        recordLinear(model, "stratified", 1.0, 4e-9);
+        assertEquals(1.0 + 2.0 + 0.5, model.predictSeconds("uniform", 1e9, 1), 1e-6);
+        assertEquals(1.0 + 4.0 + 0.5, model.predictSeconds("stratified", 1e9, 1), 1e-6);
+
+        // a sample type without its own runtimes uses the fit to all of them.
+        double pooled = model.predictSeconds("universe", 1e9, 1);
+        assertTrue(pooled > 3.5 && pooled < 5.5);
+    }
+
+    @Test
+    public void historyTest() {
+        conf.set("verdict.latency_model.history", "5");
+        LatencyModel model = new LatencyModel(vc);
+        for (int i = 0; i < 8; i++) {
+            model.record("uniform", 1e8, 1, 1.0);
+        }
+        assertEquals(5, model.historySize("uniform"));
+    }
+
+    @Test
+    public void latencyCostModelTest() {
+        conf.set("verdict.cost_model", "latency");
+        assertTrue(vc.getCostModel() instanceof LatencyCostModel);
+        // the overhead is excluded: 0.96MB at 100MB/s
+        assertEquals(0.0096, plan(0.01).cost(), 1e-9);
+    }
+
+    @Test
+    public void mostAccuratePlanInTimeTest() {
+        // the dummy dbms reports no table sizes; the original table is 48MB and the
+        // samples are 0.96MB and 0.096MB.
+        assertEquals(1.0, chosenRatio(2.0), 1e-9);
+        assertEquals(0.01, chosenRatio(0.9), 1e-9);
+        assertEquals(0.001, chosenRatio(0.505), 1e-9);
+        assertNull(chosenRatio(0.4));
+    }
+
+    @Test
+    public void timeClauseTest() {
+        PlanTarget target = PlanTarget.from(vc, VerdictSQLParserFactory.parse(
+                "select count(*) from t within 2.5 seconds", VerdictSQLParserFactory.SELECT_STATEMENT));
+        assertEquals(2.5, target.getSeconds(), 1e-9);
+
+        conf.set("verdict.time_bound_seconds", "3");
+        target = PlanTarget.from(vc, VerdictSQLParserFactory.parse("select count(*) from t",
+                VerdictSQLParserFactory.SELECT_STATEMENT));
+        assertEquals(3.0, target.getSeconds(), 1e-9);
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import edu.umich.verdict.datatypes.Alias;
+
+public class NamingContextTest {
+
+    static final int threadCount = 8;
+
+    static final int namesPerThread = 1000;
+
+    @Test
+    public void freshContextTest() {
+        NamingContext.begin();
+        assertEquals("vt1", Relation.genTableAlias());
+        assertEquals("vc1", Relation.genColumnAlias());
+        assertEquals("v2_1", Alias.genDerivedTableAlias(2).aliasName());
+
+        NamingContext.begin();
+        assertEquals("vt1", Relation.genTableAlias());
+        assertEquals("v2_1", Alias.genDerivedTableAlias(2).aliasName());
+    }
+
+    @Test
+    public void concurrentAliasTest() throws Exception {
+        final Set<Integer> tempTableNos = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+
+        for (int t = 0; t < threadCount; t++) {
+            futures.add(pool.submit(new Callable<List<String>>() {
+                @Override
+                public List<String> call() {
+                    NamingContext.begin();
+                    List<String> aliases = new ArrayList<String>();
+                    for (int i = 0; i < namesPerThread; i++) {
+                        aliases.add(Relation.genTableAlias());
+                        tempTableNos.add(NamingContext.nextTempTableNo());
+                    }
+                    return aliases;
+                }
+            }));
+        }
+
+        for (Future<List<String>> f : futures) {
+            List<String> aliases = f.get();
+            for (int i = 0; i < namesPerThread; i++) {
+                assertEquals("vt" + (i + 1), aliases.get(i));
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(threadCount * namesPerThread, tempTableNos.size());
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.dbms.DbmsHive;
+import edu.umich.verdict.dbms.DbmsImpala;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.AnalyticErrorBoundTest.LineitemMeta;
+import edu.umich.verdict.relation.condition.Cond;
+import edu.umich.verdict.relation.expr.Expr;
+import edu.umich.verdict.relation.expr.SelectElem;
+
+public class PercentileTest {
+
+    VerdictJDBCContext vc;
+
+    @Before
+    public void setUp() throws VerdictException {
+        VerdictConf conf = new VerdictConf();
+        conf.setDbms("dummy");
+        vc = VerdictJDBCContext.from(conf);
+        vc.setMeta(new LineitemMeta(vc));
+        NamingContext.begin();
+    }
+
+    private ApproxAggregatedRelation groupbyMedian() {
+        SampleParam param = new SampleParam(vc, AnalyticErrorBoundTest.lineitem, "uniform",
+                AnalyticErrorBoundTest.samplingRatio, Arrays.<String>asList());
+        return ApproxSingleRelation.from(vc, param).groupby("l_orderkey")
+                .agg(new SelectElem(vc, Expr.from(vc, "median(l_quantity)"), "m"));
+    }
+
+    @Test
+    public void parseTest() {
+        Expr median = Expr.from(vc, "median(l_quantity)");
+        assertTrue(median.isagg());
+        assertTrue(median.isPercentile());
+        assertTrue(median.toString().contains("0.5"));
+
+        Expr p90 = Expr.from(vc, "approx_percentile(l_quantity, 0.9)");
+        assertTrue(p90.isPercentile());
+        assertTrue(p90.toString().contains("0.9"));
+    }
+
+    @Test
+    public void subsampledErrorBoundTest() {
+        String sql = groupbyMedian().rewriteWithSubsampledErrorBounds().toSql().toLowerCase();
+        // the weights are accumulated within every group and partition.
+        assertTrue(sql.contains("rows between unbounded preceding and current row"));
+        assertTrue(sql.contains(vc.getDbms().partitionColumnName()));
+        assertTrue(sql.contains(">="));
+        assertTrue(sql.contains("m_err"));
+        assertFalse(sql.contains("approx_percentile"));
+    }
+
+    @Test
+    public void pointEstimateTest() {
+        String sql = groupbyMedian().rewriteForPointEstimate().toSql().toLowerCase();
+        assertTrue(sql.contains("rows between unbounded preceding and current row"));
+        assertFalse(sql.contains("approx_percentile"));
+    }
+
+    private ExactRelation exactGroupby(String percentile) {
+        return SingleRelation.from(vc, AnalyticErrorBoundTest.lineitem).groupby("l_orderkey")
+                .agg(new SelectElem(vc, Expr.from(vc, percentile), "m"));
+    }
+
+    private ApproxAggregatedRelation originalTableGroupby(String percentile) {
+        return ApproxSingleRelation.asis(SingleRelation.from(vc, AnalyticErrorBoundTest.lineitem))
+                .groupby("l_orderkey").agg(new SelectElem(vc, Expr.from(vc, percentile), "m"));
+    }
+
+    @Test
+    public void impalaNativeMedianTest() {
+        vc.setDbms(new DbmsImpala(vc.getDbms()));
+        String sql = exactGroupby("median(l_quantity)").toSql().toLowerCase();
+        assertTrue(sql.contains("appx_median("));
+        assertFalse(sql.contains("approx_percentile"));
+
+        sql = originalTableGroupby("median(l_quantity)").rewriteWithSubsampledErrorBounds().toSql().toLowerCase();
+        assertTrue(sql.contains("appx_median("));
+    }
+
+    @Test
+    public void impalaWeightedPercentileTest() {
+        // impala has no function for the other quantiles; those on a single table
+        // are computed from the cumulative weights.
+        vc.setDbms(new DbmsImpala(vc.getDbms()));
+        String sql = originalTableGroupby("approx_percentile(l_quantity, 0.9)").rewriteWithSubsampledErrorBounds()
+                .toSql().toLowerCase();
+        assertTrue(sql.contains("rows between unbounded preceding and current row"));
+        assertFalse(sql.contains("approx_percentile"));
+    }
+
+    @Test
+    public void impalaPercentileOnJoinTest() throws VerdictException {
+        // the cumulative weights are not projected over a join; the other quantiles
+        // on a join of samples are computed on the original tables instead.
+        vc.setMeta(new UniverseJoinAdvisorTest.JoinMeta(vc, true));
+        vc.setDbms(new DbmsImpala(vc.getDbms()));
+        JoinedRelation join = JoinedRelation.from(vc, SingleRelation.from(vc, UniverseJoinAdvisorTest.lineitem),
+                SingleRelation.from(vc, UniverseJoinAdvisorTest.orders), Cond.from(vc, "l_orderkey = o_orderkey"));
+
+        List<ApproxRelation> candidates = join.nBestSamples(Expr.from(vc, "approx_percentile(l_quantity, 0.9)"), 10);
+        assertFalse(candidates.isEmpty());
+        for (ApproxRelation a : candidates) {
+            assertFalse(a.doesIncludeSample());
+        }
+
+        // the median is native.
+        boolean sampled = false;
+        for (ApproxRelation a : join.nBestSamples(Expr.from(vc, "median(l_quantity)"), 10)) {
+            sampled |= a.doesIncludeSample();
+        }
+        assertTrue(sampled);
+    }
+
+    @Test
+    public void hiveNativePercentileTest() {
+        vc.setDbms(new DbmsHive(vc.getDbms()));
+        String sql = exactGroupby("approx_percentile(l_quantity, 0.9)").toSql().toLowerCase();
+        assertTrue(sql.contains("percentile_approx("));
+        assertTrue(sql.contains("0.9"));
+        assertFalse(sql.contains("approx_percentile"));
+
+        sql = originalTableGroupby("median(l_quantity)").rewriteWithSubsampledErrorBounds().toSql().toLowerCase();
+        assertTrue(sql.contains("percentile_approx("));
+        assertFalse(sql.contains("rows between unbounded preceding and current row"));
+    }
+
+    @Test
+    public void bootstrapFallbackTest() {
+        assertFalse(groupbyMedian().supportsBootstrappedErrorBounds());
+    }
+
+}
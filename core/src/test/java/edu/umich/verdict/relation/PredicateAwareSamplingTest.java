@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umich.verdict.StaticSampleMeta;
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.datatypes.SampleColumnStats;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.datatypes.TableUniqueName;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.condition.Cond;
+
+public class PredicateAwareSamplingTest {
+
+    static final TableUniqueName lineitem = TableUniqueName.uname("s", "lineitem");
+
+    /**
+     * A lineitem table with a uniform sample and a stratified sample on l_shipmode
+     * of the same size.
+     */
+    static class StaticMeta extends StaticSampleMeta {
+
+        public StaticMeta(VerdictContext vc) {
+            super(vc);
+            addTable(lineitem, 6000000L, "l_orderkey", "int", "l_quantity", "double", "l_shipmode", "string");
+
+            addSample(new SampleParam(vc, lineitem, "uniform", 0.01, Arrays.<String>asList()));
+            addSample(new SampleParam(vc, lineitem, "stratified", 0.01, Arrays.asList("l_shipmode")));
+        }
+    }
+
+    VerdictJDBCContext vc;
+
+    @Before
+    public void setUp() throws VerdictException {
+        VerdictConf conf = new VerdictConf();
+        conf.setDbms("dummy");
+        vc = VerdictJDBCContext.from(conf);
+        vc.setMeta(new StaticMeta(vc));
+    }
+
+    @Test
+    public void stratifiedSampleForEqualityFilterTest() throws VerdictException {
+        ApproxRelation a = ExactRelation
+                .from(vc, "select sum(l_quantity) from s.lineitem where l_shipmode = 'MAIL'").approx();
+        assertEquals("stratified", a.sampleType());
+    }
+
+    @Test
+    public void stratifiedSampleProbabilityTest() throws VerdictException {
+        ApproxRelation stratified = ApproxSingleRelation.from(vc,
+                new SampleParam(vc, lineitem, "stratified", 0.01, Arrays.asList("l_shipmode")));
+        ApproxFilteredRelation f = new ApproxFilteredRelation(vc, stratified, Cond.from(vc, "l_shipmode > 'MAIL'"));
+        assertEquals(0.01, f.effectiveSamplingProbability(), 1e-9);
+
+        f = new ApproxFilteredRelation(vc, stratified, Cond.from(vc, "l_shipmode in ('MAIL', 'SHIP')"));
+        assertEquals(0.05, f.effectiveSamplingProbability(), 1e-9);
+        assertEquals(0.01, f.samplingProbability(), 1e-9);
+    }
+
+    @Test
+    public void stratifiedSampleProbabilityWithStrataTest() throws VerdictException {
+        SampleParam param = new SampleParam(vc, lineitem, "stratified", 0.01, Arrays.asList("l_shipmode"));
+        StaticMeta meta = new StaticMeta(vc);
+        meta.addColumnStats(param.sampleTableName(), "l_shipmode", new SampleColumnStats(0, 0, 7));
+        vc.setMeta(meta);
+
+        // two of the seven strata
+        ApproxRelation stratified = ApproxSingleRelation.from(vc, param);
+        ApproxFilteredRelation f = new ApproxFilteredRelation(vc, stratified,
+                Cond.from(vc, "l_shipmode in ('MAIL', 'SHIP')"));
+        assertEquals(0.035, f.effectiveSamplingProbability(), 1e-9);
+    }
+
+    @Test
+    public void stratifiedSampleProbabilityWithRecordedStrataTest() throws VerdictException {
+        SampleParam param = new SampleParam(vc, lineitem, "stratified", 0.01, Arrays.asList("l_shipmode", "l_orderkey"));
+        StaticMeta meta = new StaticMeta(vc);
+        TableUniqueName sampleTable = meta.addSample(param);
+        meta.addColumnStats(sampleTable, "l_shipmode", new SampleColumnStats(0, 0, 7));
+        meta.addColumnStats(sampleTable, "l_orderkey", new SampleColumnStats(0, 0, 1500000));
+        meta.addColumnStats(sampleTable, SampleColumnStats.columnsKey(param.getColumnNames()),
+                new SampleColumnStats(0, 0, 20));
+        vc.setMeta(meta);
+
+        // two of the 20 strata counted when the sample was built, not of the
+        // 7 * 1500000 combinations of the distinct values.
+        ApproxRelation stratified = ApproxSingleRelation.from(vc, param);
+        ApproxFilteredRelation f = new ApproxFilteredRelation(vc, stratified,
+                Cond.from(vc, "l_shipmode = 'MAIL' and l_orderkey in (1, 2)"));
+        assertEquals(0.1, f.effectiveSamplingProbability(), 1e-9);
+    }
+
+    @Test
+    public void universeSampleForEqualityFilterTest() {
+        ApproxRelation universe = ApproxSingleRelation.from(vc,
+                new SampleParam(vc, lineitem, "universe", 0.01, Arrays.asList("l_orderkey")));
+        ApproxFilteredRelation f = new ApproxFilteredRelation(vc, universe, Cond.from(vc, "l_orderkey = 10"));
+        assertTrue(f.effectiveSamplingProbability() < universe.samplingProbability());
+    }
+
+    @Test
+    public void equalityValueCountsTest() {
+        Map<String, Integer> counts = ApproxFilteredRelation.equalityValueCounts(
+                Cond.from(vc, "l_shipmode in ('MAIL', 'SHIP') and 1 = l_orderkey and l_quantity < 24"));
+        assertEquals(2, counts.size());
+        assertEquals(Integer.valueOf(2), counts.get("l_shipmode"));
+        assertEquals(Integer.valueOf(1), counts.get("l_orderkey"));
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umich.verdict.StaticSampleMeta;
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.datatypes.TableUniqueName;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.expr.Expr;
+
+public class SampleCandidatesTest {
+
+    static final TableUniqueName orders = TableUniqueName.uname("s", "orders");
+
+    /**
+     * An orders table with a uniform and a universe sample, which counts the
+     * lookups of its samples.
+     */
+    static class CountingMeta extends StaticSampleMeta {
+
+        int lookups = 0;
+
+        public CountingMeta(VerdictContext vc) {
+            super(vc);
+            addTable(orders, 3400000L, "user_id", "int", "days_since_prior", "double");
+
+            addSample(new SampleParam(vc, orders, "uniform", 0.01, Arrays.<String>asList()));
+            addSample(new SampleParam(vc, orders, "universe", 0.01, Arrays.asList("user_id")));
+        }
+
+        @Override
+        public List<Pair<SampleParam, TableUniqueName>> getSampleInfoFor(TableUniqueName originalTableName) {
+            lookups++;
+            return super.getSampleInfoFor(originalTableName);
+        }
+    }
+
+    VerdictJDBCContext vc;
+
+    CountingMeta meta;
+
+    @Before
+    public void setUp() throws VerdictException {
+        VerdictConf conf = new VerdictConf();
+        conf.setDbms("dummy");
+        vc = VerdictJDBCContext.from(conf);
+        meta = new CountingMeta(vc);
+        vc.setMeta(meta);
+        SampleCandidates.bind(new SampleCandidates());
+    }
+
+    @After
+    public void tearDown() {
+        SampleCandidates.bind(null);
+    }
+
+    @Test
+    public void sameAggregateTest() throws VerdictException {
+        SingleRelation r = SingleRelation.from(vc, orders);
+        List<ApproxRelation> sums = r.nBestSamples(Expr.from(vc, "sum(days_since_prior)"), 10);
+        int lookups = meta.lookups;
+        List<ApproxRelation> avgs = r.nBestSamples(Expr.from(vc, "avg(days_since_prior) * 2"), 10);
+
+        // uniform, universe, and the table itself
+        assertEquals(3, sums.size());
+        assertEquals(sums.size(), avgs.size());
+        for (int i = 0; i < sums.size(); i++) {
+            assertSame(sums.get(i), avgs.get(i));
+        }
+        assertEquals(lookups, meta.lookups);
+    }
+
+    @Test
+    public void differentAggregateTest() throws VerdictException {
+        SingleRelation r = SingleRelation.from(vc, orders);
+        List<ApproxRelation> sums = r.nBestSamples(Expr.from(vc, "sum(days_since_prior)"), 10);
+        int lookups = meta.lookups;
+        List<ApproxRelation> distincts = r.nBestSamples(Expr.from(vc, "count(distinct user_id)"), 10);
+
+        // the uniform sample must not be used for count-distinct
+        assertEquals(2, distincts.size());
+        assertNotSame(sums.get(0), distincts.get(0));
+        assertEquals(lookups, meta.lookups);
+
+        // another relation of the same table gets its own candidates
+        SingleRelation other = SingleRelation.from(vc, orders);
+        other.setAlias("o2");
+        List<ApproxRelation> others = other.nBestSamples(Expr.from(vc, "sum(days_since_prior)"), 10);
+        assertEquals("o2", others.get(0).getAlias());
+        assertEquals(lookups, meta.lookups);
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umich.verdict.StaticSampleMeta;
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.datatypes.TableUniqueName;
+import edu.umich.verdict.exceptions.VerdictException;
+
+public class SampleLadderTest {
+
+    static final TableUniqueName lineitem = TableUniqueName.uname("s", "lineitem");
+
+    /**
+     * A lineitem table with a ladder of 0.1%, 1%, and 10% uniform samples.
+     */
+    static class LadderMeta extends StaticSampleMeta {
+
+        public LadderMeta(VerdictContext vc) {
+            super(vc);
+            addTable(lineitem, 6000000L, "l_orderkey", "int", "l_quantity", "double");
+
+            for (double ratio : new double[] { 0.01, 0.1, 0.001 }) {
+                addSample(new SampleParam(vc, lineitem, "uniform", ratio, Arrays.<String>asList()));
+            }
+        }
+    }
+
+    VerdictJDBCContext vc;
+
+    @Before
+    public void setUp() throws VerdictException {
+        VerdictConf conf = new VerdictConf();
+        conf.setDbms("dummy");
+        vc = VerdictJDBCContext.from(conf);
+        vc.setMeta(new LadderMeta(vc));
+    }
+
+    private double chosenRatio(PlanTarget target) throws VerdictException {
+        PlanTarget.bind(target);
+        try {
+            ApproxRelation a = ExactRelation.from(vc, "select sum(l_quantity) from s.lineitem").approx();
+            List<ApproxSingleRelation> samples = new ArrayList<ApproxSingleRelation>();
+            ErrorPredictor.collectSamples(a, samples);
+            return samples.get(0).getSamplingRatio();
+        } finally {
+            PlanTarget.bind(null);
+        }
+    }
+
+    @Test
+    public void ladderTest() {
+        List<SampleParam> ladder = vc.getMeta()
+                .getSampleLadder(new SampleParam(vc, lineitem, "uniform", 0.01, Arrays.<String>asList()));
+        assertEquals(3, ladder.size());
+        assertEquals(0.001, ladder.get(0).getSamplingRatio(), 1e-9);
+        assertEquals(0.01, ladder.get(1).getSamplingRatio(), 1e-9);
+        assertEquals(0.1, ladder.get(2).getSamplingRatio(), 1e-9);
+
+        assertTrue(vc.getMeta()
+                .getSampleLadder(new SampleParam(vc, lineitem, "universe", 0.01, Arrays.asList("l_orderkey")))
+                .isEmpty());
+    }
+
+    @Test
+    public void rungTest() throws VerdictException {
+        PlanTarget target = new PlanTarget(null, 0.95).atLadderRung(0);
+        assertEquals(0.001, chosenRatio(target), 1e-9);
+        assertTrue(target.hasHigherRung());
+
+        target = new PlanTarget(null, 0.95).atLadderRung(1);
+        assertEquals(0.01, chosenRatio(target), 1e-9);
+        assertTrue(target.hasHigherRung());
+
+        // the largest rung of a shorter ladder
+        target = new PlanTarget(null, 0.95).atLadderRung(4);
+        assertEquals(0.1, chosenRatio(target), 1e-9);
+        assertFalse(target.hasHigherRung());
+    }
+
+    @Test
+    public void higherRungOfChosenSampleTest() throws VerdictException {
+        // a single 5% universe sample is chosen over the smallest rung of the uniform
+        // ladder; the higher rungs of the uniform ladder would not change the plan.
+        LadderMeta meta = new LadderMeta(vc);
+        meta.addSample(new SampleParam(vc, lineitem, "universe", 0.05, Arrays.asList("l_orderkey")));
+        vc.setMeta(meta);
+
+        PlanTarget target = new PlanTarget(null, 0.95).atLadderRung(0);
+        assertEquals(0.05, chosenRatio(target), 1e-9);
+        assertFalse(target.hasHigherRung());
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.expr.SelectElem;
+
+public class SamplePlansTest {
+
+    static final int exprCount = 8;
+
+    VerdictJDBCContext vc;
+
+    @Before
+    public void setUp() throws VerdictException {
+        VerdictConf conf = new VerdictConf();
+        conf.setDbms("dummy");
+        vc = VerdictJDBCContext.from(conf);
+        vc.setMeta(new CostModelTest.StaticMeta(vc));
+    }
+
+    /**
+     * The candidate sample groups (the original table and the two samples of
+     * CostModelTest.StaticMeta) for each of the expressions.
+     */
+    private List<List<SampleGroup>> candidates() {
+        List<SampleParam> params = Arrays.asList(
+                new SampleParam(vc, CostModelTest.lineitem, "nosample", 1.0, null),
+                new SampleParam(vc, CostModelTest.lineitem, "uniform", 0.01, Arrays.<String>asList()),
+                new SampleParam(vc, CostModelTest.lineitem, "universe", 0.0105, Arrays.asList("l_orderkey")));
+        List<List<SampleGroup>> candidates = new ArrayList<List<SampleGroup>>();
+        for (int i = 0; i < exprCount; i++) {
+            String elem = (i % 2 == 0) ? "sum(l_quantity)" : "avg(l_comment)";
+            List<SampleGroup> groups = new ArrayList<SampleGroup>();
+            for (SampleParam param : params) {
+                groups.add(new SampleGroup(ApproxSingleRelation.from(vc, param),
+                        Arrays.asList(SelectElem.from(vc, elem))));
+            }
+            candidates.add(groups);
+        }
+        return candidates;
+    }
+
+    private SamplePlans consolidate(int beamWidth) {
+        SamplePlans plans = new SamplePlans();
+        for (List<SampleGroup> groups : candidates()) {
+            plans.consolidateNewExpr(groups, beamWidth);
+        }
+        return plans;
+    }
+
+    @Test
+    public void beamWidthTest() {
+        SamplePlans plans = consolidate(4);
+        int singleGroupPlans = 0;
+        for (SamplePlan plan : plans.getPlans()) {
+            int elemCount = 0;
+            for (SampleGroup g : plan.getSampleGroups()) {
+                elemCount += g.getElems().size();
+            }
+            assertEquals(exprCount, elemCount);
+            if (plan.getSampleGroups().size() == 1) {
+                singleGroupPlans++;
+            }
+        }
+        assertEquals(3, singleGroupPlans);
+        assertTrue(plans.getPlans().size() <= 3 + 4);
+    }
+
+    @Test
+    public void sameBestPlanAsExhaustiveSearchTest() {
+        // 3^8 plans are kept when the beam is wide enough.
+        SamplePlan exhaustive = consolidate(10000).bestPlan(0.1);
+        SamplePlan beam = consolidate(4).bestPlan(0.1);
+        assertEquals(exhaustive.cost(), beam.cost(), 1e-6);
+        assertEquals(exhaustive.harmonicSamplingProb(), beam.harmonicSamplingProb(), 1e-9);
+    }
+
+}
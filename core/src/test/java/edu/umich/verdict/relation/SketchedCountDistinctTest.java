@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.dbms.DbmsDummy;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.AnalyticErrorBoundTest.LineitemMeta;
+import edu.umich.verdict.relation.expr.Expr;
+import edu.umich.verdict.relation.expr.FuncExpr;
+import edu.umich.verdict.relation.expr.SelectElem;
+
+public class SketchedCountDistinctTest {
+
+    VerdictJDBCContext vc;
+
+    @Before
+    public void setUp() throws VerdictException {
+        VerdictConf conf = new VerdictConf();
+        conf.setDbms("dummy");
+        conf.set("verdict.count_distinct.native_sketch", "true");
+        vc = VerdictJDBCContext.from(conf);
+        vc.setMeta(new LineitemMeta(vc));
+
+        // a dbms with impala's sketch and hash function
+        vc.setDbms(new DbmsDummy(vc) {
+            @Override
+            public Expr approxCountDistinct(Expr expr) {
+                return new FuncExpr(FuncExpr.FuncName.IMPALA_APPROX_COUNT_DISTINCT, expr);
+            }
+
+            @Override
+            public String modOfHash(String col, int mod) {
+                return String.format("abs(fnv_hash(%s)) %% %d", col, mod);
+            }
+        });
+        NamingContext.begin();
+    }
+
+    private ApproxAggregatedRelation countDistinct(ApproxRelation source) {
+        return new ApproxAggregatedRelation(vc, source,
+                Arrays.asList(new SelectElem(vc, FuncExpr.countDistinct(Expr.from(vc, "l_orderkey")), "d")));
+    }
+
+    private ApproxRelation originalTable() {
+        return ApproxSingleRelation.asis(SingleRelation.from(vc, AnalyticErrorBoundTest.lineitem));
+    }
+
+    @Test
+    public void originalTableTest() {
+        ApproxAggregatedRelation a = countDistinct(originalTable());
+        assertTrue(a.usesCountDistinctSketches());
+
+        String sql = a.rewriteWithSubsampledErrorBounds().toSql().toLowerCase();
+        assertTrue(sql.contains("ndv("));
+        assertTrue(sql.contains("fnv_hash(l_orderkey)"));
+        assertTrue(sql.contains("d_err"));
+        assertFalse(sql.contains("count(distinct"));
+
+        // the other methods use the same partitions.
+        assertTrue(a.rewriteWithAnalyticErrorBounds().toSql().toLowerCase().contains("d_err"));
+    }
+
+    @Test
+    public void disabledTest() {
+        vc.getConf().set("verdict.count_distinct.native_sketch", "false");
+        ApproxAggregatedRelation a = countDistinct(originalTable());
+        assertFalse(a.usesCountDistinctSketches());
+
+        String sql = a.rewriteWithSubsampledErrorBounds().toSql().toLowerCase();
+        assertTrue(sql.contains("count(distinct"));
+        assertFalse(sql.contains("d_err"));
+    }
+
+    @Test
+    public void otherAggregateTest() {
+        // sums on the original table are exact; they are not partitioned.
+        ApproxAggregatedRelation a = new ApproxAggregatedRelation(vc, originalTable(),
+                Arrays.asList(new SelectElem(vc, FuncExpr.countDistinct(Expr.from(vc, "l_orderkey")), "d"),
+                        new SelectElem(vc, FuncExpr.sum(Expr.from(vc, "l_quantity")), "s")));
+        assertFalse(a.usesCountDistinctSketches());
+    }
+
+    @Test
+    public void universeSampleTest() {
+        SampleParam param = new SampleParam(vc, AnalyticErrorBoundTest.lineitem, "universe",
+                AnalyticErrorBoundTest.samplingRatio, Arrays.asList("l_orderkey"));
+        ApproxAggregatedRelation a = countDistinct(ApproxSingleRelation.from(vc, param));
+        assertFalse(a.usesCountDistinctSketches());
+
+        String sql = a.rewriteWithSubsampledErrorBounds().toSql().toLowerCase();
+        assertTrue(sql.contains("ndv("));
+        assertFalse(sql.contains("count(distinct"));
+        assertTrue(a.rewriteForPointEstimate().toSql().toLowerCase().contains("ndv("));
+    }
+
+}
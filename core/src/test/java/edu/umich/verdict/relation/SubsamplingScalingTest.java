@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.AnalyticErrorBoundTest.LineitemMeta;
+import edu.umich.verdict.relation.expr.Expr;
+import edu.umich.verdict.relation.expr.FuncExpr;
+import edu.umich.verdict.relation.expr.SelectElem;
+
+public class SubsamplingScalingTest {
+
+    VerdictJDBCContext vc;
+
+    @Before
+    public void setUp() throws VerdictException {
+        VerdictConf conf = new VerdictConf();
+        conf.setDbms("dummy");
+        vc = VerdictJDBCContext.from(conf);
+        vc.setMeta(new LineitemMeta(vc));
+    }
+
+    private String groupbySql(String scaling, SelectElem... elems) {
+        vc.getConf().set("verdict.error_bound.subsampling.scaling", scaling);
+        NamingContext.begin();
+        SampleParam param = new SampleParam(vc, AnalyticErrorBoundTest.lineitem, "uniform",
+                AnalyticErrorBoundTest.samplingRatio, Arrays.<String>asList());
+        ApproxAggregatedRelation a = ApproxSingleRelation.from(vc, param).groupby("l_orderkey")
+                .agg((Object[]) elems);
+        return a.rewriteWithSubsampledErrorBounds().toSql().toLowerCase();
+    }
+
+    @Test
+    public void foldedTest() {
+        SelectElem sum = new SelectElem(vc, FuncExpr.sum(Expr.from(vc, "l_quantity")), "s");
+        SelectElem count = new SelectElem(vc, FuncExpr.count(), "c");
+
+        assertTrue(groupbySql("window", sum, count).contains(" over "));
+
+        String folded = groupbySql("folded", sum, count);
+        assertFalse(folded.contains(" over "));
+        assertTrue(folded.contains("s_err"));
+        assertTrue(folded.contains("c_err"));
+    }
+
+    @Test
+    public void nonlinearTest() {
+        // the partition sizes cancel out only for a single count or sum.
+        SelectElem ratio = new SelectElem(vc, Expr.from(vc, "sum(l_quantity) / count(*)"), "r");
+        assertTrue(groupbySql("folded", ratio).contains(" over "));
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umich.verdict.StaticSampleMeta;
+import edu.umich.verdict.VerdictConf;
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.VerdictJDBCContext;
+import edu.umich.verdict.datatypes.SampleParam;
+import edu.umich.verdict.datatypes.TableUniqueName;
+import edu.umich.verdict.exceptions.VerdictException;
+import edu.umich.verdict.relation.condition.Cond;
+import edu.umich.verdict.relation.expr.Expr;
+
+public class UniverseJoinAdvisorTest {
+
+    static final TableUniqueName lineitem = TableUniqueName.uname("s", "lineitem");
+
+    static final TableUniqueName orders = TableUniqueName.uname("s", "orders");
+
+    /**
+     * lineitem and orders with uniform samples, and universe samples on their join
+     * keys (but on orders only if asked to).
+     */
+    static class JoinMeta extends StaticSampleMeta {
+
+        public JoinMeta(VerdictContext vc, boolean ordersUniverse) {
+            super(vc);
+            addTable(lineitem, 6000000L, "l_orderkey", "double", "l_quantity", "double");
+            addTable(orders, 1500000L, "o_orderkey", "double", "o_totalprice", "double");
+
+            addSample(new SampleParam(vc, lineitem, "uniform", 0.01, Arrays.<String>asList()));
+            addSample(new SampleParam(vc, lineitem, "universe", 0.01, Arrays.asList("l_orderkey")));
+            addSample(new SampleParam(vc, orders, "uniform", 0.01, Arrays.<String>asList()));
+            if (ordersUniverse) {
+                addSample(new SampleParam(vc, orders, "universe", 0.01, Arrays.asList("o_orderkey")));
+            }
+        }
+    }
+
+    VerdictJDBCContext vc;
+
+    @Before
+    public void setUp() throws VerdictException {
+        VerdictConf conf = new VerdictConf();
+        conf.setDbms("dummy");
+        vc = VerdictJDBCContext.from(conf);
+    }
+
+    @Test
+    public void advisorTest() {
+        vc.setMeta(new JoinMeta(vc, true));
+        UniverseJoinAdvisor advisor = new UniverseJoinAdvisor(vc);
+        assertTrue(advisor.prefersUniverseSamples(lineitem, "l_orderkey", orders, "o_orderkey"));
+
+        // no universe sample of orders on the join key
+        assertFalse(advisor.prefersUniverseSamples(lineitem, "l_orderkey", orders, "o_totalprice"));
+
+        // not large enough
+        vc.getConf().set("verdict.planner.universe_join.min_rows", "2000000");
+        assertFalse(advisor.prefersUniverseSamples(lineitem, "l_orderkey", orders, "o_orderkey"));
+    }
+
+    private List<ApproxRelation> joinCandidates() throws VerdictException {
+        JoinedRelation join = JoinedRelation.from(vc, SingleRelation.from(vc, lineitem),
+                SingleRelation.from(vc, orders), Cond.from(vc, "l_orderkey = o_orderkey"));
+        return join.nBestSamples(Expr.from(vc, "sum(l_quantity)"), 10);
+    }
+
+    @Test
+    public void preferUniverseJoinTest() throws VerdictException {
+        vc.setMeta(new JoinMeta(vc, true));
+        List<ApproxRelation> candidates = joinCandidates();
+        boolean universeJoinFound = false;
+        for (ApproxRelation a : candidates) {
+            ApproxJoinedRelation j = (ApproxJoinedRelation) a;
+            String type1 = j.getSource1().sampleType();
+            String type2 = j.getSource2().sampleType();
+            if (!type1.equals("nosample") && !type2.equals("nosample")) {
+                assertEquals("universe", type1);
+                assertEquals("universe", type2);
+                universeJoinFound = true;
+            }
+        }
+        assertTrue(universeJoinFound);
+
+        // uniform samples of both are joined without the universe samples of orders.
+        vc.setMeta(new JoinMeta(vc, false));
+        boolean uniformJoinFound = false;
+        for (ApproxRelation a : joinCandidates()) {
+            ApproxJoinedRelation j = (ApproxJoinedRelation) a;
+            uniformJoinFound |= j.getSource1().sampleType().equals("uniform")
+                    && j.getSource2().sampleType().equals("uniform");
+        }
+        assertTrue(uniformJoinFound);
+    }
+
+}
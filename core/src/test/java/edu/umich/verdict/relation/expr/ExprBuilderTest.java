@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 University of Michigan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.umich.verdict.relation.expr;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import edu.umich.verdict.VerdictContext;
+import edu.umich.verdict.relation.condition.Cond;
+
+public class ExprBuilderTest {
+
+    private static VerdictContext dummyContext = null;
+
+    private ExprBuilder b = new ExprBuilder(dummyContext);
+
+    @Test
+    public void nullSafeTest() {
+        Expr built = b.nullSafe(b.col("s", "city"), b.string("VERDICT_NULL"));
+        Expr parsed = Expr.from(dummyContext, "case when s.city is null then 'VERDICT_NULL' else s.city end");
+        assertEquals(parsed.toString(), built.toString());
+    }
+
+    @Test
+    public void arithmeticTest() {
+        Expr built = b.div(b.mul(b.decimal(0.5), b.constant(10)), b.col("gsize"));
+        Expr parsed = Expr.from(dummyContext, "(0.500000 * 10) / gsize");
+        assertEquals(parsed.toString(), built.toString());
+    }
+
+    @Test
+    public void conditionTest() {
+        Cond built = b.or(b.lt(b.col("r"), b.constant(1)), b.isNull(b.col("t", "a")));
+        Cond parsed = Cond.from(dummyContext, "r < 1 or t.a is null");
+        assertEquals(parsed.toString(), built.toString());
+    }
+
+    @Test
+    public void selectElemTest() {
+        assertEquals("count(*) AS `c`", b.as(b.count(), "c").toString());
+        assertEquals("*", b.allColumns().toString());
+    }
+
+}